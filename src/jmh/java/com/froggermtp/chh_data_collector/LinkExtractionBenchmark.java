@@ -0,0 +1,65 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures extracting the links of the saved listing page.
+ * <p>
+ * {@code getLinks} only selects the links of an already parsed {@code Document}, while
+ * {@code parseAndGetLinks} includes the parse, which is the cost of the document path as a whole.
+ * {@code linkExtractor} is the path taken for pages that do not need a {@code Document}.
+ * Run with {@code -prof gc} to compare the allocation of each.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinkExtractionBenchmark {
+	private static final String LISTING_URL = "http://www.rapzilla.com/rz/music/freemp3s";
+	
+	private byte[] body;
+	private Document doc;
+	private WebCrawlerController controller;
+	
+	@Setup
+	public void setUp() throws IOException {
+		CrawlerConfig config = new CrawlerConfig();
+		config.addSeedUrl(LISTING_URL);
+		
+		body = LinkExtractorTest.readFixture("fixtures/freemp3s-listing.html");
+		doc = RapzillaWebCrawlerTest.readDocument("fixtures/freemp3s-listing.html", LISTING_URL);
+		controller = new WebCrawlerController(config, new RapzillaWebCrawler());
+	}
+	
+	@Benchmark
+	public List<String> getLinks() {
+		return controller.getLinks(doc);
+	}
+	
+	@Benchmark
+	public List<String> parseAndGetLinks() throws IOException {
+		return controller.getLinks(RapzillaWebCrawlerTest.readDocument(body, LISTING_URL));
+	}
+	
+	@Benchmark
+	public List<String> linkExtractor() {
+		return LinkExtractor.extract(LISTING_URL, body, body.length, StandardCharsets.UTF_8).getLinks();
+	}
+}
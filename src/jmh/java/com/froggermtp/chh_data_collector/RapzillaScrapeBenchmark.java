@@ -0,0 +1,126 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.select.Elements;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures scraping the saved article page with the extraction plan of
+ * {@link RapzillaWebCrawler}, and with the hand-written scraping it used to do.
+ * <p>
+ * The scrape benchmarks run against an already parsed {@code Document}, while
+ * {@code parseAndScrape} includes the parse, which is the cost of visiting an article as a whole.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RapzillaScrapeBenchmark {
+	private static final String ARTICLE_URL = 
+			"http://www.rapzilla.com/rz/music/freemp3s/14099-propaganda-crown";
+	
+	private byte[] body;
+	private Document doc;
+	private RapzillaWebCrawler crawler;
+	
+	@Setup
+	public void setUp() throws IOException {
+		body = LinkExtractorTest.readFixture("fixtures/freemp3s-article.html");
+		doc = RapzillaWebCrawlerTest.readDocument(body, ARTICLE_URL);
+		crawler = new RapzillaWebCrawler();
+	}
+	
+	@Benchmark
+	public MusicData scrape() {
+		return crawler.scrape(doc);
+	}
+	
+	@Benchmark
+	public MusicData legacyScrape() {
+		return LegacyScraper.scrape(doc);
+	}
+	
+	@Benchmark
+	public MusicData parseAndScrape() throws IOException {
+		return crawler.scrape(RapzillaWebCrawlerTest.readDocument(body, ARTICLE_URL));
+	}
+	
+	/**
+	 * The scraping that {@link RapzillaWebCrawler} used to do: a select and uncompiled regexes
+	 * for every field.
+	 */
+	private static final class LegacyScraper {
+		static MusicData scrape(Document doc) {
+			return new MusicData(doc.location(), scrapeProject(doc), scrapeArtist(doc), scrapeDate(doc));
+		}
+		
+		static String scrapeArtist(Document doc) {
+			Elements titleElements = doc.select("title");
+			
+			if (titleElements.size() != 1) {
+				return null;
+			}
+			
+			String titleString = titleElements.first().toString();
+			titleString = replaceDashes(titleString);
+			titleString = replaceAmperstamp(titleString);
+			
+			return titleString.contains("-") 
+					? titleString.replaceAll("(<title>Free.*:\\s+)|(\\s*-.*)", "") : null;
+		}
+		
+		static String scrapeProject(Document doc) {
+			Elements titleElements = doc.select("title");
+			
+			if (titleElements.size() != 1) {
+				return null;
+			}
+			
+			String titleString = titleElements.first().toString();
+			titleString = replaceDashes(titleString);
+			titleString = replaceAmperstamp(titleString);
+			
+			return titleString.contains("-") ? titleString.replaceAll("(.*-\\s*)|(\\s*</title>)", "") : null;
+		}
+		
+		static String scrapeDate(Document doc) {
+			Elements timeElements = doc.select("time");
+			
+			return timeElements.size() == 1 ? timeElements.html().replaceAll("Created:\\s*", "") : null;
+		}
+		
+		/**
+		 * Converts all the dashes with the unicode 8211 to dashes with unicode 45 in the input String.
+		 */
+		static String replaceDashes(String input) {
+			final String UNICODE_8211 = "\u2013";
+			final String UNICODE_45 = "-";
+			
+			return input.replace(UNICODE_8211, UNICODE_45);
+		}
+		
+		/**
+		 * Converts all appearances of '&amp;amp;' with '&amp;' in the input String.
+		 */
+		static String replaceAmperstamp(String input) {
+			final String TO_BE_REPLACED = "&amp;";
+			final String AMPERSTAMP = "&";
+			
+			return input.replace(TO_BE_REPLACED, AMPERSTAMP);
+		}
+	}
+}
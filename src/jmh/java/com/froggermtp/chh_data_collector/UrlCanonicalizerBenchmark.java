@@ -0,0 +1,65 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures making a single link canonical with {@link UrlCanonicalizer}, for links that are
+ * already canonical and for links that have to be rebuilt.
+ * <p>
+ * The links are shaped like Rapzilla article URLs, and are made canonical with the rule of
+ * {@link RapzillaWebCrawler}.
+ * Every benchmark takes the next of {@code URL_COUNT} distinct links.
+ * Run with {@code -prof gc} to compare the allocation of each.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlCanonicalizerBenchmark {
+	/**
+	 * The number of distinct links, a power of two.
+	 */
+	private static final int URL_COUNT = 1 << 16;
+	
+	private UrlCanonicalizer canonicalizer;
+	private String[] canonical;
+	private String[] rebuilt;
+	private int next;
+	
+	@Setup
+	public void setUp() {
+		canonicalizer = new UrlCanonicalizer(UrlCanonicalizer.DEFAULT_IGNORED_PARAMETERS, 
+				new RapzillaWebCrawler().getTrailingSlash());
+		canonical = new String[URL_COUNT];
+		rebuilt = new String[URL_COUNT];
+		
+		for (int i = 0; i < URL_COUNT; i++) {
+			canonical[i] = "http://www.rapzilla.com/rz/music/freemp3s/" + i + "-artist-name-project-title";
+			rebuilt[i] = "http://www.Rapzilla.com:80/rz/music/freemp3s/" + i 
+					+ "-artist-name-project-title/?utm_source=feed#comments";
+		}
+	}
+	
+	@Benchmark
+	public String canonical() {
+		return canonicalizer.canonicalize(canonical[next++ & (URL_COUNT - 1)]);
+	}
+	
+	@Benchmark
+	public String rebuilt() {
+		return canonicalizer.canonicalize(rebuilt[next++ & (URL_COUNT - 1)]);
+	}
+}
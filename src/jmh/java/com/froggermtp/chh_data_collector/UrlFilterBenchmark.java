@@ -0,0 +1,132 @@
+package com.froggermtp.chh_data_collector;
+
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures filtering the links of a Rapzilla-like listing page with the filter chain that
+ * {@link WebCrawlerController} builds, and with the per-link filtering it used to do.
+ * <p>
+ * The links mix article links with navigation links, external links, images, scripts and
+ * mailto links.
+ * Each benchmark filters every link of the page once.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlFilterBenchmark {
+	private static final List<String> SEED_URLS = 
+			Arrays.asList("http://www.rapzilla.com/rz/music/freemp3s");
+	
+	private List<String> links;
+	private UrlFilter chain;
+	private UrlFilter legacy;
+	
+	@Setup
+	public void setUp() {
+		CrawlerConfig config = new CrawlerConfig();
+		SEED_URLS.forEach(config::addSeedUrl);
+		config.setFollowExternalLinks(false);
+		
+		links = listingPageLinks();
+		chain = WebCrawlerController.newUrlFilter(config, SEED_URLS, new RapzillaWebCrawler(), null);
+		legacy = new LegacyFilter();
+	}
+	
+	@Benchmark
+	public int filterChain() {
+		return countAccepted(chain);
+	}
+	
+	@Benchmark
+	public int legacyFiltering() {
+		return countAccepted(legacy);
+	}
+	
+	private int countAccepted(UrlFilter filter) {
+		int accepted = 0;
+		
+		for (String link : links) {
+			if (filter.accept(link)) {
+				accepted++;
+			}
+		}
+		
+		return accepted;
+	}
+	
+	/**
+	 * @return the links of a Rapzilla-like listing page
+	 */
+	private static List<String> listingPageLinks() {
+		List<String> links = new ArrayList<>();
+		
+		for (int i = 0; i < 40; i++) {
+			links.add("http://www.rapzilla.com/rz/music/freemp3s/" + (14000 + i) + "-artist-name-project-title");
+		}
+		
+		for (int i = 0; i < 20; i++) {
+			links.add("http://www.rapzilla.com/rz/news/" + i + "-headline");
+			links.add("http://www.rapzilla.com/rz/images/cover-" + i + ".jpg");
+		}
+		
+		links.add("http://www.rapzilla.com/rz/music/freemp3s?start=20");
+		links.add("http://www.rapzilla.com/rz/templates/rapzilla/css/template.css");
+		links.add("http://www.rapzilla.com/rz/media/system/js/mootools.js");
+		links.add("https://twitter.com/rapzilla");
+		links.add("https://www.facebook.com/rapzilla");
+		links.add("mailto:info@rapzilla.com");
+		links.add("javascript:void(0)");
+		
+		return links;
+	}
+	
+	/**
+	 * The filtering that {@code WebCrawlerController} and {@code RapzillaWebCrawler} did for every
+	 * link before the filter chain, with the logging removed.
+	 */
+	private static final class LegacyFilter implements UrlFilter {
+		@Override
+		public boolean accept(String url) {
+			return !isExternalLink(url) && hasValidExtension(url) && isValidUrl(url) 
+					&& url.matches("http://www.rapzilla.com/rz/music/freemp3s/\\d+.+");
+		}
+		
+		private boolean hasValidExtension(String url) {
+			return !url.matches(".*(\\.(css|js|gif|jpg|png|mp3|mp3|zip|gz))$");
+		}
+		
+		private boolean isExternalLink(String url) {
+			return !SEED_URLS.stream().anyMatch(url::startsWith);
+		}
+		
+		private boolean isValidUrl(String url) {
+			try {
+				new URL(url).toURI();
+			} catch (MalformedURLException | URISyntaxException e) {
+				return false;
+			}
+			
+			return true;
+		}
+	}
+}
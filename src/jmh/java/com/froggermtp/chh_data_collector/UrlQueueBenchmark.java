@@ -0,0 +1,76 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures adding and retrieving URLs from a {@link UrlQueue} that already holds
+ * {@code frontierSize} URLs.
+ * <p>
+ * Every benchmark keeps the frontier at its size, so the cost should stay flat however large the
+ * frontier is.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class UrlQueueBenchmark {
+	private static final String PREFIX = "http://www.rapzilla.com/rz/music/freemp3s/";
+	
+	@Param({"1000", "100000", "1000000"})
+	private int frontierSize;
+	
+	/**
+	 * The set that remembers the seen URLs: {@code string} or {@code fingerprint}.
+	 */
+	@Param({"string", "fingerprint"})
+	private String seenUrlSet;
+	
+	private UrlQueue queue;
+	private long nextUrl;
+	
+	@Setup(Level.Trial)
+	public void fill() {
+		UrlSet seenUrls = seenUrlSet.equals("fingerprint") 
+				? new FingerprintUrlSet(frontierSize) 
+				: new StringUrlSet();
+		
+		queue = new UrlQueue(seenUrls, new MemoryFrontier());
+		
+		for (nextUrl = 0; nextUrl < frontierSize; nextUrl++) {
+			queue.addUrl(PREFIX + nextUrl);
+		}
+	}
+	
+	/**
+	 * Adds a new URL and retrieves the oldest one.
+	 */
+	@Benchmark
+	public String addAndGet() {
+		queue.addUrl(PREFIX + nextUrl++);
+		
+		return queue.getUrl();
+	}
+	
+	/**
+	 * Adds a URL that has already been seen, which is what most discovered links are.
+	 */
+	@Benchmark
+	public boolean addDuplicate() {
+		return queue.addUrl(PREFIX + (nextUrl++ % frontierSize));
+	}
+}
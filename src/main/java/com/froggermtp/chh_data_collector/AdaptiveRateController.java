@@ -0,0 +1,234 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adapts the request rate and the number of concurrent requests of every host to how well the
+ * host keeps up, the way TCP adapts its congestion window.
+ * <p>
+ * Every host starts at the configured politeness delay, with one request in flight at a time.
+ * While the host answers quickly, its rate and its connection limit grow additively: the rate by
+ * about {@value #RATE_INCREASE} requests per second every second, and the connection limit by
+ * one for every limit's worth of responses.
+ * When the host is overloaded, both are halved at once.
+ * A host is overloaded when it answers {@code 429 Too Many Requests},
+ * {@code 503 Service Unavailable} or {@code 504 Gateway Timeout}, when a request gets no answer
+ * at all, or when the smoothed latency of its responses rises above the target latency.
+ * A request that failed for a reason that has nothing to do with the load of the host, such as
+ * an unsupported content type or a malformed URL, leaves the rate as it is.
+ * <p>
+ * The responses to requests that were already in flight when the rate was cut carry no news
+ * about the new rate, so they do not cut it again.
+ * If the server sends a {@code Retry-After} header, no further request is made to the host until
+ * that time has passed.
+ * <p>
+ * The delay between requests stays within the bounds set by the {@link CrawlerConfig}, and so
+ * does the connection limit.
+ * <p>
+ * This class is thread-safe.
+ */
+public class AdaptiveRateController implements RequestScheduler {
+	private static final Logger logger = LoggerFactory.getLogger(AdaptiveRateController.class);
+
+	/**
+	 * The requests per second a healthy host gains every second.
+	 */
+	static final double RATE_INCREASE = 0.5;
+	/**
+	 * The weight of the latest response in the smoothed latency.
+	 */
+	private static final double LATENCY_WEIGHT = 0.2;
+
+	/**
+	 * The smallest amount of milliseconds between two requests to the same host.
+	 */
+	private final long minDelay;
+	/**
+	 * The largest amount of milliseconds between two requests to the same host.
+	 */
+	private final long maxDelay;
+	/**
+	 * The amount of milliseconds between two requests to a host that has not answered yet.
+	 */
+	private final long initialDelay;
+	/**
+	 * The largest number of requests in flight to the same host.
+	 */
+	private final int maxConnections;
+	/**
+	 * The smoothed latency in milliseconds above which a host is overloaded.
+	 */
+	private final long targetLatency;
+	/**
+	 * The state of every host.
+	 */
+	private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+
+	/**
+	 * @param config  the configuration that bounds the rate and concurrency, not null
+	 */
+	public AdaptiveRateController(CrawlerConfig config) {
+		this.minDelay = config.getMinPolitenessDelay();
+		this.maxDelay = config.getMaxPolitenessDelay();
+		this.initialDelay = Math.min(maxDelay, Math.max(minDelay, config.getPolitenessDelay()));
+		this.maxConnections = config.getMaxConnectionsPerHost();
+		this.targetLatency = config.getTargetLatency();
+
+		if (minDelay > maxDelay) {
+			throw new IllegalArgumentException(
+					"Min politeness delay " + minDelay + " is above max politeness delay " + maxDelay);
+		}
+	}
+
+	@Override
+	public long reserve(String url) {
+		Host host = hosts.computeIfAbsent(PolitenessScheduler.getHost(url), name -> new Host());
+		long now = System.currentTimeMillis();
+
+		synchronized (host) {
+			if (host.inFlight >= (int) host.connectionLimit) {
+				return -1;
+			}
+
+			// The first request to a host may go out immediately
+			long slot = host.lastSlot < 0
+					? Math.max(now, host.notBefore)
+					: Math.max(Math.max(now, host.notBefore), host.lastSlot + (long) host.delay);
+
+			host.lastSlot = slot;
+			host.inFlight++;
+
+			return slot - now;
+		}
+	}
+
+	@Override
+	public void onComplete(String url, int statusCode, long latency, long retryAfter) {
+		String name = PolitenessScheduler.getHost(url);
+		Host host = hosts.get(name);
+
+		if (host == null) {
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+
+		synchronized (host) {
+			host.inFlight = Math.max(0, host.inFlight - 1);
+
+			if (statusCode == RetryScheduler.PERMANENT_FAILURE) {
+				return;
+			}
+
+			if (statusCode > 0) {
+				host.smoothedLatency = host.smoothedLatency < 0
+						? latency
+						: (1 - LATENCY_WEIGHT) * host.smoothedLatency + LATENCY_WEIGHT * latency;
+			}
+
+			if (retryAfter > 0) {
+				host.notBefore = Math.max(host.notBefore, now + retryAfter);
+			}
+
+			if (isOverloaded(statusCode, retryAfter) || host.smoothedLatency > targetLatency) {
+				// Only the first response after the rate was cut reflects the new rate
+				if (now - latency >= host.lastDecrease) {
+					host.delay = Math.min(maxDelay, Math.max(minDelay, host.delay * 2));
+					host.connectionLimit = Math.max(1, host.connectionLimit / 2);
+					host.lastDecrease = now;
+
+					logger.debug("Slowed down host {} to {} milliseconds and {} connections",
+							name, (long) host.delay, (int) host.connectionLimit);
+				}
+			} else if (statusCode < 500) {
+				double rate = 1000 / Math.max(host.delay, 1);
+
+				// A rate of r gains r * (RATE_INCREASE / r) requests per second every second
+				host.delay = Math.min(maxDelay, Math.max(minDelay, 1000 / (rate + RATE_INCREASE / rate)));
+				host.connectionLimit = Math.min(maxConnections, host.connectionLimit + 1 / host.connectionLimit);
+			}
+		}
+	}
+
+	/**
+	 * @param statusCode  the status code of the response, zero if there was no response
+	 * @param retryAfter  the amount of milliseconds the server asked to wait, zero if it did not ask
+	 * @return whether the response tells that the host is overloaded
+	 */
+	private static boolean isOverloaded(int statusCode, long retryAfter) {
+		return statusCode == 0 || statusCode == 429 || statusCode == 503 || statusCode == 504 || retryAfter > 0;
+	}
+
+	/**
+	 * @return the requests per second by host, not null
+	 */
+	@Override
+	public Map<String, Double> getRequestRates() {
+		Map<String, Double> rates = new TreeMap<>();
+
+		hosts.forEach((name, host) -> {
+			synchronized (host) {
+				rates.put(name, 1000 / Math.max(host.delay, 1));
+			}
+		});
+
+		return rates;
+	}
+
+	/**
+	 * @param url  a URL of the host, not null
+	 * @return the number of requests the host may have in flight
+	 */
+	public int getConnectionLimit(String url) {
+		Host host = hosts.get(PolitenessScheduler.getHost(url));
+
+		if (host == null) {
+			return 1;
+		}
+
+		synchronized (host) {
+			return (int) host.connectionLimit;
+		}
+	}
+
+	/**
+	 * The pace of the requests to a host.
+	 */
+	private final class Host {
+		/**
+		 * The amount of milliseconds between two requests.
+		 */
+		private double delay = initialDelay;
+		/**
+		 * The number of requests that may be in flight, the fraction being the progress towards
+		 * the next request.
+		 */
+		private double connectionLimit = 1;
+		/**
+		 * The number of requests in flight.
+		 */
+		private int inFlight = 0;
+		/**
+		 * The time, in milliseconds, of the most recently reserved slot, negative if none was.
+		 */
+		private long lastSlot = -1;
+		/**
+		 * The time, in milliseconds, before which no request may be made.
+		 */
+		private long notBefore = 0;
+		/**
+		 * The time, in milliseconds, at which the rate was last cut.
+		 */
+		private long lastDecrease = 0;
+		/**
+		 * The exponentially smoothed latency in milliseconds, negative if nothing was answered yet.
+		 */
+		private double smoothedLatency = -1;
+	}
+}
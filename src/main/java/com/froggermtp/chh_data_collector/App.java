@@ -1,5 +1,7 @@
 package com.froggermtp.chh_data_collector;
 
+import java.nio.file.Paths;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -10,7 +12,7 @@ public class App {
 	private static final Logger logger = LoggerFactory.getLogger(App.class);
 	
 	public static void main( String[] args ) {	
-		String[] seedUrls = {"http://www.rapzilla.com/rz/music/freemp3s/"};
+		String[] seedUrls = {"http://www.rapzilla.com/rz/music/freemp3s"};
 		
 		CrawlerConfig config = new CrawlerConfig();
 		
@@ -20,10 +22,17 @@ public class App {
 		
 		config.setFollowExternalLinks(false);
 		config.setScrapeSeedUrls(false);
+		config.setMaxArticles(10);
+		config.setResponseCacheDirectory(Paths.get("cache"));
+		config.setWatermarkFile(Paths.get("watermark.tsv"));
+		config.setRespectRobotsTxt(true);
+		config.setUseSitemaps(true);
     	
-        WebCrawlerController webcrawler = new WebCrawlerController(config, new RapzillaWebCrawler());
-        webcrawler.crawl();
-        
-        logger.info("Total links visited : {}", webcrawler.getTotalLinksVisited());
+		try (MusicDataSink sink = new FileMusicDataSink(Paths.get("music-data.csv"), new CsvFormat())) {
+			WebCrawlerController webcrawler = new WebCrawlerController(config, new RapzillaWebCrawler(sink));
+			webcrawler.crawl();
+			
+			logger.info("Total links visited : {}", webcrawler.getTotalLinksVisited());
+		}
     }
 }
@@ -0,0 +1,69 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes {@link MusicData} as compact binary records.
+ * <p>
+ * Each record starts with a byte whose lowest four bits mark which of the url, project, artist
+ * and date are present.
+ * The present values follow in that order, each in the modified UTF-8 encoding of
+ * {@link DataOutputStream#writeUTF(String)}.
+ */
+public class BinaryFormat implements MusicDataFormat {
+
+	@Override
+	public void write(MusicData data, OutputStream out) throws IOException {
+		// The stream is not buffered here, since the sink buffers its output
+		DataOutputStream dataOut = new DataOutputStream(out);
+		String[] values = {data.getUrl(), data.getProject(), data.getArtist(), data.getDate()};
+		int presence = 0;
+		
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				presence |= 1 << i;
+			}
+		}
+		
+		dataOut.writeByte(presence);
+		
+		for (String value : values) {
+			if (value != null) {
+				dataOut.writeUTF(value);
+			}
+		}
+	}
+	
+	/**
+	 * Reads the next record written by this format.
+	 * 
+	 * @param in  the stream to read from, not null
+	 * @return the next record, null if the end of the stream has been reached
+	 * @throws IOException if the stream cannot be read, or ends in the middle of a record
+	 */
+	public static MusicData read(DataInputStream in) throws IOException {
+		int presence = in.read();
+		
+		if (presence < 0) {
+			return null;
+		}
+		
+		String[] values = new String[4];
+		
+		try {
+			for (int i = 0; i < values.length; i++) {
+				if ((presence & (1 << i)) != 0) {
+					values[i] = in.readUTF();
+				}
+			}
+		} catch (EOFException e) {
+			throw new IOException("Truncated music data record", e);
+		}
+		
+		return new MusicData(values[0], values[1], values[2], values[3]);
+	}
+}
@@ -0,0 +1,117 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * A pool of byte buffers into which response bodies are read, so that the buffers a body passes
+ * through are allocated once and reused, rather than allocated again for every page.
+ * <p>
+ * A buffer starts out small, and doubles whenever a body does not fit, up to the largest body
+ * size.
+ * Once the pooled buffers have grown to the size of the usual page, reading a body only
+ * allocates the array the body is copied into.
+ * <p>
+ * This class is thread-safe.
+ */
+public class BufferPool {
+	/**
+	 * The size of a new buffer.
+	 */
+	static final int INITIAL_SIZE = 16 * 1024;
+
+	/**
+	 * The buffers that are not in use, the most recently released first.
+	 */
+	private final ArrayDeque<byte[]> buffers = new ArrayDeque<>();
+	/**
+	 * The largest number of buffers kept in the pool.
+	 */
+	private final int maxPooled;
+	/**
+	 * The largest size of a buffer kept in the pool.
+	 */
+	private final int maxSize;
+
+	/**
+	 * @param maxPooled  the largest number of buffers kept in the pool, usually the number of
+	 * threads that read bodies at the same time, must be positive
+	 * @param maxSize  the size of the largest buffer kept in the pool, larger buffers are left to
+	 * the garbage collector, must be positive
+	 */
+	public BufferPool(int maxPooled, int maxSize) {
+		if (maxPooled <= 0) {
+			throw new IllegalArgumentException("The number of pooled buffers must be positive: " + maxPooled);
+		}
+
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("The size of the pooled buffers must be positive: " + maxSize);
+		}
+
+		this.maxPooled = maxPooled;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Reads a stream to its end, or up to a limit, through a pooled buffer.
+	 *
+	 * @param in  the stream, which is not closed, not null
+	 * @param limit  the largest number of bytes to read, must not be negative
+	 * @return the bytes read, not null
+	 * @throws IOException if the stream cannot be read
+	 */
+	public byte[] read(InputStream in, int limit) throws IOException {
+		byte[] buffer = acquire();
+
+		try {
+			int length = 0;
+
+			while (length < limit) {
+				if (length == buffer.length) {
+					buffer = Arrays.copyOf(buffer, (int) Math.min(2L * buffer.length, Integer.MAX_VALUE - 8));
+				}
+
+				int count = in.read(buffer, length, Math.min(buffer.length, limit) - length);
+
+				if (count < 0) {
+					break;
+				}
+
+				length += count;
+			}
+
+			return Arrays.copyOf(buffer, length);
+		} finally {
+			release(buffer);
+		}
+	}
+
+	/**
+	 * @return the number of buffers in the pool
+	 */
+	public synchronized int size() {
+		return buffers.size();
+	}
+
+	/**
+	 * @return a buffer from the pool, or a new buffer if the pool is empty, not null
+	 */
+	private synchronized byte[] acquire() {
+		byte[] buffer = buffers.pollFirst();
+
+		return buffer != null ? buffer : new byte[Math.min(INITIAL_SIZE, maxSize)];
+	}
+
+	/**
+	 * Puts a buffer back into the pool, unless the pool is full or the buffer is too large.
+	 *
+	 * @param buffer  the buffer, which must not be used any more, not null
+	 */
+	private synchronized void release(byte[] buffer) {
+		if (buffers.size() < maxPooled && buffer.length <= maxSize) {
+			buffers.addFirst(buffer);
+		}
+	}
+}
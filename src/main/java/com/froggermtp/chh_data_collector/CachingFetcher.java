@@ -0,0 +1,147 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link PageFetcher} that revalidates the pages held by a {@link ResponseCache}, instead of
+ * fetching them again.
+ * <p>
+ * If a page is cached, the request is made conditional on the page's {@code ETag} and
+ * {@code Last-Modified} validators.
+ * When the server answers that the page has not been modified, the cached page is returned,
+ * {@linkplain FetchedPage#isNotModified() marked} as not modified, and no body is transferred.
+ * Otherwise, the new page is returned and replaces the cached one.
+ * <p>
+ * Only successful responses that carry a validator are cached, since nothing else can be
+ * revalidated.
+ * <p>
+ * This class is thread-safe.
+ */
+public class CachingFetcher implements PageFetcher, Closeable {
+	private static final Logger logger = LoggerFactory.getLogger(CachingFetcher.class);
+
+	private static final int NOT_MODIFIED = 304;
+
+	/**
+	 * The fetcher that makes the requests.
+	 */
+	private final PageFetcher delegate;
+	/**
+	 * The cache that holds the fetched pages.
+	 */
+	private final ResponseCache cache;
+	/**
+	 * The number of pages that were served from the cache.
+	 */
+	private final AtomicLong hitCount = new AtomicLong();
+	/**
+	 * The number of pages that were not in the cache.
+	 */
+	private final AtomicLong missCount = new AtomicLong();
+	/**
+	 * The number of cached pages that were fetched again because they had changed.
+	 */
+	private final AtomicLong changedCount = new AtomicLong();
+
+	/**
+	 * @param delegate  the fetcher that makes the requests, not null
+	 * @param cache  the cache that holds the fetched pages, not null
+	 */
+	public CachingFetcher(PageFetcher delegate, ResponseCache cache) {
+		this.delegate = delegate;
+		this.cache = cache;
+	}
+
+	@Override
+	public FetchedPage fetch(String url, Map<String, String> requestHeaders) throws IOException {
+		FetchedPage cached = cache.get(url);
+
+		if (cached == null) {
+			missCount.incrementAndGet();
+
+			return store(url, delegate.fetch(url, requestHeaders));
+		}
+
+		Map<String, String> conditionalHeaders = new HashMap<>(requestHeaders);
+		String etag = cached.getHeader("ETag");
+		String lastModified = cached.getHeader("Last-Modified");
+
+		if (etag != null) {
+			conditionalHeaders.put("If-None-Match", etag);
+		}
+
+		if (lastModified != null) {
+			conditionalHeaders.put("If-Modified-Since", lastModified);
+		}
+
+		FetchedPage page = delegate.fetch(url, conditionalHeaders);
+
+		if (page.getStatusCode() == NOT_MODIFIED) {
+			hitCount.incrementAndGet();
+
+			logger.debug("Serving {} from the response cache", url);
+
+			return new FetchedPage(cached.getUrl(), cached.getStatusCode(), cached.getHeaders(),
+					cached.getBody(), true);
+		}
+
+		changedCount.incrementAndGet();
+
+		return store(url, page);
+	}
+
+	/**
+	 * Caches a page if it can be revalidated later.
+	 *
+	 * @param url  the URL the page was requested with, not null
+	 * @param page  the fetched page, not null
+	 * @return the page, not null
+	 */
+	private FetchedPage store(String url, FetchedPage page) {
+		boolean hasValidator = page.getHeader("ETag") != null || page.getHeader("Last-Modified") != null;
+
+		if (page.getStatusCode() == 200 && hasValidator) {
+			cache.put(url, page);
+		}
+
+		return page;
+	}
+
+	/**
+	 * @return the number of pages that were served from the cache
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * @return the number of pages that were not in the cache
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * @return the number of cached pages that were fetched again because they had changed
+	 */
+	public long getChangedCount() {
+		return changedCount.get();
+	}
+	
+	/**
+	 * Closes the fetcher that makes the requests, if it needs to be closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (delegate instanceof Closeable) {
+			((Closeable) delegate).close();
+		}
+	}
+}
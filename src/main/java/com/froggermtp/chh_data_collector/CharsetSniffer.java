@@ -0,0 +1,226 @@
+package com.froggermtp.chh_data_collector;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Determines the charset of an HTML page from its bytes, so that the page can be decoded once,
+ * without first decoding it with a guessed charset and parsing it for a {@code <meta>} tag.
+ * <p>
+ * The charset is taken, in order, from the {@code Content-Type} header, from a byte order mark,
+ * and from a {@code <meta>} tag near the start of the page, as browsers do.
+ * A page without any of them is read as UTF-8.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class CharsetSniffer {
+	/**
+	 * The number of bytes at the start of a page that are searched for a {@code <meta>} tag.
+	 */
+	static final int PRESCAN_LENGTH = 1024;
+
+	private static final byte[] UTF_8_BOM = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+	private static final byte[] UTF_16BE_BOM = { (byte) 0xFE, (byte) 0xFF };
+	private static final byte[] UTF_16LE_BOM = { (byte) 0xFF, (byte) 0xFE };
+
+	private CharsetSniffer() {
+		// Static helpers only
+	}
+
+	/**
+	 * Determines the charset of a page.
+	 *
+	 * @param page  the page, not null
+	 * @return the charset, UTF-8 if the page does not declare a supported charset, not null
+	 */
+	public static Charset detect(FetchedPage page) {
+		return detect(page.getCharset(), page.getBody(), page.getBody().length);
+	}
+
+	/**
+	 * Determines the charset of a page.
+	 *
+	 * @param declared  the charset declared by the {@code Content-Type} header, null if none is
+	 * @param body  the bytes of the page, not null
+	 * @param length  the number of bytes of the page
+	 * @return the charset, UTF-8 if the page does not declare a supported charset, not null
+	 */
+	public static Charset detect(String declared, byte[] body, int length) {
+		Charset charset = forName(declared);
+
+		if (charset != null) {
+			return charset;
+		}
+
+		if (startsWith(body, length, UTF_8_BOM)) {
+			return StandardCharsets.UTF_8;
+		} else if (startsWith(body, length, UTF_16BE_BOM)) {
+			return StandardCharsets.UTF_16BE;
+		} else if (startsWith(body, length, UTF_16LE_BOM)) {
+			return StandardCharsets.UTF_16LE;
+		}
+
+		charset = forName(findMetaCharset(body, Math.min(length, PRESCAN_LENGTH)));
+
+		// A page whose <meta> tag could be read is not in UTF-16, whatever the tag says
+		if (charset == null || charset.equals(StandardCharsets.UTF_16)
+				|| charset.equals(StandardCharsets.UTF_16BE) || charset.equals(StandardCharsets.UTF_16LE)) {
+			return StandardCharsets.UTF_8;
+		}
+
+		return charset;
+	}
+
+	/**
+	 * Decodes a page, without its byte order mark.
+	 *
+	 * @param body  the bytes of the page, not null
+	 * @param length  the number of bytes of the page
+	 * @param charset  the charset of the page, not null
+	 * @return the text of the page, not null
+	 */
+	public static String decode(byte[] body, int length, Charset charset) {
+		int offset = 0;
+
+		if (charset.equals(StandardCharsets.UTF_8) && startsWith(body, length, UTF_8_BOM)) {
+			offset = UTF_8_BOM.length;
+		} else if (charset.equals(StandardCharsets.UTF_16BE) && startsWith(body, length, UTF_16BE_BOM)
+				|| charset.equals(StandardCharsets.UTF_16LE) && startsWith(body, length, UTF_16LE_BOM)) {
+			offset = UTF_16BE_BOM.length;
+		}
+
+		return new String(body, offset, length - offset, charset);
+	}
+
+	/**
+	 * Finds the charset named by the first {@code <meta>} tag that names one, either in its
+	 * {@code charset} attribute or in the {@code Content-Type} of its {@code content} attribute.
+	 *
+	 * @param body  the bytes of the page, not null
+	 * @param length  the number of bytes to search
+	 * @return the name of the charset, null if no tag names one
+	 */
+	static String findMetaCharset(byte[] body, int length) {
+		for (int i = indexOf(body, 0, length, "<meta"); i >= 0; i = indexOf(body, i, length, "<meta")) {
+			i += "<meta".length();
+			int end = indexOf(body, i, length, ">");
+
+			if (end < 0) {
+				return null;
+			}
+
+			int charset = indexOf(body, i, end, "charset");
+
+			if (charset >= 0) {
+				String name = readValue(body, charset + "charset".length(), end);
+
+				if (name != null) {
+					return name;
+				}
+			}
+
+			i = end;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Reads the value after {@code charset}, which is preceded by an equals sign, and ends at a
+	 * quote, a semicolon, whitespace or the end of the tag.
+	 *
+	 * @return the value, null if there is none
+	 */
+	private static String readValue(byte[] body, int start, int end) {
+		int i = skipWhitespace(body, start, end);
+
+		if (i == end || body[i] != '=') {
+			return null;
+		}
+
+		i = skipWhitespace(body, i + 1, end);
+
+		if (i < end && (body[i] == '"' || body[i] == '\'')) {
+			i++;
+		}
+
+		int valueStart = i;
+
+		while (i < end && body[i] != '"' && body[i] != '\'' && body[i] != ';' && body[i] != '/'
+				&& !isWhitespace(body[i])) {
+			i++;
+		}
+
+		return i > valueStart ? new String(body, valueStart, i - valueStart, StandardCharsets.US_ASCII) : null;
+	}
+
+	/**
+	 * @param name  the name of a charset, null if there is none
+	 * @return the charset, null if there is no name or the charset is not supported
+	 */
+	private static Charset forName(String name) {
+		if (name == null) {
+			return null;
+		}
+
+		try {
+			return Charset.forName(name);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	private static boolean startsWith(byte[] body, int length, byte[] prefix) {
+		if (length < prefix.length) {
+			return false;
+		}
+
+		for (int i = 0; i < prefix.length; i++) {
+			if (body[i] != prefix[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Finds an ASCII string in a range of bytes, ignoring case.
+	 *
+	 * @param target  the string, in lowercase, not null
+	 * @return the index of the string, -1 if it is not in the range
+	 */
+	private static int indexOf(byte[] body, int start, int end, String target) {
+		for (int i = start; i <= end - target.length(); i++) {
+			int j = 0;
+
+			while (j < target.length() && toLowerCase(body[i + j]) == target.charAt(j)) {
+				j++;
+			}
+
+			if (j == target.length()) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	private static int skipWhitespace(byte[] body, int start, int end) {
+		int i = start;
+
+		while (i < end && isWhitespace(body[i])) {
+			i++;
+		}
+
+		return i;
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+	}
+
+	private static int toLowerCase(byte b) {
+		return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+	}
+}
@@ -0,0 +1,1059 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjIntConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Connects a web crawler to the other web crawlers of a cluster, each of which crawls its own
+ * partition of the URLs.
+ * <p>
+ * The URLs are partitioned by a {@link HashRing} of the nodes.
+ * A link that belongs to another node is forwarded to it, and the links forwarded by the other
+ * nodes are collected until the web crawler takes them with {@link #drainReceived(ObjIntConsumer)}.
+ * <p>
+ * The nodes talk over plain TCP connections, one from every node to every other node, with a
+ * small binary protocol.
+ * Every message is a type byte followed by its fields:
+ * <p><ul>
+ * <li>{@code JOIN address}: the sender joins the cluster, and is told the members in return.
+ * <li>{@code MEMBERS count address...}: the members of the cluster, which are added to the ring.
+ * <li>{@code URLS address count (depth url)...}: a batch of links forwarded by the sender.
+ * <li>{@code LEAVE address}: the sender leaves the cluster, and is removed from the ring.
+ * <li>{@code STATUS address idle sequence count (node sent received)...}: whether the sender has
+ * run out of work, and how many links it has sent to and received from every other node.
+ * </ul>
+ * <p>
+ * Forwarded links are batched by destination, and a batch is sent once it is full, or every
+ * {@value #FLUSH_INTERVAL} milliseconds.
+ * When a node joins or leaves, the ring changes, and the URLs that changed owner are moved as the
+ * web crawler comes across them.
+ * A node that cannot be reached is treated as if it had left.
+ * <p>
+ * The crawl of the cluster is over when every node has run out of work, and every node has
+ * received as many links from every other node as were sent to it, twice in a row.
+ * A node that leaves sends a last status once it has passed its links on, so that the links it
+ * passed on are waited for, while a node that is lost is left out of the counts.
+ * <p>
+ * Every node applies the politeness delay on its own, so a host is contacted by every node that
+ * owns some of its URLs.
+ * <p>
+ * This class is thread-safe.
+ */
+public class ClusterNode implements Closeable {
+	private static final Logger logger = LoggerFactory.getLogger(ClusterNode.class);
+
+	private static final byte JOIN = 1;
+	private static final byte MEMBERS = 2;
+	private static final byte URLS = 3;
+	private static final byte LEAVE = 4;
+	private static final byte STATUS = 5;
+
+	/**
+	 * The amount of milliseconds between two flushes of the batches, and two status messages.
+	 */
+	static final long FLUSH_INTERVAL = 20;
+	/**
+	 * The amount of milliseconds to wait for a connection to another node.
+	 */
+	private static final int CONNECT_TIMEOUT = 5000;
+	/**
+	 * The amount of milliseconds to keep trying to join a cluster.
+	 */
+	private static final long JOIN_TIMEOUT = 30_000;
+
+	/**
+	 * The address of this node, as {@code host:port}.
+	 */
+	private final String address;
+	/**
+	 * The largest number of links sent in a single message.
+	 */
+	private final int batchSize;
+	/**
+	 * Assigns the URLs to the nodes.
+	 */
+	private final HashRing ring = new HashRing();
+	/**
+	 * Accepts the connections from the other nodes.
+	 */
+	private final ServerSocket serverSocket;
+	/**
+	 * The connection to every other node, opened when the first message is sent.
+	 */
+	private final Map<String, Peer> peers = new ConcurrentHashMap<>();
+	/**
+	 * The nodes that have left, and are not added back by stale membership messages.
+	 */
+	private final Set<String> departed = ConcurrentHashMap.newKeySet();
+	/**
+	 * The nodes that could not be reached, whose status is no longer trusted.
+	 */
+	private final Set<String> lost = ConcurrentHashMap.newKeySet();
+	/**
+	 * The latest status of every other node, including the last one of the nodes that have left.
+	 */
+	private final Map<String, Status> statuses = new ConcurrentHashMap<>();
+	/**
+	 * The links that belong to this node and have not been taken yet.
+	 */
+	private final Queue<Link> inbox = new ConcurrentLinkedQueue<>();
+	/**
+	 * Signals the arrival of links in the inbox.
+	 */
+	private final Object arrivals = new Object();
+	/**
+	 * The sockets of the connections from the other nodes.
+	 */
+	private final Set<Socket> incoming = ConcurrentHashMap.newKeySet();
+	/**
+	 * The number of links sent to every other node.
+	 */
+	private final Map<String, AtomicLong> sentCounts = new ConcurrentHashMap<>();
+	/**
+	 * The number of links received from every other node.
+	 */
+	private final Map<String, AtomicLong> receivedCounts = new ConcurrentHashMap<>();
+	/**
+	 * The number of links that were dropped because no node was left to take them.
+	 */
+	private final AtomicLong droppedCount = new AtomicLong();
+	/**
+	 * Reads the messages of the connections from the other nodes.
+	 */
+	private final ExecutorService readers;
+	/**
+	 * Flushes the batches and sends the status of this node.
+	 */
+	private final ScheduledExecutorService flusher;
+
+	/**
+	 * Whether the web crawler has run out of work and waits for links.
+	 */
+	private volatile boolean isIdle = false;
+	/**
+	 * Whether this node has left the cluster.
+	 */
+	private volatile boolean hasLeft = false;
+	/**
+	 * The number of status messages sent by this node.
+	 */
+	private long statusSequence = 0;
+	/**
+	 * The status sequence of every other node when the cluster was last seen to have run out of
+	 * work, null if it was not.
+	 */
+	private Map<String, Long> idleSequences = null;
+	/**
+	 * The number of links sent between the nodes when the cluster was last seen to have run out
+	 * of work.
+	 */
+	private long idleSentCount = -1;
+
+	/**
+	 * Starts a node, which forms a cluster of its own until it joins others, or others join it.
+	 *
+	 * @param host  the host name on which the node listens, and by which the others reach it, not null
+	 * @param port  the port on which the node listens, zero for any free port
+	 * @param batchSize  the largest number of links sent in a single message, must be positive
+	 * @throws UncheckedIOException if the node cannot listen on the port
+	 */
+	public ClusterNode(String host, int port, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+		}
+
+		try {
+			this.serverSocket = new ServerSocket(port, 50, InetAddress.getByName(host));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not listen on " + host + ":" + port, e);
+		}
+
+		this.address = host + ":" + serverSocket.getLocalPort();
+		this.batchSize = batchSize;
+		this.readers = Executors.newCachedThreadPool(newThreadFactory("cluster-reader"));
+		this.flusher = Executors.newSingleThreadScheduledExecutor(newThreadFactory("cluster-flusher"));
+
+		ring.add(address);
+
+		readers.execute(this::accept);
+		flusher.scheduleWithFixedDelay(this::flushAndReport, FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+
+		logger.info("Cluster node listening at {}", address);
+	}
+
+	/**
+	 * Joins the cluster of the given nodes.
+	 * <p>
+	 * Reaching a single node of the cluster is enough, as it tells this node about the others.
+	 * The nodes are tried in turn for up to {@value #JOIN_TIMEOUT} milliseconds, as they may
+	 * still be starting.
+	 *
+	 * @param addresses  the addresses of nodes of the cluster, as {@code host:port}, not null
+	 * @throws UncheckedIOException if none of the nodes can be reached
+	 */
+	public void join(List<String> addresses) {
+		IOException failure = null;
+		long deadline = System.currentTimeMillis() + JOIN_TIMEOUT;
+
+		do {
+			for (String peerAddress : addresses) {
+				if (peerAddress.equals(address)) {
+					continue;
+				}
+
+				try {
+					departed.remove(peerAddress);
+					lost.remove(peerAddress);
+					ring.add(peerAddress);
+					getPeer(peerAddress).send(out -> {
+						out.writeByte(JOIN);
+						out.writeUTF(address);
+					});
+
+					logger.info("Joined the cluster through {}", peerAddress);
+
+					return;
+				} catch (IOException e) {
+					logger.debug("Could not reach cluster node {}", peerAddress, e);
+
+					ring.remove(peerAddress);
+					peers.remove(peerAddress);
+					failure = e;
+				}
+			}
+
+			if (failure == null) {
+				return;
+			}
+
+			try {
+				TimeUnit.MILLISECONDS.sleep(10 * FLUSH_INTERVAL);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+
+				break;
+			}
+		} while (System.currentTimeMillis() < deadline);
+
+		throw new UncheckedIOException("Could not join the cluster through " + addresses, failure);
+	}
+
+	/**
+	 * Waits until the cluster has at least the given number of nodes.
+	 *
+	 * @param count  the number of nodes, including this one
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public void awaitMembers(int count) throws InterruptedException {
+		if (ring.getNodes().size() < count) {
+			logger.info("Waiting for {} cluster nodes", count);
+		}
+
+		while (ring.getNodes().size() < count) {
+			TimeUnit.MILLISECONDS.sleep(FLUSH_INTERVAL);
+		}
+	}
+
+	/**
+	 * @param url  the URL to check, not null
+	 * @return true if the URL belongs to this node, otherwise returns false
+	 */
+	public boolean isLocal(String url) {
+		return address.equals(ring.getOwner(url));
+	}
+
+	/**
+	 * Sends a link to the node it belongs to.
+	 * <p>
+	 * The link is sent with the next batch for that node.
+	 * If the link belongs to this node after all, it is put straight into the inbox.
+	 *
+	 * @param url  the URL of the link, not null
+	 * @param depth  the number of links between a seed URL and the link
+	 */
+	public void forward(String url, int depth) {
+		String owner = ring.getOwner(url);
+
+		if (owner == null) {
+			droppedCount.incrementAndGet();
+
+			logger.debug("No cluster node left for url {}", url);
+
+			return;
+		}
+
+		if (owner.equals(address)) {
+			deliver(url, depth);
+
+			return;
+		}
+
+		Peer peer = getPeer(owner);
+
+		if (peer.add(url, depth) >= batchSize) {
+			peer.flush();
+		}
+	}
+
+	/**
+	 * Takes the links that were forwarded to this node.
+	 *
+	 * @param consumer  receives the URL and the depth of every link, not null
+	 * @return the number of links taken
+	 */
+	public int drainReceived(ObjIntConsumer<String> consumer) {
+		int count = 0;
+
+		for (Link link = inbox.poll(); link != null; link = inbox.poll()) {
+			consumer.accept(link.url, link.depth);
+			count++;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Waits until links are forwarded to this node, or the crawl of the whole cluster is over.
+	 * <p>
+	 * While it waits, this node tells the others that it has run out of work.
+	 * This method must only be called by a single thread.
+	 *
+	 * @return true if links have arrived, false if the crawl is over
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public boolean awaitWork() throws InterruptedException {
+		isIdle = true;
+
+		try {
+			while (!hasLeft) {
+				if (!inbox.isEmpty()) {
+					return true;
+				}
+
+				if (isCrawlOver()) {
+					return false;
+				}
+
+				synchronized (arrivals) {
+					if (inbox.isEmpty()) {
+						arrivals.wait(FLUSH_INTERVAL);
+					}
+				}
+			}
+
+			return false;
+		} finally {
+			isIdle = false;
+			idleSequences = null;
+		}
+	}
+
+	/**
+	 * Determines whether every node has run out of work, and no link is on its way, by seeing
+	 * the same counts twice in a row, with a fresh status from every node in between.
+	 *
+	 * @return true if the crawl of the cluster is over, otherwise returns false
+	 */
+	private boolean isCrawlOver() {
+		if (!isIdle || !inbox.isEmpty() || hasPendingBatches()) {
+			idleSequences = null;
+
+			return false;
+		}
+
+		Set<String> members = ring.getNodes();
+		Map<String, Long> sequences = new HashMap<>();
+
+		for (String member : members) {
+			if (member.equals(address)) {
+				continue;
+			}
+
+			Status status = statuses.get(member);
+
+			if (status == null || !status.isIdle) {
+				idleSequences = null;
+
+				return false;
+			}
+
+			sequences.put(member, status.sequence);
+		}
+
+		long sent = 0;
+		Map<String, Map<String, Long>> sentCountsByNode = new HashMap<>();
+		sentCountsByNode.put(address, snapshot(sentCounts));
+		statuses.forEach((node, status) -> sentCountsByNode.put(node, status.sentCounts));
+
+		// Links sent to a node that has left are passed on by it, so only the live nodes are checked
+		for (Map.Entry<String, Map<String, Long>> sender : sentCountsByNode.entrySet()) {
+			for (String receiver : members) {
+				if (receiver.equals(sender.getKey())) {
+					continue;
+				}
+
+				long sentToReceiver = sender.getValue().getOrDefault(receiver, 0L);
+				long receivedFromSender = receiver.equals(address)
+						? getCount(receivedCounts, sender.getKey())
+						: statuses.get(receiver).receivedCounts.getOrDefault(sender.getKey(), 0L);
+
+				if (sentToReceiver != receivedFromSender) {
+					idleSequences = null;
+
+					return false;
+				}
+
+				sent += sentToReceiver;
+			}
+		}
+
+		if (idleSequences == null || idleSentCount != sent || !idleSequences.keySet().equals(sequences.keySet())) {
+			idleSequences = sequences;
+			idleSentCount = sent;
+
+			return false;
+		}
+
+		for (Map.Entry<String, Long> entry : sequences.entrySet()) {
+			if (entry.getValue() <= idleSequences.get(entry.getKey())) {
+				// Wait for a status sent after the first observation
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Leaves the cluster.
+	 * <p>
+	 * The other nodes are told, so that they take over this node's URLs.
+	 * The links that were forwarded to this node and not taken yet are passed on to their new
+	 * nodes, as are the links passed to {@link #forward(String, int)} afterwards, until the node
+	 * is closed.
+	 */
+	public void leave() {
+		if (hasLeft) {
+			return;
+		}
+
+		hasLeft = true;
+		ring.remove(address);
+
+		for (Peer peer : peers.values()) {
+			try {
+				peer.send(out -> {
+					out.writeByte(LEAVE);
+					out.writeUTF(address);
+				});
+			} catch (IOException e) {
+				logger.debug("Could not tell cluster node {} about leaving", peer.address, e);
+			}
+		}
+
+		drainReceived(this::forward);
+
+		logger.info("Left the cluster, sent {} links, received {}", getSentCount(), getReceivedCount());
+	}
+
+	/**
+	 * Leaves the cluster, if it has not already, passes on the links that were on their way to
+	 * this node, sends the remaining batches and a last status, and closes the connections.
+	 */
+	@Override
+	public void close() {
+		leave();
+
+		try {
+			// The others may have sent links before they were told about leaving
+			TimeUnit.MILLISECONDS.sleep(2 * FLUSH_INTERVAL);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		closeQuietly(serverSocket);
+		incoming.forEach(ClusterNode::closeQuietly);
+		readers.shutdownNow();
+		flusher.shutdownNow();
+
+		drainReceived(this::forward);
+
+		for (Peer peer : peers.values()) {
+			peer.flush();
+		}
+
+		report(true);
+
+		for (Peer peer : peers.values()) {
+			peer.close();
+		}
+
+		closeQuietly(serverSocket);
+		incoming.forEach(ClusterNode::closeQuietly);
+		readers.shutdownNow();
+
+		if (droppedCount.get() > 0) {
+			logger.warn("Dropped {} links because no cluster node was left to take them", droppedCount.get());
+		}
+	}
+
+	/**
+	 * @return the address of this node, as {@code host:port}, not null
+	 */
+	public String getAddress() {
+		return address;
+	}
+
+	/**
+	 * @return the addresses of the nodes of the cluster, including this one, not null
+	 */
+	public Set<String> getMembers() {
+		return ring.getNodes();
+	}
+
+	/**
+	 * @return the number of links sent to the other nodes
+	 */
+	public long getSentCount() {
+		return sum(sentCounts);
+	}
+
+	/**
+	 * @return the number of links received from the other nodes
+	 */
+	public long getReceivedCount() {
+		return sum(receivedCounts);
+	}
+
+	/**
+	 * Parses the address of a node.
+	 *
+	 * @param address  the address, as {@code host:port}, not null
+	 * @return the socket address, which is not resolved, not null
+	 * @throws IllegalArgumentException if the address is not valid
+	 */
+	static InetSocketAddress parseAddress(String address) {
+		int separator = address.lastIndexOf(':');
+
+		try {
+			if (separator > 0) {
+				return InetSocketAddress.createUnresolved(address.substring(0, separator),
+						Integer.parseInt(address.substring(separator + 1)));
+			}
+		} catch (IllegalArgumentException e) {
+			// Reported below
+		}
+
+		throw new IllegalArgumentException("Expected host:port: " + address);
+	}
+
+	/**
+	 * Accepts connections from the other nodes until the node is closed.
+	 */
+	private void accept() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				incoming.add(socket);
+				readers.execute(() -> read(socket));
+			} catch (IOException e) {
+				if (!serverSocket.isClosed()) {
+					logger.warn("Could not accept a cluster connection", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Handles the messages of a connection until it is closed.
+	 *
+	 * @param socket  the connection, not null
+	 */
+	private void read(Socket socket) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+			while (true) {
+				byte type = in.readByte();
+
+				switch (type) {
+				case JOIN:
+					onJoin(in.readUTF());
+					break;
+				case MEMBERS:
+					int memberCount = in.readInt();
+
+					for (int i = 0; i < memberCount; i++) {
+						addMember(in.readUTF());
+					}
+					break;
+				case URLS:
+					String forwarder = in.readUTF();
+					int urlCount = in.readInt();
+					List<Link> links = new ArrayList<>(urlCount);
+
+					for (int i = 0; i < urlCount; i++) {
+						int depth = in.readInt();
+						links.add(new Link(in.readUTF(), depth));
+					}
+
+					// Counted before the links can be taken, and a status that shows the count
+					// without the links is never seen twice, as the node is busy by then
+					getCounter(receivedCounts, forwarder).addAndGet(urlCount);
+					inbox.addAll(links);
+					signalArrivals();
+					break;
+				case LEAVE:
+					String leaver = in.readUTF();
+
+					logger.info("Cluster node {} left", leaver);
+
+					removeMember(leaver, false);
+					break;
+				case STATUS:
+					String sender = in.readUTF();
+					boolean isSenderIdle = in.readBoolean();
+					long sequence = in.readLong();
+					int nodeCount = in.readInt();
+					Map<String, Long> sent = new HashMap<>();
+					Map<String, Long> received = new HashMap<>();
+
+					for (int i = 0; i < nodeCount; i++) {
+						String node = in.readUTF();
+						sent.put(node, in.readLong());
+						received.put(node, in.readLong());
+					}
+
+					if (!lost.contains(sender)) {
+						statuses.put(sender, new Status(isSenderIdle, sequence, sent, received));
+					}
+					break;
+				default:
+					throw new IOException("Unknown cluster message type: " + type);
+				}
+			}
+		} catch (EOFException | SocketException e) {
+			// The other node closed the connection
+		} catch (IOException e) {
+			logger.warn("Dropped a cluster connection", e);
+		} finally {
+			incoming.remove(socket);
+			closeQuietly(socket);
+		}
+	}
+
+	/**
+	 * Adds a node that asked to join, tells it the members of the cluster, and tells the other
+	 * members about it.
+	 *
+	 * @param joiner  the address of the node, not null
+	 */
+	private void onJoin(String joiner) {
+		departed.remove(joiner);
+		lost.remove(joiner);
+		addMember(joiner);
+
+		List<String> members = new ArrayList<>(ring.getNodes());
+
+		for (String member : members) {
+			if (member.equals(address)) {
+				continue;
+			}
+
+			Peer peer = getPeer(member);
+
+			try {
+				peer.send(out -> {
+					out.writeByte(MEMBERS);
+					out.writeInt(members.size());
+
+					for (String m : members) {
+						out.writeUTF(m);
+					}
+				});
+			} catch (IOException e) {
+				onPeerFailed(peer, e);
+			}
+		}
+	}
+
+	/**
+	 * @param member  the address of a node of the cluster, not null
+	 */
+	private void addMember(String member) {
+		if (hasLeft || member.equals(address) || departed.contains(member)) {
+			return;
+		}
+
+		if (ring.add(member)) {
+			logger.info("Cluster node {} joined, the cluster has {} nodes", member, ring.getNodes().size());
+		}
+	}
+
+	/**
+	 * Removes a node from the cluster, and passes the links that were waiting to be sent to it
+	 * on to their new nodes.
+	 * <p>
+	 * The status of a node that has left is kept, so that the links it passed on are counted,
+	 * while the status of a lost node is dropped.
+	 *
+	 * @param member  the address of the node, not null
+	 * @param isLost  whether the node could not be reached
+	 */
+	private void removeMember(String member, boolean isLost) {
+		departed.add(member);
+		ring.remove(member);
+
+		if (isLost) {
+			lost.add(member);
+			statuses.remove(member);
+		}
+
+		Peer peer = peers.remove(member);
+
+		if (peer != null) {
+			List<Link> unsent = peer.takeBatch();
+			peer.close();
+
+			for (Link link : unsent) {
+				forward(link.url, link.depth);
+			}
+		}
+	}
+
+	/**
+	 * Treats a node that could not be reached as if it had left.
+	 *
+	 * @param peer  the connection to the node, not null
+	 * @param e  the failure, not null
+	 */
+	private void onPeerFailed(Peer peer, IOException e) {
+		logger.warn("Lost cluster node {}", peer.address, e);
+
+		removeMember(peer.address, true);
+	}
+
+	/**
+	 * Puts a link that belongs to this node into the inbox.
+	 */
+	private void deliver(String url, int depth) {
+		inbox.add(new Link(url, depth));
+		signalArrivals();
+	}
+
+	/**
+	 * Wakes up the web crawler if it waits for links.
+	 */
+	private void signalArrivals() {
+		synchronized (arrivals) {
+			arrivals.notifyAll();
+		}
+	}
+
+	/**
+	 * @param member  the address of a node of the cluster, not null
+	 * @return the connection to the node, not null
+	 */
+	private Peer getPeer(String member) {
+		return peers.computeIfAbsent(member, Peer::new);
+	}
+
+	/**
+	 * @return true if some links are waiting to be sent, otherwise returns false
+	 */
+	private boolean hasPendingBatches() {
+		for (Peer peer : peers.values()) {
+			if (peer.hasBatch()) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Sends every batch, then tells the other nodes the status of this node.
+	 */
+	private void flushAndReport() {
+		for (Peer peer : peers.values()) {
+			peer.flush();
+		}
+
+		if (!hasLeft) {
+			report(isIdle && inbox.isEmpty() && !hasPendingBatches());
+		}
+	}
+
+	/**
+	 * Tells the other nodes the status of this node.
+	 *
+	 * @param isOutOfWork  whether this node has run out of work
+	 */
+	private synchronized void report(boolean isOutOfWork) {
+		long sequence = ++statusSequence;
+		Map<String, Long> sent = snapshot(sentCounts);
+		Map<String, Long> received = snapshot(receivedCounts);
+		Set<String> nodes = new HashSet<>(sent.keySet());
+		nodes.addAll(received.keySet());
+
+		for (String member : ring.getNodes()) {
+			if (member.equals(address)) {
+				continue;
+			}
+
+			Peer peer = getPeer(member);
+
+			try {
+				peer.send(out -> {
+					out.writeByte(STATUS);
+					out.writeUTF(address);
+					out.writeBoolean(isOutOfWork);
+					out.writeLong(sequence);
+					out.writeInt(nodes.size());
+
+					for (String node : nodes) {
+						out.writeUTF(node);
+						out.writeLong(sent.getOrDefault(node, 0L));
+						out.writeLong(received.getOrDefault(node, 0L));
+					}
+				});
+			} catch (IOException e) {
+				onPeerFailed(peer, e);
+			}
+		}
+	}
+
+	private static AtomicLong getCounter(Map<String, AtomicLong> counts, String node) {
+		return counts.computeIfAbsent(node, key -> new AtomicLong());
+	}
+
+	private static long getCount(Map<String, AtomicLong> counts, String node) {
+		AtomicLong count = counts.get(node);
+
+		return count != null ? count.get() : 0;
+	}
+
+	private static Map<String, Long> snapshot(Map<String, AtomicLong> counts) {
+		Map<String, Long> values = new HashMap<>();
+		counts.forEach((node, count) -> values.put(node, count.get()));
+
+		return values;
+	}
+
+	private static long sum(Map<String, AtomicLong> counts) {
+		return counts.values().stream().mapToLong(AtomicLong::get).sum();
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			// Nothing left to do with it
+		}
+	}
+
+	private static ThreadFactory newThreadFactory(String name) {
+		AtomicInteger count = new AtomicInteger();
+
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+
+			return thread;
+		};
+	}
+
+	/**
+	 * Writes the fields of a message.
+	 */
+	@FunctionalInterface
+	private interface MessageWriter {
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	/**
+	 * The outgoing connection to another node, and the batch of links waiting to be sent to it.
+	 */
+	private final class Peer {
+		private final String address;
+		/**
+		 * The links waiting to be sent.
+		 */
+		private List<Link> batch = new ArrayList<>();
+		private Socket socket;
+		private DataOutputStream out;
+
+		private Peer(String address) {
+			this.address = address;
+		}
+
+		/**
+		 * Sends a message, opening the connection first if needed.
+		 */
+		private synchronized void send(MessageWriter message) throws IOException {
+			if (out == null) {
+				InetSocketAddress socketAddress = parseAddress(address);
+				socket = new Socket();
+
+				try {
+					socket.connect(new InetSocketAddress(socketAddress.getHostString(), socketAddress.getPort()),
+							CONNECT_TIMEOUT);
+					socket.setTcpNoDelay(true);
+					out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+				} catch (IOException e) {
+					close();
+
+					throw e;
+				}
+			}
+
+			try {
+				message.write(out);
+				out.flush();
+			} catch (IOException e) {
+				close();
+
+				throw e;
+			}
+		}
+
+		/**
+		 * @return the number of links in the batch
+		 */
+		private synchronized int add(String url, int depth) {
+			batch.add(new Link(url, depth));
+
+			return batch.size();
+		}
+
+		private synchronized boolean hasBatch() {
+			return !batch.isEmpty();
+		}
+
+		private synchronized List<Link> takeBatch() {
+			List<Link> taken = batch;
+			batch = new ArrayList<>();
+
+			return taken;
+		}
+
+		/**
+		 * Sends the links in the batch, if any.
+		 * <p>
+		 * If they cannot be sent, the node is treated as if it had left.
+		 */
+		private void flush() {
+			IOException failure = null;
+
+			synchronized (this) {
+				if (batch.isEmpty()) {
+					return;
+				}
+
+				List<Link> links = batch;
+
+				// Counted before the receiver can count them, and only compared while it is alive
+				getCounter(sentCounts, address).addAndGet(links.size());
+
+				try {
+					send(out -> {
+						out.writeByte(URLS);
+						out.writeUTF(ClusterNode.this.address);
+						out.writeInt(links.size());
+
+						for (Link link : links) {
+							out.writeInt(link.depth);
+							out.writeUTF(link.url);
+						}
+					});
+
+					batch = new ArrayList<>();
+				} catch (IOException e) {
+					failure = e;
+				}
+			}
+
+			// Outside the lock, as the unsent links are passed on to other nodes
+			if (failure != null) {
+				onPeerFailed(this, failure);
+			}
+		}
+
+		private synchronized void close() {
+			if (socket != null) {
+				closeQuietly(socket);
+			}
+
+			socket = null;
+			out = null;
+		}
+	}
+
+	/**
+	 * A forwarded link.
+	 */
+	private static final class Link {
+		private final String url;
+		/**
+		 * The number of links between a seed URL and this one.
+		 */
+		private final int depth;
+
+		private Link(String url, int depth) {
+			this.url = url;
+			this.depth = depth;
+		}
+	}
+
+	/**
+	 * The latest status of another node.
+	 */
+	private static final class Status {
+		private final boolean isIdle;
+		private final long sequence;
+		/**
+		 * The number of links sent to every other node.
+		 */
+		private final Map<String, Long> sentCounts;
+		/**
+		 * The number of links received from every other node.
+		 */
+		private final Map<String, Long> receivedCounts;
+
+		private Status(boolean isIdle, long sequence, Map<String, Long> sentCounts, Map<String, Long> receivedCounts) {
+			this.isIdle = isIdle;
+			this.sequence = sequence;
+			this.sentCounts = sentCounts;
+			this.receivedCounts = receivedCounts;
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Spaces out the requests to every host by at least the {@code Crawl-delay} of its
+ * {@code robots.txt} file, on top of the pace set by another scheduler.
+ * <p>
+ * A slot is first reserved from the other scheduler, and then pushed back if it comes too soon
+ * after the previous slot of the host.
+ * Hosts that do not ask for a delay are left to the other scheduler.
+ * The delay asked for by a host is capped, so a host cannot stall the crawl.
+ * <p>
+ * Only the rules that have already been fetched are looked at, since the {@code robots.txt}
+ * files may themselves be fetched in a slot of this scheduler; a host whose file has not been
+ * fetched yet is left to the other scheduler.
+ * <p>
+ * This class is thread-safe.
+ */
+public class CrawlDelayScheduler implements RequestScheduler {
+	/**
+	 * The scheduler that sets the pace of the requests.
+	 */
+	private final RequestScheduler delegate;
+	/**
+	 * Gives the {@code Crawl-delay} of every host.
+	 */
+	private final RobotsCache robots;
+	/**
+	 * The largest delay, in milliseconds, that is honoured.
+	 */
+	private final long maxCrawlDelay;
+	/**
+	 * The time, in milliseconds, of the most recently reserved slot for each host that asks for
+	 * a delay.
+	 */
+	private final ConcurrentMap<String, Long> lastSlots = new ConcurrentHashMap<>();
+
+	/**
+	 * @param delegate  the scheduler that sets the pace of the requests, not null
+	 * @param robots  gives the {@code Crawl-delay} of every host, not null
+	 * @param maxCrawlDelay  the largest delay, in milliseconds, that is honoured
+	 */
+	public CrawlDelayScheduler(RequestScheduler delegate, RobotsCache robots, long maxCrawlDelay) {
+		if (maxCrawlDelay < 0) {
+			throw new IllegalArgumentException("Max crawl delay cannot be negative: " + maxCrawlDelay);
+		}
+
+		this.delegate = delegate;
+		this.robots = robots;
+		this.maxCrawlDelay = maxCrawlDelay;
+	}
+
+	@Override
+	public long reserve(String url) {
+		long wait = delegate.reserve(url);
+		RobotsTxt rules = robots.getIfPresent(url);
+		long crawlDelay = rules != null ? Math.min(rules.getCrawlDelay(), maxCrawlDelay) : -1;
+
+		if (wait < 0 || crawlDelay <= 0) {
+			return wait;
+		}
+
+		long now = System.currentTimeMillis();
+		long slot = lastSlots.merge(PolitenessScheduler.getHost(url), now + wait,
+				(last, current) -> Math.max(current, last + crawlDelay));
+
+		return slot - now;
+	}
+
+	@Override
+	public void onComplete(String url, int statusCode, long latency, long retryAfter) {
+		delegate.onComplete(url, statusCode, latency, retryAfter);
+	}
+
+	@Override
+	public Map<String, Double> getRequestRates() {
+		return delegate.getRequestRates();
+	}
+}
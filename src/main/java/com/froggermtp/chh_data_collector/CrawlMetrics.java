@@ -0,0 +1,328 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Collects the metrics of a crawl: the latency of every stage, counters for the traffic and the
+ * failures, and gauges for the work that is pending.
+ * <p>
+ * Every update is lock-free and allocation-free, apart from the first response with a new
+ * status code, so the metrics can be left on during every crawl.
+ * <p>
+ * This class is thread-safe.
+ */
+public class CrawlMetrics implements CrawlMetricsMXBean {
+	/**
+	 * The stages of the crawl whose latency is recorded.
+	 */
+	public enum Stage {
+		FETCH, PARSE, FINGERPRINT, VISIT, EXTRACT_LINKS, FILTER, ENQUEUE;
+		
+		/**
+		 * @return the name of the stage as used in the exported metrics, not null
+		 */
+		public String getMetricName() {
+			return name().toLowerCase(Locale.ROOT);
+		}
+	}
+	
+	/**
+	 * The percentiles reported for every stage.
+	 */
+	private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+	
+	/**
+	 * The latency of every stage.
+	 */
+	private final Map<Stage, LatencyHistogram> latencies = new EnumMap<>(Stage.class);
+	/**
+	 * The number of pages fetched.
+	 */
+	private final LongAdder pagesFetched = new LongAdder();
+	/**
+	 * The number of body bytes transferred.
+	 */
+	private final LongAdder bytesFetched = new LongAdder();
+	/**
+	 * The number of pages that could not be crawled.
+	 */
+	private final LongAdder errors = new LongAdder();
+	/**
+	 * The number of failed requests that were scheduled to be retried.
+	 */
+	private final LongAdder retries = new LongAdder();
+	/**
+	 * The number of discovered links that were rejected by the filter chain.
+	 */
+	private final LongAdder filterRejections = new LongAdder();
+	/**
+	 * The number of pages that were skipped as near-duplicates of earlier pages.
+	 */
+	private final LongAdder nearDuplicates = new LongAdder();
+	/**
+	 * The number of responses by status code.
+	 */
+	private final ConcurrentHashMap<Integer, LongAdder> statusCodes = new ConcurrentHashMap<>();
+	/**
+	 * The number of requests currently in flight.
+	 */
+	private final AtomicInteger inFlightRequests = new AtomicInteger();
+	/**
+	 * Reads the number of URLs waiting in the frontier.
+	 */
+	private final LongSupplier frontierSize;
+	/**
+	 * Reads the current request rate of every host.
+	 */
+	private final Supplier<Map<String, Double>> hostRequestRates;
+	
+	/**
+	 * Creates metrics that do not report the request rates of the hosts.
+	 * 
+	 * @param frontierSize  reads the number of URLs waiting in the frontier, not null
+	 */
+	public CrawlMetrics(LongSupplier frontierSize) {
+		this(frontierSize, Collections::emptyMap);
+	}
+	
+	/**
+	 * @param frontierSize  reads the number of URLs waiting in the frontier, not null
+	 * @param hostRequestRates  reads the requests per second of every host, not null
+	 */
+	public CrawlMetrics(LongSupplier frontierSize, Supplier<Map<String, Double>> hostRequestRates) {
+		this.frontierSize = frontierSize;
+		this.hostRequestRates = hostRequestRates;
+		
+		for (Stage stage : Stage.values()) {
+			latencies.put(stage, new LatencyHistogram());
+		}
+	}
+	
+	/**
+	 * Records how long a stage took.
+	 * 
+	 * @param stage  the stage, not null
+	 * @param startNanos  the value of {@link System#nanoTime()} when the stage started
+	 */
+	public void recordLatency(Stage stage, long startNanos) {
+		latencies.get(stage).record(System.nanoTime() - startNanos);
+	}
+	
+	/**
+	 * Records a response.
+	 * 
+	 * @param statusCode  the status code of the response
+	 * @param bytes  the number of body bytes transferred
+	 */
+	public void recordResponse(int statusCode, long bytes) {
+		pagesFetched.increment();
+		bytesFetched.add(bytes);
+		statusCodes.computeIfAbsent(statusCode, code -> new LongAdder()).increment();
+	}
+	
+	/**
+	 * Records a page that could not be crawled.
+	 */
+	public void recordError() {
+		errors.increment();
+	}
+	
+	/**
+	 * Records a failed request that was scheduled to be retried.
+	 */
+	public void recordRetry() {
+		retries.increment();
+	}
+	
+	/**
+	 * Records links that were rejected by the filter chain.
+	 * 
+	 * @param count  the number of rejected links
+	 */
+	public void recordFilterRejections(int count) {
+		filterRejections.add(count);
+	}
+	
+	/**
+	 * Records a page that was skipped as a near-duplicate of an earlier page.
+	 */
+	public void recordNearDuplicate() {
+		nearDuplicates.increment();
+	}
+	
+	/**
+	 * Marks the start of a request.
+	 */
+	public void requestStarted() {
+		inFlightRequests.incrementAndGet();
+	}
+	
+	/**
+	 * Marks the end of a request, whether or not it succeeded.
+	 */
+	public void requestFinished() {
+		inFlightRequests.decrementAndGet();
+	}
+	
+	/**
+	 * @param stage  the stage, not null
+	 * @return the latency histogram of the stage, not null
+	 */
+	public LatencyHistogram getLatency(Stage stage) {
+		return latencies.get(stage);
+	}
+
+	@Override
+	public long getPagesFetched() {
+		return pagesFetched.sum();
+	}
+
+	@Override
+	public long getBytesFetched() {
+		return bytesFetched.sum();
+	}
+
+	@Override
+	public long getErrors() {
+		return errors.sum();
+	}
+
+	@Override
+	public long getRetries() {
+		return retries.sum();
+	}
+
+	@Override
+	public long getFilterRejections() {
+		return filterRejections.sum();
+	}
+
+	@Override
+	public long getNearDuplicates() {
+		return nearDuplicates.sum();
+	}
+
+	@Override
+	public long getFrontierSize() {
+		return frontierSize.getAsLong();
+	}
+
+	@Override
+	public int getInFlightRequests() {
+		return inFlightRequests.get();
+	}
+
+	@Override
+	public Map<String, Long> getStatusCodes() {
+		Map<String, Long> counts = new TreeMap<>();
+		
+		statusCodes.forEach((code, count) -> counts.put(String.valueOf(code), count.sum()));
+		
+		return counts;
+	}
+
+	@Override
+	public Map<String, Double> getHostRequestRates() {
+		return new TreeMap<>(hostRequestRates.get());
+	}
+
+	@Override
+	public Map<String, Double> getStageLatencies() {
+		final double NANOS_PER_MILLI = 1e6;
+		
+		Map<String, Double> statistics = new TreeMap<>();
+		
+		for (Stage stage : Stage.values()) {
+			LatencyHistogram histogram = latencies.get(stage);
+			String name = stage.getMetricName();
+			
+			statistics.put(name + ".count", (double) histogram.getCount());
+			statistics.put(name + ".mean", histogram.getMean() / NANOS_PER_MILLI);
+			statistics.put(name + ".max", histogram.getMax() / NANOS_PER_MILLI);
+			
+			for (double quantile : QUANTILES) {
+				statistics.put(name + ".p" + Math.round(quantile * 100), 
+						histogram.getPercentile(quantile) / NANOS_PER_MILLI);
+			}
+		}
+		
+		return statistics;
+	}
+	
+	/**
+	 * Writes the metrics in the Prometheus text exposition format.
+	 * 
+	 * @return the metrics, not null
+	 */
+	public String toPrometheusText() {
+		final double NANOS_PER_SECOND = 1e9;
+		
+		StringBuilder text = new StringBuilder();
+		
+		text.append("# TYPE crawler_stage_latency_seconds summary\n");
+		
+		for (Stage stage : Stage.values()) {
+			LatencyHistogram histogram = latencies.get(stage);
+			String label = "stage=\"" + stage.getMetricName() + "\"";
+			
+			for (double quantile : QUANTILES) {
+				text.append("crawler_stage_latency_seconds{").append(label)
+				.append(",quantile=\"").append(quantile).append("\"} ")
+				.append(histogram.getPercentile(quantile) / NANOS_PER_SECOND).append('\n');
+			}
+			
+			text.append("crawler_stage_latency_seconds_count{").append(label).append("} ")
+			.append(histogram.getCount()).append('\n');
+			text.append("crawler_stage_latency_seconds_sum{").append(label).append("} ")
+			.append(histogram.getSum() / NANOS_PER_SECOND).append('\n');
+		}
+		
+		appendMetric(text, "counter", "crawler_pages_fetched_total", getPagesFetched());
+		appendMetric(text, "counter", "crawler_bytes_fetched_total", getBytesFetched());
+		appendMetric(text, "counter", "crawler_errors_total", getErrors());
+		appendMetric(text, "counter", "crawler_retries_total", getRetries());
+		appendMetric(text, "counter", "crawler_filter_rejections_total", getFilterRejections());
+		appendMetric(text, "counter", "crawler_near_duplicates_total", getNearDuplicates());
+		
+		text.append("# TYPE crawler_responses_total counter\n");
+		getStatusCodes().forEach((code, count) -> text
+				.append("crawler_responses_total{status=\"").append(code).append("\"} ")
+				.append(count).append('\n'));
+		
+		appendMetric(text, "gauge", "crawler_frontier_size", getFrontierSize());
+		appendMetric(text, "gauge", "crawler_in_flight_requests", getInFlightRequests());
+		
+		Map<String, Double> rates = getHostRequestRates();
+		
+		if (!rates.isEmpty()) {
+			text.append("# TYPE crawler_host_request_rate gauge\n");
+			rates.forEach((host, rate) -> text
+					.append("crawler_host_request_rate{host=\"").append(escapeLabel(host)).append("\"} ")
+					.append(rate).append('\n'));
+		}
+		
+		return text.toString();
+	}
+	
+	/**
+	 * @param value  the value of a label, not null
+	 * @return the value escaped for the Prometheus text format, not null
+	 */
+	private static String escapeLabel(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+	
+	private static void appendMetric(StringBuilder text, String type, String name, long value) {
+		text.append("# TYPE ").append(name).append(' ').append(type).append('\n')
+		.append(name).append(' ').append(value).append('\n');
+	}
+}
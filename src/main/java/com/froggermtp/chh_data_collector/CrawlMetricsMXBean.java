@@ -0,0 +1,68 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.Map;
+
+/**
+ * The management interface through which {@link CrawlMetrics} are exposed over JMX.
+ */
+public interface CrawlMetricsMXBean {
+	/**
+	 * @return the number of pages fetched
+	 */
+	long getPagesFetched();
+	
+	/**
+	 * @return the number of body bytes transferred
+	 */
+	long getBytesFetched();
+	
+	/**
+	 * @return the number of pages that could not be crawled
+	 */
+	long getErrors();
+	
+	/**
+	 * @return the number of failed requests that were scheduled to be retried
+	 */
+	long getRetries();
+	
+	/**
+	 * @return the number of discovered links that were rejected by the filter chain
+	 */
+	long getFilterRejections();
+	
+	/**
+	 * @return the number of pages that were skipped as near-duplicates of earlier pages
+	 */
+	long getNearDuplicates();
+	
+	/**
+	 * @return the number of URLs waiting in the frontier
+	 */
+	long getFrontierSize();
+	
+	/**
+	 * @return the number of requests currently in flight
+	 */
+	int getInFlightRequests();
+	
+	/**
+	 * @return the number of responses by status code, not null
+	 */
+	Map<String, Long> getStatusCodes();
+	
+	/**
+	 * @return the current requests per second of every host, not null
+	 */
+	Map<String, Double> getHostRequestRates();
+	
+	/**
+	 * Returns the latency statistics of every stage of the crawl.
+	 * <p>
+	 * The keys are made of the stage and the statistic, such as {@code fetch.p99}, and the
+	 * latencies are in milliseconds.
+	 * 
+	 * @return the latency statistics, not null
+	 */
+	Map<String, Double> getStageLatencies();
+}
@@ -0,0 +1,78 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A site crawled by a {@link WebCrawlerController}: the public api that scrapes it, and the URLs
+ * its crawl starts from.
+ * <p>
+ * A controller can crawl several sites at once.
+ * They share the worker threads, the fetcher and the politeness scheduler of the controller,
+ * while every site has its own queue of URLs, is filtered by its own seed URLs and
+ * {@link WebCrawler#shouldVisit(String)}, and stops on its own when its {@link WebCrawler#stop()}
+ * is called, or once it has visited its maximum number of articles.
+ */
+public class CrawlSite {
+	/**
+	 * The public api that scrapes the site.
+	 */
+	private final WebCrawler crawler;
+	/**
+	 * The URLs the crawl of the site starts from.
+	 */
+	private final List<String> seedUrls;
+	/**
+	 * The number of articles after which the crawl of the site stops, zero for no limit.
+	 */
+	private final long maxArticles;
+
+	/**
+	 * Creates a site whose crawl only stops when it runs out of URLs, or when its public api
+	 * stops it.
+	 *
+	 * @param crawler  the public api that scrapes the site, not null
+	 * @param seedUrls  the URLs the crawl of the site starts from, not null
+	 */
+	public CrawlSite(WebCrawler crawler, List<String> seedUrls) {
+		this(crawler, seedUrls, 0);
+	}
+
+	/**
+	 * @param crawler  the public api that scrapes the site, not null
+	 * @param seedUrls  the URLs the crawl of the site starts from, not null
+	 * @param maxArticles  the number of {@link PageType#ARTICLE articles} after which the crawl of
+	 * the site stops, zero for no limit
+	 */
+	public CrawlSite(WebCrawler crawler, List<String> seedUrls, long maxArticles) {
+		if (maxArticles < 0) {
+			throw new IllegalArgumentException("Max articles cannot be negative: " + maxArticles);
+		}
+
+		this.crawler = crawler;
+		this.seedUrls = Collections.unmodifiableList(new ArrayList<>(seedUrls));
+		this.maxArticles = maxArticles;
+	}
+
+	/**
+	 * @return the public api that scrapes the site, not null
+	 */
+	public WebCrawler getCrawler() {
+		return crawler;
+	}
+
+	/**
+	 * @return the URLs the crawl of the site starts from, not null
+	 */
+	public List<String> getSeedUrls() {
+		return seedUrls;
+	}
+
+	/**
+	 * @return the number of articles after which the crawl of the site stops, zero for no limit
+	 */
+	public long getMaxArticles() {
+		return maxArticles;
+	}
+}
@@ -0,0 +1,149 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Remembers the articles that have been scraped, along with their publication dates, across
+ * runs of the web crawler.
+ * <p>
+ * The watermark is kept in a text file with one article per line: the URL, a tab, and the
+ * publication date, which is left empty if it is not known.
+ * <p>
+ * This class is thread-safe.
+ */
+public class CrawlWatermark {
+	private static final Logger logger = LoggerFactory.getLogger(CrawlWatermark.class);
+	
+	/**
+	 * The file in which the watermark is persisted.
+	 */
+	private final Path file;
+	/**
+	 * The publication date of every scraped article, by URL, empty if the date is not known.
+	 */
+	private final Map<String, String> articles = new ConcurrentHashMap<>();
+	
+	/**
+	 * Opens a watermark, loading the articles of earlier runs if the file exists.
+	 * 
+	 * @param file  the file in which the watermark is persisted, not null
+	 */
+	public CrawlWatermark(Path file) {
+		this.file = file;
+		
+		if (Files.exists(file)) {
+			load();
+		}
+		
+		logger.debug("Opened watermark {} with {} articles", file, articles.size());
+	}
+	
+	/**
+	 * Records a scraped article.
+	 * 
+	 * @param url  the URL of the article, not null
+	 * @param date  the publication date of the article, null if it is not known
+	 */
+	public void add(String url, String date) {
+		articles.put(url, date != null ? sanitize(date) : "");
+	}
+	
+	/**
+	 * @param url  the URL of the article, not null
+	 * @return true if the article has been scraped, otherwise returns false
+	 */
+	public boolean contains(String url) {
+		return articles.containsKey(url);
+	}
+	
+	/**
+	 * @param url  the URL of the article, not null
+	 * @return the publication date of the article, null if it is not known or the article has not
+	 * been scraped
+	 */
+	public String getDate(String url) {
+		String date = articles.get(url);
+		
+		return date == null || date.isEmpty() ? null : date;
+	}
+	
+	/**
+	 * @return the number of scraped articles
+	 */
+	public int size() {
+		return articles.size();
+	}
+	
+	/**
+	 * Writes the watermark to its file.
+	 * <p>
+	 * The file is replaced atomically, so an interrupted save never loses the previous watermark.
+	 * 
+	 * @throws UncheckedIOException if the file cannot be written
+	 */
+	public void save() {
+		try {
+			Path parent = file.toAbsolutePath().getParent();
+			Files.createDirectories(parent);
+			Path temporaryFile = Files.createTempFile(parent, "watermark-", ".tmp");
+			
+			try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+				for (Map.Entry<String, String> article : articles.entrySet()) {
+					writer.write(article.getKey());
+					writer.write('\t');
+					writer.write(article.getValue());
+					writer.newLine();
+				}
+			}
+			
+			Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not save the watermark " + file, e);
+		}
+		
+		logger.debug("Saved watermark {} with {} articles", file, articles.size());
+	}
+	
+	/**
+	 * Reads the articles from the watermark file.
+	 * 
+	 * @throws UncheckedIOException if the file cannot be read
+	 */
+	private void load() {
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			
+			while ((line = reader.readLine()) != null) {
+				int tab = line.indexOf('\t');
+				
+				if (tab < 0) {
+					continue;
+				}
+				
+				articles.put(line.substring(0, tab), line.substring(tab + 1));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not load the watermark " + file, e);
+		}
+	}
+	
+	/**
+	 * @param date  the date to store, not null
+	 * @return the date with its tabs and line breaks replaced, not null
+	 */
+	private static String sanitize(String date) {
+		return date.replaceAll("[\\t\\r\\n]+", " ").trim();
+	}
+}
@@ -1,5 +1,7 @@
 package com.froggermtp.chh_data_collector;
 
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -26,6 +28,284 @@ public class CrawlerConfig {
 	 * the actual seed URLs themselves.
 	 */
 	private boolean scrapeSeedUrls = true;
+	/**
+	 * The number of articles after which the web crawler stops, zero for no limit.
+	 */
+	private long maxArticles = 0;
+	/**
+	 * The number of worker threads used to fetch and process pages.
+	 * <p>
+	 * If set to one, the web crawler processes one URL at a time on the calling thread.
+	 * Otherwise, the fetch, parse, visit and link extraction stages run concurrently on a pool
+	 * of this many worker threads.
+	 */
+	private int numberOfThreads = 1;
+	/**
+	 * The minimum amount of milliseconds between two requests to the same host.
+	 */
+	private long politenessDelay = 1000;
+	/**
+	 * Determines whether the pace of the requests adapts to how well each host keeps up.
+	 * <p>
+	 * If false, every host is contacted once every politeness delay.
+	 * Otherwise, the politeness delay is only the starting point, and an
+	 * {@link AdaptiveRateController} speeds each host up while it answers quickly, and slows it
+	 * down when it is overloaded, within the bounds below.
+	 */
+	private boolean adaptiveRateControl = false;
+	/**
+	 * The smallest amount of milliseconds between two requests to the same host when the rate
+	 * adapts.
+	 */
+	private long minPolitenessDelay = 100;
+	/**
+	 * The largest amount of milliseconds between two requests to the same host when the rate
+	 * adapts.
+	 */
+	private long maxPolitenessDelay = 60_000;
+	/**
+	 * The largest number of requests in flight to the same host when the rate adapts.
+	 */
+	private int maxConnectionsPerHost = 4;
+	/**
+	 * The smoothed response latency in milliseconds above which a host is considered overloaded
+	 * when the rate adapts.
+	 */
+	private long targetLatency = 2000;
+	/**
+	 * The number of times a failed request is retried.
+	 * <p>
+	 * Only transient failures are retried: requests that get no answer, and answers such as
+	 * {@code 429 Too Many Requests} or {@code 503 Service Unavailable}.
+	 * The retries are scheduled by a {@link RetryScheduler}, with an exponentially growing delay.
+	 * If zero, a failed URL is given up at once.
+	 */
+	private int maxRetries = 0;
+	/**
+	 * The delay in milliseconds before the first retry of a failed request, which doubles for
+	 * every further retry.
+	 */
+	private long retryBaseDelay = 1000;
+	/**
+	 * The largest delay in milliseconds before a retry.
+	 */
+	private long retryMaxDelay = 60_000;
+	/**
+	 * The number of consecutive transient failures after which no further request is made to a
+	 * host for a while.
+	 * <p>
+	 * The URLs of the host are put off until the circuit breaker lets a trial request through.
+	 * If zero, there is no circuit breaker.
+	 */
+	private int circuitBreakerThreshold = 0;
+	/**
+	 * The amount of milliseconds the circuit breaker of a host stays open the first time, which
+	 * doubles every time the trial request fails.
+	 */
+	private long circuitBreakerCooldown = 30_000;
+	/**
+	 * Determines whether the pages are fetched through a pool of persistent connections.
+	 * <p>
+	 * If false, every page is fetched by {@link JsoupFetcher} over a new connection.
+	 * Otherwise, the pages are fetched by a {@link PooledFetcher}, which keeps the connections
+	 * to every host alive between requests, and asks for compressed responses.
+	 */
+	private boolean pooledFetcher = false;
+	/**
+	 * The amount of milliseconds to wait for a connection to a server.
+	 */
+	private int connectTimeout = 3000;
+	/**
+	 * The amount of milliseconds to wait for a server to send data.
+	 */
+	private int readTimeout = 3000;
+	/**
+	 * The largest number of bytes read from the body of a response, after decompression.
+	 * <p>
+	 * A longer body is cut off.
+	 * If zero, the bodies are read in full.
+	 */
+	private int maxBodySize = 1024 * 1024;
+	/**
+	 * Determines whether pages whose content nearly duplicates an earlier page are skipped.
+	 * <p>
+	 * If true, the {@link SimHash} of the main text of every page that is built into a
+	 * {@code Document} is looked up in a {@link SimHashIndex} before the page is visited.
+	 * The main text is selected by {@link WebCrawler#getMainContentSelector()}.
+	 * Pages that only need their links, such as listing pages, are never skipped.
+	 * A near-duplicate is neither passed to the public api nor searched for links.
+	 */
+	private boolean skipNearDuplicates = false;
+	/**
+	 * The largest number of bits in which the {@link SimHash} of a near-duplicate may differ
+	 * from the page it duplicates.
+	 */
+	private int nearDuplicateDistance = 3;
+	/**
+	 * Determines whether the discovered links are made canonical before they are enqueued.
+	 * <p>
+	 * If true, every link, and every seed URL, is rewritten by a {@link UrlCanonicalizer}, so
+	 * that the different spellings of a page are only crawled once.
+	 * The slash at the end of the paths is treated as {@link WebCrawler#getTrailingSlash()} says.
+	 */
+	private boolean canonicalizeUrls = false;
+	/**
+	 * The names of the query parameters that are removed from the links when they are made
+	 * canonical, where a name that ends with {@code *} is a prefix.
+	 */
+	private List<String> ignoredQueryParameters = new ArrayList<>(UrlCanonicalizer.DEFAULT_IGNORED_PARAMETERS);
+	/**
+	 * Determines whether the {@code robots.txt} file of every host is obeyed.
+	 * <p>
+	 * If true, the links that the file disallows are not crawled, and the requests to the host
+	 * are spaced out by at least its {@code Crawl-delay}.
+	 */
+	private boolean respectRobotsTxt = false;
+	/**
+	 * The product token that the {@code User-agent} lines of the {@code robots.txt} files are
+	 * matched against.
+	 */
+	private String robotsUserAgent = "chh-data-collector";
+	/**
+	 * The largest {@code Crawl-delay}, in milliseconds, that is honoured.
+	 */
+	private long maxCrawlDelay = 60_000;
+	/**
+	 * The amount of milliseconds after which a {@code robots.txt} file that could not be reached
+	 * is fetched again.
+	 */
+	private long robotsRecheckDelay = 60_000;
+	/**
+	 * Determines whether the URLs listed by the sitemaps of the sites are crawled.
+	 * <p>
+	 * If true, the sitemaps listed by the {@code robots.txt} file of the host of every seed URL,
+	 * or its {@code /sitemap.xml} if the file lists none, are read before the crawl starts.
+	 */
+	private boolean useSitemaps = false;
+	/**
+	 * The date before which the entries of the sitemaps are skipped.
+	 * <p>
+	 * If null, every entry is read.
+	 */
+	private Instant sitemapModifiedSince = null;
+	/**
+	 * Determines whether the web crawler remembers seen URLs by their 64-bit fingerprints.
+	 * <p>
+	 * If true, the seen URLs are kept in a {@link FingerprintUrlSet}, which uses a fraction of the
+	 * memory, but may very rarely mistake a new URL for a seen one.
+	 * If false, the full URLs are kept in a {@link StringUrlSet}.
+	 */
+	private boolean useUrlFingerprints = false;
+	/**
+	 * The number of URLs the web crawler expects to see, used to size the seen URL set.
+	 */
+	private int expectedUrlCount = 100_000;
+	/**
+	 * The directory in which pending URLs are spilled to disk.
+	 * <p>
+	 * If null, all the pending URLs are kept on the heap.
+	 * Otherwise, only {@code frontierMemoryCapacity} pending URLs are kept on the heap, and the
+	 * rest are spilled to segment files in this directory.
+	 */
+	private Path frontierDirectory = null;
+	/**
+	 * The maximum number of pending URLs kept on the heap when a frontier directory is set.
+	 */
+	private int frontierMemoryCapacity = 10_000;
+	/**
+	 * Determines whether the pending URLs are crawled by priority rather than in the order they
+	 * were found.
+	 * <p>
+	 * If true, the pending URLs are kept in a {@link PriorityFrontier}, which hands out the URLs
+	 * the {@link WebCrawler} values most first, then the URLs closest to a seed URL, taking turns
+	 * between hosts.
+	 * The priority frontier keeps all the pending URLs on the heap, so the frontier directory is
+	 * ignored.
+	 */
+	private boolean priorityFrontier = false;
+	/**
+	 * The directory in which fetched pages are cached between runs.
+	 * <p>
+	 * If null, every page is fetched in full on every run.
+	 * Otherwise, pages are kept in a {@link ResponseCache} in this directory, and revisits are
+	 * made as conditional requests that the server can answer without sending the page again.
+	 */
+	private Path responseCacheDirectory = null;
+	/**
+	 * The maximum total size in bytes of the pages kept in the response cache.
+	 */
+	private long responseCacheMaxSize = 256L * 1024 * 1024;
+	/**
+	 * Determines whether pages that have not changed since they were cached are visited.
+	 * <p>
+	 * If true, an unchanged page is neither parsed nor passed to the public api, and only its
+	 * links are extracted.
+	 * This setting only has an effect if a response cache directory is set.
+	 */
+	private boolean skipUnchangedPages = false;
+	/**
+	 * The file in which the scraped articles are remembered between runs.
+	 * <p>
+	 * If null, every run crawls the whole site.
+	 * Otherwise, the web crawler runs incrementally: articles that were scraped by an earlier run
+	 * are not visited again, and pagination stops at the first listing page that only links to
+	 * such articles.
+	 * 
+	 * @see WebCrawler#getPageType(String)
+	 */
+	private Path watermarkFile = null;
+	/**
+	 * The port of the local HTTP endpoint that serves the crawl metrics.
+	 * <p>
+	 * If negative, the endpoint is disabled, and the metrics are only exposed over JMX.
+	 * If zero, any free port is used.
+	 */
+	private int metricsPort = -1;
+	/**
+	 * The file to which every fetched page is appended.
+	 * <p>
+	 * If null, the fetched pages are not recorded.
+	 * Otherwise, the pages are recorded in a {@link PageArchive}, from which the crawl can later
+	 * be replayed.
+	 */
+	private Path recordArchiveFile = null;
+	/**
+	 * The file from which the pages are served instead of the network.
+	 * <p>
+	 * If null, the pages are fetched from the network.
+	 * Otherwise, the pages are read from a {@link PageArchive} recorded by an earlier run, and
+	 * no politeness delay is applied.
+	 */
+	private Path replayArchiveFile = null;
+	/**
+	 * The port on which this web crawler listens for the other nodes of its cluster.
+	 * <p>
+	 * If negative, the web crawler runs on its own.
+	 * Otherwise, it joins a cluster of web crawlers through a {@link ClusterNode}, and only crawls
+	 * its own partition of the URLs, forwarding the links of the other partitions to their nodes.
+	 * If zero, any free port is used.
+	 */
+	private int clusterPort = -1;
+	/**
+	 * The host name on which this web crawler listens for the other nodes of its cluster, and by
+	 * which they reach it.
+	 */
+	private String clusterHost = "localhost";
+	/**
+	 * The addresses, as {@code host:port}, of the nodes of the cluster to join.
+	 * <p>
+	 * If empty, the web crawler starts a new cluster, which other nodes may join.
+	 */
+	private List<String> clusterPeers = new ArrayList<>();
+	/**
+	 * The number of nodes, including this one, that must be in the cluster before the web crawler
+	 * starts crawling.
+	 */
+	private int clusterQuorum = 1;
+	/**
+	 * The largest number of links sent to another node of the cluster in a single message.
+	 */
+	private int clusterBatchSize = 256;
 	
 	/**
 	 * @return the seedUrls, not null
@@ -91,6 +371,825 @@ public class CrawlerConfig {
 	public void setScrapeSeedUrls(boolean scrapeSeedUrls) {
 		this.scrapeSeedUrls = scrapeSeedUrls;
 	}
+	/**
+	 * @return the maxArticles, zero for no limit
+	 */
+	public long getMaxArticles() {
+		return maxArticles;
+	}
+	/**
+	 * Sets the number of {@link PageType#ARTICLE articles} the web crawler visits before it stops.
+	 * <p>
+	 * Only applies to the site of a controller for a single web crawler; every
+	 * {@link CrawlSite} sets its own limit.
+	 * 
+	 * @param maxArticles  the maxArticles to set, zero for no limit, not negative
+	 */
+	public void setMaxArticles(long maxArticles) {
+		if (maxArticles < 0) {
+			throw new IllegalArgumentException("Max articles cannot be negative: " + maxArticles);
+		}
+		
+		this.maxArticles = maxArticles;
+	}
+	/**
+	 * @return the numberOfThreads
+	 */
+	public int getNumberOfThreads() {
+		return numberOfThreads;
+	}
+	/**
+	 * Sets the number of worker threads used to fetch and process pages.
+	 * <p>
+	 * If set to one, the web crawler processes one URL at a time on the calling thread.
+	 * Otherwise, the fetch, parse, visit and link extraction stages run concurrently on a pool
+	 * of this many worker threads.
+	 * 
+	 * @param numberOfThreads  the numberOfThreads to set, must be positive
+	 */
+	public void setNumberOfThreads(int numberOfThreads) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("Number of threads must be positive: " + numberOfThreads);
+		}
+		
+		this.numberOfThreads = numberOfThreads;
+	}
+	/**
+	 * @return the politenessDelay in milliseconds
+	 */
+	public long getPolitenessDelay() {
+		return politenessDelay;
+	}
+	/**
+	 * Sets the minimum amount of milliseconds between two requests to the same host.
+	 * <p>
+	 * The delay is kept per host, so requests to different hosts do not wait on each other.
+	 * 
+	 * @param politenessDelay  the politenessDelay to set, not negative
+	 */
+	public void setPolitenessDelay(long politenessDelay) {
+		if (politenessDelay < 0) {
+			throw new IllegalArgumentException("Politeness delay cannot be negative: " + politenessDelay);
+		}
+		
+		this.politenessDelay = politenessDelay;
+	}
+	/**
+	 * @return the adaptiveRateControl
+	 */
+	public boolean isAdaptiveRateControl() {
+		return adaptiveRateControl;
+	}
+	/**
+	 * Determines whether the pace of the requests adapts to how well each host keeps up.
+	 * <p>
+	 * If false, every host is contacted once every politeness delay.
+	 * Otherwise, the politeness delay is only the starting point, and an
+	 * {@link AdaptiveRateController} speeds each host up while it answers quickly, and slows it
+	 * down when it is overloaded, within the min and max politeness delays and the max
+	 * connections per host.
+	 * 
+	 * @param adaptiveRateControl  the adaptiveRateControl to set
+	 */
+	public void setAdaptiveRateControl(boolean adaptiveRateControl) {
+		this.adaptiveRateControl = adaptiveRateControl;
+	}
+	/**
+	 * @return the minPolitenessDelay in milliseconds
+	 */
+	public long getMinPolitenessDelay() {
+		return minPolitenessDelay;
+	}
+	/**
+	 * Sets the smallest amount of milliseconds between two requests to the same host when the
+	 * rate adapts.
+	 * 
+	 * @param minPolitenessDelay  the minPolitenessDelay to set, not negative
+	 */
+	public void setMinPolitenessDelay(long minPolitenessDelay) {
+		if (minPolitenessDelay < 0) {
+			throw new IllegalArgumentException("Min politeness delay cannot be negative: " + minPolitenessDelay);
+		}
+		
+		this.minPolitenessDelay = minPolitenessDelay;
+	}
+	/**
+	 * @return the maxPolitenessDelay in milliseconds
+	 */
+	public long getMaxPolitenessDelay() {
+		return maxPolitenessDelay;
+	}
+	/**
+	 * Sets the largest amount of milliseconds between two requests to the same host when the
+	 * rate adapts.
+	 * 
+	 * @param maxPolitenessDelay  the maxPolitenessDelay to set, not negative
+	 */
+	public void setMaxPolitenessDelay(long maxPolitenessDelay) {
+		if (maxPolitenessDelay < 0) {
+			throw new IllegalArgumentException("Max politeness delay cannot be negative: " + maxPolitenessDelay);
+		}
+		
+		this.maxPolitenessDelay = maxPolitenessDelay;
+	}
+	/**
+	 * @return the maxConnectionsPerHost
+	 */
+	public int getMaxConnectionsPerHost() {
+		return maxConnectionsPerHost;
+	}
+	/**
+	 * Sets the largest number of requests in flight to the same host when the rate adapts.
+	 * <p>
+	 * Requests in flight are also bounded by the number of threads.
+	 * 
+	 * @param maxConnectionsPerHost  the maxConnectionsPerHost to set, must be positive
+	 */
+	public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+		if (maxConnectionsPerHost < 1) {
+			throw new IllegalArgumentException(
+					"Max connections per host must be positive: " + maxConnectionsPerHost);
+		}
+		
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+	}
+	/**
+	 * @return the targetLatency in milliseconds
+	 */
+	public long getTargetLatency() {
+		return targetLatency;
+	}
+	/**
+	 * Sets the smoothed response latency in milliseconds above which a host is considered
+	 * overloaded when the rate adapts.
+	 * 
+	 * @param targetLatency  the targetLatency to set, must be positive
+	 */
+	public void setTargetLatency(long targetLatency) {
+		if (targetLatency < 1) {
+			throw new IllegalArgumentException("Target latency must be positive: " + targetLatency);
+		}
+		
+		this.targetLatency = targetLatency;
+	}
+	/**
+	 * @return the maxRetries
+	 */
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+	/**
+	 * Sets the number of times a request that failed transiently is retried.
+	 * 
+	 * @param maxRetries  the maxRetries to set, not negative
+	 */
+	public void setMaxRetries(int maxRetries) {
+		if (maxRetries < 0) {
+			throw new IllegalArgumentException("Max retries cannot be negative: " + maxRetries);
+		}
+		
+		this.maxRetries = maxRetries;
+	}
+	/**
+	 * @return the retryBaseDelay in milliseconds
+	 */
+	public long getRetryBaseDelay() {
+		return retryBaseDelay;
+	}
+	/**
+	 * @param retryBaseDelay  the retryBaseDelay to set, must be positive
+	 */
+	public void setRetryBaseDelay(long retryBaseDelay) {
+		if (retryBaseDelay < 1) {
+			throw new IllegalArgumentException("Retry base delay must be positive: " + retryBaseDelay);
+		}
+		
+		this.retryBaseDelay = retryBaseDelay;
+	}
+	/**
+	 * @return the retryMaxDelay in milliseconds
+	 */
+	public long getRetryMaxDelay() {
+		return retryMaxDelay;
+	}
+	/**
+	 * @param retryMaxDelay  the retryMaxDelay to set, must be positive
+	 */
+	public void setRetryMaxDelay(long retryMaxDelay) {
+		if (retryMaxDelay < 1) {
+			throw new IllegalArgumentException("Retry max delay must be positive: " + retryMaxDelay);
+		}
+		
+		this.retryMaxDelay = retryMaxDelay;
+	}
+	/**
+	 * @return the circuitBreakerThreshold
+	 */
+	public int getCircuitBreakerThreshold() {
+		return circuitBreakerThreshold;
+	}
+	/**
+	 * Sets the number of consecutive transient failures after which a host is put on hold.
+	 * 
+	 * @param circuitBreakerThreshold  the circuitBreakerThreshold to set, not negative
+	 */
+	public void setCircuitBreakerThreshold(int circuitBreakerThreshold) {
+		if (circuitBreakerThreshold < 0) {
+			throw new IllegalArgumentException(
+					"Circuit breaker threshold cannot be negative: " + circuitBreakerThreshold);
+		}
+		
+		this.circuitBreakerThreshold = circuitBreakerThreshold;
+	}
+	/**
+	 * @return the circuitBreakerCooldown in milliseconds
+	 */
+	public long getCircuitBreakerCooldown() {
+		return circuitBreakerCooldown;
+	}
+	/**
+	 * @param circuitBreakerCooldown  the circuitBreakerCooldown to set, must be positive
+	 */
+	public void setCircuitBreakerCooldown(long circuitBreakerCooldown) {
+		if (circuitBreakerCooldown < 1) {
+			throw new IllegalArgumentException(
+					"Circuit breaker cooldown must be positive: " + circuitBreakerCooldown);
+		}
+		
+		this.circuitBreakerCooldown = circuitBreakerCooldown;
+	}
+	/**
+	 * @return the pooledFetcher
+	 */
+	public boolean isPooledFetcher() {
+		return pooledFetcher;
+	}
+	/**
+	 * Determines whether the pages are fetched through a pool of persistent connections.
+	 * <p>
+	 * This setting has no effect if a fetcher is passed to the {@link WebCrawlerController}.
+	 * 
+	 * @param pooledFetcher  the pooledFetcher to set
+	 */
+	public void setPooledFetcher(boolean pooledFetcher) {
+		this.pooledFetcher = pooledFetcher;
+	}
+	/**
+	 * @return the connectTimeout in milliseconds
+	 */
+	public int getConnectTimeout() {
+		return connectTimeout;
+	}
+	/**
+	 * @param connectTimeout  the connectTimeout to set, must be positive
+	 */
+	public void setConnectTimeout(int connectTimeout) {
+		if (connectTimeout < 1) {
+			throw new IllegalArgumentException("Connect timeout must be positive: " + connectTimeout);
+		}
+		
+		this.connectTimeout = connectTimeout;
+	}
+	/**
+	 * @return the readTimeout in milliseconds
+	 */
+	public int getReadTimeout() {
+		return readTimeout;
+	}
+	/**
+	 * @param readTimeout  the readTimeout to set, must be positive
+	 */
+	public void setReadTimeout(int readTimeout) {
+		if (readTimeout < 1) {
+			throw new IllegalArgumentException("Read timeout must be positive: " + readTimeout);
+		}
+		
+		this.readTimeout = readTimeout;
+	}
+	/**
+	 * @return the maxBodySize in bytes, zero if the bodies are read in full
+	 */
+	public int getMaxBodySize() {
+		return maxBodySize;
+	}
+	/**
+	 * @param maxBodySize  the maxBodySize to set, zero to read the bodies in full, must not be 
+	 * negative
+	 */
+	public void setMaxBodySize(int maxBodySize) {
+		if (maxBodySize < 0) {
+			throw new IllegalArgumentException("Max body size must not be negative: " + maxBodySize);
+		}
+		
+		this.maxBodySize = maxBodySize;
+	}
+	/**
+	 * @return the skipNearDuplicates
+	 */
+	public boolean shouldSkipNearDuplicates() {
+		return skipNearDuplicates;
+	}
+	/**
+	 * @param skipNearDuplicates  the skipNearDuplicates to set
+	 */
+	public void setSkipNearDuplicates(boolean skipNearDuplicates) {
+		this.skipNearDuplicates = skipNearDuplicates;
+	}
+	/**
+	 * @return the nearDuplicateDistance in bits
+	 */
+	public int getNearDuplicateDistance() {
+		return nearDuplicateDistance;
+	}
+	/**
+	 * Sets how far, in bits, a near-duplicate's {@link SimHash} may be from the page it
+	 * duplicates.
+	 * <p>
+	 * Three bits catch pages that differ in a few words.
+	 * Every extra bit makes the {@link SimHashIndex} look at more candidates for every page.
+	 * 
+	 * @param nearDuplicateDistance  the nearDuplicateDistance to set, from 0 to 
+	 * {@link SimHashIndex#MAX_DISTANCE}
+	 */
+	public void setNearDuplicateDistance(int nearDuplicateDistance) {
+		if (nearDuplicateDistance < 0 || nearDuplicateDistance > SimHashIndex.MAX_DISTANCE) {
+			throw new IllegalArgumentException("Near-duplicate distance must be between 0 and " 
+					+ SimHashIndex.MAX_DISTANCE + ": " + nearDuplicateDistance);
+		}
+		
+		this.nearDuplicateDistance = nearDuplicateDistance;
+	}
+	/**
+	 * @return the canonicalizeUrls
+	 */
+	public boolean shouldCanonicalizeUrls() {
+		return canonicalizeUrls;
+	}
+	/**
+	 * @param canonicalizeUrls  the canonicalizeUrls to set
+	 */
+	public void setCanonicalizeUrls(boolean canonicalizeUrls) {
+		this.canonicalizeUrls = canonicalizeUrls;
+	}
+	/**
+	 * @return the ignoredQueryParameters, not null
+	 */
+	public List<String> getIgnoredQueryParameters() {
+		return ignoredQueryParameters;
+	}
+	/**
+	 * Sets the query parameters that are removed from the links, such as tracking parameters.
+	 * <p>
+	 * By default, these are {@link UrlCanonicalizer#DEFAULT_IGNORED_PARAMETERS}.
+	 * 
+	 * @param ignoredQueryParameters  the names of the parameters, where a name that ends with 
+	 * {@code *} stands for every name that begins with the rest of it, not null
+	 */
+	public void setIgnoredQueryParameters(List<String> ignoredQueryParameters) {
+		if (ignoredQueryParameters == null) {
+			throw new NullPointerException("Ignored query parameters cannot be null");
+		}
+		
+		this.ignoredQueryParameters = new ArrayList<>(ignoredQueryParameters);
+	}
+	/**
+	 * @return the respectRobotsTxt
+	 */
+	public boolean shouldRespectRobotsTxt() {
+		return respectRobotsTxt;
+	}
+	/**
+	 * Sets whether the {@code robots.txt} file of every host is obeyed.
+	 * <p>
+	 * If true, the links that the file disallows are left out by the filter chain, and the
+	 * requests to the host are spaced out by at least its {@code Crawl-delay}, up to
+	 * {@link #getMaxCrawlDelay()}.
+	 * The links of a host whose file could not be reached are put off until the file is fetched
+	 * again, after {@link #getRobotsRecheckDelay()}.
+	 * The seed URLs are always crawled.
+	 * 
+	 * @param respectRobotsTxt  the respectRobotsTxt to set
+	 */
+	public void setRespectRobotsTxt(boolean respectRobotsTxt) {
+		this.respectRobotsTxt = respectRobotsTxt;
+	}
+	/**
+	 * @return the robotsUserAgent, not null
+	 */
+	public String getRobotsUserAgent() {
+		return robotsUserAgent;
+	}
+	/**
+	 * @param robotsUserAgent  the product token that the {@code User-agent} lines of the
+	 * {@code robots.txt} files are matched against, not null
+	 */
+	public void setRobotsUserAgent(String robotsUserAgent) {
+		if (robotsUserAgent == null) {
+			throw new NullPointerException("Robots user agent cannot be null");
+		}
+		
+		this.robotsUserAgent = robotsUserAgent;
+	}
+	/**
+	 * @return the maxCrawlDelay in milliseconds
+	 */
+	public long getMaxCrawlDelay() {
+		return maxCrawlDelay;
+	}
+	/**
+	 * @param maxCrawlDelay  the largest {@code Crawl-delay}, in milliseconds, that is honoured,
+	 * not negative
+	 */
+	public void setMaxCrawlDelay(long maxCrawlDelay) {
+		if (maxCrawlDelay < 0) {
+			throw new IllegalArgumentException("Max crawl delay cannot be negative: " + maxCrawlDelay);
+		}
+		
+		this.maxCrawlDelay = maxCrawlDelay;
+	}
+	/**
+	 * @return the robotsRecheckDelay in milliseconds
+	 */
+	public long getRobotsRecheckDelay() {
+		return robotsRecheckDelay;
+	}
+	/**
+	 * Sets how long the URLs of a host whose {@code robots.txt} file could not be reached are put
+	 * off, before the file is fetched again.
+	 * 
+	 * @param robotsRecheckDelay  the amount of milliseconds after which a file that could not be
+	 * reached is fetched again, not negative
+	 */
+	public void setRobotsRecheckDelay(long robotsRecheckDelay) {
+		if (robotsRecheckDelay < 0) {
+			throw new IllegalArgumentException("Robots recheck delay cannot be negative: " + robotsRecheckDelay);
+		}
+		
+		this.robotsRecheckDelay = robotsRecheckDelay;
+	}
+	/**
+	 * @return the useSitemaps
+	 */
+	public boolean shouldUseSitemaps() {
+		return useSitemaps;
+	}
+	/**
+	 * Sets whether the URLs listed by the sitemaps of the sites are crawled.
+	 * <p>
+	 * If true, the sitemaps listed by the {@code robots.txt} file of the host of every seed URL,
+	 * or its {@code /sitemap.xml} if the file lists none, are read before the crawl starts, and
+	 * their URLs are enqueued as if the seed URLs linked to them.
+	 * 
+	 * @param useSitemaps  the useSitemaps to set
+	 * @see SitemapReader
+	 */
+	public void setUseSitemaps(boolean useSitemaps) {
+		this.useSitemaps = useSitemaps;
+	}
+	/**
+	 * @return the sitemapModifiedSince, null if every entry of the sitemaps is read
+	 */
+	public Instant getSitemapModifiedSince() {
+		return sitemapModifiedSince;
+	}
+	/**
+	 * Sets the date before which the entries of the sitemaps are skipped.
+	 * <p>
+	 * The entries without a {@code lastmod} date are always read.
+	 * 
+	 * @param sitemapModifiedSince  the sitemapModifiedSince to set, null to read every entry
+	 */
+	public void setSitemapModifiedSince(Instant sitemapModifiedSince) {
+		this.sitemapModifiedSince = sitemapModifiedSince;
+	}
+	/**
+	 * @return the useUrlFingerprints
+	 */
+	public boolean shouldUseUrlFingerprints() {
+		return useUrlFingerprints;
+	}
+	/**
+	 * Sets whether the web crawler remembers seen URLs by their 64-bit fingerprints.
+	 * <p>
+	 * If true, the seen URLs are kept in a {@link FingerprintUrlSet}, which uses a fraction of the
+	 * memory, but may very rarely mistake a new URL for a seen one.
+	 * If false, the full URLs are kept in a {@link StringUrlSet}.
+	 * 
+	 * @param useUrlFingerprints  the useUrlFingerprints to set
+	 */
+	public void setUseUrlFingerprints(boolean useUrlFingerprints) {
+		this.useUrlFingerprints = useUrlFingerprints;
+	}
+	/**
+	 * @return the expectedUrlCount
+	 */
+	public int getExpectedUrlCount() {
+		return expectedUrlCount;
+	}
+	/**
+	 * Sets the number of URLs the web crawler expects to see.
+	 * <p>
+	 * The seen URL set is sized for this many URLs up front, and grows beyond this if it has to.
+	 * 
+	 * @param expectedUrlCount  the expectedUrlCount to set, must be positive
+	 */
+	public void setExpectedUrlCount(int expectedUrlCount) {
+		if (expectedUrlCount < 1) {
+			throw new IllegalArgumentException("Expected url count must be positive: " + expectedUrlCount);
+		}
+		
+		this.expectedUrlCount = expectedUrlCount;
+	}
+	/**
+	 * @return the frontierDirectory, null if pending URLs are kept on the heap
+	 */
+	public Path getFrontierDirectory() {
+		return frontierDirectory;
+	}
+	/**
+	 * Sets the directory in which pending URLs are spilled to disk.
+	 * <p>
+	 * If null, all the pending URLs are kept on the heap.
+	 * Otherwise, only {@code frontierMemoryCapacity} pending URLs are kept on the heap, and the
+	 * rest are spilled to segment files in this directory.
+	 * The segment files are deleted once they have been read, or when the crawl ends.
+	 * 
+	 * @param frontierDirectory  the frontierDirectory to set, null to keep pending URLs on the heap
+	 */
+	public void setFrontierDirectory(Path frontierDirectory) {
+		this.frontierDirectory = frontierDirectory;
+	}
+	/**
+	 * @return the frontierMemoryCapacity
+	 */
+	public int getFrontierMemoryCapacity() {
+		return frontierMemoryCapacity;
+	}
+	/**
+	 * Sets the maximum number of pending URLs kept on the heap when a frontier directory is set.
+	 * 
+	 * @param frontierMemoryCapacity  the frontierMemoryCapacity to set, must be positive
+	 */
+	public void setFrontierMemoryCapacity(int frontierMemoryCapacity) {
+		if (frontierMemoryCapacity < 1) {
+			throw new IllegalArgumentException(
+					"Frontier memory capacity must be positive: " + frontierMemoryCapacity);
+		}
+		
+		this.frontierMemoryCapacity = frontierMemoryCapacity;
+	}
+	/**
+	 * @return the priorityFrontier
+	 */
+	public boolean isPriorityFrontier() {
+		return priorityFrontier;
+	}
+	/**
+	 * Determines whether the pending URLs are crawled by priority rather than in the order they
+	 * were found.
+	 * <p>
+	 * The priority of a URL is given by {@link WebCrawler#getPriority(String)}.
+	 * 
+	 * @param priorityFrontier  the priorityFrontier to set
+	 */
+	public void setPriorityFrontier(boolean priorityFrontier) {
+		this.priorityFrontier = priorityFrontier;
+	}
+	/**
+	 * @return the responseCacheDirectory, null if pages are not cached
+	 */
+	public Path getResponseCacheDirectory() {
+		return responseCacheDirectory;
+	}
+	/**
+	 * Sets the directory in which fetched pages are cached between runs.
+	 * <p>
+	 * If null, every page is fetched in full on every run.
+	 * Otherwise, pages are kept in a {@link ResponseCache} in this directory, and revisits are
+	 * made as conditional requests that the server can answer without sending the page again.
+	 * 
+	 * @param responseCacheDirectory  the responseCacheDirectory to set, null to not cache pages
+	 */
+	public void setResponseCacheDirectory(Path responseCacheDirectory) {
+		this.responseCacheDirectory = responseCacheDirectory;
+	}
+	/**
+	 * @return the responseCacheMaxSize in bytes
+	 */
+	public long getResponseCacheMaxSize() {
+		return responseCacheMaxSize;
+	}
+	/**
+	 * Sets the maximum total size in bytes of the pages kept in the response cache.
+	 * <p>
+	 * Once the cache is full, the least recently used pages are evicted.
+	 * 
+	 * @param responseCacheMaxSize  the responseCacheMaxSize to set, must be positive
+	 */
+	public void setResponseCacheMaxSize(long responseCacheMaxSize) {
+		if (responseCacheMaxSize < 1) {
+			throw new IllegalArgumentException(
+					"Response cache max size must be positive: " + responseCacheMaxSize);
+		}
+		
+		this.responseCacheMaxSize = responseCacheMaxSize;
+	}
+	/**
+	 * @return the skipUnchangedPages
+	 */
+	public boolean shouldSkipUnchangedPages() {
+		return skipUnchangedPages;
+	}
+	/**
+	 * Sets whether pages that have not changed since they were cached are visited.
+	 * <p>
+	 * If true, an unchanged page is neither parsed nor passed to the public api, and only its
+	 * links are extracted.
+	 * This setting only has an effect if a response cache directory is set.
+	 * 
+	 * @param skipUnchangedPages  the skipUnchangedPages to set
+	 */
+	public void setSkipUnchangedPages(boolean skipUnchangedPages) {
+		this.skipUnchangedPages = skipUnchangedPages;
+	}
+	/**
+	 * @return the watermarkFile, null if the web crawler does not run incrementally
+	 */
+	public Path getWatermarkFile() {
+		return watermarkFile;
+	}
+	/**
+	 * Sets the file in which the scraped articles are remembered between runs.
+	 * <p>
+	 * If null, every run crawls the whole site.
+	 * Otherwise, the web crawler runs incrementally: articles that were scraped by an earlier run
+	 * are not visited again, and pagination stops at the first listing page that only links to
+	 * such articles.
+	 * This relies on the listing pages being ordered from newest to oldest.
+	 * 
+	 * @param watermarkFile  the watermarkFile to set, null to crawl the whole site
+	 * @see WebCrawler#getPageType(String)
+	 */
+	public void setWatermarkFile(Path watermarkFile) {
+		this.watermarkFile = watermarkFile;
+	}
+	/**
+	 * @return the metricsPort, negative if the metrics endpoint is disabled
+	 */
+	public int getMetricsPort() {
+		return metricsPort;
+	}
+	/**
+	 * Sets the port of the local HTTP endpoint that serves the crawl metrics.
+	 * <p>
+	 * If negative, the endpoint is disabled, and the metrics are only exposed over JMX.
+	 * If zero, any free port is used.
+	 * The endpoint only listens on the loopback address.
+	 * 
+	 * @param metricsPort  the metricsPort to set, negative to disable the endpoint
+	 */
+	public void setMetricsPort(int metricsPort) {
+		if (metricsPort > 65535) {
+			throw new IllegalArgumentException("Metrics port is out of range: " + metricsPort);
+		}
+		
+		this.metricsPort = metricsPort;
+	}
+	/**
+	 * @return the recordArchiveFile, null if the fetched pages are not recorded
+	 */
+	public Path getRecordArchiveFile() {
+		return recordArchiveFile;
+	}
+	/**
+	 * Sets the file to which every fetched page is appended.
+	 * <p>
+	 * If null, the fetched pages are not recorded.
+	 * Otherwise, the pages are recorded in a {@link PageArchive}, from which the crawl can later
+	 * be replayed.
+	 * Pages are appended to an existing archive, and a page recorded again replaces the earlier
+	 * recording.
+	 * 
+	 * @param recordArchiveFile  the recordArchiveFile to set, null to not record the pages
+	 * @see #setReplayArchiveFile(Path)
+	 */
+	public void setRecordArchiveFile(Path recordArchiveFile) {
+		this.recordArchiveFile = recordArchiveFile;
+	}
+	/**
+	 * @return the replayArchiveFile, null if the pages are fetched from the network
+	 */
+	public Path getReplayArchiveFile() {
+		return replayArchiveFile;
+	}
+	/**
+	 * Sets the file from which the pages are served instead of the network.
+	 * <p>
+	 * If null, the pages are fetched from the network.
+	 * Otherwise, the pages are read from a {@link PageArchive} recorded by an earlier run, and
+	 * no politeness delay is applied, so the crawl runs as fast as the pages can be processed.
+	 * The response cache and the record archive are not used while replaying.
+	 * 
+	 * @param replayArchiveFile  the replayArchiveFile to set, null to fetch from the network
+	 * @see #setRecordArchiveFile(Path)
+	 */
+	public void setReplayArchiveFile(Path replayArchiveFile) {
+		this.replayArchiveFile = replayArchiveFile;
+	}
+	/**
+	 * @return the clusterPort, negative if the web crawler runs on its own
+	 */
+	public int getClusterPort() {
+		return clusterPort;
+	}
+	/**
+	 * Sets the port on which this web crawler listens for the other nodes of its cluster.
+	 * <p>
+	 * If negative, the web crawler runs on its own.
+	 * If zero, any free port is used, and the other nodes learn it when this node joins them.
+	 * 
+	 * @param clusterPort  the clusterPort to set, negative to not run in a cluster
+	 */
+	public void setClusterPort(int clusterPort) {
+		if (clusterPort > 65535) {
+			throw new IllegalArgumentException("Cluster port is out of range: " + clusterPort);
+		}
+		
+		this.clusterPort = clusterPort;
+	}
+	/**
+	 * @return the clusterHost, not null
+	 */
+	public String getClusterHost() {
+		return clusterHost;
+	}
+	/**
+	 * @param clusterHost  the clusterHost to set, not null
+	 */
+	public void setClusterHost(String clusterHost) {
+		if (clusterHost == null) {
+			throw new NullPointerException("Cluster host cannot be null");
+		}
+		
+		this.clusterHost = clusterHost;
+	}
+	/**
+	 * @return the clusterPeers, not null
+	 */
+	public List<String> getClusterPeers() {
+		return clusterPeers;
+	}
+	/**
+	 * Adds the address of a node of the cluster to join.
+	 * <p>
+	 * A single node is enough to join a cluster, as the node tells the others.
+	 * 
+	 * @param address  the address of the node as {@code host:port}, not null
+	 * @return true if the address was added, otherwise returns false
+	 */
+	public boolean addClusterPeer(String address) {
+		ClusterNode.parseAddress(address);
+		
+		return clusterPeers.add(address);
+	}
+	/**
+	 * @return the clusterQuorum
+	 */
+	public int getClusterQuorum() {
+		return clusterQuorum;
+	}
+	/**
+	 * Sets the number of nodes, including this one, that must be in the cluster before the web
+	 * crawler starts crawling.
+	 * <p>
+	 * Starting the nodes together spreads the work from the very first links, rather than moving
+	 * it as the nodes join.
+	 * 
+	 * @param clusterQuorum  the clusterQuorum to set, must be positive
+	 */
+	public void setClusterQuorum(int clusterQuorum) {
+		if (clusterQuorum < 1) {
+			throw new IllegalArgumentException("Cluster quorum must be positive: " + clusterQuorum);
+		}
+		
+		this.clusterQuorum = clusterQuorum;
+	}
+	/**
+	 * @return the clusterBatchSize
+	 */
+	public int getClusterBatchSize() {
+		return clusterBatchSize;
+	}
+	/**
+	 * @param clusterBatchSize  the clusterBatchSize to set, must be positive
+	 */
+	public void setClusterBatchSize(int clusterBatchSize) {
+		if (clusterBatchSize < 1) {
+			throw new IllegalArgumentException("Cluster batch size must be positive: " + clusterBatchSize);
+		}
+		
+		this.clusterBatchSize = clusterBatchSize;
+	}
 
 	@Override
 	public String toString() {
@@ -102,6 +1201,94 @@ public class CrawlerConfig {
 		.append(followExternalLinks)
 		.append(", scrapeSeedUrls=")
 		.append(scrapeSeedUrls)
+		.append(", maxArticles=")
+		.append(maxArticles)
+		.append(", numberOfThreads=")
+		.append(numberOfThreads)
+		.append(", politenessDelay=")
+		.append(politenessDelay)
+		.append(", adaptiveRateControl=")
+		.append(adaptiveRateControl)
+		.append(", minPolitenessDelay=")
+		.append(minPolitenessDelay)
+		.append(", maxPolitenessDelay=")
+		.append(maxPolitenessDelay)
+		.append(", maxConnectionsPerHost=")
+		.append(maxConnectionsPerHost)
+		.append(", targetLatency=")
+		.append(targetLatency)
+		.append(", maxRetries=")
+		.append(maxRetries)
+		.append(", retryBaseDelay=")
+		.append(retryBaseDelay)
+		.append(", retryMaxDelay=")
+		.append(retryMaxDelay)
+		.append(", circuitBreakerThreshold=")
+		.append(circuitBreakerThreshold)
+		.append(", circuitBreakerCooldown=")
+		.append(circuitBreakerCooldown)
+		.append(", pooledFetcher=")
+		.append(pooledFetcher)
+		.append(", connectTimeout=")
+		.append(connectTimeout)
+		.append(", readTimeout=")
+		.append(readTimeout)
+		.append(", maxBodySize=")
+		.append(maxBodySize)
+		.append(", skipNearDuplicates=")
+		.append(skipNearDuplicates)
+		.append(", nearDuplicateDistance=")
+		.append(nearDuplicateDistance)
+		.append(", canonicalizeUrls=")
+		.append(canonicalizeUrls)
+		.append(", ignoredQueryParameters=")
+		.append(ignoredQueryParameters)
+		.append(", respectRobotsTxt=")
+		.append(respectRobotsTxt)
+		.append(", robotsUserAgent=")
+		.append(robotsUserAgent)
+		.append(", maxCrawlDelay=")
+		.append(maxCrawlDelay)
+		.append(", robotsRecheckDelay=")
+		.append(robotsRecheckDelay)
+		.append(", useSitemaps=")
+		.append(useSitemaps)
+		.append(", sitemapModifiedSince=")
+		.append(sitemapModifiedSince)
+		.append(", useUrlFingerprints=")
+		.append(useUrlFingerprints)
+		.append(", expectedUrlCount=")
+		.append(expectedUrlCount)
+		.append(", frontierDirectory=")
+		.append(frontierDirectory)
+		.append(", frontierMemoryCapacity=")
+		.append(frontierMemoryCapacity)
+		.append(", priorityFrontier=")
+		.append(priorityFrontier)
+		.append(", responseCacheDirectory=")
+		.append(responseCacheDirectory)
+		.append(", responseCacheMaxSize=")
+		.append(responseCacheMaxSize)
+		.append(", skipUnchangedPages=")
+		.append(skipUnchangedPages)
+		.append(", watermarkFile=")
+		.append(watermarkFile)
+		.append(", metricsPort=")
+		.append(metricsPort)
+		.append(", recordArchiveFile=")
+		.append(recordArchiveFile)
+		.append(", replayArchiveFile=")
+		.append(replayArchiveFile)
+		.append(", clusterPort=")
+		.append(clusterPort)
+		.append(", clusterHost=")
+		.append(clusterHost)
+		.append(", clusterPeers=")
+		.append(clusterPeers)
+		.append(", clusterQuorum=")
+		.append(clusterQuorum)
+		.append(", clusterBatchSize=")
+		.append(clusterBatchSize)
 		.append("]");
 		
 		return builder.toString();
@@ -0,0 +1,57 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes {@link MusicData} as comma-separated values, one record per line.
+ * <p>
+ * The file starts with a header line.
+ * Values that contain a comma, a quote or a line break are quoted as described by RFC 4180, and
+ * missing values are left empty.
+ */
+public class CsvFormat implements MusicDataFormat {
+	private static final byte[] HEADER = "url,project,artist,date\n".getBytes(StandardCharsets.UTF_8);
+
+	@Override
+	public void writeHeader(OutputStream out) throws IOException {
+		out.write(HEADER);
+	}
+
+	@Override
+	public void write(MusicData data, OutputStream out) throws IOException {
+		StringBuilder line = new StringBuilder();
+		
+		appendValue(line, data.getUrl()).append(',');
+		appendValue(line, data.getProject()).append(',');
+		appendValue(line, data.getArtist()).append(',');
+		appendValue(line, data.getDate()).append('\n');
+		
+		out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * @param line  the line to append to, not null
+	 * @param value  the value to append, null if it is missing
+	 * @return the line, not null
+	 */
+	private static StringBuilder appendValue(StringBuilder line, String value) {
+		if (value == null) {
+			return line;
+		}
+		
+		boolean needsQuotes = false;
+		
+		for (int i = 0; i < value.length() && !needsQuotes; i++) {
+			char c = value.charAt(i);
+			needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		
+		if (!needsQuotes) {
+			return line.append(value);
+		}
+		
+		return line.append('"').append(value.replace("\"", "\"\"")).append('"');
+	}
+}
@@ -0,0 +1,88 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A {@link UrlFilter} that rejects URLs whose path ends with one of a set of file extensions.
+ * <p>
+ * This prevents the web crawler from visiting URLs that do not point to html pages, such as
+ * stylesheets, images and sound files.
+ * The extension is taken from the end of the path, ignoring the query and the fragment, and is
+ * compared without regard to case.
+ * <p>
+ * The extensions are grouped by length up front, so checking a URL only compares the URL's
+ * extension against the extensions of the same length, without allocating.
+ */
+public class ExtensionFilter implements UrlFilter {
+	/**
+	 * The rejected extensions, without the leading dot, indexed by their length.
+	 */
+	private final String[][] extensionsByLength;
+	
+	/**
+	 * @param extensions  the rejected extensions, without the leading dot, not null
+	 */
+	public ExtensionFilter(Collection<String> extensions) {
+		int maxLength = extensions.stream().mapToInt(String::length).max().orElse(0);
+		String[][] byLength = new String[maxLength + 1][0];
+		
+		for (String extension : extensions) {
+			String[] sameLength = byLength[extension.length()];
+			
+			sameLength = Arrays.copyOf(sameLength, sameLength.length + 1);
+			sameLength[sameLength.length - 1] = extension;
+			byLength[extension.length()] = sameLength;
+		}
+		
+		this.extensionsByLength = byLength;
+	}
+
+	@Override
+	public boolean accept(String url) {
+		int pathEnd = url.length();
+		
+		for (int i = 0; i < url.length(); i++) {
+			char c = url.charAt(i);
+			
+			if (c == '?' || c == '#') {
+				pathEnd = i;
+				break;
+			}
+		}
+		
+		// Walk back to the last dot, giving up at the start of the last path segment
+		for (int i = pathEnd - 1; i >= 0; i--) {
+			char c = url.charAt(i);
+			
+			if (c == '/') {
+				return true;
+			}
+			
+			if (c == '.') {
+				int length = pathEnd - i - 1;
+				
+				return length >= extensionsByLength.length 
+						|| !matchesAny(url, i + 1, extensionsByLength[length]);
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * @param url  the URL, not null
+	 * @param offset  the index of the extension in the URL
+	 * @param extensions  the candidate extensions, all of the same length as the URL's, not null
+	 * @return true if the URL's extension is one of the candidates, otherwise returns false
+	 */
+	private static boolean matchesAny(String url, int offset, String[] extensions) {
+		for (String extension : extensions) {
+			if (url.regionMatches(true, offset, extension, 0, extension.length())) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+}
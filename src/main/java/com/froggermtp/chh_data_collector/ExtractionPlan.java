@@ -0,0 +1,181 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+import org.jsoup.select.QueryParser;
+import org.jsoup.select.Selector;
+
+/**
+ * A compiled {@link ExtractionSpec}, which scrapes the {@link MusicData} of a page.
+ * <p>
+ * The selectors are parsed into jsoup evaluators, and the regexes compiled, once, when the plan
+ * is created.
+ * A page is then scraped in a single traversal of its {@code Document}: every element is matched
+ * against the evaluators of the fields that are still looking for one, rather than selecting
+ * every field separately.
+ * <p>
+ * This class is immutable, and therefore thread-safe.
+ */
+public class ExtractionPlan {
+	/**
+	 * The compiled fields, in the order of the spec.
+	 */
+	private final CompiledField[] fields;
+
+	/**
+	 * @param fields  the fields of the spec, not null
+	 * @throws IllegalArgumentException if a selector or a regex is not valid
+	 */
+	ExtractionPlan(List<FieldSpec> fields) {
+		this.fields = new CompiledField[fields.size()];
+
+		for (int i = 0; i < this.fields.length; i++) {
+			this.fields[i] = new CompiledField(fields.get(i));
+		}
+	}
+
+	/**
+	 * Scrapes the music data of a page.
+	 *
+	 * @param doc  the {@code Document} of the page, not null
+	 * @return the music data, whose fields are null if they are not described by the spec or
+	 * could not be found, not null
+	 */
+	public MusicData extract(Document doc) {
+		String[] values = extractValues(doc);
+
+		return new MusicData(
+				doc.location(),
+				values[MusicDataField.PROJECT.ordinal()],
+				values[MusicDataField.ARTIST.ordinal()],
+				values[MusicDataField.DATE.ordinal()]);
+	}
+
+	/**
+	 * @param doc  the {@code Document} of the page, not null
+	 * @return the value of every field, by the ordinal of its {@link MusicDataField}, not null
+	 */
+	private String[] extractValues(Document doc) {
+		Element[] matches = new Element[fields.length];
+		int[] matchCounts = new int[fields.length];
+
+		new NodeTraversor(new NodeVisitor() {
+			@Override
+			public void head(Node node, int depth) {
+				if (!(node instanceof Element)) {
+					return;
+				}
+
+				Element element = (Element) node;
+
+				for (int i = 0; i < fields.length; i++) {
+					// The first match is enough, unless the match has to be unique
+					if (matchCounts[i] < (fields[i].isUnique ? 2 : 1) && fields[i].evaluator.matches(doc, element)) {
+						if (matchCounts[i]++ == 0) {
+							matches[i] = element;
+						}
+					}
+				}
+			}
+
+			@Override
+			public void tail(Node node, int depth) {
+				// Every element is matched on the way down
+			}
+		}).traverse(doc);
+
+		String[] values = new String[MusicDataField.values().length];
+
+		for (int i = 0; i < fields.length; i++) {
+			// A field that is not unique stops counting at its first match
+			if (matchCounts[i] == 1) {
+				values[fields[i].field.ordinal()] = fields[i].process(matches[i]);
+			}
+		}
+
+		return values;
+	}
+
+	/**
+	 * A field whose selector and regexes are compiled.
+	 */
+	private static final class CompiledField {
+		private final MusicDataField field;
+		private final Evaluator evaluator;
+		private final boolean isUnique;
+		private final FieldSpec.Source source;
+		private final String attribute;
+		private final Pattern[] patterns;
+		/**
+		 * The replacement of every step, null for a require step.
+		 */
+		private final String[] replacements;
+
+		private CompiledField(FieldSpec spec) {
+			try {
+				this.evaluator = QueryParser.parse(spec.getSelector());
+			} catch (Selector.SelectorParseException e) {
+				throw new IllegalArgumentException("Invalid selector for " + spec.getField() + ": "
+						+ spec.getSelector(), e);
+			}
+
+			List<String> regexes = spec.getRegexes();
+
+			this.field = spec.getField();
+			this.isUnique = spec.isUnique();
+			this.source = spec.getSource();
+			this.attribute = spec.getAttribute();
+			this.patterns = new Pattern[regexes.size()];
+			this.replacements = spec.getReplacements().toArray(new String[0]);
+
+			for (int i = 0; i < patterns.length; i++) {
+				patterns[i] = Pattern.compile(regexes.get(i));
+			}
+		}
+
+		/**
+		 * Reads the value of the element, and runs it through the steps.
+		 *
+		 * @param element  the element that matched the selector, not null
+		 * @return the value, null if a require step dropped it
+		 */
+		private String process(Element element) {
+			String value;
+
+			switch (source) {
+			case OWN_TEXT:
+				value = element.ownText();
+				break;
+			case HTML:
+				value = element.html();
+				break;
+			case ATTRIBUTE:
+				value = element.attr(attribute);
+				break;
+			default:
+				value = element.text();
+				break;
+			}
+
+			for (int i = 0; i < patterns.length; i++) {
+				Matcher matcher = patterns[i].matcher(value);
+
+				if (replacements[i] != null) {
+					value = matcher.replaceAll(replacements[i]);
+				} else if (!matcher.find()) {
+					return null;
+				}
+			}
+
+			return value;
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Describes how the {@link MusicData} of a site is scraped from its pages, one
+ * {@link FieldSpec} per field.
+ * <p>
+ * A spec is declarative: it is compiled once into an {@link ExtractionPlan}, which scrapes
+ * every field of a page in a single traversal of its {@code Document}.
+ * Fields that are not described are left null.
+ * <p>
+ * A spec can be written in code, or loaded from properties with
+ * {@link #fromProperties(Properties)}, so that a new site does not need any scraping code.
+ * <p>
+ * This class is not thread-safe, but the plans it compiles are.
+ */
+public class ExtractionSpec {
+	/**
+	 * The fields, in the order they were added.
+	 */
+	private final List<FieldSpec> fields = new ArrayList<>();
+
+	/**
+	 * Adds a field to the spec.
+	 *
+	 * @param field  the field, not null
+	 * @return this spec, not null
+	 * @throws IllegalArgumentException if the spec already describes the same field
+	 */
+	public ExtractionSpec add(FieldSpec field) {
+		for (FieldSpec existing : fields) {
+			if (existing.getField() == field.getField()) {
+				throw new IllegalArgumentException("The field is already described: " + field.getField());
+			}
+		}
+
+		fields.add(field);
+
+		return this;
+	}
+
+	/**
+	 * @return the fields, in the order they were added, not null
+	 */
+	public List<FieldSpec> getFields() {
+		return Collections.unmodifiableList(fields);
+	}
+
+	/**
+	 * Compiles the spec into a plan, compiling every selector and regex once.
+	 *
+	 * @return the plan, not null
+	 * @throws IllegalArgumentException if a selector or a regex is not valid
+	 */
+	public ExtractionPlan compile() {
+		return new ExtractionPlan(fields);
+	}
+
+	/**
+	 * Loads a spec from properties, whose keys begin with the lowercase name of a
+	 * {@link MusicDataField}:
+	 * <p><ul>
+	 * <li>{@code artist.select}: the CSS selector of the element, which is required for the field
+	 * to be described.
+	 * <li>{@code artist.value}: {@code text}, {@code ownText}, {@code html} or
+	 * {@code attr:name}; {@code text} by default.
+	 * <li>{@code artist.unique}: {@code true} to drop the value if more than one element matches.
+	 * <li>{@code artist.1.replace} and {@code artist.1.with}: a step that replaces the matches of
+	 * a regex, with nothing if there is no {@code with}.
+	 * <li>{@code artist.2.require}: a step that drops the value unless a regex matches it.
+	 * </ul>
+	 * <p>
+	 * The steps are numbered from one, and run in the order of their numbers.
+	 *
+	 * @param properties  the properties, not null
+	 * @return the spec, not null
+	 * @throws IllegalArgumentException if a key cannot be understood
+	 */
+	public static ExtractionSpec fromProperties(Properties properties) {
+		ExtractionSpec spec = new ExtractionSpec();
+		Set<String> used = new HashSet<>();
+
+		for (MusicDataField field : EnumSet.allOf(MusicDataField.class)) {
+			String prefix = field.name().toLowerCase(Locale.ROOT) + ".";
+			String selector = properties.getProperty(prefix + "select");
+
+			if (selector == null) {
+				continue;
+			}
+
+			FieldSpec fieldSpec = new FieldSpec(field, selector);
+			used.add(prefix + "select");
+
+			String value = properties.getProperty(prefix + "value", "text");
+			used.add(prefix + "value");
+
+			if (value.equals("text")) {
+				fieldSpec.text();
+			} else if (value.equals("ownText")) {
+				fieldSpec.ownText();
+			} else if (value.equals("html")) {
+				fieldSpec.html();
+			} else if (value.startsWith("attr:")) {
+				fieldSpec.attribute(value.substring("attr:".length()));
+			} else {
+				throw new IllegalArgumentException("Unknown value of " + prefix + "value: " + value);
+			}
+
+			if (Boolean.parseBoolean(properties.getProperty(prefix + "unique"))) {
+				fieldSpec.unique();
+			}
+
+			used.add(prefix + "unique");
+
+			// The steps, by number
+			TreeMap<Integer, String> steps = new TreeMap<>();
+
+			for (String key : properties.stringPropertyNames()) {
+				if (key.startsWith(prefix) && (key.endsWith(".replace") || key.endsWith(".require"))) {
+					String number = key.substring(prefix.length(), key.lastIndexOf('.'));
+
+					try {
+						if (steps.put(Integer.parseInt(number), key) != null) {
+							throw new IllegalArgumentException("Step " + number + " of " + field + " has two kinds");
+						}
+					} catch (NumberFormatException e) {
+						throw new IllegalArgumentException("Not a step number: " + key, e);
+					}
+				}
+			}
+
+			for (String key : steps.values()) {
+				String regex = properties.getProperty(key);
+				used.add(key);
+
+				if (key.endsWith(".replace")) {
+					String with = key.substring(0, key.length() - "replace".length()) + "with";
+					fieldSpec.replace(regex, properties.getProperty(with, ""));
+					used.add(with);
+				} else {
+					fieldSpec.require(regex);
+				}
+			}
+
+			spec.add(fieldSpec);
+		}
+
+		for (String key : properties.stringPropertyNames()) {
+			if (!used.contains(key)) {
+				throw new IllegalArgumentException("Unknown extraction property: " + key);
+			}
+		}
+
+		return spec;
+	}
+}
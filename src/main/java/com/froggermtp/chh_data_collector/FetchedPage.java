@@ -0,0 +1,158 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The response of a server to a request made by a {@link PageFetcher}.
+ */
+public final class FetchedPage {
+	/**
+	 * The URL of the page, after any redirects.
+	 */
+	private final String url;
+	/**
+	 * The HTTP status code of the response.
+	 */
+	private final int statusCode;
+	/**
+	 * The response headers, with case-insensitive names.
+	 */
+	private final Map<String, String> headers;
+	/**
+	 * The body of the response.
+	 */
+	private final byte[] body;
+	/**
+	 * Whether the body was served from the response cache after the server reported that the
+	 * page was not modified.
+	 */
+	private final boolean notModified;
+	
+	public FetchedPage(String url, int statusCode, Map<String, String> headers, byte[] body) {
+		this(url, statusCode, headers, body, false);
+	}
+	
+	public FetchedPage(String url, int statusCode, Map<String, String> headers, byte[] body, 
+			boolean notModified) {
+		TreeMap<String, String> caseInsensitiveHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		caseInsensitiveHeaders.putAll(headers);
+		
+		this.url = url;
+		this.statusCode = statusCode;
+		this.headers = Collections.unmodifiableMap(caseInsensitiveHeaders);
+		this.body = body;
+		this.notModified = notModified;
+	}
+
+	/**
+	 * @return the URL of the page, after any redirects, not null
+	 */
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * @return the HTTP status code of the response
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * @return the response headers, with case-insensitive names, not null
+	 */
+	public Map<String, String> getHeaders() {
+		return headers;
+	}
+	
+	/**
+	 * @param name  the name of the header, in any case, not null
+	 * @return the value of the header, null if the response does not have the header
+	 */
+	public String getHeader(String name) {
+		return headers.get(name);
+	}
+
+	/**
+	 * @return the body of the response, not null
+	 */
+	public byte[] getBody() {
+		return body;
+	}
+	
+	/**
+	 * @return true if the page was served from the cache because it had not been modified
+	 */
+	public boolean isNotModified() {
+		return notModified;
+	}
+	
+	/**
+	 * Determines whether the {@code Content-Type} header declares text or XML, which can be
+	 * parsed for links.
+	 * <p>
+	 * A response without the header is assumed to be parseable.
+	 * 
+	 * @return true if the body can be parsed, otherwise returns false
+	 */
+	public boolean isParseable() {
+		String contentType = getHeader("Content-Type");
+		
+		if (contentType == null) {
+			return true;
+		}
+		
+		String mimeType = contentType.toLowerCase(Locale.ROOT);
+		int end = mimeType.indexOf(';');
+		mimeType = (end >= 0 ? mimeType.substring(0, end) : mimeType).trim();
+		
+		return mimeType.isEmpty() || mimeType.startsWith("text/") || mimeType.equals("application/xml")
+				|| mimeType.startsWith("application/") && mimeType.endsWith("+xml");
+	}
+	
+	/**
+	 * Returns the charset declared by the {@code Content-Type} header.
+	 * 
+	 * @return the name of the charset, null if no charset is declared
+	 */
+	public String getCharset() {
+		String contentType = getHeader("Content-Type");
+		
+		if (contentType == null) {
+			return null;
+		}
+		
+		int index = contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+		
+		if (index < 0) {
+			return null;
+		}
+		
+		String charset = contentType.substring(index + "charset=".length());
+		int end = charset.indexOf(';');
+		
+		if (end >= 0) {
+			charset = charset.substring(0, end);
+		}
+		
+		charset = charset.trim().replace("\"", "").replace("'", "");
+		
+		return charset.isEmpty() ? null : charset;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sbuf = new StringBuilder();
+		sbuf.append("FetchedPage ")
+		.append("[url=").append(url)
+		.append(", statusCode=").append(statusCode)
+		.append(", bodyLength=").append(body.length)
+		.append(", notModified=").append(notModified)
+		.append("]");
+		
+		return sbuf.toString();
+	}
+}
@@ -0,0 +1,208 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes how one field of {@link MusicData} is scraped from a page.
+ * <p>
+ * The value is taken from the first element that matches a CSS selector, or, if the field is
+ * unique, from the only one.
+ * It is read from the text of the element by default, or from its own text, its inner html or
+ * one of its attributes.
+ * The value then goes through the steps of the field in order: every replace step replaces the
+ * matches of a regex, and every require step drops the value if the regex does not match it.
+ * <p>
+ * The methods return the field itself, so a field can be described in a single expression:
+ * <pre>
+ * new FieldSpec(MusicDataField.DATE, "time").unique().replace("Created:\\s*", "")
+ * </pre>
+ * The regexes are only compiled once the {@link ExtractionSpec} is compiled.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class FieldSpec {
+	/**
+	 * Where the value of an element is read from.
+	 */
+	enum Source {
+		TEXT,
+		OWN_TEXT,
+		HTML,
+		ATTRIBUTE
+	}
+
+	/**
+	 * The field that is scraped.
+	 */
+	private final MusicDataField field;
+	/**
+	 * The CSS selector of the element.
+	 */
+	private final String selector;
+	/**
+	 * Where the value of the element is read from.
+	 */
+	private Source source = Source.TEXT;
+	/**
+	 * The name of the attribute the value is read from, null unless the source is an attribute.
+	 */
+	private String attribute = null;
+	/**
+	 * Whether the value is dropped if more than one element matches.
+	 */
+	private boolean isUnique = false;
+	/**
+	 * The regex of every step.
+	 */
+	private final List<String> regexes = new ArrayList<>();
+	/**
+	 * The replacement of every step, null for a require step.
+	 */
+	private final List<String> replacements = new ArrayList<>();
+
+	/**
+	 * @param field  the field that is scraped, not null
+	 * @param selector  the CSS selector of the element that holds the value, not null
+	 */
+	public FieldSpec(MusicDataField field, String selector) {
+		if (field == null || selector == null) {
+			throw new NullPointerException("Field and selector cannot be null");
+		}
+
+		this.field = field;
+		this.selector = selector;
+	}
+
+	/**
+	 * Reads the value from the text of the element and its children, which is the default.
+	 *
+	 * @return this field, not null
+	 */
+	public FieldSpec text() {
+		return source(Source.TEXT, null);
+	}
+
+	/**
+	 * Reads the value from the text of the element, without the text of its children.
+	 *
+	 * @return this field, not null
+	 */
+	public FieldSpec ownText() {
+		return source(Source.OWN_TEXT, null);
+	}
+
+	/**
+	 * Reads the value from the inner html of the element.
+	 *
+	 * @return this field, not null
+	 */
+	public FieldSpec html() {
+		return source(Source.HTML, null);
+	}
+
+	/**
+	 * Reads the value from an attribute of the element.
+	 *
+	 * @param name  the name of the attribute, not null
+	 * @return this field, not null
+	 */
+	public FieldSpec attribute(String name) {
+		if (name == null) {
+			throw new NullPointerException("Attribute name cannot be null");
+		}
+
+		return source(Source.ATTRIBUTE, name);
+	}
+
+	/**
+	 * Drops the value if more than one element matches the selector.
+	 *
+	 * @return this field, not null
+	 */
+	public FieldSpec unique() {
+		isUnique = true;
+
+		return this;
+	}
+
+	/**
+	 * Adds a step that replaces every match of a regex in the value.
+	 *
+	 * @param regex  the regex, not null
+	 * @param replacement  the replacement, which may refer to the groups of the regex, not null
+	 * @return this field, not null
+	 */
+	public FieldSpec replace(String regex, String replacement) {
+		if (regex == null || replacement == null) {
+			throw new NullPointerException("Regex and replacement cannot be null");
+		}
+
+		regexes.add(regex);
+		replacements.add(replacement);
+
+		return this;
+	}
+
+	/**
+	 * Adds a step that drops the value unless a regex matches part of it.
+	 *
+	 * @param regex  the regex, not null
+	 * @return this field, not null
+	 */
+	public FieldSpec require(String regex) {
+		if (regex == null) {
+			throw new NullPointerException("Regex cannot be null");
+		}
+
+		regexes.add(regex);
+		replacements.add(null);
+
+		return this;
+	}
+
+	/**
+	 * @return the field that is scraped, not null
+	 */
+	public MusicDataField getField() {
+		return field;
+	}
+
+	/**
+	 * @return the CSS selector of the element, not null
+	 */
+	public String getSelector() {
+		return selector;
+	}
+
+	/**
+	 * @return whether the value is dropped if more than one element matches
+	 */
+	public boolean isUnique() {
+		return isUnique;
+	}
+
+	Source getSource() {
+		return source;
+	}
+
+	String getAttribute() {
+		return attribute;
+	}
+
+	List<String> getRegexes() {
+		return Collections.unmodifiableList(regexes);
+	}
+
+	List<String> getReplacements() {
+		return Collections.unmodifiableList(replacements);
+	}
+
+	private FieldSpec source(Source source, String attribute) {
+		this.source = source;
+		this.attribute = attribute;
+
+		return this;
+	}
+}
@@ -0,0 +1,288 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link MusicDataSink} that appends the records to a file on a dedicated writer thread.
+ * <p>
+ * Records are handed to the writer thread through a bounded queue.
+ * The writer takes the records off the queue in batches, encodes a whole batch with the
+ * {@link MusicDataFormat}, and writes it to the file at once.
+ * Rather than forcing every batch to the disk, the file is synced at most once every
+ * {@code syncInterval} milliseconds, so that a single sync covers every batch written since the
+ * last one.
+ * <p>
+ * When the writer falls behind and the queue is full, {@link #write(MusicData)} blocks until
+ * there is room, which slows the crawl down to the speed of the disk instead of letting the
+ * records pile up on the heap.
+ * Records are written from the crawler's visit stage, so only that stage ever waits on the
+ * writer, never the fetch or parse workers.
+ * <p>
+ * If the file cannot be written, the writer thread stops, and the error is rethrown by the next
+ * call to {@link #write(MusicData)} or {@link #close()}.
+ * The sink must always be closed, since the writer thread keeps running until it is.
+ * <p>
+ * This class is thread-safe.
+ */
+public class FileMusicDataSink implements MusicDataSink {
+	private static final Logger logger = LoggerFactory.getLogger(FileMusicDataSink.class);
+
+	/**
+	 * The default number of records the queue holds before writers have to wait.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+	/**
+	 * The default maximum amount of milliseconds between two syncs of the file.
+	 */
+	public static final long DEFAULT_SYNC_INTERVAL = 1000;
+	/**
+	 * The maximum number of records the writer takes off the queue at once.
+	 */
+	private static final int MAX_BATCH_SIZE = 1024;
+	/**
+	 * Tells the writer thread that no more records will follow.
+	 */
+	private static final MusicData END_OF_RECORDS = new MusicData(null, null, null, null);
+
+	/**
+	 * The file the records are appended to.
+	 */
+	private final Path file;
+	/**
+	 * Encodes the records.
+	 */
+	private final MusicDataFormat format;
+	/**
+	 * The maximum amount of milliseconds between two syncs of the file.
+	 */
+	private final long syncInterval;
+	/**
+	 * The records waiting to be written.
+	 */
+	private final BlockingQueue<MusicData> queue;
+	/**
+	 * The open file.
+	 */
+	private final FileChannel channel;
+	/**
+	 * The thread that writes the records.
+	 */
+	private final Thread writer;
+
+	/**
+	 * The error that stopped the writer thread, null if it has not failed.
+	 */
+	private volatile IOException failure = null;
+	/**
+	 * Whether the sink has been closed.
+	 */
+	private boolean isClosed = false;
+	/**
+	 * The number of calls to {@link #write(MusicData)} that are handing a record to the queue,
+	 * which {@link #close()} waits for before it ends the records.
+	 */
+	private int activeWrites = 0;
+
+	/**
+	 * Creates a sink with the default queue capacity and sync interval.
+	 *
+	 * @param file  the file the records are appended to, created if it does not exist, not null
+	 * @param format  the format the records are written in, not null
+	 */
+	public FileMusicDataSink(Path file, MusicDataFormat format) {
+		this(file, format, DEFAULT_QUEUE_CAPACITY, DEFAULT_SYNC_INTERVAL);
+	}
+
+	/**
+	 * @param file  the file the records are appended to, created if it does not exist, not null
+	 * @param format  the format the records are written in, not null
+	 * @param queueCapacity  the number of records the queue holds before writers have to wait,
+	 * must be positive
+	 * @param syncInterval  the maximum amount of milliseconds between two syncs of the file,
+	 * not negative
+	 */
+	public FileMusicDataSink(Path file, MusicDataFormat format, int queueCapacity, long syncInterval) {
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+		}
+
+		if (syncInterval < 0) {
+			throw new IllegalArgumentException("Sync interval cannot be negative: " + syncInterval);
+		}
+
+		this.file = file;
+		this.format = format;
+		this.syncInterval = syncInterval;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+		try {
+			this.channel = FileChannel.open(file,
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not open the music data file " + file, e);
+		}
+
+		this.writer = new Thread(this::writeRecords, "music-data-writer");
+		this.writer.start();
+	}
+
+	/**
+	 * Hands a record to the writer thread, waiting for room in the queue if it is full.
+	 *
+	 * @param data  the record to write, not null
+	 * @throws IllegalStateException if the sink has been closed
+	 * @throws UncheckedIOException if the writer thread failed to write to the file
+	 */
+	@Override
+	public void write(MusicData data) {
+		if (data == null) {
+			throw new NullPointerException("Music data cannot be null");
+		}
+
+		synchronized (this) {
+			if (isClosed) {
+				throw new IllegalStateException("The music data sink is closed");
+			}
+
+			activeWrites++;
+		}
+
+		try {
+			checkFailure();
+
+			// Waiting for room in the queue can take a while, so it must not hold the lock
+			while (!queue.offer(data, 100, TimeUnit.MILLISECONDS)) {
+				checkFailure();
+			}
+		} catch (InterruptedException e) {
+			logger.error("Thread was interrupted", e);
+			Thread.currentThread().interrupt();
+		} finally {
+			synchronized (this) {
+				if (--activeWrites == 0) {
+					notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits for every record handed to the sink to be written and synced, then closes the file.
+	 * <p>
+	 * Writes that are still waiting for room in the queue are waited for, so that their records
+	 * are queued before the end of the records.
+	 *
+	 * @throws UncheckedIOException if the writer thread failed to write to the file
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (isClosed) {
+				return;
+			}
+
+			isClosed = true;
+		}
+
+		try {
+			synchronized (this) {
+				// The writer thread keeps draining the queue, so these writes always finish
+				while (activeWrites > 0) {
+					wait();
+				}
+			}
+
+			while (writer.isAlive() && !queue.offer(END_OF_RECORDS, 100, TimeUnit.MILLISECONDS)) {
+				// The writer is still draining a full queue
+			}
+
+			writer.join();
+		} catch (InterruptedException e) {
+			logger.error("Thread was interrupted", e);
+			Thread.currentThread().interrupt();
+		} finally {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				logger.warn("Could not close the music data file {}", file, e);
+			}
+		}
+
+		checkFailure();
+	}
+
+	/**
+	 * @throws UncheckedIOException if the writer thread failed to write to the file
+	 */
+	private void checkFailure() {
+		if (failure != null) {
+			throw new UncheckedIOException("Could not write to the music data file " + file, failure);
+		}
+	}
+
+	/**
+	 * Runs on the writer thread, writing batches of records until the end of the records is
+	 * reached.
+	 */
+	private void writeRecords() {
+		List<MusicData> batch = new ArrayList<>(MAX_BATCH_SIZE);
+		OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+		long lastSync = System.currentTimeMillis();
+		boolean isEnd = false;
+
+		try {
+			if (channel.size() == 0) {
+				format.writeHeader(out);
+			}
+
+			while (!isEnd) {
+				batch.add(queue.take());
+				queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+				for (MusicData data : batch) {
+					if (data == END_OF_RECORDS) {
+						isEnd = true;
+						break;
+					}
+
+					format.write(data, out);
+				}
+
+				out.flush();
+
+				long now = System.currentTimeMillis();
+
+				if (isEnd || now - lastSync >= syncInterval) {
+					channel.force(false);
+					lastSync = now;
+				}
+
+				logger.debug("Wrote {} music data records", batch.size());
+
+				batch.clear();
+			}
+		} catch (IOException e) {
+			logger.error("Could not write to the music data file {}", file, e);
+
+			failure = e;
+		} catch (InterruptedException e) {
+			logger.error("Thread was interrupted", e);
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.Closeable;
+
+/**
+ * Holds the URLs that are waiting to be crawled, in the order they will be crawled.
+ * <p>
+ * Most frontiers hand out the URLs in the order they were added, but a frontier may also order
+ * them by priority, like the {@link PriorityFrontier}.
+ * <p>
+ * A frontier does not deduplicate URLs; that is the job of the {@link UrlQueue} in front of it.
+ * <p>
+ * Implementations must be thread-safe.
+ */
+public interface Frontier extends Closeable {
+	/**
+	 * Adds a URL to the end of the frontier.
+	 * 
+	 * @param url  the URL to add, not null
+	 */
+	void add(String url);
+	
+	/**
+	 * Adds a URL that was found {@code depth} links away from a seed URL.
+	 * <p>
+	 * By default, the depth is ignored, and the URL is added to the end of the frontier.
+	 * 
+	 * @param url  the URL to add, not null
+	 * @param depth  the number of links between a seed URL and the URL, not negative
+	 */
+	default void add(String url, int depth) {
+		add(url);
+	}
+	
+	/**
+	 * Removes the next URL from the frontier.
+	 * 
+	 * @return the next URL, null if the frontier is empty
+	 */
+	String poll();
+	
+	/**
+	 * @return true if the frontier is empty, otherwise returns false
+	 */
+	boolean isEmpty();
+	
+	/**
+	 * @return the number of URLs in the frontier
+	 */
+	long size();
+	
+	/**
+	 * Releases any resources held by the frontier.
+	 * <p>
+	 * The URLs still in the frontier are discarded.
+	 */
+	@Override
+	void close();
+}
@@ -0,0 +1,139 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Assigns every URL to one of the nodes of a cluster, by consistent hashing.
+ * <p>
+ * Every node is placed on a ring of 64-bit hashes at {@value #VIRTUAL_NODES} points, and a URL
+ * belongs to the node at the first point at or after the hash of the URL.
+ * When a node joins or leaves, only the URLs next to its points change owner, which is about
+ * one in every number of nodes, and every other URL keeps its node.
+ * <p>
+ * A URL is hashed by its host and path, so the URLs that only differ in their query, such as
+ * the pages of a listing, belong to the same node.
+ * <p>
+ * This class is thread-safe.
+ * Changes to the ring are rare, so every change builds a new ring, and looking up a URL never
+ * waits.
+ */
+public class HashRing {
+	/**
+	 * The number of points at which every node is placed on the ring.
+	 * <p>
+	 * The more points, the more evenly the URLs are spread over the nodes.
+	 */
+	static final int VIRTUAL_NODES = 128;
+
+	/**
+	 * The node at every point of the ring.
+	 */
+	private volatile TreeMap<Long, String> ring = new TreeMap<>();
+	/**
+	 * The nodes on the ring.
+	 */
+	private volatile Set<String> nodes = Collections.emptySet();
+
+	/**
+	 * Adds a node to the ring.
+	 *
+	 * @param node  the name of the node, not null
+	 * @return true if the node was added, false if it was already on the ring
+	 */
+	public synchronized boolean add(String node) {
+		if (nodes.contains(node)) {
+			return false;
+		}
+
+		TreeMap<Long, String> newRing = new TreeMap<>(ring);
+
+		for (int i = 0; i < VIRTUAL_NODES; i++) {
+			newRing.put(UrlFingerprint.of(node + "#" + i), node);
+		}
+
+		Set<String> newNodes = new TreeSet<>(nodes);
+		newNodes.add(node);
+
+		ring = newRing;
+		nodes = Collections.unmodifiableSet(newNodes);
+
+		return true;
+	}
+
+	/**
+	 * Removes a node from the ring.
+	 *
+	 * @param node  the name of the node, not null
+	 * @return true if the node was removed, false if it was not on the ring
+	 */
+	public synchronized boolean remove(String node) {
+		if (!nodes.contains(node)) {
+			return false;
+		}
+
+		TreeMap<Long, String> newRing = new TreeMap<>(ring);
+		newRing.values().removeIf(node::equals);
+
+		Set<String> newNodes = new TreeSet<>(nodes);
+		newNodes.remove(node);
+
+		ring = newRing;
+		nodes = Collections.unmodifiableSet(newNodes);
+
+		return true;
+	}
+
+	/**
+	 * Returns the node a URL belongs to.
+	 *
+	 * @param url  the URL, not null
+	 * @return the name of the node, null if the ring is empty
+	 */
+	public String getOwner(String url) {
+		TreeMap<Long, String> current = ring;
+
+		if (current.isEmpty()) {
+			return null;
+		}
+
+		Map.Entry<Long, String> point = current.ceilingEntry(UrlFingerprint.of(getKey(url)));
+
+		return point != null ? point.getValue() : current.firstEntry().getValue();
+	}
+
+	/**
+	 * @return the nodes on the ring, sorted by name, not null
+	 */
+	public Set<String> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Returns the part of a URL that decides its node: the host and the path, without the scheme,
+	 * the query or the fragment.
+	 *
+	 * @param url  the URL, not null
+	 * @return the key of the URL, not null
+	 */
+	static String getKey(String url) {
+		int start = url.indexOf("://");
+		start = start < 0 ? 0 : start + 3;
+		int end = start;
+
+		while (end < url.length()) {
+			char c = url.charAt(end);
+
+			if (c == '?' || c == '#') {
+				break;
+			}
+
+			end++;
+		}
+
+		return url.substring(start, end);
+	}
+}
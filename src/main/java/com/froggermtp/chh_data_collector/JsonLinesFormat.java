@@ -0,0 +1,76 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes {@link MusicData} as JSON Lines, one JSON object per line.
+ * <p>
+ * Missing values are written as {@code null}.
+ */
+public class JsonLinesFormat implements MusicDataFormat {
+
+	@Override
+	public void write(MusicData data, OutputStream out) throws IOException {
+		StringBuilder line = new StringBuilder();
+		
+		line.append("{\"url\":");
+		appendValue(line, data.getUrl());
+		line.append(",\"project\":");
+		appendValue(line, data.getProject());
+		line.append(",\"artist\":");
+		appendValue(line, data.getArtist());
+		line.append(",\"date\":");
+		appendValue(line, data.getDate());
+		line.append("}\n");
+		
+		out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Appends a value as a JSON string, escaping the characters that JSON does not allow in one.
+	 * 
+	 * @param line  the line to append to, not null
+	 * @param value  the value to append, null if it is missing
+	 */
+	private static void appendValue(StringBuilder line, String value) {
+		if (value == null) {
+			line.append("null");
+			return;
+		}
+		
+		line.append('"');
+		
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			
+			switch (c) {
+			case '"':
+				line.append("\\\"");
+				break;
+			case '\\':
+				line.append("\\\\");
+				break;
+			case '\n':
+				line.append("\\n");
+				break;
+			case '\r':
+				line.append("\\r");
+				break;
+			case '\t':
+				line.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					line.append(String.format("\\u%04x", (int) c));
+				} else {
+					line.append(c);
+				}
+				break;
+			}
+		}
+		
+		line.append('"');
+	}
+}
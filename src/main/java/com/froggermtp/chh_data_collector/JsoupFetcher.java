@@ -0,0 +1,110 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.IOException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+
+/**
+ * A {@link PageFetcher} that opens a new connection with {@code JSoup} for every request.
+ * <p>
+ * Redirects are followed, and responses with an error status code are reported as an
+ * {@code HttpStatusException}, or as a {@link RetryAfterException} if the server sent a
+ * {@code Retry-After} header.
+ * <p>
+ * Responses of any content type are read, since sitemaps are often served as
+ * {@code application/x-gzip} or {@code application/octet-stream}, and it is up to the caller to
+ * decide what it can parse.
+ */
+public class JsoupFetcher implements PageFetcher {
+	/**
+	 * The amount of milliseconds to wait for the server before giving up.
+	 */
+	private final int timeout;
+	/**
+	 * The largest number of bytes read from the body of a response, zero for no limit.
+	 */
+	private final int maxBodySize;
+	
+	/**
+	 * Creates a fetcher that reads up to {@code JSoup}'s default maximum body size of a response.
+	 * 
+	 * @param timeout  the amount of milliseconds to wait for the server before giving up
+	 */
+	public JsoupFetcher(int timeout) {
+		this(timeout, 1024 * 1024);
+	}
+	
+	/**
+	 * @param timeout  the amount of milliseconds to wait for the server before giving up
+	 * @param maxBodySize  the largest number of bytes read from the body of a response, after
+	 * which it is cut off, zero for no limit
+	 */
+	public JsoupFetcher(int timeout, int maxBodySize) {
+		this.timeout = timeout;
+		this.maxBodySize = maxBodySize;
+	}
+
+	@Override
+	public FetchedPage fetch(String url, Map<String, String> requestHeaders) throws IOException {
+		Connection.Response response = Jsoup.connect(url)
+				.timeout(timeout)
+				.maxBodySize(maxBodySize)
+				.headers(requestHeaders)
+				.ignoreHttpErrors(true)
+				.ignoreContentType(true)
+				.execute();
+		
+		// Redirects are followed, so the page is located at the final URL of the response
+		String finalUrl = response.url().toExternalForm();
+		
+		if (response.statusCode() >= 400) {
+			long retryAfter = parseRetryAfter(response.header("Retry-After"), System.currentTimeMillis());
+			
+			if (retryAfter >= 0) {
+				throw new RetryAfterException(response.statusCode(), finalUrl, retryAfter);
+			}
+			
+			throw new HttpStatusException("HTTP error fetching URL", response.statusCode(), finalUrl);
+		}
+		
+		return new FetchedPage(finalUrl, response.statusCode(), response.headers(), response.bodyAsBytes());
+	}
+	
+	/**
+	 * Parses the value of a {@code Retry-After} header, which is either an amount of seconds or
+	 * an HTTP date.
+	 * 
+	 * @param value  the value of the header, null if there is none
+	 * @param now  the current time in milliseconds
+	 * @return the amount of milliseconds to wait, negative if the value is missing or invalid
+	 */
+	static long parseRetryAfter(String value, long now) {
+		if (value == null) {
+			return -1;
+		}
+		
+		value = value.trim();
+		
+		try {
+			long seconds = Long.parseLong(value);
+			
+			return seconds >= 0 ? seconds * 1000 : -1;
+		} catch (NumberFormatException e) {
+			// Not an amount of seconds, so it should be a date
+		}
+		
+		SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("GMT"));
+		Date date = format.parse(value, new ParsePosition(0));
+		
+		return date != null ? Math.max(0, date.getTime() - now) : -1;
+	}
+}
@@ -0,0 +1,163 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the distribution of latencies with a fixed amount of memory.
+ * <p>
+ * Latencies are counted in log-linear buckets: every power of two is split into eight
+ * buckets of equal width, so a percentile is reported at most 12.5% above the true value,
+ * whatever the scale of the latencies.
+ * Recording a latency is a few arithmetic operations and one atomic increment, without any
+ * locking or allocation.
+ * <p>
+ * This class is thread-safe.
+ */
+public class LatencyHistogram {
+	/**
+	 * The number of bits of each value that select a bucket within its power of two.
+	 */
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+	/**
+	 * The number of values recorded in each bucket.
+	 */
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+	/**
+	 * The number of values recorded.
+	 */
+	private final LongAdder count = new LongAdder();
+	/**
+	 * The sum of the values recorded.
+	 */
+	private final LongAdder sum = new LongAdder();
+	/**
+	 * The largest value recorded.
+	 */
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a latency.
+	 *
+	 * @param nanos  the latency in nanoseconds, negative values are recorded as zero
+	 */
+	public void record(long nanos) {
+		long value = Math.max(nanos, 0);
+
+		buckets.incrementAndGet(getBucket(value));
+		count.increment();
+		sum.add(value);
+
+		long currentMax;
+
+		while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)) {
+			// Another thread raised the max, so check again
+		}
+	}
+
+	/**
+	 * @return the number of latencies recorded
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return the sum of the latencies recorded in nanoseconds
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+
+	/**
+	 * @return the largest latency recorded in nanoseconds, zero if none has been recorded
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @return the mean latency in nanoseconds, zero if none has been recorded
+	 */
+	public double getMean() {
+		long n = count.sum();
+
+		return n == 0 ? 0 : (double) sum.sum() / n;
+	}
+
+	/**
+	 * Estimates a percentile of the latencies recorded.
+	 * <p>
+	 * The estimate is the upper bound of the bucket that holds the percentile, capped at the
+	 * largest latency recorded.
+	 *
+	 * @param quantile  the percentile as a fraction, from zero to one
+	 * @return the latency in nanoseconds, zero if none has been recorded
+	 */
+	public long getPercentile(double quantile) {
+		if (quantile < 0 || quantile > 1) {
+			throw new IllegalArgumentException("Quantile must be between zero and one: " + quantile);
+		}
+
+		long total = 0;
+		long[] counts = new long[BUCKET_COUNT];
+
+		// Read the buckets once, so that the total matches the counts that are walked
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(quantile * total));
+		long seen = 0;
+
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts[i];
+
+			if (seen >= rank) {
+				return Math.min(getUpperBound(i), max.get());
+			}
+		}
+
+		return max.get();
+	}
+
+	/**
+	 * @param value  a value, not negative
+	 * @return the index of the bucket that counts the value
+	 */
+	static int getBucket(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	/**
+	 * @param bucket  the index of a bucket
+	 * @return the largest value counted by the bucket
+	 */
+	static long getUpperBound(int bucket) {
+		if (bucket < SUB_BUCKET_COUNT) {
+			return bucket;
+		}
+
+		int exponent = bucket / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+		long subBucket = bucket % SUB_BUCKET_COUNT;
+		long lowerBound = (SUB_BUCKET_COUNT + subBucket) << (exponent - SUB_BUCKET_BITS);
+
+		return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+}
@@ -0,0 +1,437 @@
+package com.froggermtp.chh_data_collector;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import org.jsoup.helper.StringUtil;
+import org.jsoup.parser.Parser;
+
+/**
+ * Extracts the links of a page straight from the bytes of the response, without building a
+ * {@code Document}.
+ * <p>
+ * The extractor makes a single pass over the bytes, looking only at the tags it needs:
+ * {@code <a href>}, {@code <base href>}, {@code <title>} and {@code <time>}.
+ * Comments and the contents of {@code <script>} and {@code <style>} elements are skipped, and no
+ * tree is built, so only the extracted values are ever decoded into strings.
+ * The links are resolved against the page's URL, or its {@code <base href>}, the same way
+ * {@code Element.attr("abs:href")} does, and links that cannot be resolved are left out.
+ * <p>
+ * Because the markup is scanned byte by byte, this only works for charsets in which the ASCII
+ * characters are encoded as single ASCII bytes, such as UTF-8 and the ISO-8859 family.
+ * Use {@link #supports(Charset)} to check a charset before extracting.
+ */
+public final class LinkExtractor {
+	private static final Pattern DECIMAL_ENTITY = Pattern.compile("#[0-9]{1,7}");
+	private static final Pattern HEX_ENTITY = Pattern.compile("#[xX][0-9a-fA-F]{1,6}");
+
+	private LinkExtractor() {
+	}
+
+	/**
+	 * Determines whether the extractor can scan pages encoded in a charset.
+	 *
+	 * @param charset  the charset of the page, not null
+	 * @return true if the charset encodes ASCII as single ASCII bytes, otherwise returns false
+	 */
+	public static boolean supports(Charset charset) {
+		final String MARKUP = "<a href=\"/\">";
+
+		return charset.canEncode()
+				&& MARKUP.equals(new String(MARKUP.getBytes(charset), StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * Extracts the links, the title and the first time element of a page.
+	 *
+	 * @param url  the URL of the page, used to resolve relative links, not null
+	 * @param body  the bytes of the page, not null
+	 * @param length  the number of bytes of the page in {@code body}
+	 * @param charset  the charset of the page, which must be {@linkplain #supports(Charset) supported}
+	 * @return the extracted links and metadata, not null
+	 */
+	public static PageLinks extract(String url, byte[] body, int length, Charset charset) {
+		List<String> links = new ArrayList<>();
+		Base base = new Base(url);
+		boolean hasBase = false;
+		String title = null;
+		String time = null;
+
+		int i = 0;
+
+		while ((i = indexOf(body, (byte) '<', i, length)) >= 0) {
+			i++;
+
+			if (startsWithIgnoreCase(body, i, length, "!--")) {
+				i = indexOfIgnoreCase(body, "-->", i + 3, length);
+
+				if (i < 0) {
+					break;
+				}
+
+				continue;
+			}
+
+			int nameEnd = i;
+
+			while (nameEnd < length && isNameByte(body[nameEnd])) {
+				nameEnd++;
+			}
+
+			Tag tag = Tag.of(body, i, nameEnd);
+
+			if (tag == Tag.OTHER) {
+				i = nameEnd;
+				continue;
+			}
+
+			// Scan the attributes up to the end of the tag
+			String href = null;
+			int p = nameEnd;
+
+			while (p < length && body[p] != '>') {
+				if (isWhitespace(body[p]) || body[p] == '/') {
+					p++;
+					continue;
+				}
+
+				int attributeStart = p;
+
+				while (p < length && !isWhitespace(body[p]) && body[p] != '=' && body[p] != '>'
+						&& body[p] != '/') {
+					p++;
+				}
+
+				int attributeEnd = p;
+
+				if (attributeEnd == attributeStart) {
+					// A stray character, such as a quote, so skip over it
+					p++;
+					continue;
+				}
+
+				while (p < length && isWhitespace(body[p])) {
+					p++;
+				}
+
+				if (p >= length || body[p] != '=') {
+					continue;
+				}
+
+				p++;
+
+				while (p < length && isWhitespace(body[p])) {
+					p++;
+				}
+
+				int valueStart;
+				int valueEnd;
+
+				if (p < length && (body[p] == '"' || body[p] == '\'')) {
+					valueStart = p + 1;
+					valueEnd = indexOf(body, body[p], valueStart, length);
+
+					if (valueEnd < 0) {
+						valueEnd = length;
+					}
+
+					p = valueEnd + 1;
+				} else {
+					valueStart = p;
+
+					while (p < length && !isWhitespace(body[p]) && body[p] != '>') {
+						p++;
+					}
+
+					valueEnd = p;
+				}
+
+				if (href == null && (tag == Tag.A || tag == Tag.BASE)
+						&& equalsIgnoreCase(body, attributeStart, attributeEnd, "href")) {
+					href = decode(body, valueStart, valueEnd, charset).trim();
+				}
+			}
+
+			int contentStart = p + 1;
+			i = contentStart;
+
+			switch (tag) {
+			case A:
+				if (href != null) {
+					String link = base.resolve(href);
+
+					if (!link.isEmpty()) {
+						links.add(link);
+					}
+				}
+				break;
+			case BASE:
+				// Only the first base element counts
+				if (href != null && !hasBase) {
+					String resolved = base.resolve(href);
+
+					if (!resolved.isEmpty()) {
+						base = new Base(resolved);
+					}
+
+					hasBase = true;
+				}
+				break;
+			case TITLE:
+			case TIME:
+			case SCRIPT:
+			case STYLE:
+				int contentEnd = indexOfIgnoreCase(body, tag.closingTag, contentStart, length);
+
+				if (contentEnd < 0) {
+					contentEnd = length;
+				}
+
+				if (tag == Tag.TITLE && title == null) {
+					title = text(body, contentStart, contentEnd, charset);
+				} else if (tag == Tag.TIME && time == null) {
+					time = text(body, contentStart, contentEnd, charset);
+				}
+
+				i = contentEnd;
+				break;
+			default:
+				break;
+			}
+		}
+
+		return new PageLinks(url, links, title, time);
+	}
+
+	/**
+	 * The URL that relative links are resolved against.
+	 * <p>
+	 * Most links on a page are either already absolute or relative to the root of the host, and
+	 * those are resolved by simple string operations.
+	 * Every other link is resolved with {@link StringUtil#resolve(URL, String)}.
+	 */
+	private static final class Base {
+		/**
+		 * The parsed URL, null if it could not be parsed.
+		 */
+		private final URL url;
+		/**
+		 * The scheme and authority of the URL, such as {@code http://www.rapzilla.com}.
+		 */
+		private final String origin;
+		
+		private Base(String url) {
+			URL parsed;
+			
+			try {
+				parsed = new URL(url);
+			} catch (MalformedURLException e) {
+				parsed = null;
+			}
+			
+			this.url = parsed;
+			this.origin = parsed != null ? parsed.getProtocol() + "://" + parsed.getAuthority() : null;
+		}
+		
+		/**
+		 * @param href  the link to resolve, not null
+		 * @return the absolute URL of the link, empty if it cannot be resolved
+		 */
+		private String resolve(String href) {
+			if (url == null) {
+				return "";
+			}
+			
+			if (isSimple(href)) {
+				if (href.startsWith("http://") || href.startsWith("https://")) {
+					return href;
+				}
+				
+				if (href.startsWith("/") && !href.startsWith("//")) {
+					return origin + href;
+				}
+			}
+			
+			try {
+				return StringUtil.resolve(url, href).toExternalForm();
+			} catch (MalformedURLException e) {
+				return "";
+			}
+		}
+		
+		/**
+		 * Determines whether a link can be used as is, because it contains no dot segments and no
+		 * characters that {@code URL} would change.
+		 * 
+		 * @param href  the link, not null
+		 * @return true if the link can be used as is, otherwise returns false
+		 */
+		private static boolean isSimple(String href) {
+			for (int i = 0; i < href.length(); i++) {
+				char c = href.charAt(i);
+				
+				if (c <= ' ' || c == '\\' || c >= 127) {
+					return false;
+				}
+				
+				if (c == '.' && i > 0 && href.charAt(i - 1) == '/' 
+						&& (i + 1 == href.length() || href.charAt(i + 1) == '/' || href.charAt(i + 1) == '.')) {
+					return false;
+				}
+			}
+			
+			return true;
+		}
+	}
+	
+	/**
+	 * The tags that the extractor looks at.
+	 */
+	private enum Tag {
+		A, BASE, TITLE, TIME, SCRIPT, STYLE, OTHER;
+
+		/**
+		 * The start of the closing tag, used to find the end of the element's contents.
+		 */
+		private final String closingTag = "</" + name().toLowerCase(Locale.ROOT);
+
+		/**
+		 * @return the tag whose name is the bytes from {@code start} to {@code end}, not null
+		 */
+		private static Tag of(byte[] bytes, int start, int end) {
+			for (Tag tag : values()) {
+				if (tag != OTHER && equalsIgnoreCase(bytes, start, end, tag.name())) {
+					return tag;
+				}
+			}
+
+			return OTHER;
+		}
+	}
+
+	/**
+	 * Decodes the text content of an element, unescaping entities and normalizing whitespace.
+	 */
+	private static String text(byte[] bytes, int start, int end, Charset charset) {
+		return StringUtil.normaliseWhitespace(decode(bytes, start, end, charset)).trim();
+	}
+
+	/**
+	 * Decodes a range of bytes, unescaping any html entities.
+	 */
+	private static String decode(byte[] bytes, int start, int end, Charset charset) {
+		String value = new String(bytes, start, end - start, charset);
+
+		return value.indexOf('&') >= 0 ? unescape(value) : value;
+	}
+
+	/**
+	 * Unescapes the html entities in a string.
+	 * <p>
+	 * The entities that are common in links are unescaped directly, and any other entity is left
+	 * to {@link Parser#unescapeEntities(String, boolean)}, which is much more expensive.
+	 */
+	private static String unescape(String value) {
+		StringBuilder builder = new StringBuilder(value.length());
+		int i = 0;
+
+		while (i < value.length()) {
+			char c = value.charAt(i);
+
+			if (c != '&') {
+				builder.append(c);
+				i++;
+				continue;
+			}
+
+			int semicolon = value.indexOf(';', i);
+
+			if (semicolon < 0) {
+				return Parser.unescapeEntities(value, true);
+			}
+
+			String entity = value.substring(i + 1, semicolon);
+
+			if (entity.equals("amp")) {
+				builder.append('&');
+			} else if (entity.equals("quot")) {
+				builder.append('"');
+			} else if (entity.equals("apos")) {
+				builder.append('\'');
+			} else if (entity.equals("lt")) {
+				builder.append('<');
+			} else if (entity.equals("gt")) {
+				builder.append('>');
+			} else if (DECIMAL_ENTITY.matcher(entity).matches() 
+					&& Character.isValidCodePoint(Integer.parseInt(entity.substring(1)))) {
+				builder.appendCodePoint(Integer.parseInt(entity.substring(1)));
+			} else if (HEX_ENTITY.matcher(entity).matches()
+					&& Character.isValidCodePoint(Integer.parseInt(entity.substring(2), 16))) {
+				builder.appendCodePoint(Integer.parseInt(entity.substring(2), 16));
+			} else {
+				return Parser.unescapeEntities(value, true);
+			}
+
+			i = semicolon + 1;
+		}
+
+		return builder.toString();
+	}
+
+	private static int indexOf(byte[] bytes, byte b, int from, int length) {
+		for (int i = from; i < length; i++) {
+			if (bytes[i] == b) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	private static int indexOfIgnoreCase(byte[] bytes, String ascii, int from, int length) {
+		for (int i = from; i <= length - ascii.length(); i++) {
+			if (startsWithIgnoreCase(bytes, i, length, ascii)) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	private static boolean startsWithIgnoreCase(byte[] bytes, int offset, int length, String ascii) {
+		return offset + ascii.length() <= length
+				&& equalsIgnoreCase(bytes, offset, offset + ascii.length(), ascii);
+	}
+
+	private static boolean equalsIgnoreCase(byte[] bytes, int start, int end, String ascii) {
+		if (end - start != ascii.length()) {
+			return false;
+		}
+
+		for (int i = 0; i < ascii.length(); i++) {
+			if (toLowerCase(bytes[start + i]) != toLowerCase((byte) ascii.charAt(i))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static byte toLowerCase(byte b) {
+		return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+	}
+
+	private static boolean isNameByte(byte b) {
+		return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9');
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+	}
+}
@@ -0,0 +1,54 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Frontier} that keeps all of its URLs on the heap.
+ */
+public class MemoryFrontier implements Frontier {
+	/**
+	 * Contains all the URLs in the frontier.
+	 */
+	private final Queue<String> urls = new ConcurrentLinkedQueue<>();
+	/**
+	 * The number of URLs in the frontier.
+	 * <p>
+	 * {@link ConcurrentLinkedQueue#size()} walks the whole queue, so the size is tracked separately.
+	 */
+	private final AtomicLong size = new AtomicLong();
+
+	@Override
+	public void add(String url) {
+		size.incrementAndGet();
+		urls.add(url);
+	}
+
+	@Override
+	public String poll() {
+		String url = urls.poll();
+		
+		if (url != null) {
+			size.decrementAndGet();
+		}
+		
+		return url;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return urls.isEmpty();
+	}
+
+	@Override
+	public long size() {
+		return size.get();
+	}
+
+	@Override
+	public void close() {
+		urls.clear();
+		size.set(0);
+	}
+}
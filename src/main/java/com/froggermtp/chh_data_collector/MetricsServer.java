@@ -0,0 +1,130 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Exposes {@link CrawlMetrics} over JMX and, optionally, a local HTTP endpoint.
+ * <p>
+ * The metrics are registered as an MXBean named
+ * {@code com.froggermtp.chh_data_collector:type=CrawlMetrics,name=<name>}.
+ * The HTTP endpoint only listens on the loopback address, and serves the metrics in the
+ * Prometheus text format at {@code /metrics}.
+ */
+public class MetricsServer implements AutoCloseable {
+	private static final Logger logger = LoggerFactory.getLogger(MetricsServer.class);
+	
+	/**
+	 * The metrics that are exposed.
+	 */
+	private final CrawlMetrics metrics;
+	/**
+	 * The name the MXBean is registered under, null if it could not be registered.
+	 */
+	private final ObjectName objectName;
+	/**
+	 * The HTTP endpoint, null if it is disabled.
+	 */
+	private final HttpServer httpServer;
+	
+	/**
+	 * Registers the MXBean and starts the HTTP endpoint.
+	 * 
+	 * @param metrics  the metrics to expose, not null
+	 * @param name  the name of the crawl, used to tell crawls in the same JVM apart, not null
+	 * @param port  the port of the HTTP endpoint, zero for any free port, negative to disable it
+	 * @throws UncheckedIOException if the HTTP endpoint cannot be started
+	 */
+	public MetricsServer(CrawlMetrics metrics, String name, int port) {
+		this.metrics = metrics;
+		this.objectName = register(metrics, name);
+		this.httpServer = port >= 0 ? startHttpServer(port) : null;
+	}
+	
+	/**
+	 * @return the port of the HTTP endpoint, -1 if it is disabled
+	 */
+	public int getPort() {
+		return httpServer != null ? httpServer.getAddress().getPort() : -1;
+	}
+	
+	/**
+	 * Unregisters the MXBean and stops the HTTP endpoint.
+	 */
+	@Override
+	public void close() {
+		if (httpServer != null) {
+			httpServer.stop(0);
+		}
+		
+		if (objectName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			} catch (JMException e) {
+				logger.warn("Could not unregister the metrics MXBean {}", objectName, e);
+			}
+		}
+	}
+	
+	/**
+	 * @return the name the MXBean was registered under, null if it could not be registered
+	 */
+	private static ObjectName register(CrawlMetrics metrics, String name) {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		
+		try {
+			ObjectName objectName = new ObjectName(
+					"com.froggermtp.chh_data_collector:type=CrawlMetrics,name=" + ObjectName.quote(name));
+			server.registerMBean(metrics, objectName);
+			
+			return objectName;
+		} catch (JMException e) {
+			// Most likely another crawl with the same name is running in this JVM
+			logger.warn("Could not register the metrics MXBean for {}", name, e);
+			
+			return null;
+		}
+	}
+	
+	private HttpServer startHttpServer(int port) {
+		try {
+			HttpServer server = HttpServer.create(
+					new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+			server.createContext("/metrics", this::handle);
+			server.start();
+			
+			logger.info("Serving crawl metrics at http://localhost:{}/metrics", 
+					server.getAddress().getPort());
+			
+			return server;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not start the metrics endpoint on port " + port, e);
+		}
+	}
+	
+	private void handle(HttpExchange exchange) throws IOException {
+		byte[] body = metrics.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+		
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+		exchange.sendResponseHeaders(200, body.length);
+		
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+}
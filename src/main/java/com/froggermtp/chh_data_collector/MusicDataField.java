@@ -0,0 +1,23 @@
+package com.froggermtp.chh_data_collector;
+
+/**
+ * The fields of {@link MusicData} that are scraped from a page.
+ * <p>
+ * The URL is not scraped, as it is the location of the page.
+ *
+ * @see ExtractionSpec
+ */
+public enum MusicDataField {
+	/**
+	 * The name of the song or project.
+	 */
+	PROJECT,
+	/**
+	 * The name of the artist.
+	 */
+	ARTIST,
+	/**
+	 * The date of when the article was released.
+	 */
+	DATE
+}
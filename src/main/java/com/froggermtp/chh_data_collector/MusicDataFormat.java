@@ -0,0 +1,32 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Encodes {@link MusicData} records for a {@link MusicDataSink}.
+ * <p>
+ * Implementations must be stateless, so that a format can be shared by any number of sinks.
+ */
+public interface MusicDataFormat {
+	/**
+	 * Writes whatever must come before the first record of a new file.
+	 * <p>
+	 * By default, nothing is written.
+	 * 
+	 * @param out  the stream to write to, not null
+	 * @throws IOException if the stream cannot be written
+	 */
+	default void writeHeader(OutputStream out) throws IOException {
+		// Do nothing by default
+	}
+	
+	/**
+	 * Writes a single record.
+	 * 
+	 * @param data  the record to write, not null
+	 * @param out  the stream to write to, not null
+	 * @throws IOException if the stream cannot be written
+	 */
+	void write(MusicData data, OutputStream out) throws IOException;
+}
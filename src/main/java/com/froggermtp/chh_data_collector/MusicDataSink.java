@@ -0,0 +1,26 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.Closeable;
+
+/**
+ * Receives the {@link MusicData} scraped by a web crawler.
+ * <p>
+ * Implementations must be thread-safe.
+ */
+public interface MusicDataSink extends Closeable {
+	/**
+	 * Hands a record to the sink.
+	 * <p>
+	 * The record may be written at a later time.
+	 * If the sink cannot keep up, this method blocks until it can accept the record.
+	 * 
+	 * @param data  the record to write, not null
+	 */
+	void write(MusicData data);
+	
+	/**
+	 * Writes every record handed to the sink, and releases its resources.
+	 */
+	@Override
+	void close();
+}
@@ -0,0 +1,542 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * A read-only, columnar store of {@link MusicData}, kept in a memory-mapped file.
+ * <p>
+ * The records are stored column by column:
+ * <p><ul>
+ * <li>The URLs are stored as a table of UTF-8 strings.
+ * <li>The artists and projects are dictionary-encoded, so every record only holds the id of its
+ * artist and project, and every distinct name is stored once.
+ * The dictionaries are sorted, so a name is looked up by binary search.
+ * <li>The dates are parsed and stored as epoch days.
+ * </ul>
+ * <p>
+ * Two indexes are stored along with the columns.
+ * The artist index lists the records of every artist, ordered by date.
+ * The date index lists every record that has a date, ordered by date, so a date range is found by
+ * binary search.
+ * <p>
+ * Opening a store only maps the file and reads its footer, and queries read only the parts of
+ * the file they need, so neither depends on deserializing every record.
+ * <p>
+ * Dates that cannot be parsed are dropped, and the dates of the records read back from the
+ * store are formatted as ISO dates, such as {@code 2017-06-01}.
+ * <p>
+ * This class is thread-safe.
+ */
+public class MusicDataStore {
+	/**
+	 * The epoch day stored for records without a date.
+	 */
+	static final int NO_DATE = Integer.MIN_VALUE;
+	/**
+	 * The id stored for a missing artist or project.
+	 */
+	private static final int NO_ID = -1;
+	/**
+	 * Identifies the files written by this class, and the version of their format.
+	 */
+	private static final int MAGIC = 0x43484802;
+	/**
+	 * The number of ints in the footer.
+	 */
+	private static final int FOOTER_INTS = 13;
+	/**
+	 * The date formats that are recognized, tried in order.
+	 */
+	private static final List<DateTimeFormatter> DATE_FORMATS = Arrays.asList(
+			DateTimeFormatter.ISO_LOCAL_DATE,
+			dateFormat("EEEE, d MMMM yyyy HH:mm"),
+			dateFormat("EEEE, d MMMM yyyy"),
+			dateFormat("d MMMM yyyy"),
+			dateFormat("MMMM d, yyyy"));
+
+	/**
+	 * The mapped contents of the file.
+	 * <p>
+	 * Only absolute reads are made, so the buffer can be shared by any number of threads.
+	 */
+	private final ByteBuffer buffer;
+	/**
+	 * The number of records in the store.
+	 */
+	private final int recordCount;
+	/**
+	 * The number of records that have a date, which are the records in the date index.
+	 */
+	private final int datedRecordCount;
+	/**
+	 * The sorted dictionary of artists.
+	 */
+	private final StringTable artists;
+	/**
+	 * The sorted dictionary of projects.
+	 */
+	private final StringTable projects;
+	/**
+	 * The URL of every record.
+	 */
+	private final StringTable urls;
+	/**
+	 * The start of the artist id of every record.
+	 */
+	private final int artistColumn;
+	/**
+	 * The start of the project id of every record.
+	 */
+	private final int projectColumn;
+	/**
+	 * The start of the epoch day of every record.
+	 */
+	private final int dateColumn;
+	/**
+	 * The start of the offsets of the artist index, one for each artist and one past the last.
+	 */
+	private final int artistIndexOffsets;
+	/**
+	 * The start of the record ids of the artist index.
+	 */
+	private final int artistIndexRecords;
+	/**
+	 * The start of the record ids of the date index.
+	 */
+	private final int dateIndex;
+
+	/**
+	 * Opens a store written by {@link #write(Path, Collection)}.
+	 *
+	 * @param file  the file of the store, not null
+	 * @throws UncheckedIOException if the file cannot be read, or is not a store
+	 */
+	public MusicDataStore(Path file) {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			// The mapping stays valid after the channel is closed
+			this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not open the music data store " + file, e);
+		}
+
+		int footer = buffer.limit() - FOOTER_INTS * Integer.BYTES;
+
+		if (footer < 0 || buffer.getInt(buffer.limit() - Integer.BYTES) != MAGIC) {
+			throw new UncheckedIOException(new IOException("Not a music data store: " + file));
+		}
+
+		this.recordCount = buffer.getInt(footer);
+		this.datedRecordCount = buffer.getInt(footer + 4);
+		this.artists = new StringTable(buffer.getInt(footer + 8), buffer.getInt(footer + 12));
+		this.projects = new StringTable(buffer.getInt(footer + 16), buffer.getInt(footer + 20));
+		this.urls = new StringTable(buffer.getInt(footer + 24), recordCount);
+		this.artistColumn = buffer.getInt(footer + 28);
+		this.projectColumn = buffer.getInt(footer + 32);
+		this.dateColumn = buffer.getInt(footer + 36);
+		this.artistIndexOffsets = buffer.getInt(footer + 40);
+		this.artistIndexRecords = artistIndexOffsets + (artists.count + 1) * Integer.BYTES;
+		this.dateIndex = buffer.getInt(footer + 44);
+	}
+
+	/**
+	 * @return the number of records in the store
+	 */
+	public int size() {
+		return recordCount;
+	}
+
+	/**
+	 * @return the number of distinct artists in the store
+	 */
+	public int getArtistCount() {
+		return artists.count;
+	}
+
+	/**
+	 * Reads a single record.
+	 *
+	 * @param index  the index of the record, from zero to {@link #size()}, exclusive
+	 * @return the record, not null
+	 */
+	public MusicData get(int index) {
+		if (index < 0 || index >= recordCount) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + recordCount);
+		}
+
+		int artistId = buffer.getInt(artistColumn + index * Integer.BYTES);
+		int projectId = buffer.getInt(projectColumn + index * Integer.BYTES);
+		int date = getEpochDay(index);
+
+		return new MusicData(
+				urls.get(index),
+				projectId == NO_ID ? null : projects.get(projectId),
+				artistId == NO_ID ? null : artists.get(artistId),
+				date == NO_DATE ? null : LocalDate.ofEpochDay(date).toString());
+	}
+
+	/**
+	 * @param index  the index of the record, from zero to {@link #size()}, exclusive
+	 * @return the date of the record in epoch days, {@code NO_DATE} if it has no date
+	 */
+	int getEpochDay(int index) {
+		return buffer.getInt(dateColumn + index * Integer.BYTES);
+	}
+
+	/**
+	 * Finds all the releases of an artist.
+	 *
+	 * @param artist  the name of the artist, which must match exactly, not null
+	 * @return the releases of the artist, ordered by date, with the undated releases first, not null
+	 */
+	public List<MusicData> findByArtist(String artist) {
+		int artistId = artists.indexOf(artist);
+
+		if (artistId < 0) {
+			return new ArrayList<>();
+		}
+
+		int start = buffer.getInt(artistIndexOffsets + artistId * Integer.BYTES);
+		int end = buffer.getInt(artistIndexOffsets + (artistId + 1) * Integer.BYTES);
+		List<MusicData> releases = new ArrayList<>(end - start);
+
+		for (int i = start; i < end; i++) {
+			releases.add(get(buffer.getInt(artistIndexRecords + i * Integer.BYTES)));
+		}
+
+		return releases;
+	}
+
+	/**
+	 * Finds all the releases in a range of dates.
+	 *
+	 * @param from  the first date of the range, inclusive, not null
+	 * @param to  the last date of the range, inclusive, not null
+	 * @return the releases in the range, ordered by date, not null
+	 */
+	public List<MusicData> findByDateRange(LocalDate from, LocalDate to) {
+		List<MusicData> releases = new ArrayList<>();
+		long last = to.toEpochDay();
+
+		for (int i = lowerBound(from.toEpochDay()); i < datedRecordCount; i++) {
+			int index = buffer.getInt(dateIndex + i * Integer.BYTES);
+
+			if (getEpochDay(index) > last) {
+				break;
+			}
+
+			releases.add(get(index));
+		}
+
+		return releases;
+	}
+
+	/**
+	 * @param epochDay  the date to look for
+	 * @return the position in the date index of the first record on or after the date
+	 */
+	private int lowerBound(long epochDay) {
+		int low = 0;
+		int high = datedRecordCount;
+
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+
+			if (getEpochDay(buffer.getInt(dateIndex + mid * Integer.BYTES)) < epochDay) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+
+	/**
+	 * Writes a store holding the given records.
+	 * <p>
+	 * The file is replaced atomically, so a store that is being read is never seen half written.
+	 *
+	 * @param file  the file of the store, not null
+	 * @param records  the records to store, not null
+	 * @throws UncheckedIOException if the file cannot be written
+	 */
+	public static void write(Path file, Collection<MusicData> records) {
+		List<MusicData> list = new ArrayList<>(records);
+		int count = list.size();
+
+		String[] artistNames = sortedDistinct(list.stream().map(MusicData::getArtist).collect(Collectors.toList()));
+		String[] projectNames = sortedDistinct(list.stream().map(MusicData::getProject).collect(Collectors.toList()));
+		Map<String, Integer> artistIds = toIds(artistNames);
+		Map<String, Integer> projectIds = toIds(projectNames);
+
+		int[] artistColumn = new int[count];
+		int[] projectColumn = new int[count];
+		int[] dateColumn = new int[count];
+
+		for (int i = 0; i < count; i++) {
+			MusicData data = list.get(i);
+
+			artistColumn[i] = data.getArtist() == null ? NO_ID : artistIds.get(data.getArtist());
+			projectColumn[i] = data.getProject() == null ? NO_ID : projectIds.get(data.getProject());
+			dateColumn[i] = toEpochDay(data.getDate());
+		}
+
+		Comparator<Integer> byDate = Comparator.comparingInt((Integer i) -> dateColumn[i]).thenComparingInt(i -> i);
+
+		// The artist index groups the records by artist, and orders each group by date
+		List<Integer> byArtist = new ArrayList<>();
+
+		for (int i = 0; i < count; i++) {
+			if (artistColumn[i] != NO_ID) {
+				byArtist.add(i);
+			}
+		}
+
+		byArtist.sort(Comparator.comparingInt((Integer i) -> artistColumn[i]).thenComparing(byDate));
+
+		int[] artistOffsets = new int[artistNames.length + 1];
+
+		for (int i : byArtist) {
+			artistOffsets[artistColumn[i] + 1]++;
+		}
+
+		for (int i = 0; i < artistNames.length; i++) {
+			artistOffsets[i + 1] += artistOffsets[i];
+		}
+
+		List<Integer> byDateIndex = new ArrayList<>();
+
+		for (int i = 0; i < count; i++) {
+			if (dateColumn[i] != NO_DATE) {
+				byDateIndex.add(i);
+			}
+		}
+
+		byDateIndex.sort(byDate);
+
+		try {
+			Path parent = file.toAbsolutePath().getParent();
+			Files.createDirectories(parent);
+			Path temporaryFile = Files.createTempFile(parent, "store-", ".tmp");
+
+			try {
+				try (DataOutputStream out = new DataOutputStream(
+						new BufferedOutputStream(Files.newOutputStream(temporaryFile), 64 * 1024))) {
+					int artistTable = out.size();
+					writeStrings(out, Arrays.asList(artistNames));
+					int projectTable = out.size();
+					writeStrings(out, Arrays.asList(projectNames));
+					int urlTable = out.size();
+					writeStrings(out, list.stream().map(MusicData::getUrl).collect(Collectors.toList()));
+					int artistStart = out.size();
+					writeInts(out, artistColumn);
+					int projectStart = out.size();
+					writeInts(out, projectColumn);
+					int dateStart = out.size();
+					writeInts(out, dateColumn);
+					int artistIndexStart = out.size();
+					writeInts(out, artistOffsets);
+					writeInts(out, byArtist.stream().mapToInt(Integer::intValue).toArray());
+					int dateIndexStart = out.size();
+					writeInts(out, byDateIndex.stream().mapToInt(Integer::intValue).toArray());
+
+					// The size saturates once the file outgrows the int offsets
+					if (out.size() == Integer.MAX_VALUE) {
+						throw new IOException("Too many records for a music data store: " + count);
+					}
+
+					out.writeInt(count);
+					out.writeInt(byDateIndex.size());
+					out.writeInt(artistTable);
+					out.writeInt(artistNames.length);
+					out.writeInt(projectTable);
+					out.writeInt(projectNames.length);
+					out.writeInt(urlTable);
+					out.writeInt(artistStart);
+					out.writeInt(projectStart);
+					out.writeInt(dateStart);
+					out.writeInt(artistIndexStart);
+					out.writeInt(dateIndexStart);
+					out.writeInt(MAGIC);
+				}
+
+				Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(temporaryFile);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not write the music data store " + file, e);
+		}
+	}
+
+	/**
+	 * Parses a scraped date.
+	 *
+	 * @param date  the date to parse, null if there is no date
+	 * @return the date in epoch days, {@code NO_DATE} if there is no date or it cannot be parsed
+	 */
+	static int toEpochDay(String date) {
+		if (date == null) {
+			return NO_DATE;
+		}
+
+		String trimmed = date.trim();
+
+		for (DateTimeFormatter format : DATE_FORMATS) {
+			try {
+				return (int) LocalDate.from(format.parse(trimmed)).toEpochDay();
+			} catch (DateTimeParseException e) {
+				// Try the next format
+			}
+		}
+
+		return NO_DATE;
+	}
+
+	private static DateTimeFormatter dateFormat(String pattern) {
+		return new DateTimeFormatterBuilder()
+				.parseCaseInsensitive()
+				.appendPattern(pattern)
+				.toFormatter(Locale.ENGLISH);
+	}
+
+	/**
+	 * @param values  the values, which may contain nulls and duplicates, not null
+	 * @return the distinct values that are not null, in their natural order, not null
+	 */
+	private static String[] sortedDistinct(List<String> values) {
+		TreeSet<String> distinct = new TreeSet<>();
+
+		for (String value : values) {
+			if (value != null) {
+				distinct.add(value);
+			}
+		}
+
+		return distinct.toArray(new String[0]);
+	}
+
+	private static Map<String, Integer> toIds(String[] names) {
+		Map<String, Integer> ids = new HashMap<>();
+
+		for (int i = 0; i < names.length; i++) {
+			ids.put(names[i], i);
+		}
+
+		return ids;
+	}
+
+	/**
+	 * Writes a string table: the offset of every string, one past the last, then the UTF-8
+	 * bytes of all the strings.
+	 */
+	private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+		List<byte[]> encoded = new ArrayList<>(values.size());
+		int offset = 0;
+
+		for (String value : values) {
+			byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+			encoded.add(bytes);
+			out.writeInt(offset);
+			offset += bytes.length;
+		}
+
+		out.writeInt(offset);
+
+		for (byte[] bytes : encoded) {
+			out.write(bytes);
+		}
+	}
+
+	private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+		for (int value : values) {
+			out.writeInt(value);
+		}
+	}
+
+	/**
+	 * A table of UTF-8 strings within the mapped file.
+	 */
+	private final class StringTable {
+		/**
+		 * The start of the offsets of the strings.
+		 */
+		private final int start;
+		/**
+		 * The number of strings in the table.
+		 */
+		private final int count;
+		/**
+		 * The start of the bytes of the strings.
+		 */
+		private final int bytesStart;
+
+		private StringTable(int start, int count) {
+			this.start = start;
+			this.count = count;
+			this.bytesStart = start + (count + 1) * Integer.BYTES;
+		}
+
+		private String get(int index) {
+			int from = buffer.getInt(start + index * Integer.BYTES);
+			int to = buffer.getInt(start + (index + 1) * Integer.BYTES);
+			byte[] bytes = new byte[to - from];
+
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = buffer.get(bytesStart + from + i);
+			}
+
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * Finds a string in a sorted table.
+		 *
+		 * @param value  the string to find, not null
+		 * @return the index of the string, -1 if the table does not contain it
+		 */
+		private int indexOf(String value) {
+			int low = 0;
+			int high = count - 1;
+
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				int comparison = get(mid).compareTo(value);
+
+				if (comparison < 0) {
+					low = mid + 1;
+				} else if (comparison > 0) {
+					high = mid - 1;
+				} else {
+					return mid;
+				}
+			}
+
+			return -1;
+		}
+	}
+}
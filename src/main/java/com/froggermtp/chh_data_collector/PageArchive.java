@@ -0,0 +1,385 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only file of fetched pages, so that a crawl can be replayed without the network.
+ * <p>
+ * Every page is appended as a record that starts with a small uncompressed header, holding the
+ * normalized URL the page was requested with, followed by the URL, status code, headers and body
+ * of the page, deflated as a block of their own.
+ * Since records are compressed one by one, any page can be read without reading the pages before
+ * it.
+ * <p>
+ * When the archive is opened, the record headers are scanned to build an in-memory index from
+ * URL to file offset, skipping over the compressed blocks.
+ * A URL that was archived more than once resolves to its latest record.
+ * A record that was cut short, because the process died while it was appended, is dropped
+ * from the end of the file.
+ * <p>
+ * This class is thread-safe.
+ */
+public class PageArchive implements Closeable {
+	private static final Logger logger = LoggerFactory.getLogger(PageArchive.class);
+
+	/**
+	 * Starts every record, and identifies the version of the record format.
+	 */
+	private static final int MAGIC = 0x43484803;
+	/**
+	 * The size of the fixed fields that precede the URL in a record header: the magic number and
+	 * the length of the URL.
+	 */
+	private static final int LEADING_HEADER_SIZE = 6;
+	/**
+	 * The size of the fixed fields that follow the URL in a record header: the uncompressed
+	 * length, the compressed length and the checksum of the compressed block.
+	 */
+	private static final int TRAILING_HEADER_SIZE = 12;
+
+	/**
+	 * The archive file.
+	 */
+	private final Path file;
+	/**
+	 * The open archive file.
+	 */
+	private final FileChannel channel;
+	/**
+	 * The offset of the latest record of every archived URL, by normalized URL.
+	 */
+	private final Map<String, Long> index = new ConcurrentHashMap<>();
+	/**
+	 * The offset at which the next record is appended.
+	 */
+	private long end = 0;
+
+	/**
+	 * Opens an archive, indexing any pages that were archived by an earlier run.
+	 *
+	 * @param file  the archive file, not null
+	 * @param isWritable  whether pages are appended to the archive, in which case the file is
+	 * created if it does not exist
+	 * @throws UncheckedIOException if the file cannot be opened or is not an archive
+	 */
+	public PageArchive(Path file, boolean isWritable) {
+		this.file = file;
+
+		try {
+			this.channel = isWritable
+					? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+					: FileChannel.open(file, StandardOpenOption.READ);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not open the page archive " + file, e);
+		}
+
+		try {
+			load(isWritable);
+		} catch (IOException e) {
+			close();
+
+			throw new UncheckedIOException("Could not read the page archive " + file, e);
+		}
+
+		logger.debug("Opened page archive {} with {} pages", file, index.size());
+	}
+
+	/**
+	 * Reads the latest archived page of a URL.
+	 *
+	 * @param url  the URL the page was requested with, not null
+	 * @return the page, null if the URL is not archived
+	 * @throws UncheckedIOException if the record cannot be read
+	 */
+	public FetchedPage get(String url) {
+		String key = ResponseCache.normalize(url);
+		Long offset = index.get(key);
+
+		if (offset == null) {
+			return null;
+		}
+
+		try {
+			return read(offset, key);
+		} catch (IOException | DataFormatException e) {
+			throw new UncheckedIOException("Could not read " + url + " from the page archive " + file,
+					e instanceof IOException ? (IOException) e : new IOException(e));
+		}
+	}
+
+	/**
+	 * @param url  the URL a page was requested with, not null
+	 * @return whether a page is archived for the URL
+	 */
+	public boolean contains(String url) {
+		return index.containsKey(ResponseCache.normalize(url));
+	}
+
+	/**
+	 * Appends a page to the archive.
+	 * <p>
+	 * The record is written with a single write, and only becomes visible to {@link #get(String)}
+	 * once it is complete.
+	 *
+	 * @param url  the URL the page was requested with, not null
+	 * @param page  the page to archive, not null
+	 * @throws UncheckedIOException if the record cannot be written
+	 */
+	public void put(String url, FetchedPage page) {
+		String key = ResponseCache.normalize(url);
+		ByteBuffer record = ByteBuffer.wrap(encode(key, page));
+
+		synchronized (this) {
+			long offset = end;
+
+			try {
+				while (record.hasRemaining()) {
+					channel.write(record, end + record.position());
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException("Could not archive " + url + " in " + file, e);
+			}
+
+			end += record.capacity();
+			index.put(key, offset);
+		}
+	}
+
+	/**
+	 * @return the number of archived URLs
+	 */
+	public int size() {
+		return index.size();
+	}
+
+	@Override
+	public void close() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			logger.warn("Could not close the page archive {}", file, e);
+		}
+	}
+
+	/**
+	 * Indexes the records of the archive file.
+	 *
+	 * @param isWritable  whether an incomplete last record is truncated from the file
+	 * @throws IOException if the file cannot be read, or holds something other than records
+	 */
+	private void load(boolean isWritable) throws IOException {
+		long size = channel.size();
+		ByteBuffer fixed = ByteBuffer.allocate(TRAILING_HEADER_SIZE);
+
+		while (end < size) {
+			long offset = end;
+			long position = offset;
+
+			try {
+				fixed.clear().limit(LEADING_HEADER_SIZE);
+				position += readFully(fixed, position);
+
+				if (fixed.getInt(0) != MAGIC) {
+					throw new IOException("Not a page archive record at offset " + offset);
+				}
+
+				ByteBuffer key = ByteBuffer.allocate(fixed.getShort(4) & 0xffff);
+				position += readFully(key, position);
+
+				fixed.clear().limit(TRAILING_HEADER_SIZE);
+				position += readFully(fixed, position);
+				position += fixed.getInt(4);
+
+				if (position > size) {
+					throw new EOFException();
+				}
+
+				index.put(new String(key.array(), StandardCharsets.UTF_8), offset);
+				end = position;
+			} catch (EOFException e) {
+				logger.warn("Dropping the incomplete record at offset {} of the page archive {}", offset, file);
+
+				if (isWritable) {
+					channel.truncate(offset);
+				}
+
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Fills a buffer from the archive file.
+	 *
+	 * @param buffer  the buffer to fill, not null
+	 * @param position  the offset in the file to read from
+	 * @return the number of bytes read
+	 * @throws EOFException if the file ends before the buffer is full
+	 * @throws IOException if the file cannot be read
+	 */
+	private int readFully(ByteBuffer buffer, long position) throws IOException {
+		int start = buffer.position();
+
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position() - start) < 0) {
+				throw new EOFException();
+			}
+		}
+
+		return buffer.position() - start;
+	}
+
+	/**
+	 * Reads and inflates a record.
+	 *
+	 * @param offset  the offset of the record, not negative
+	 * @param key  the normalized URL of the record, not null
+	 * @return the page held by the record, not null
+	 * @throws IOException if the record cannot be read or is corrupt
+	 * @throws DataFormatException if the compressed block is corrupt
+	 */
+	private FetchedPage read(long offset, String key) throws IOException, DataFormatException {
+		int headerSize = LEADING_HEADER_SIZE + key.getBytes(StandardCharsets.UTF_8).length;
+		ByteBuffer fixed = ByteBuffer.allocate(TRAILING_HEADER_SIZE);
+		readFully(fixed, offset + headerSize);
+
+		int length = fixed.getInt(0);
+		ByteBuffer compressed = ByteBuffer.allocate(fixed.getInt(4));
+		readFully(compressed, offset + headerSize + TRAILING_HEADER_SIZE);
+
+		CRC32 crc = new CRC32();
+		crc.update(compressed.array(), 0, compressed.capacity());
+
+		if ((int) crc.getValue() != fixed.getInt(8)) {
+			throw new IOException("Corrupt page archive record at offset " + offset);
+		}
+
+		byte[] data = new byte[length];
+		Inflater inflater = new Inflater();
+
+		try {
+			inflater.setInput(compressed.array());
+
+			if (inflater.inflate(data) != length || !inflater.finished()) {
+				throw new IOException("Corrupt page archive record at offset " + offset);
+			}
+		} finally {
+			inflater.end();
+		}
+
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+			String url = in.readUTF();
+			int statusCode = in.readInt();
+			int headerCount = in.readInt();
+			Map<String, String> headers = new HashMap<>();
+
+			for (int i = 0; i < headerCount; i++) {
+				headers.put(in.readUTF(), in.readUTF());
+			}
+
+			byte[] body = new byte[in.readInt()];
+			in.readFully(body);
+
+			return new FetchedPage(url, statusCode, headers, body);
+		}
+	}
+
+	/**
+	 * Encodes a page as a record.
+	 *
+	 * @param key  the normalized URL the page was requested with, not null
+	 * @param page  the page to encode, not null
+	 * @return the record, not null
+	 */
+	private static byte[] encode(String key, FetchedPage page) {
+		if (key.length() > 0xffff / 3) {
+			throw new IllegalArgumentException("URL is too long to archive: " + key);
+		}
+
+		ByteArrayOutputStream data = new ByteArrayOutputStream(page.getBody().length + 1024);
+
+		try (DataOutputStream out = new DataOutputStream(data)) {
+			out.writeUTF(page.getUrl());
+			out.writeInt(page.getStatusCode());
+			out.writeInt(page.getHeaders().size());
+
+			for (Map.Entry<String, String> header : page.getHeaders().entrySet()) {
+				out.writeUTF(header.getKey());
+				out.writeUTF(header.getValue());
+			}
+
+			out.writeInt(page.getBody().length);
+			out.write(page.getBody());
+		} catch (IOException e) {
+			// Writing to memory does not fail
+			throw new UncheckedIOException(e);
+		}
+
+		byte[] compressed = deflate(data.toByteArray());
+		CRC32 crc = new CRC32();
+		crc.update(compressed);
+
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream record = new ByteArrayOutputStream(
+				LEADING_HEADER_SIZE + keyBytes.length + TRAILING_HEADER_SIZE + compressed.length);
+
+		try (DataOutputStream out = new DataOutputStream(record)) {
+			out.writeInt(MAGIC);
+			out.writeShort(keyBytes.length);
+			out.write(keyBytes);
+			out.writeInt(data.size());
+			out.writeInt(compressed.length);
+			out.writeInt((int) crc.getValue());
+			out.write(compressed);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return record.toByteArray();
+	}
+
+	/**
+	 * @param data  the bytes to compress, not null
+	 * @return the deflated bytes, not null
+	 */
+	private static byte[] deflate(byte[] data) {
+		Deflater deflater = new Deflater();
+		ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+		byte[] buffer = new byte[8192];
+
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+
+			while (!deflater.finished()) {
+				out.write(buffer, 0, deflater.deflate(buffer));
+			}
+		} finally {
+			deflater.end();
+		}
+
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,33 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Fetches pages for the web crawler.
+ * <p>
+ * Implementations must be thread-safe.
+ */
+public interface PageFetcher {
+	/**
+	 * Fetches a page.
+	 * 
+	 * @param url  the URL of the page, not null
+	 * @param requestHeaders  extra headers to send with the request, not null
+	 * @return the response of the server, not null
+	 * @throws IOException if the page cannot be fetched
+	 */
+	FetchedPage fetch(String url, Map<String, String> requestHeaders) throws IOException;
+	
+	/**
+	 * Fetches a page without any extra request headers.
+	 * 
+	 * @param url  the URL of the page, not null
+	 * @return the response of the server, not null
+	 * @throws IOException if the page cannot be fetched
+	 */
+	default FetchedPage fetch(String url) throws IOException {
+		return fetch(url, Collections.emptyMap());
+	}
+}
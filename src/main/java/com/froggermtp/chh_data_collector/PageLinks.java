@@ -0,0 +1,75 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.List;
+
+/**
+ * The links and basic metadata of a page, extracted without building a {@code Document}.
+ * 
+ * @see LinkExtractor
+ */
+public final class PageLinks {
+	/**
+	 * The URL of the page.
+	 */
+	private final String url;
+	/**
+	 * The absolute URLs of all the links on the page.
+	 */
+	private final List<String> links;
+	/**
+	 * The text of the page's title element.
+	 */
+	private final String title;
+	/**
+	 * The text of the page's first time element.
+	 */
+	private final String time;
+	
+	public PageLinks(String url, List<String> links, String title, String time) {
+		this.url = url;
+		this.links = links;
+		this.title = title;
+		this.time = time;
+	}
+
+	/**
+	 * @return the URL of the page, not null
+	 */
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * @return the absolute URLs of all the links on the page, not null
+	 */
+	public List<String> getLinks() {
+		return links;
+	}
+
+	/**
+	 * @return the text of the title element, null if the page has no title
+	 */
+	public String getTitle() {
+		return title;
+	}
+
+	/**
+	 * @return the text of the first time element, null if the page has no time element
+	 */
+	public String getTime() {
+		return time;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sbuf = new StringBuilder();
+		sbuf.append("PageLinks ")
+		.append("[url=").append(url)
+		.append(", links=").append(links.size())
+		.append(", title=").append(title)
+		.append(", time=").append(time)
+		.append("]");
+		
+		return sbuf.toString();
+	}
+}
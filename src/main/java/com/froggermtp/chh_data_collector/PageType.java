@@ -0,0 +1,21 @@
+package com.froggermtp.chh_data_collector;
+
+/**
+ * The kinds of pages the web crawler tells apart.
+ * 
+ * @see WebCrawler#getPageType(String)
+ */
+public enum PageType {
+	/**
+	 * A paginated page that lists articles from newest to oldest.
+	 */
+	LISTING,
+	/**
+	 * A page that is scraped for information.
+	 */
+	ARTICLE,
+	/**
+	 * Any other page.
+	 */
+	OTHER
+}
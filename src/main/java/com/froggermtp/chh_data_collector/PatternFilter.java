@@ -0,0 +1,28 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.regex.Pattern;
+
+/**
+ * A {@link UrlFilter} that accepts the URLs matching a regular expression.
+ * <p>
+ * The whole URL must match the expression.
+ * The expression is compiled once, when the filter is created.
+ */
+public class PatternFilter implements UrlFilter {
+	/**
+	 * The compiled expression that accepted URLs must match.
+	 */
+	private final Pattern pattern;
+	
+	/**
+	 * @param regex  the regular expression that accepted URLs must match, not null
+	 */
+	public PatternFilter(String regex) {
+		this.pattern = Pattern.compile(regex);
+	}
+
+	@Override
+	public boolean accept(String url) {
+		return pattern.matcher(url).matches();
+	}
+}
@@ -0,0 +1,105 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Schedules requests so that each host is only contacted once every politeness delay.
+ * <p>
+ * Each host has its own schedule, so a slow or heavily crawled host never delays requests to
+ * any other host.
+ * Calling {@link #reserve(String)} books the next free slot for the host of the URL and returns
+ * how long the caller has to wait before the request may be made.
+ * <p>
+ * The delay never changes, and requests to a host are not limited in number, so the outcome of
+ * the requests is ignored.
+ * <p>
+ * This class is thread-safe.
+ * 
+ * @see AdaptiveRateController
+ */
+public class PolitenessScheduler implements RequestScheduler {
+	private static final Logger logger = LoggerFactory.getLogger(PolitenessScheduler.class);
+
+	/**
+	 * The minimum amount of milliseconds between two requests to the same host.
+	 */
+	private final long delay;
+	/**
+	 * The time, in milliseconds, of the most recently reserved slot for each host.
+	 */
+	private final ConcurrentMap<String, Long> lastSlots = new ConcurrentHashMap<>();
+
+	/**
+	 * @param delay  the minimum amount of milliseconds between two requests to the same host
+	 */
+	public PolitenessScheduler(long delay) {
+		if (delay < 0) {
+			throw new IllegalArgumentException("Delay cannot be negative: " + delay);
+		}
+
+		this.delay = delay;
+	}
+
+	/**
+	 * Reserves the next free request slot for the host of the given URL.
+	 *
+	 * @param url  the URL that will be requested, not null
+	 * @return the amount of milliseconds to wait before the request may be made
+	 */
+	@Override
+	public long reserve(String url) {
+		String host = getHost(url);
+		long now = System.currentTimeMillis();
+
+		// The first request to a host may go out immediately
+		long slot = lastSlots.merge(host, now, (last, current) -> Math.max(current, last + delay));
+		long wait = slot - now;
+
+		logger.debug("Reserved slot for host {} in {} milliseconds", host, wait);
+
+		return wait;
+	}
+
+	/**
+	 * @return the minimum amount of milliseconds between two requests to the same host
+	 */
+	public long getDelay() {
+		return delay;
+	}
+
+	/**
+	 * Returns the host part of a URL.
+	 * <p>
+	 * If the URL has no recognizable host, then the whole URL is used, which still keeps the
+	 * requests to that URL apart from every other host.
+	 *
+	 * @param url  the URL from which to take the host, not null
+	 * @return the host of the URL, not null
+	 */
+	static String getHost(String url) {
+		int schemeEnd = url.indexOf("://");
+
+		if (schemeEnd < 0) {
+			return url;
+		}
+
+		int hostStart = schemeEnd + 3;
+		int hostEnd = hostStart;
+
+		while (hostEnd < url.length()) {
+			char c = url.charAt(hostEnd);
+
+			if (c == '/' || c == '?' || c == '#') {
+				break;
+			}
+
+			hostEnd++;
+		}
+
+		return url.substring(hostStart, hostEnd).toLowerCase();
+	}
+}
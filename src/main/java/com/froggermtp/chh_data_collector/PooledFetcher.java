@@ -0,0 +1,235 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.jsoup.HttpStatusException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link PageFetcher} that keeps a pool of persistent connections, so that the connection to a
+ * host, and its TLS handshake, are reused by the following requests to that host.
+ * <p>
+ * Responses are requested with {@code gzip} or {@code deflate} compression, and decompressed
+ * transparently.
+ * Bodies are read through a {@link BufferPool}, with a buffer for every worker thread.
+ * A body longer than the maximum body size is cut off, and its connection is closed rather than
+ * reused.
+ * <p>
+ * Like {@link JsoupFetcher}, redirects are followed, and responses with an error status code are
+ * reported as an {@code HttpStatusException}, or as a {@link RetryAfterException} if the server
+ * sent a {@code Retry-After} header.
+ * No cookies are kept between requests.
+ * <p>
+ * This class is thread-safe.
+ * The fetcher must be closed to release its connections.
+ */
+public class PooledFetcher implements PageFetcher, Closeable {
+	private static final Logger logger = LoggerFactory.getLogger(PooledFetcher.class);
+
+	/**
+	 * The amount of milliseconds after which an idle connection is closed.
+	 */
+	private static final long IDLE_TIMEOUT = 30_000;
+	/**
+	 * The amount of milliseconds after which an idle connection is checked before it is reused.
+	 */
+	private static final int VALIDATE_AFTER_INACTIVITY = 2000;
+	/**
+	 * The size of the largest buffer kept for reading bodies when their size is not limited.
+	 */
+	private static final int MAX_POOLED_BUFFER_SIZE = 8 * 1024 * 1024;
+
+	/**
+	 * Makes the requests over the pooled connections.
+	 */
+	private final CloseableHttpClient client;
+	/**
+	 * The largest number of bytes read from the body of a response, zero for no limit.
+	 */
+	private final int maxBodySize;
+	/**
+	 * The buffers the bodies of the responses are read into.
+	 */
+	private final BufferPool buffers;
+
+	/**
+	 * Creates a fetcher with the timeouts and the maximum body size of the configuration.
+	 * <p>
+	 * Every host gets as many connections as {@link CrawlerConfig#getMaxConnectionsPerHost()}, and
+	 * the pool holds enough connections for every worker thread to use that many.
+	 *
+	 * @param config  the configuration of the web crawler, not null
+	 */
+	public PooledFetcher(CrawlerConfig config) {
+		PoolingHttpClientConnectionManager connections = new PoolingHttpClientConnectionManager();
+		connections.setDefaultMaxPerRoute(config.getMaxConnectionsPerHost());
+		connections.setMaxTotal(config.getMaxConnectionsPerHost() * config.getNumberOfThreads());
+		connections.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY);
+
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(config.getConnectTimeout())
+				.setConnectionRequestTimeout(config.getConnectTimeout())
+				.setSocketTimeout(config.getReadTimeout())
+				.build();
+
+		this.client = HttpClients.custom()
+				.setConnectionManager(connections)
+				.setDefaultRequestConfig(requestConfig)
+				.disableCookieManagement()
+				.evictExpiredConnections()
+				.evictIdleConnections(IDLE_TIMEOUT, TimeUnit.MILLISECONDS)
+				.build();
+		this.maxBodySize = config.getMaxBodySize();
+		this.buffers = new BufferPool(config.getNumberOfThreads(),
+				maxBodySize > 0 ? maxBodySize : MAX_POOLED_BUFFER_SIZE);
+	}
+
+	@Override
+	public FetchedPage fetch(String url, Map<String, String> requestHeaders) throws IOException {
+		HttpGet request = new HttpGet(toUri(url));
+		requestHeaders.forEach(request::setHeader);
+		HttpClientContext context = HttpClientContext.create();
+
+		try (CloseableHttpResponse response = client.execute(request, context)) {
+			int statusCode = response.getStatusLine().getStatusCode();
+			String finalUrl = getFinalUrl(request, context);
+
+			if (statusCode >= 400) {
+				// Read the rest of the error page, so that the connection can be reused
+				EntityUtils.consumeQuietly(response.getEntity());
+
+				Header retryAfterHeader = response.getFirstHeader("Retry-After");
+				long retryAfter = JsoupFetcher.parseRetryAfter(
+						retryAfterHeader != null ? retryAfterHeader.getValue() : null, System.currentTimeMillis());
+
+				if (retryAfter >= 0) {
+					throw new RetryAfterException(statusCode, finalUrl, retryAfter);
+				}
+
+				throw new HttpStatusException("HTTP error fetching URL", statusCode, finalUrl);
+			}
+
+			// A compressed response has lost its Content-Encoding and Content-Length by now
+			Map<String, String> headers = new HashMap<>();
+
+			for (Header header : response.getAllHeaders()) {
+				headers.put(header.getName(), header.getValue());
+			}
+
+			return new FetchedPage(finalUrl, statusCode, headers, readBody(request, response.getEntity(), finalUrl));
+		}
+	}
+
+	/**
+	 * Closes the pooled connections.
+	 */
+	@Override
+	public void close() throws IOException {
+		client.close();
+	}
+
+	/**
+	 * Reads the body of a response, up to the maximum body size, through a pooled buffer.
+	 * <p>
+	 * If the body is cut off, the request is aborted, which closes the connection instead of
+	 * reading the rest of the body.
+	 *
+	 * @param request  the request, not null
+	 * @param entity  the body of the response, null if it has none
+	 * @param url  the URL of the response, not null
+	 * @return the bytes of the body, not null
+	 * @throws IOException if the body cannot be read
+	 */
+	private byte[] readBody(HttpGet request, HttpEntity entity, String url) throws IOException {
+		if (entity == null) {
+			return new byte[0];
+		}
+
+		int limit = maxBodySize > 0 ? maxBodySize : Integer.MAX_VALUE - 8;
+		InputStream in = entity.getContent();
+		boolean isCutOff = false;
+
+		try {
+			byte[] body = buffers.read(in, limit);
+			isCutOff = body.length == limit && in.read() >= 0;
+
+			if (isCutOff) {
+				logger.debug("Cut off the body of {} at {} bytes", url, limit);
+
+				request.abort();
+			}
+
+			return body;
+		} finally {
+			// Closing the stream would read the rest of the body
+			if (!isCutOff) {
+				in.close();
+			}
+		}
+	}
+
+	/**
+	 * Parses a URL, quoting the characters that are not allowed in a URI, such as spaces, the way
+	 * browsers do.
+	 *
+	 * @param url  the URL, not null
+	 * @return the URI, not null
+	 * @throws MalformedURLException if the URL is not valid
+	 */
+	static URI toUri(String url) throws MalformedURLException {
+		try {
+			return new URI(url);
+		} catch (URISyntaxException e) {
+			// Quoted below
+		}
+
+		URL parsed = new URL(url);
+
+		try {
+			return new URI(parsed.getProtocol(), parsed.getUserInfo(), parsed.getHost(), parsed.getPort(),
+					parsed.getPath(), parsed.getQuery(), parsed.getRef());
+		} catch (URISyntaxException e) {
+			throw new MalformedURLException(e.getMessage());
+		}
+	}
+
+	/**
+	 * @param request  the request, not null
+	 * @param context  the context in which the request was made, not null
+	 * @return the URL of the response, after any redirects, not null
+	 * @throws IOException if the URL cannot be resolved
+	 */
+	private static String getFinalUrl(HttpGet request, HttpClientContext context) throws IOException {
+		if (context.getRedirectLocations() == null || context.getRedirectLocations().isEmpty()) {
+			return request.getURI().toString();
+		}
+
+		try {
+			return URIUtils.resolve(request.getURI(), context.getTargetHost(), context.getRedirectLocations())
+					.toString();
+		} catch (URISyntaxException e) {
+			throw new IOException("Could not resolve the redirects of " + request.getURI(), e);
+		}
+	}
+}
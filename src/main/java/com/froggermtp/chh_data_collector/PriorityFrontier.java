@@ -0,0 +1,169 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.function.ToIntFunction;
+
+/**
+ * A {@link Frontier} that hands out the most valuable URLs first.
+ * <p>
+ * Every URL is ranked by its priority, then by its depth, then by the order it was found in:
+ * a URL with a higher priority always comes first, among URLs of the same priority the one
+ * closest to a seed URL comes first, and among those the one found first comes first.
+ * <p>
+ * Each host has its own sub-queue, ranked by the best URL in it.
+ * When the best URLs of several hosts rank the same, the hosts take turns, starting with the host
+ * that was served the longest ago, so that a host with many URLs cannot starve the others.
+ * <p>
+ * All the URLs are kept on the heap.
+ * <p>
+ * This class is thread-safe.
+ */
+public class PriorityFrontier implements Frontier {
+	/**
+	 * Orders the URLs of a host from the best to the worst.
+	 */
+	private static final Comparator<Entry> ENTRY_ORDER = Comparator
+			.comparingInt((Entry entry) -> -entry.priority)
+			.thenComparingInt(entry -> entry.depth)
+			.thenComparingLong(entry -> entry.sequence);
+	/**
+	 * Orders the hosts by their best URL, then by the time they were last served.
+	 */
+	private static final Comparator<HostQueue> HOST_ORDER = Comparator
+			.comparingInt((HostQueue host) -> -host.urls.peek().priority)
+			.thenComparingInt(host -> host.urls.peek().depth)
+			.thenComparingLong(host -> host.lastServed)
+			.thenComparing(host -> host.name);
+
+	/**
+	 * Gives the priority of a URL.
+	 */
+	private final ToIntFunction<String> priorities;
+	/**
+	 * The sub-queue of every host that ever had a URL in the frontier.
+	 */
+	private final Map<String, HostQueue> hosts = new HashMap<>();
+	/**
+	 * The hosts that have URLs waiting, ordered by which is served next.
+	 * <p>
+	 * A host must be taken out of the set before its best URL or its last served time changes,
+	 * and put back afterwards.
+	 */
+	private final TreeSet<HostQueue> readyHosts = new TreeSet<>(HOST_ORDER);
+	/**
+	 * The number of URLs that have been added, used to tell the order in which they were found.
+	 */
+	private long addCount = 0;
+	/**
+	 * The number of URLs that have been handed out, used to tell when each host was last served.
+	 */
+	private long pollCount = 0;
+	/**
+	 * The number of URLs in the frontier.
+	 */
+	private long size = 0;
+
+	/**
+	 * @param priorities  gives the priority of a URL, higher values being crawled first, not null
+	 */
+	public PriorityFrontier(ToIntFunction<String> priorities) {
+		this.priorities = priorities;
+	}
+
+	@Override
+	public void add(String url) {
+		add(url, 0);
+	}
+
+	@Override
+	public synchronized void add(String url, int depth) {
+		Entry entry = new Entry(url, priorities.applyAsInt(url), depth, addCount++);
+		String name = PolitenessScheduler.getHost(url);
+		HostQueue host = hosts.computeIfAbsent(name, HostQueue::new);
+
+		if (!host.urls.isEmpty()) {
+			readyHosts.remove(host);
+		}
+
+		host.urls.add(entry);
+		readyHosts.add(host);
+		size++;
+	}
+
+	@Override
+	public synchronized String poll() {
+		HostQueue host = readyHosts.pollFirst();
+
+		if (host == null) {
+			return null;
+		}
+
+		Entry entry = host.urls.poll();
+		host.lastServed = ++pollCount;
+
+		if (!host.urls.isEmpty()) {
+			readyHosts.add(host);
+		}
+
+		size--;
+
+		return entry.url;
+	}
+
+	@Override
+	public synchronized boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public synchronized long size() {
+		return size;
+	}
+
+	@Override
+	public synchronized void close() {
+		hosts.clear();
+		readyHosts.clear();
+		size = 0;
+	}
+
+	/**
+	 * A URL waiting in the frontier.
+	 */
+	private static final class Entry {
+		private final String url;
+		private final int priority;
+		private final int depth;
+		/**
+		 * The position of the URL in the order the URLs were found.
+		 */
+		private final long sequence;
+
+		private Entry(String url, int priority, int depth, long sequence) {
+			this.url = url;
+			this.priority = priority;
+			this.depth = depth;
+			this.sequence = sequence;
+		}
+	}
+
+	/**
+	 * The URLs of a single host.
+	 */
+	private static final class HostQueue {
+		private final String name;
+		private final PriorityQueue<Entry> urls = new PriorityQueue<>(ENTRY_ORDER);
+		/**
+		 * The value of the poll count when the host was last served, zero if it never was.
+		 */
+		private long lastServed = 0;
+
+		private HostQueue(String name) {
+			this.name = name;
+		}
+	}
+}
@@ -1,24 +1,74 @@
 package com.froggermtp.chh_data_collector;
 
 import org.jsoup.nodes.Document;
-import org.jsoup.select.Elements;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Provides the logic to scrape Rapzilla's music directory.
+ * <p>
+ * This class is thread-safe, as long as its sink is.
  */
 public class RapzillaWebCrawler extends WebCrawler {
 	private static final Logger logger = LoggerFactory.getLogger(RapzillaWebCrawler.class);
 	
-	// TODO: Remove this counter
-	private int tempCounter = 0;
+	/**
+	 * Accepts the URLs of the articles in the music directory.
+	 */
+	private static final UrlFilter ARTICLE_FILTER = 
+			new PatternFilter("http://www.rapzilla.com/rz/music/freemp3s/\\d+.+");
+	/**
+	 * Accepts the URLs of the pages that list the articles in the music directory.
+	 */
+	private static final UrlFilter LISTING_FILTER = 
+			new PatternFilter("http://www.rapzilla.com/rz/music/freemp3s/?(\\?start=\\d+)?");
+	/**
+	 * The date of an article, which is the only time element of the page.
+	 */
+	private static final FieldSpec DATE_FIELD = 
+			new FieldSpec(MusicDataField.DATE, "time").unique().replace("Created:\\s*", "");
+	/**
+	 * Scrapes an article.
+	 * <p>
+	 * The artist and the project are taken from the title, such as
+	 * {@code Free MP3: Propaganda – Crown & Glory}, whose dashes come in two kinds.
+	 */
+	private static final ExtractionPlan PLAN = new ExtractionSpec()
+			.add(new FieldSpec(MusicDataField.ARTIST, "title").unique()
+					.replace("–", "-").require("-").replace("^Free.*:\\s+|\\s*-.*$", ""))
+			.add(new FieldSpec(MusicDataField.PROJECT, "title").unique()
+					.replace("–", "-").require("-").replace("^.*-\\s*", ""))
+			.add(DATE_FIELD)
+			.compile();
+	/**
+	 * Only scrapes the date of an article.
+	 */
+	private static final ExtractionPlan DATE_PLAN = new ExtractionSpec().add(DATE_FIELD).compile();
+	
+	/**
+	 * Receives the scraped music data, null if the data is only logged.
+	 */
+	private final MusicDataSink sink;
+	
+	/**
+	 * Creates a crawler that only logs the scraped music data.
+	 */
+	public RapzillaWebCrawler() {
+		this(null);
+	}
+	
+	/**
+	 * @param sink  the sink that receives the scraped music data, null to only log the data
+	 */
+	public RapzillaWebCrawler(MusicDataSink sink) {
+		this.sink = sink;
+	}
 
 	@Override
 	public boolean shouldVisit(String url) {
 		logger.debug("Entering shouldVisit(url={})", url);
 		
-		if (url.matches("http://www.rapzilla.com/rz/music/freemp3s/\\d+.+")) {
+		if (ARTICLE_FILTER.accept(url) || LISTING_FILTER.accept(url)) {
 			logger.debug("Leaving shouldVisit(): true");
 			
 			return true;
@@ -29,128 +79,68 @@ public class RapzillaWebCrawler extends WebCrawler {
 		return false;
 	}
 
-	@Override
-	public void onVisit(Document doc) {
-		logger.info("Currenly visiting url: {}", doc.location());
-		
-		// TODO: Remove this counter
-		tempCounter++;
-
-		if (tempCounter == 10) {
-			stop();
-		}
-
-		MusicData musicData = new MusicData(
-				doc.location(), 
-				scrapeProject(doc), 
-				scrapeArtist(doc), 
-				scrapeDate(doc)
-				);
-
-		logger.info("Scraped new music data: {}", musicData.toString());
-	}
-	
 	/**
-	 * Scrapes the artist name from the web page.
-	 * 
-	 * @param doc  the {@code Document} to scrape
-	 * @return the artist name, null if name couldn't be found
+	 * Only the articles are scraped, so the listing pages only need their links.
 	 */
-	private String scrapeArtist(Document doc) {
-		logger.debug("Entering scrapeArtist()");
-		
-		Elements titleElements = doc.select("title");
-		
-		if (titleElements.size() != 1) {
-			logger.debug("Multiple title elements were scraped: {}" + titleElements.toString());
-			
-			logger.debug("Leaving scrapeArtist(): null");
-			return null;
-		}
+	@Override
+	public boolean needsDocument(String url) {
+		return ARTICLE_FILTER.accept(url);
+	}
 
-		String titleString = titleElements.first().toString();
-		/**
-		 * There are two different kinds of dashes.
-		 * All the dashes are converted to one type to simplify the logic.
-		 */
-		titleString = StringHelper.replaceDashes(titleString);
-		titleString = StringHelper.replaceAmperstamp(titleString);
-		
-		if (titleString.contains("-")) {
-			String artistString = 
-					titleString.replaceAll("(<title>Free.*:\\s+)|(\\s*-.*)", "");
-			
-			logger.debug("Leaving scrapeArtist(): {}", artistString);
-			return artistString;
+	@Override
+	public PageType getPageType(String url) {
+		if (ARTICLE_FILTER.accept(url)) {
+			return PageType.ARTICLE;
 		}
 		
-		logger.debug("The title tag did not contain a dash: {}" + titleString);
+		if (LISTING_FILTER.accept(url)) {
+			return PageType.LISTING;
+		}
 		
-		logger.debug("Leaving scrapeArtist(): null");
-		return null;
+		return PageType.OTHER;
 	}
 	
 	/**
-	 * Scrapes the project name from the web page.
-	 * 
-	 * @param doc  the {@code Document} to scrape
-	 * @return the project name, null if name couldn't be found
+	 * Rapzilla serves the same page with and without a slash at the end of its path.
 	 */
-	private String scrapeProject(Document doc) {
-		logger.debug("Entering scrapeProject()");
-		
-		Elements titleElements = doc.select("title");
-		
-		if (titleElements.size() != 1) {
-			logger.debug("Multiple title elements were scraped: {}", titleElements.toString());
-			
-			logger.debug("Leaving scrapeProject(): null");
-			return null;
-		}
-		
-		String titleString = titleElements.first().toString();
-		/**
-		 * There are two different kinds of dashes.
-		 * All the dashes are converted to one type to simplify the logic.
-		 */
-		titleString = StringHelper.replaceDashes(titleString);
-		titleString = StringHelper.replaceAmperstamp(titleString);
-		
-		if (titleString.contains("-")) {
-			String projectNameString = titleString.replaceAll("(.*-\\s*)|(\\s*</title>)", "");
-			
-			logger.debug("Leaving scrapeProject(): {}", projectNameString);
-			return projectNameString;
-		}
-		
-		logger.debug("The title tag did not contain a dash: {}", titleString);
-		
-		logger.debug("Leaving scrapeProject(): null");
-		return null;
+	@Override
+	public TrailingSlash getTrailingSlash() {
+		return TrailingSlash.REMOVE;
 	}
 	
 	/**
-	 * Scrape the date from the web page.
-	 * 
-	 * @param doc  the {@code Document} to scrape
-	 * @return the date, null if the date couldn't be found
+	 * The article, without the list of related articles.
 	 */
-	private String scrapeDate(Document doc) {
-		logger.debug("Entering scrapeDate()");
-		
-		Elements timeElements = doc.select("time");
+	@Override
+	public String getMainContentSelector() {
+		return "div.item-page > :not(div.related)";
+	}
+	
+	@Override
+	public String getPublicationDate(Document doc) {
+		return DATE_PLAN.extract(doc).getDate();
+	}
+
+	@Override
+	public void onVisit(Document doc) {
+		logger.info("Currenly visiting url: {}", doc.location());
+
+		MusicData musicData = scrape(doc);
+
+		logger.info("Scraped new music data: {}", musicData.toString());
 		
-		if (timeElements.size() != 1) {
-			logger.debug("Multiple time elements were scraped: {}", timeElements.toString());
-			
-			logger.debug("Leaving scrapeDate(): null");
-			return null;
+		if (sink != null) {
+			sink.write(musicData);
 		}
-		
-		String dateString = timeElements.html().replaceAll("Created:\\s*", "");
-		
-		logger.debug("Leaving scrapeDate(): {}", dateString);
-		return dateString;
 	}
 
+	/**
+	 * Scrapes the music data of an article.
+	 * 
+	 * @param doc  the {@code Document} of the article, not null
+	 * @return the music data, whose fields are null if they couldn't be found, not null
+	 */
+	MusicData scrape(Document doc) {
+		return PLAN.extract(doc);
+	}
 }
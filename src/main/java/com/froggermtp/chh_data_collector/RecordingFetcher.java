@@ -0,0 +1,79 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Map;
+
+import org.jsoup.HttpStatusException;
+
+/**
+ * A {@link PageFetcher} that appends every response of another fetcher to a {@link PageArchive},
+ * so that the crawl can later be replayed with a {@link ReplayFetcher}.
+ * <p>
+ * Responses with an error status code are archived without a body, so that they fail the same
+ * way when replayed.
+ * Requests that fail without a response, such as timeouts, are not archived.
+ * <p>
+ * This class is thread-safe.
+ */
+public class RecordingFetcher implements PageFetcher, Closeable {
+	/**
+	 * The fetcher that makes the requests.
+	 */
+	private final PageFetcher delegate;
+	/**
+	 * The archive the responses are appended to.
+	 */
+	private final PageArchive archive;
+	
+	/**
+	 * @param delegate  the fetcher that makes the requests, not null
+	 * @param archive  the archive the responses are appended to, not null
+	 */
+	public RecordingFetcher(PageFetcher delegate, PageArchive archive) {
+		this.delegate = delegate;
+		this.archive = archive;
+	}
+
+	@Override
+	public FetchedPage fetch(String url, Map<String, String> requestHeaders) throws IOException {
+		FetchedPage page;
+		
+		try {
+			page = delegate.fetch(url, requestHeaders);
+		} catch (HttpStatusException e) {
+			archive.put(url, new FetchedPage(e.getUrl(), e.getStatusCode(), Collections.emptyMap(), new byte[0]));
+			
+			throw e;
+		}
+		
+		archive.put(url, page);
+		
+		return page;
+	}
+
+	/**
+	 * @return the fetcher that makes the requests, not null
+	 */
+	public PageFetcher getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * Closes the archive, and the fetcher that makes the requests, if it needs to be closed.
+	 */
+	@Override
+	public void close() {
+		archive.close();
+		
+		if (delegate instanceof Closeable) {
+			try {
+				((Closeable) delegate).close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
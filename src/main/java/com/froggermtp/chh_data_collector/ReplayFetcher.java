@@ -0,0 +1,56 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Map;
+
+import org.jsoup.HttpStatusException;
+
+/**
+ * A {@link PageFetcher} that serves the pages of a {@link PageArchive} instead of making
+ * requests, so that a recorded crawl can be rerun without the network.
+ * <p>
+ * Archived error responses are reported as an {@code HttpStatusException}, the same way
+ * {@link JsoupFetcher} reports them, and URLs that are not archived fail with an
+ * {@code IOException}.
+ * The request headers are ignored.
+ * <p>
+ * This class is thread-safe.
+ */
+public class ReplayFetcher implements PageFetcher, Closeable {
+	/**
+	 * The archive the pages are served from.
+	 */
+	private final PageArchive archive;
+	
+	/**
+	 * @param archive  the archive the pages are served from, not null
+	 */
+	public ReplayFetcher(PageArchive archive) {
+		this.archive = archive;
+	}
+
+	@Override
+	public FetchedPage fetch(String url, Map<String, String> requestHeaders) throws IOException {
+		FetchedPage page = archive.get(url);
+		
+		if (page == null) {
+			throw new FileNotFoundException("Not in the page archive: " + url);
+		}
+		
+		if (page.getStatusCode() >= 400) {
+			throw new HttpStatusException("HTTP error fetching URL", page.getStatusCode(), page.getUrl());
+		}
+		
+		return page;
+	}
+
+	/**
+	 * Closes the archive.
+	 */
+	@Override
+	public void close() {
+		archive.close();
+	}
+}
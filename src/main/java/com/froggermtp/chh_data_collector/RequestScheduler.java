@@ -0,0 +1,52 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Decides when the web crawler may make each request, host by host.
+ * <p>
+ * Before a request is made, {@link #reserve(String)} books a slot for the host of its URL.
+ * Once the request is over, whether or not it succeeded, {@link #onComplete(String, int, long, long)}
+ * reports how it went, so that the scheduler can adapt the pace of the following requests.
+ * <p>
+ * Implementations must be thread-safe.
+ */
+public interface RequestScheduler {
+	/**
+	 * Reserves the next free request slot for the host of the given URL.
+	 * 
+	 * @param url  the URL that will be requested, not null
+	 * @return the amount of milliseconds to wait before the request may be made, negative if the
+	 * host already has as many requests in flight as it may have, in which case no slot is reserved
+	 */
+	long reserve(String url);
+	
+	/**
+	 * Reports the outcome of a request that was given a slot.
+	 * <p>
+	 * By default, the outcome is ignored.
+	 * 
+	 * @param url  the URL that was requested, not null
+	 * @param statusCode  the status code of the response, zero if there was no response,
+	 * {@link RetryScheduler#PERMANENT_FAILURE} if the request failed for a reason that does not
+	 * depend on the load of the host
+	 * @param latency  the amount of milliseconds the request took
+	 * @param retryAfter  the amount of milliseconds the server asked to wait before the next
+	 * request, zero if it did not ask
+	 */
+	default void onComplete(String url, int statusCode, long latency, long retryAfter) {
+		// Do nothing by default
+	}
+	
+	/**
+	 * Returns the current request rate of every host.
+	 * <p>
+	 * By default, the rates are not reported.
+	 * 
+	 * @return the requests per second by host, not null
+	 */
+	default Map<String, Double> getRequestRates() {
+		return Collections.emptyMap();
+	}
+}
@@ -0,0 +1,352 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores fetched pages on disk, so that they can be revalidated instead of fetched again.
+ * <p>
+ * Each page is kept in its own file, named after the fingerprint of its normalized URL.
+ * A file holds the URL, the status code, the headers needed to revalidate and parse the page,
+ * and the body.
+ * <p>
+ * The total size of the files is bounded.
+ * When a new page would exceed the bound, the least recently used pages are evicted first.
+ * The order of use is kept in memory while the cache is open, and in the modification times of
+ * the files between runs.
+ * <p>
+ * This class is thread-safe.
+ */
+public class ResponseCache {
+	private static final Logger logger = LoggerFactory.getLogger(ResponseCache.class);
+
+	/**
+	 * Identifies the files written by this class, and the version of their format.
+	 */
+	private static final int MAGIC = 0x43484801;
+	/**
+	 * The extension of the files in the cache directory.
+	 */
+	private static final String EXTENSION = ".page";
+	/**
+	 * The headers that are stored along with the body.
+	 */
+	private static final List<String> STORED_HEADERS =
+			Arrays.asList("Content-Type", "ETag", "Last-Modified");
+
+	/**
+	 * The directory that holds the cached pages.
+	 */
+	private final Path directory;
+	/**
+	 * The maximum total size of the cached pages in bytes.
+	 */
+	private final long maxSize;
+	/**
+	 * The size of every cached file, by file name, from least to most recently used.
+	 */
+	private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+	/**
+	 * The total size of the cached files in bytes.
+	 */
+	private long totalSize = 0;
+
+	/**
+	 * Opens a cache, picking up any pages that were cached in the directory by an earlier run.
+	 *
+	 * @param directory  the directory that holds the cached pages, not null
+	 * @param maxSize  the maximum total size of the cached pages in bytes, must be positive
+	 */
+	public ResponseCache(Path directory, long maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("Max size must be positive: " + maxSize);
+		}
+
+		this.directory = directory;
+		this.maxSize = maxSize;
+
+		try {
+			Files.createDirectories(directory);
+			load();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not open the response cache in " + directory, e);
+		}
+
+		logger.debug("Opened response cache {} with {} pages", directory, entries.size());
+	}
+
+	/**
+	 * Returns the cached page of a URL, and marks it as the most recently used page.
+	 *
+	 * @param url  the URL of the page, not null
+	 * @return the cached page, null if the URL is not cached
+	 */
+	public FetchedPage get(String url) {
+		String key = normalize(url);
+		String fileName = getFileName(key);
+
+		synchronized (this) {
+			if (entries.get(fileName) == null) {
+				return null;
+			}
+		}
+
+		Path file = directory.resolve(fileName);
+
+		try {
+			FetchedPage page = read(file, key);
+
+			if (page != null) {
+				// Keeps the order of use for the next run
+				Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			}
+
+			return page;
+		} catch (IOException e) {
+			// The file was evicted by another thread, or is unreadable
+			logger.debug("Could not read the cached page of {}", url, e);
+
+			return null;
+		}
+	}
+
+	/**
+	 * Stores a page, replacing any page already cached for the URL.
+	 * <p>
+	 * Pages that are larger than the whole cache are not stored.
+	 *
+	 * @param url  the URL the page was requested with, not null
+	 * @param page  the page to store, not null
+	 */
+	public void put(String url, FetchedPage page) {
+		String key = normalize(url);
+		String fileName = getFileName(key);
+		Path file = directory.resolve(fileName);
+		long size;
+
+		try {
+			Path temporaryFile = Files.createTempFile(directory, "page-", ".tmp");
+
+			try {
+				write(temporaryFile, key, page);
+				size = Files.size(temporaryFile);
+
+				if (size > maxSize) {
+					return;
+				}
+
+				Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(temporaryFile);
+			}
+		} catch (IOException e) {
+			logger.warn("Could not cache the page of {}", url, e);
+
+			return;
+		}
+
+		synchronized (this) {
+			Long previousSize = entries.put(fileName, size);
+			totalSize += size - (previousSize != null ? previousSize : 0);
+
+			evict(fileName);
+		}
+	}
+
+	/**
+	 * @return the number of cached pages
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the total size of the cached pages in bytes
+	 */
+	public synchronized long getTotalSize() {
+		return totalSize;
+	}
+
+	/**
+	 * Evicts the least recently used pages until the total size is within the bound.
+	 *
+	 * @param keep  the name of the file that was just stored, which is never evicted, not null
+	 */
+	private void evict(String keep) {
+		Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+
+		while (totalSize > maxSize && iterator.hasNext()) {
+			Map.Entry<String, Long> entry = iterator.next();
+
+			if (entry.getKey().equals(keep)) {
+				continue;
+			}
+
+			try {
+				Files.deleteIfExists(directory.resolve(entry.getKey()));
+			} catch (IOException e) {
+				logger.warn("Could not delete the cached page {}", entry.getKey(), e);
+			}
+
+			totalSize -= entry.getValue();
+			iterator.remove();
+
+			logger.debug("Evicted the cached page {}", entry.getKey());
+		}
+	}
+
+	/**
+	 * Indexes the files in the cache directory, from the least to the most recently used.
+	 *
+	 * @throws IOException if the directory cannot be listed
+	 */
+	private void load() throws IOException {
+		List<Path> files;
+
+		try (Stream<Path> paths = Files.list(directory)) {
+			files = paths
+					.filter(path -> path.getFileName().toString().endsWith(EXTENSION))
+					.sorted(Comparator.comparing(path -> path.toFile().lastModified()))
+					.collect(Collectors.toList());
+		}
+
+		for (Path file : files) {
+			long size = Files.size(file);
+
+			entries.put(file.getFileName().toString(), size);
+			totalSize += size;
+		}
+
+		evict("");
+	}
+
+	/**
+	 * Reads a cached page.
+	 *
+	 * @param file  the file of the page, not null
+	 * @param key  the normalized URL the page is expected to be cached for, not null
+	 * @return the page, null if the file holds a page for a different URL
+	 * @throws IOException if the file cannot be read
+	 */
+	private static FetchedPage read(Path file, String key) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a cached page: " + file);
+			}
+
+			// Two URLs may share a fingerprint, however unlikely
+			if (!in.readUTF().equals(key)) {
+				return null;
+			}
+
+			String url = in.readUTF();
+			int statusCode = in.readInt();
+			int headerCount = in.readInt();
+			Map<String, String> headers = new HashMap<>();
+
+			for (int i = 0; i < headerCount; i++) {
+				headers.put(in.readUTF(), in.readUTF());
+			}
+
+			byte[] body = new byte[in.readInt()];
+			in.readFully(body);
+
+			return new FetchedPage(url, statusCode, headers, body);
+		}
+	}
+
+	/**
+	 * Writes a page to a file.
+	 *
+	 * @param file  the file to write, not null
+	 * @param key  the normalized URL the page is cached for, not null
+	 * @param page  the page to write, not null
+	 * @throws IOException if the file cannot be written
+	 */
+	private static void write(Path file, String key, FetchedPage page) throws IOException {
+		Map<String, String> headers = new LinkedHashMap<>();
+
+		for (String name : STORED_HEADERS) {
+			String value = page.getHeader(name);
+
+			if (value != null) {
+				headers.put(name, value);
+			}
+		}
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeUTF(key);
+			out.writeUTF(page.getUrl());
+			out.writeInt(page.getStatusCode());
+			out.writeInt(headers.size());
+
+			for (Map.Entry<String, String> header : headers.entrySet()) {
+				out.writeUTF(header.getKey());
+				out.writeUTF(header.getValue());
+			}
+
+			out.writeInt(page.getBody().length);
+			out.write(page.getBody());
+		}
+	}
+
+	/**
+	 * @param key  the normalized URL, not null
+	 * @return the name of the file that caches the URL, not null
+	 */
+	private static String getFileName(String key) {
+		return String.format("%016x", UrlFingerprint.of(key)) + EXTENSION;
+	}
+
+	/**
+	 * Normalizes a URL, so that URLs that point to the same page share a cache entry.
+	 * <p>
+	 * The scheme and host are lowercased, and the fragment is removed.
+	 *
+	 * @param url  the URL to normalize, not null
+	 * @return the normalized URL, not null
+	 */
+	static String normalize(String url) {
+		int fragment = url.indexOf('#');
+
+		if (fragment >= 0) {
+			url = url.substring(0, fragment);
+		}
+
+		int schemeEnd = url.indexOf("://");
+
+		if (schemeEnd < 0) {
+			return url;
+		}
+
+		int hostEnd = schemeEnd + 3;
+
+		while (hostEnd < url.length() && "/?".indexOf(url.charAt(hostEnd)) < 0) {
+			hostEnd++;
+		}
+
+		return url.substring(0, hostEnd).toLowerCase(Locale.ROOT) + url.substring(hostEnd);
+	}
+}
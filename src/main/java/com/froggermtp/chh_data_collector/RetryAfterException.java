@@ -0,0 +1,34 @@
+package com.froggermtp.chh_data_collector;
+
+import org.jsoup.HttpStatusException;
+
+/**
+ * Signals an error response in which the server asked to wait before the next request, usually
+ * a {@code 429 Too Many Requests} or {@code 503 Service Unavailable}.
+ */
+public class RetryAfterException extends HttpStatusException {
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * The amount of milliseconds the server asked to wait.
+	 */
+	private final long retryAfter;
+	
+	/**
+	 * @param statusCode  the status code of the response
+	 * @param url  the URL of the response, not null
+	 * @param retryAfter  the amount of milliseconds the server asked to wait, not negative
+	 */
+	public RetryAfterException(int statusCode, String url, long retryAfter) {
+		super("HTTP error fetching URL, retry after " + retryAfter + " ms", statusCode, url);
+		
+		this.retryAfter = retryAfter;
+	}
+	
+	/**
+	 * @return the amount of milliseconds the server asked to wait
+	 */
+	public long getRetryAfter() {
+		return retryAfter;
+	}
+}
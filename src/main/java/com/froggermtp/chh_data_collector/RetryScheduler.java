@@ -0,0 +1,428 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.ConnectionClosedException;
+import org.apache.http.NoHttpResponseException;
+import org.jsoup.HttpStatusException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Schedules the retries of failed requests, without ever making the caller wait.
+ * <p>
+ * When a request fails transiently, its URL is put into a delay queue, from which it can be
+ * taken once its backoff delay has passed.
+ * The delay doubles with every attempt, up to a maximum, and a random part of it is left out so
+ * that URLs that failed together are not retried together.
+ * If the server asked to wait longer with a {@code Retry-After} header, then the retry waits
+ * that long instead.
+ * Once a URL has been retried the maximum number of times, it is given up.
+ * <p>
+ * A request has failed transiently if its connection could not be made, was reset or timed out,
+ * or if it was answered with {@code 408 Request Timeout}, {@code 429 Too Many Requests} or a
+ * server error.
+ * Any other answer, including {@code 404 Not Found}, will not change by asking again, and
+ * neither will the other failures, such as a malformed URL, an unknown host, a failed TLS
+ * handshake or an unsupported content type; those are reported as {@link #PERMANENT_FAILURE}.
+ * <p>
+ * Every host also has a circuit breaker.
+ * After a number of consecutive transient failures, the breaker opens, and the URLs of the host
+ * are put off, without using up their attempts, until the cooldown has passed.
+ * Then a single trial request is let through: if it succeeds, the breaker closes, otherwise it
+ * opens again for twice as long.
+ * A permanent failure says nothing about the health of the host, so it neither opens nor
+ * closes the breaker.
+ * <p>
+ * This class is thread-safe.
+ */
+public class RetryScheduler {
+	private static final Logger logger = LoggerFactory.getLogger(RetryScheduler.class);
+
+	/**
+	 * The status code reported for a request that failed without an answer that asking again
+	 * could change, such as a malformed URL or an unsupported content type.
+	 */
+	public static final int PERMANENT_FAILURE = -1;
+
+	/**
+	 * The largest factor by which the cooldown of a circuit breaker grows.
+	 */
+	private static final int MAX_COOLDOWN_FACTOR = 32;
+
+	/**
+	 * The number of times a failed request is retried.
+	 */
+	private final int maxRetries;
+	/**
+	 * The delay in milliseconds before the first retry.
+	 */
+	private final long baseDelay;
+	/**
+	 * The largest delay in milliseconds before a retry.
+	 */
+	private final long maxDelay;
+	/**
+	 * The number of consecutive transient failures that open a circuit breaker, zero if there
+	 * are no circuit breakers.
+	 */
+	private final int breakerThreshold;
+	/**
+	 * The amount of milliseconds a circuit breaker first stays open.
+	 */
+	private final long breakerCooldown;
+	/**
+	 * The URLs that wait to be retried or put off, ordered by the time they are due.
+	 */
+	private final DelayQueue<Retry> retries = new DelayQueue<>();
+	/**
+	 * The number of times each failed URL has been retried so far.
+	 */
+	private final ConcurrentMap<String, Integer> attempts = new ConcurrentHashMap<>();
+	/**
+	 * The circuit breaker of every host.
+	 */
+	private final ConcurrentMap<String, Breaker> breakers = new ConcurrentHashMap<>();
+
+	/**
+	 * @param config  the configuration that sets the retries and the circuit breakers, not null
+	 */
+	public RetryScheduler(CrawlerConfig config) {
+		this(config.getMaxRetries(), config.getRetryBaseDelay(), config.getRetryMaxDelay(),
+				config.getCircuitBreakerThreshold(), config.getCircuitBreakerCooldown());
+	}
+
+	/**
+	 * @param maxRetries  the number of times a failed request is retried, zero to never retry
+	 * @param baseDelay  the delay in milliseconds before the first retry, must be positive
+	 * @param maxDelay  the largest delay in milliseconds before a retry, must be positive
+	 * @param breakerThreshold  the number of consecutive transient failures that put a host on
+	 * hold, zero for no circuit breakers
+	 * @param breakerCooldown  the amount of milliseconds a host is first put on hold, must be
+	 * positive
+	 */
+	public RetryScheduler(int maxRetries, long baseDelay, long maxDelay, int breakerThreshold,
+			long breakerCooldown) {
+		if (maxRetries < 0 || breakerThreshold < 0) {
+			throw new IllegalArgumentException(
+					"Retries and threshold cannot be negative: " + maxRetries + ", " + breakerThreshold);
+		}
+
+		if (baseDelay < 1 || maxDelay < 1 || breakerCooldown < 1) {
+			throw new IllegalArgumentException(
+					"Delays must be positive: " + baseDelay + ", " + maxDelay + ", " + breakerCooldown);
+		}
+
+		this.maxRetries = maxRetries;
+		this.baseDelay = baseDelay;
+		this.maxDelay = maxDelay;
+		this.breakerThreshold = breakerThreshold;
+		this.breakerCooldown = breakerCooldown;
+	}
+
+	/**
+	 * Reports the outcome of a request, and schedules a retry if it failed transiently.
+	 *
+	 * @param url  the URL that was requested, not null
+	 * @param statusCode  the status code of the response, zero if there was no response,
+	 * {@link #PERMANENT_FAILURE} if the request failed for a reason that asking again will not fix
+	 * @param retryAfter  the amount of milliseconds the server asked to wait, zero if it did not ask
+	 * @return true if the URL was scheduled to be retried, otherwise returns false
+	 */
+	public boolean onComplete(String url, int statusCode, long retryAfter) {
+		boolean isFailure = isTransient(statusCode);
+
+		if (breakerThreshold > 0 && statusCode == PERMANENT_FAILURE) {
+			releaseTrial(PolitenessScheduler.getHost(url));
+		} else if (breakerThreshold > 0) {
+			updateBreaker(PolitenessScheduler.getHost(url), isFailure);
+		}
+
+		if (!isFailure) {
+			attempts.remove(url);
+
+			return false;
+		}
+
+		int attempt = attempts.merge(url, 1, Integer::sum);
+
+		if (attempt > maxRetries) {
+			attempts.remove(url);
+
+			if (maxRetries > 0) {
+				logger.warn("Giving up on url {} after {} retries", url, maxRetries);
+			}
+
+			return false;
+		}
+
+		long delay = Math.max(getBackoff(attempt), retryAfter);
+		retries.add(new Retry(url, System.currentTimeMillis() + delay));
+
+		logger.debug("Retrying url {} in {} milliseconds, attempt {} of {}", url, delay, attempt, maxRetries);
+
+		return true;
+	}
+
+	/**
+	 * Determines whether a request may be made to the host of a URL.
+	 * <p>
+	 * If the circuit breaker of the host is open, or its trial request is still in flight, then
+	 * the URL is put off until the host may be tried again, and will be returned by
+	 * {@link #pollDue()} at that time.
+	 *
+	 * @param url  the URL that is about to be requested, not null
+	 * @return true if the request may be made, otherwise returns false
+	 */
+	public boolean allowRequest(String url) {
+		if (breakerThreshold == 0) {
+			return true;
+		}
+
+		Breaker breaker = breakers.get(PolitenessScheduler.getHost(url));
+
+		if (breaker == null) {
+			return true;
+		}
+
+		long now = System.currentTimeMillis();
+		long due;
+
+		synchronized (breaker) {
+			if (breaker.openUntil == 0) {
+				return true;
+			}
+
+			if (now >= breaker.openUntil && !breaker.isTrialInFlight) {
+				breaker.isTrialInFlight = true;
+
+				logger.info("Sending a trial request to host {}", PolitenessScheduler.getHost(url));
+
+				return true;
+			}
+
+			// While the trial is in flight, check back shortly for its outcome
+			due = breaker.isTrialInFlight ? now + baseDelay : breaker.openUntil;
+		}
+
+		retries.add(new Retry(url, due));
+
+		return false;
+	}
+
+	/**
+	 * Puts off a URL that cannot be requested yet, without using up its attempts.
+	 * <p>
+	 * The URL will be returned by {@link #pollDue()} once the delay has passed.
+	 *
+	 * @param url  the URL to put off, not null
+	 * @param delay  the amount of milliseconds to put the URL off
+	 */
+	public void putOff(String url, long delay) {
+		retries.add(new Retry(url, System.currentTimeMillis() + delay));
+	}
+
+	/**
+	 * @param host  the host that was requested, not null
+	 * @param isFailure  whether the request failed transiently
+	 */
+	private void updateBreaker(String host, boolean isFailure) {
+		Breaker breaker = breakers.computeIfAbsent(host, name -> new Breaker());
+		long now = System.currentTimeMillis();
+
+		synchronized (breaker) {
+			if (!isFailure) {
+				if (breaker.openUntil != 0) {
+					logger.info("Host {} has recovered", host);
+				}
+
+				breaker.consecutiveFailures = 0;
+				breaker.openUntil = 0;
+				breaker.isTrialInFlight = false;
+				breaker.cooldown = breakerCooldown;
+
+				return;
+			}
+
+			breaker.consecutiveFailures++;
+
+			if (breaker.isTrialInFlight) {
+				breaker.isTrialInFlight = false;
+				breaker.cooldown = Math.min(breaker.cooldown * 2, breakerCooldown * MAX_COOLDOWN_FACTOR);
+				breaker.openUntil = now + breaker.cooldown;
+
+				logger.warn("Trial request to host {} failed, holding it for {} milliseconds", host, breaker.cooldown);
+			} else if (breaker.openUntil == 0 && breaker.consecutiveFailures >= breakerThreshold) {
+				breaker.openUntil = now + breaker.cooldown;
+
+				logger.warn("Host {} failed {} times in a row, holding it for {} milliseconds",
+						host, breaker.consecutiveFailures, breaker.cooldown);
+			}
+		}
+	}
+
+	/**
+	 * Lets another trial request through, if the trial request of the host told nothing about
+	 * its health.
+	 *
+	 * @param host  the host that was requested, not null
+	 */
+	private void releaseTrial(String host) {
+		Breaker breaker = breakers.get(host);
+
+		if (breaker == null) {
+			return;
+		}
+
+		synchronized (breaker) {
+			breaker.isTrialInFlight = false;
+		}
+	}
+
+	/**
+	 * Returns the delay before a retry, with equal jitter: half of the exponential backoff is
+	 * always waited, and the other half is random.
+	 *
+	 * @param attempt  the number of the retry, starting at one
+	 * @return the delay in milliseconds
+	 */
+	long getBackoff(int attempt) {
+		// Stop doubling before the delay overflows
+		int shift = Math.min(attempt - 1, Long.numberOfLeadingZeros(baseDelay) - 1);
+		long cap = Math.min(maxDelay, baseDelay << shift);
+		long half = cap / 2;
+
+		return half + ThreadLocalRandom.current().nextLong(cap - half + 1);
+	}
+
+	/**
+	 * Takes the URL that is due the soonest, if its time has come.
+	 *
+	 * @return the URL to request again, null if none is due yet
+	 */
+	public String pollDue() {
+		Retry retry = retries.poll();
+
+		return retry != null ? retry.url : null;
+	}
+
+	/**
+	 * @return the amount of milliseconds until the next URL is due, zero if one already is,
+	 * negative if no URL is waiting
+	 */
+	public long getNextDelay() {
+		Retry retry = retries.peek();
+
+		return retry != null ? Math.max(0, retry.getDelay(TimeUnit.MILLISECONDS)) : -1;
+	}
+
+	/**
+	 * @param url  the URL to check, not null
+	 * @return true if a failed request for the URL is going to be retried, otherwise returns false
+	 */
+	public boolean isRetrying(String url) {
+		return attempts.containsKey(url);
+	}
+
+	/**
+	 * @return true if no URL is waiting to be retried, otherwise returns false
+	 */
+	public boolean isEmpty() {
+		return retries.isEmpty();
+	}
+
+	/**
+	 * @return the number of URLs waiting to be retried
+	 */
+	public int size() {
+		return retries.size();
+	}
+
+	/**
+	 * Returns the status code to report for a request that failed with an exception.
+	 *
+	 * @param e  the exception the request failed with, not null
+	 * @return the status code of the response if there was one, zero if the connection could not
+	 * be made, was reset or timed out, otherwise {@link #PERMANENT_FAILURE}
+	 */
+	static int getStatusCode(IOException e) {
+		if (e instanceof HttpStatusException) {
+			return ((HttpStatusException) e).getStatusCode();
+		}
+
+		// Timeouts, refused and reset connections, and servers that hung up without an answer
+		if (e instanceof InterruptedIOException || e instanceof SocketException
+				|| e instanceof NoHttpResponseException || e instanceof ConnectionClosedException) {
+			return 0;
+		}
+
+		return PERMANENT_FAILURE;
+	}
+
+	/**
+	 * @param statusCode  the status code of the response, zero if there was no response
+	 * @return whether asking again might get a different answer
+	 */
+	static boolean isTransient(int statusCode) {
+		return statusCode == 0 || statusCode == 408 || statusCode == 429 || (statusCode >= 500 && statusCode != 501);
+	}
+
+	/**
+	 * A URL waiting in the delay queue.
+	 */
+	private static final class Retry implements Delayed {
+		/**
+		 * The URL to request again.
+		 */
+		private final String url;
+		/**
+		 * The time, in milliseconds, at which the URL is due.
+		 */
+		private final long dueTime;
+
+		private Retry(String url, long dueTime) {
+			this.url = url;
+			this.dueTime = dueTime;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(dueTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			return Long.compare(dueTime, ((Retry) other).dueTime);
+		}
+	}
+
+	/**
+	 * The circuit breaker of a host.
+	 */
+	private final class Breaker {
+		/**
+		 * The number of transient failures since the last success.
+		 */
+		private int consecutiveFailures = 0;
+		/**
+		 * The time, in milliseconds, until which the breaker is open, zero if it is closed.
+		 */
+		private long openUntil = 0;
+		/**
+		 * Whether the trial request after the cooldown is in flight.
+		 */
+		private boolean isTrialInFlight = false;
+		/**
+		 * The amount of milliseconds the breaker stays open the next time it opens.
+		 */
+		private long cooldown = breakerCooldown;
+	}
+}
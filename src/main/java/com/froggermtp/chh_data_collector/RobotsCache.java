@@ -0,0 +1,259 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fetches the {@code robots.txt} file of every host once, and keeps its rules for the rest of
+ * the crawl.
+ * <p>
+ * As RFC 9309 asks, a host whose file is missing, that is whose server answers with a client
+ * error, is crawled as if its file allowed everything.
+ * So is a host whose file could not be read for any other reason than the server, such as an
+ * unknown host or an unsupported content type, as asking again would not change anything.
+ * A host whose file cannot be reached, because of a server error or a network error, is not
+ * crawled at all, as if its file disallowed everything.
+ * As such an error may only last a moment, the file is fetched again once
+ * {@code UNREACHABLE_RECHECK_DELAY} milliseconds have passed, and the URLs of the host can be put
+ * off until then rather than dropped.
+ * After {@code MAX_UNREACHABLE_FETCHES} failed fetches in a row, the host is given up, and is
+ * not crawled for the rest of the crawl.
+ * Only the first {@code MAX_LENGTH} bytes of a file are read, as RFC 9309 allows.
+ * <p>
+ * The files are fetched with the given fetcher, which should be polite to the hosts, as the
+ * files are fetched on their own, and not as part of the crawl.
+ * <p>
+ * This class is thread-safe.
+ * Two threads that ask for the rules of the same new host at once may both fetch its file.
+ */
+public class RobotsCache {
+	private static final Logger logger = LoggerFactory.getLogger(RobotsCache.class);
+
+	/**
+	 * The largest amount of bytes of a file that is parsed.
+	 */
+	static final int MAX_LENGTH = 500 * 1024;
+	/**
+	 * The amount of milliseconds after which a file that could not be reached is fetched again.
+	 */
+	static final long UNREACHABLE_RECHECK_DELAY = 60 * 1000;
+	/**
+	 * The number of failed fetches in a row of a file after which its host is given up.
+	 */
+	static final int MAX_UNREACHABLE_FETCHES = 5;
+
+	/**
+	 * Fetches the files.
+	 */
+	private final PageFetcher fetcher;
+	/**
+	 * The product token that the {@code User-agent} lines are matched against.
+	 */
+	private final String userAgent;
+	/**
+	 * The amount of milliseconds after which a file that could not be reached is fetched again.
+	 */
+	private final long recheckDelay;
+	/**
+	 * The rules of every host, by the scheme, host and port of its URLs.
+	 */
+	private final ConcurrentMap<String, Entry> rules = new ConcurrentHashMap<>();
+
+	/**
+	 * @param fetcher  the fetcher that fetches the files, not null
+	 * @param userAgent  the product token of the web crawler, not null
+	 */
+	public RobotsCache(PageFetcher fetcher, String userAgent) {
+		this(fetcher, userAgent, UNREACHABLE_RECHECK_DELAY);
+	}
+
+	/**
+	 * @param fetcher  the fetcher that fetches the files, not null
+	 * @param userAgent  the product token of the web crawler, not null
+	 * @param recheckDelay  the amount of milliseconds after which a file that could not be
+	 * reached is fetched again
+	 */
+	RobotsCache(PageFetcher fetcher, String userAgent, long recheckDelay) {
+		this.fetcher = fetcher;
+		this.userAgent = userAgent;
+		this.recheckDelay = recheckDelay;
+	}
+
+	/**
+	 * Returns the rules of the host of a URL, fetching its {@code robots.txt} file if it has not
+	 * been fetched yet, or if it could not be reached a while ago.
+	 *
+	 * @param url  the absolute URL, not null
+	 * @return the rules of the host, not null
+	 */
+	public RobotsTxt get(String url) {
+		String origin = getOrigin(url);
+		Entry entry = rules.get(origin);
+
+		if (entry == null || entry.expiresAt <= System.currentTimeMillis()) {
+			entry = fetch(origin, entry != null ? entry.failedFetches : 0);
+			rules.put(origin, entry);
+		}
+
+		return entry.robots;
+	}
+
+	/**
+	 * Returns the rules of the host of a URL, without fetching its {@code robots.txt} file.
+	 *
+	 * @param url  the absolute URL, not null
+	 * @return the rules of the host, null if its file has not been fetched yet
+	 */
+	public RobotsTxt getIfPresent(String url) {
+		Entry entry = rules.get(getOrigin(url));
+
+		return entry != null ? entry.robots : null;
+	}
+
+	/**
+	 * @param url  the absolute URL, not null
+	 * @return true if the {@code robots.txt} file of its host allows the URL to be crawled,
+	 * otherwise returns false
+	 */
+	public boolean isAllowed(String url) {
+		return get(url).isAllowed(url);
+	}
+
+	/**
+	 * Determines whether the {@code robots.txt} file of the host of a URL could not be reached,
+	 * and is going to be fetched again, without fetching it.
+	 *
+	 * @param url  the absolute URL, not null
+	 * @return true if the file could not be reached, otherwise returns false
+	 */
+	public boolean isUnreachable(String url) {
+		return getRecheckDelay(url) >= 0;
+	}
+
+	/**
+	 * Returns how long until the {@code robots.txt} file of the host of a URL, which could not be
+	 * reached, is fetched again.
+	 *
+	 * @param url  the absolute URL, not null
+	 * @return the amount of milliseconds until the file is fetched again, zero if it is due,
+	 * negative if the file has not been fetched yet, could be read, or was given up
+	 */
+	public long getRecheckDelay(String url) {
+		Entry entry = rules.get(getOrigin(url));
+
+		if (entry == null || entry.expiresAt == Long.MAX_VALUE) {
+			return -1;
+		}
+
+		return Math.max(0, entry.expiresAt - System.currentTimeMillis());
+	}
+
+	/**
+	 * @return the number of hosts whose rules are kept
+	 */
+	public int size() {
+		return rules.size();
+	}
+
+	/**
+	 * Fetches and parses the {@code robots.txt} file of a host.
+	 *
+	 * @param origin  the scheme, host and port of the host, not null
+	 * @param failedFetches  the number of failed fetches in a row of the file so far
+	 * @return the rules of the host, not null
+	 */
+	private Entry fetch(String origin, int failedFetches) {
+		String url = origin + "/robots.txt";
+		FetchedPage page = null;
+		int statusCode;
+
+		try {
+			page = fetcher.fetch(url);
+			statusCode = page.getStatusCode();
+		} catch (IOException e) {
+			statusCode = RetryScheduler.getStatusCode(e);
+
+			if (statusCode == RetryScheduler.PERMANENT_FAILURE) {
+				logger.warn("Could not read robots.txt at {}, allowing the host", url, e);
+
+				return new Entry(RobotsTxt.ALLOW_ALL, Long.MAX_VALUE);
+			}
+		}
+
+		if (statusCode == 0 || statusCode >= 500) {
+			if (failedFetches + 1 >= MAX_UNREACHABLE_FETCHES) {
+				logger.warn("Could not reach robots.txt at {} {} times, giving up the host: status {}",
+						url, failedFetches + 1, statusCode);
+
+				return new Entry(RobotsTxt.DISALLOW_ALL, Long.MAX_VALUE);
+			}
+
+			logger.warn("Could not reach robots.txt at {}, disallowing the host for now: status {}",
+					url, statusCode);
+
+			return new Entry(RobotsTxt.DISALLOW_ALL, System.currentTimeMillis() + recheckDelay,
+					failedFetches + 1);
+		}
+
+		if (statusCode < 200 || statusCode >= 300) {
+			logger.debug("No robots.txt at {}: status {}", url, statusCode);
+
+			return new Entry(RobotsTxt.ALLOW_ALL, Long.MAX_VALUE);
+		}
+
+		byte[] body = page.getBody();
+		String content = CharsetSniffer.decode(body, Math.min(body.length, MAX_LENGTH),
+				CharsetSniffer.detect(page));
+
+		logger.debug("Fetched robots.txt at {}", url);
+
+		return new Entry(RobotsTxt.parse(content, userAgent), Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param url  the absolute URL, not null
+	 * @return the scheme, host and port of the URL, not null
+	 */
+	static String getOrigin(String url) {
+		int schemeEnd = url.indexOf("://");
+		int end = schemeEnd >= 0 ? schemeEnd + 3 : 0;
+
+		while (end < url.length() && url.charAt(end) != '/' && url.charAt(end) != '?' && url.charAt(end) != '#') {
+			end++;
+		}
+
+		return url.substring(0, end).toLowerCase();
+	}
+
+	/**
+	 * The rules of a host, and when they have to be fetched again, if ever.
+	 */
+	private static final class Entry {
+		/**
+		 * The rules of the host.
+		 */
+		final RobotsTxt robots;
+		/**
+		 * The time, in milliseconds, from which the rules have to be fetched again.
+		 */
+		final long expiresAt;
+		/**
+		 * The number of failed fetches in a row of the file, zero if it could be read.
+		 */
+		final int failedFetches;
+
+		Entry(RobotsTxt robots, long expiresAt) {
+			this(robots, expiresAt, 0);
+		}
+
+		Entry(RobotsTxt robots, long expiresAt, int failedFetches) {
+			this.robots = robots;
+			this.expiresAt = expiresAt;
+			this.failedFetches = failedFetches;
+		}
+	}
+}
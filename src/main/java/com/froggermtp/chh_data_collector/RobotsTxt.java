@@ -0,0 +1,285 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The rules of a {@code robots.txt} file that apply to the web crawler, as described by
+ * RFC 9309.
+ * <p>
+ * Only the groups whose {@code User-agent} lines name the product token of the web crawler are
+ * used, or the {@code *} groups if none do.
+ * Of the {@code Allow} and {@code Disallow} rules that match the path of a URL, the longest one
+ * wins, and {@code Allow} wins a tie.
+ * A rule may use {@code *} for any run of characters, and end with {@code $} to match the end of
+ * the path.
+ * <p>
+ * The non-standard {@code Crawl-delay} rule of the groups is kept too, as are the
+ * {@code Sitemap} lines, which apply to every user agent.
+ * <p>
+ * This class is immutable, and therefore thread-safe.
+ */
+public final class RobotsTxt {
+	/**
+	 * The rules of a missing or unreadable {@code robots.txt} file, which allow everything.
+	 */
+	public static final RobotsTxt ALLOW_ALL =
+			new RobotsTxt(new String[0], new boolean[0], -1, Collections.<String>emptyList());
+	/**
+	 * The rules of a {@code robots.txt} file that cannot be reached, which disallow everything
+	 * but the file itself.
+	 */
+	public static final RobotsTxt DISALLOW_ALL =
+			new RobotsTxt(new String[] { "/" }, new boolean[] { false }, -1, Collections.<String>emptyList());
+
+	/**
+	 * The path patterns of the rules.
+	 */
+	private final String[] patterns;
+	/**
+	 * Whether every rule is an {@code Allow} rule, rather than a {@code Disallow} rule.
+	 */
+	private final boolean[] allows;
+	/**
+	 * The delay asked for between two requests, in milliseconds, negative if none is asked for.
+	 */
+	private final long crawlDelay;
+	/**
+	 * The URLs of the sitemaps listed by the file.
+	 */
+	private final List<String> sitemaps;
+
+	private RobotsTxt(String[] patterns, boolean[] allows, long crawlDelay, List<String> sitemaps) {
+		this.patterns = patterns;
+		this.allows = allows;
+		this.crawlDelay = crawlDelay;
+		this.sitemaps = Collections.unmodifiableList(sitemaps);
+	}
+
+	/**
+	 * Parses a {@code robots.txt} file.
+	 * <p>
+	 * Lines that cannot be understood are ignored, so every file can be parsed.
+	 *
+	 * @param content  the content of the file, not null
+	 * @param userAgent  the product token of the web crawler, such as {@code chh-data-collector},
+	 * not null
+	 * @return the rules that apply to the web crawler, not null
+	 */
+	public static RobotsTxt parse(String content, String userAgent) {
+		List<String> patterns = new ArrayList<>();
+		List<Boolean> allows = new ArrayList<>();
+		List<String> defaultPatterns = new ArrayList<>();
+		List<Boolean> defaultAllows = new ArrayList<>();
+		List<String> sitemaps = new ArrayList<>();
+		long crawlDelay = -1;
+		long defaultCrawlDelay = -1;
+		boolean hasOwnGroup = false;
+		// Whether the current group applies to the web crawler, or to every user agent
+		boolean isOwnGroup = false;
+		boolean isDefaultGroup = false;
+		// Consecutive user agent lines belong to the same group
+		boolean isInUserAgents = false;
+
+		for (String line : content.split("\r\n|\r|\n")) {
+			int comment = line.indexOf('#');
+			int colon = (comment >= 0 ? line.substring(0, comment) : line).indexOf(':');
+
+			if (colon < 0) {
+				continue;
+			}
+
+			String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+			String value = line.substring(colon + 1, comment >= 0 ? comment : line.length()).trim();
+
+			if (key.equals("user-agent")) {
+				if (!isInUserAgents) {
+					isOwnGroup = false;
+					isDefaultGroup = false;
+				}
+
+				String token = value.split("[/\\s]", 2)[0];
+
+				if (token.equalsIgnoreCase(userAgent)) {
+					isOwnGroup = true;
+					hasOwnGroup = true;
+				} else if (token.equals("*")) {
+					isDefaultGroup = true;
+				}
+
+				isInUserAgents = true;
+				continue;
+			}
+
+			isInUserAgents = false;
+
+			if (key.equals("sitemap")) {
+				if (!value.isEmpty()) {
+					sitemaps.add(value);
+				}
+			} else if (key.equals("allow") || key.equals("disallow")) {
+				// An empty disallow rule disallows nothing
+				if (value.isEmpty()) {
+					continue;
+				}
+
+				if (isOwnGroup) {
+					patterns.add(value);
+					allows.add(key.equals("allow"));
+				}
+
+				if (isDefaultGroup) {
+					defaultPatterns.add(value);
+					defaultAllows.add(key.equals("allow"));
+				}
+			} else if (key.equals("crawl-delay")) {
+				long delay = parseCrawlDelay(value);
+
+				if (isOwnGroup) {
+					crawlDelay = Math.max(crawlDelay, delay);
+				}
+
+				if (isDefaultGroup) {
+					defaultCrawlDelay = Math.max(defaultCrawlDelay, delay);
+				}
+			}
+		}
+
+		if (!hasOwnGroup) {
+			patterns = defaultPatterns;
+			allows = defaultAllows;
+			crawlDelay = defaultCrawlDelay;
+		}
+
+		boolean[] allowArray = new boolean[allows.size()];
+
+		for (int i = 0; i < allowArray.length; i++) {
+			allowArray[i] = allows.get(i);
+		}
+
+		return new RobotsTxt(patterns.toArray(new String[0]), allowArray, crawlDelay, sitemaps);
+	}
+
+	/**
+	 * Determines whether the rules allow a URL to be crawled.
+	 * <p>
+	 * The {@code robots.txt} file itself is always allowed.
+	 *
+	 * @param url  the absolute URL, not null
+	 * @return true if the URL may be crawled, otherwise returns false
+	 */
+	public boolean isAllowed(String url) {
+		String path = getPath(url);
+		int longest = -1;
+		boolean isAllowed = true;
+
+		if (path.equals("/robots.txt")) {
+			return true;
+		}
+
+		for (int i = 0; i < patterns.length; i++) {
+			int length = patterns[i].length();
+
+			if ((length > longest || length == longest && allows[i]) && matches(patterns[i], path)) {
+				longest = length;
+				isAllowed = allows[i];
+			}
+		}
+
+		return isAllowed;
+	}
+
+	/**
+	 * @return the delay asked for between two requests, in milliseconds, negative if none is
+	 * asked for
+	 */
+	public long getCrawlDelay() {
+		return crawlDelay;
+	}
+
+	/**
+	 * @return the URLs of the sitemaps listed by the file, not null
+	 */
+	public List<String> getSitemaps() {
+		return sitemaps;
+	}
+
+	/**
+	 * Determines whether a rule matches a path.
+	 * <p>
+	 * A rule matches every path that begins as it does, unless it ends with {@code $}.
+	 *
+	 * @param pattern  the path pattern of the rule, not null
+	 * @param path  the path and query of a URL, not null
+	 * @return true if the rule matches the path, otherwise returns false
+	 */
+	static boolean matches(String pattern, String path) {
+		boolean isAnchored = pattern.endsWith("$");
+		int patternEnd = isAnchored ? pattern.length() - 1 : pattern.length();
+		int p = 0;
+		int s = 0;
+		// The position after the last wildcard, and where the path resumes if the match fails
+		int star = -1;
+		int resume = 0;
+
+		while (true) {
+			if (p == patternEnd && (!isAnchored || s == path.length())) {
+				return true;
+			}
+
+			if (p < patternEnd && pattern.charAt(p) == '*') {
+				star = ++p;
+				resume = s;
+			} else if (p < patternEnd && s < path.length() && pattern.charAt(p) == path.charAt(s)) {
+				p++;
+				s++;
+			} else if (star >= 0 && resume < path.length()) {
+				// Let the last wildcard take one more character
+				p = star;
+				s = ++resume;
+			} else {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * @param url  the absolute URL, not null
+	 * @return the path and query of the URL, {@code /} if the path is empty, not null
+	 */
+	private static String getPath(String url) {
+		int schemeEnd = url.indexOf("://");
+		int start = schemeEnd >= 0 ? schemeEnd + 3 : 0;
+		int end = url.indexOf('#');
+
+		if (end < 0) {
+			end = url.length();
+		}
+
+		while (start < end && url.charAt(start) != '/' && url.charAt(start) != '?') {
+			start++;
+		}
+
+		if (start == end || url.charAt(start) == '?') {
+			return "/" + url.substring(start, end);
+		}
+
+		return url.substring(start, end);
+	}
+
+	/**
+	 * @param value  the value of a {@code Crawl-delay} line, in seconds, not null
+	 * @return the delay in milliseconds, negative if the value is not a number
+	 */
+	private static long parseCrawlDelay(String value) {
+		try {
+			double seconds = Double.parseDouble(value);
+
+			return seconds >= 0 && !Double.isInfinite(seconds) ? (long) (seconds * 1000) : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A {@link UrlFilter} that only accepts URLs beginning with one of the seed URLs.
+ * <p>
+ * The seeds are compiled into a trie, so checking a URL costs one pass over at most the length
+ * of the longest seed, no matter how many seeds there are.
+ */
+public class SeedPrefixFilter implements UrlFilter {
+	/**
+	 * The root of the trie of seed URLs.
+	 */
+	private final Node root = new Node();
+	
+	/**
+	 * @param seedUrls  the seed URLs that accepted URLs must begin with, not null
+	 */
+	public SeedPrefixFilter(Collection<String> seedUrls) {
+		for (String seedUrl : seedUrls) {
+			Node node = root;
+			
+			for (int i = 0; i < seedUrl.length(); i++) {
+				node = node.getOrAddChild(seedUrl.charAt(i));
+			}
+			
+			node.isSeedEnd = true;
+		}
+	}
+
+	@Override
+	public boolean accept(String url) {
+		Node node = root;
+		
+		for (int i = 0; i < url.length() && !node.isSeedEnd; i++) {
+			node = node.getChild(url.charAt(i));
+			
+			if (node == null) {
+				return false;
+			}
+		}
+		
+		return node.isSeedEnd;
+	}
+	
+	/**
+	 * A node of the trie.
+	 * <p>
+	 * The children are kept in parallel arrays sorted by character, because most nodes of a trie
+	 * of URLs have a single child.
+	 */
+	private static final class Node {
+		private char[] keys = new char[0];
+		private Node[] children = new Node[0];
+		/**
+		 * Whether a seed URL ends at this node.
+		 */
+		private boolean isSeedEnd = false;
+		
+		private Node getChild(char c) {
+			int i = Arrays.binarySearch(keys, c);
+			
+			return i >= 0 ? children[i] : null;
+		}
+		
+		private Node getOrAddChild(char c) {
+			int i = Arrays.binarySearch(keys, c);
+			
+			if (i >= 0) {
+				return children[i];
+			}
+			
+			int insertAt = -i - 1;
+			Node child = new Node();
+			
+			char[] newKeys = new char[keys.length + 1];
+			Node[] newChildren = new Node[children.length + 1];
+			
+			System.arraycopy(keys, 0, newKeys, 0, insertAt);
+			System.arraycopy(children, 0, newChildren, 0, insertAt);
+			newKeys[insertAt] = c;
+			newChildren[insertAt] = child;
+			System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+			System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+			
+			keys = newKeys;
+			children = newChildren;
+			
+			return child;
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package com.froggermtp.chh_data_collector;
+
+/**
+ * Computes SimHash fingerprints of the text of pages.
+ * <p>
+ * A SimHash is a 64-bit fingerprint in which similar texts get similar bits: every overlapping
+ * run of {@code SHINGLE_SIZE} words is hashed, and every bit of the fingerprint is set if that bit
+ * is set in most of the hashes.
+ * Changing a few words of a long text changes a few hashes, which flips few bits, if any, so the
+ * number of bits in which two fingerprints differ measures how different the texts are.
+ * <p>
+ * Only the main text of a page should be fingerprinted, without the navigation, sidebars and
+ * footers that every page of a site shares.
+ * Those would otherwise outweigh the content, and make different pages of the same site look
+ * alike; see {@link WebCrawler#getMainContentSelector()}.
+ * A word is a run of letters and digits, compared without regard to case.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class SimHash {
+	/**
+	 * The fingerprint of a text that has too few words to be fingerprinted.
+	 */
+	public static final long NONE = 0L;
+	/**
+	 * The number of consecutive words hashed together.
+	 */
+	static final int SHINGLE_SIZE = 3;
+
+	private SimHash() {
+		// Static helpers only
+	}
+
+	/**
+	 * Computes the SimHash of a text.
+	 *
+	 * @param text  the text, without markup, not null
+	 * @return the fingerprint, {@link #NONE} if the text has fewer than {@link #SHINGLE_SIZE} words
+	 */
+	public static long of(CharSequence text) {
+		final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+		final long FNV_PRIME = 0x100000001b3L;
+
+		int[] counts = new int[Long.SIZE];
+		long[] words = new long[SHINGLE_SIZE];
+		int wordCount = 0;
+		long word = FNV_OFFSET_BASIS;
+		boolean isInWord = false;
+		int length = text.length();
+
+		for (int i = 0; i <= length; i++) {
+			char c = i < length ? text.charAt(i) : ' ';
+
+			if (Character.isLetterOrDigit(c)) {
+				word = (word ^ Character.toLowerCase(c)) * FNV_PRIME;
+				isInWord = true;
+				continue;
+			}
+
+			if (isInWord) {
+				words[wordCount % SHINGLE_SIZE] = word;
+				wordCount++;
+
+				if (wordCount >= SHINGLE_SIZE) {
+					add(counts, shingle(words, wordCount));
+				}
+
+				word = FNV_OFFSET_BASIS;
+				isInWord = false;
+			}
+		}
+
+		if (wordCount < SHINGLE_SIZE) {
+			return NONE;
+		}
+
+		long fingerprint = 0;
+
+		for (int bit = 0; bit < Long.SIZE; bit++) {
+			if (counts[bit] > 0) {
+				fingerprint |= 1L << bit;
+			}
+		}
+
+		return fingerprint;
+	}
+
+	/**
+	 * @param a  a fingerprint
+	 * @param b  another fingerprint
+	 * @return the number of bits in which the fingerprints differ
+	 */
+	public static int distance(long a, long b) {
+		return Long.bitCount(a ^ b);
+	}
+
+	/**
+	 * Hashes the last {@link #SHINGLE_SIZE} words, in order.
+	 *
+	 * @param words  the hashes of the last words, as a ring indexed by word number, not null
+	 * @param wordCount  the number of words read so far
+	 * @return the hash of the shingle
+	 */
+	private static long shingle(long[] words, int wordCount) {
+		long hash = 0;
+
+		for (int n = wordCount - SHINGLE_SIZE; n < wordCount; n++) {
+			hash = Long.rotateLeft(hash, 21) ^ words[n % SHINGLE_SIZE];
+		}
+
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+
+		return hash;
+	}
+
+	/**
+	 * Adds the bits of a hash to the votes for every bit of the fingerprint.
+	 */
+	private static void add(int[] counts, long hash) {
+		for (int bit = 0; bit < Long.SIZE; bit++) {
+			counts[bit] += (hash >>> bit & 1) != 0 ? 1 : -1;
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package com.froggermtp.chh_data_collector;
+
+/**
+ * An in-memory index of {@link SimHash} fingerprints that finds near-duplicates: fingerprints
+ * that differ from a given one in at most a fixed number of bits.
+ * <p>
+ * The lookup is banded.
+ * The 64 bits are split into one more band than the largest distance, so two fingerprints
+ * within that distance agree on at least one whole band.
+ * Every band has its own table, in which the fingerprints are found by the bits of that band, so
+ * a lookup only compares a fingerprint with the few fingerprints that share one of its bands,
+ * rather than with every fingerprint in the index.
+ * <p>
+ * Like {@link FingerprintUrlSet}, the tables are primitive {@code long} arrays with open
+ * addressing and linear probing, so there are no per-page objects, and the index takes
+ * {@code 16 * (distance + 1)} to {@code 32 * (distance + 1)} bytes per page.
+ * <p>
+ * This class is thread-safe.
+ */
+public class SimHashIndex {
+	/**
+	 * The largest distance the index can look up.
+	 * <p>
+	 * Beyond it, the bands are so narrow that a lookup compares with a large part of the index.
+	 */
+	public static final int MAX_DISTANCE = 7;
+
+	/**
+	 * The fraction of the tables that may be filled before the tables are doubled.
+	 */
+	private static final double MAX_LOAD_FACTOR = 0.5;
+	/**
+	 * Marks an empty slot in a table, which is also why {@link SimHash#NONE} is never indexed.
+	 */
+	private static final long EMPTY = SimHash.NONE;
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/**
+	 * The largest number of bits in which a near-duplicate differs.
+	 */
+	private final int distance;
+	/**
+	 * The index of the lowest bit of every band, and the index after the last band.
+	 */
+	private final int[] bandStarts;
+	/**
+	 * The open-addressing table of every band, in which the fingerprints are placed by the bits
+	 * of that band.
+	 * <p>
+	 * The length of the tables is always the same power of two.
+	 */
+	private final long[][] tables;
+	/**
+	 * The number of fingerprints in the index.
+	 */
+	private int size = 0;
+
+	/**
+	 * @param distance  the largest number of bits in which a near-duplicate differs, from 0 to
+	 * {@link #MAX_DISTANCE}
+	 */
+	public SimHashIndex(int distance) {
+		if (distance < 0 || distance > MAX_DISTANCE) {
+			throw new IllegalArgumentException("Distance must be between 0 and " + MAX_DISTANCE + ": " + distance);
+		}
+
+		int bandCount = distance + 1;
+
+		this.distance = distance;
+		this.bandStarts = new int[bandCount + 1];
+		this.tables = new long[bandCount][INITIAL_CAPACITY];
+
+		for (int band = 0; band <= bandCount; band++) {
+			bandStarts[band] = band * Long.SIZE / bandCount;
+		}
+	}
+
+	/**
+	 * Adds a fingerprint to the index, unless the index holds a near-duplicate of it.
+	 *
+	 * @param fingerprint  the fingerprint of a page
+	 * @return true if the fingerprint was added, false if it is a near-duplicate or
+	 * {@link SimHash#NONE}
+	 */
+	public synchronized boolean add(long fingerprint) {
+		if (fingerprint == EMPTY || containsNearDuplicate(fingerprint)) {
+			return false;
+		}
+
+		if (size + 1 > tables[0].length * MAX_LOAD_FACTOR) {
+			resize();
+		}
+
+		for (int band = 0; band < tables.length; band++) {
+			insert(tables[band], band, fingerprint);
+		}
+
+		size++;
+
+		return true;
+	}
+
+	/**
+	 * @param fingerprint  the fingerprint of a page
+	 * @return true if the index holds a fingerprint that differs from it in at most the distance
+	 * of the index, otherwise returns false
+	 */
+	public synchronized boolean containsNearDuplicate(long fingerprint) {
+		for (int band = 0; band < tables.length; band++) {
+			long[] table = tables[band];
+			int mask = table.length - 1;
+			long bits = band(band, fingerprint);
+
+			// Every fingerprint with the same band bits lies between the home slot and the next empty slot
+			for (int i = index(bits, mask); table[i] != EMPTY; i = (i + 1) & mask) {
+				if (band(band, table[i]) == bits && SimHash.distance(table[i], fingerprint) <= distance) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return the number of fingerprints in the index
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * @return the amount of bytes used by the tables
+	 */
+	public synchronized long getMemoryUsage() {
+		return (long) tables.length * tables[0].length * Long.BYTES;
+	}
+
+	/**
+	 * Inserts a fingerprint into the table of a band.
+	 */
+	private void insert(long[] table, int band, long fingerprint) {
+		int mask = table.length - 1;
+		int i = index(band(band, fingerprint), mask);
+
+		while (table[i] != EMPTY) {
+			i = (i + 1) & mask;
+		}
+
+		table[i] = fingerprint;
+	}
+
+	/**
+	 * Doubles the size of the tables.
+	 */
+	private void resize() {
+		if (tables[0].length == 1 << 30) {
+			throw new IllegalStateException("The SimHash tables cannot grow any further");
+		}
+
+		for (int band = 0; band < tables.length; band++) {
+			long[] resized = new long[tables[band].length * 2];
+
+			for (long fingerprint : tables[band]) {
+				if (fingerprint != EMPTY) {
+					insert(resized, band, fingerprint);
+				}
+			}
+
+			tables[band] = resized;
+		}
+	}
+
+	/**
+	 * @return the bits of a band of the fingerprint, shifted down
+	 */
+	private long band(int band, long fingerprint) {
+		int width = bandStarts[band + 1] - bandStarts[band];
+		long mask = width == Long.SIZE ? -1L : (1L << width) - 1;
+
+		return fingerprint >>> bandStarts[band] & mask;
+	}
+
+	/**
+	 * Returns the home slot of the bits of a band.
+	 * <p>
+	 * The bits of a band are few and not mixed, so they are mixed before they pick a slot.
+	 */
+	private static int index(long bits, int mask) {
+		long hash = bits * 0x9e3779b97f4a7c15L;
+
+		return (int) (hash >>> 32) & mask;
+	}
+}
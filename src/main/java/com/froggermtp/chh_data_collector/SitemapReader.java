@@ -0,0 +1,235 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the URLs listed by sitemaps, following sitemap index files to the sitemaps they list.
+ * <p>
+ * Sitemaps are streamed with StAX, so every URL is handed over as soon as it is read, and a
+ * sitemap is never held as a tree, nor as a list of URLs.
+ * Gzipped sitemaps are recognized by their first bytes and decompressed as they are read.
+ * A sitemap that ends early, for example because the fetcher cut off its body, still yields the
+ * URLs read before the end.
+ * <p>
+ * If a date is given, entries whose {@code lastmod} is older are skipped, and so are the
+ * sitemaps of an index whose {@code lastmod} is older.
+ * Entries without a {@code lastmod} are always read.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class SitemapReader {
+	private static final Logger logger = LoggerFactory.getLogger(SitemapReader.class);
+
+	/**
+	 * The largest number of sitemaps that are fetched by a single read, which stops sitemap
+	 * indexes that list each other from being followed forever.
+	 */
+	static final int MAX_SITEMAPS = 1000;
+
+	/**
+	 * Fetches the sitemaps.
+	 */
+	private final PageFetcher fetcher;
+	/**
+	 * The date before which the entries are skipped, null to read every entry.
+	 */
+	private final Instant modifiedSince;
+	/**
+	 * Creates the StAX readers, with DTDs and external entities disabled.
+	 */
+	private final XMLInputFactory factory = XMLInputFactory.newInstance();
+
+	/**
+	 * @param fetcher  the fetcher that fetches the sitemaps, not null
+	 * @param modifiedSince  the date before which the entries are skipped, null to read every
+	 * entry
+	 */
+	public SitemapReader(PageFetcher fetcher, Instant modifiedSince) {
+		this.fetcher = fetcher;
+		this.modifiedSince = modifiedSince;
+
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
+
+	/**
+	 * Reads the URLs of sitemaps, and of the sitemaps listed by the sitemap indexes among them.
+	 * <p>
+	 * Sitemaps that cannot be fetched or parsed are skipped.
+	 *
+	 * @param sitemapUrls  the URLs of the sitemaps or sitemap indexes, not null
+	 * @param urls  receives every URL that was not skipped, in order, not null
+	 * @return the number of URLs received
+	 */
+	public long read(Collection<String> sitemapUrls, Consumer<String> urls) {
+		Deque<String> pending = new ArrayDeque<>(sitemapUrls);
+		Set<String> fetched = new HashSet<>();
+		// Counted as they are handed over, as a sitemap may break after some of its URLs
+		long[] count = new long[1];
+
+		while (!pending.isEmpty() && fetched.size() < MAX_SITEMAPS) {
+			String sitemapUrl = pending.poll();
+
+			if (!fetched.add(sitemapUrl)) {
+				continue;
+			}
+
+			long before = count[0];
+
+			try {
+				FetchedPage page = fetcher.fetch(sitemapUrl);
+
+				if (page.getStatusCode() < 200 || page.getStatusCode() >= 300) {
+					logger.warn("Could not fetch the sitemap {}: status {}", sitemapUrl, page.getStatusCode());
+					continue;
+				}
+
+				parse(page.getBody(), (isSitemap, loc, lastModified) -> {
+					if (modifiedSince != null && lastModified != null && lastModified.isBefore(modifiedSince)) {
+						return;
+					}
+
+					if (isSitemap) {
+						pending.add(loc);
+					} else {
+						urls.accept(loc);
+						count[0]++;
+					}
+				});
+
+				logger.info("Read {} urls from the sitemap {}", count[0] - before, sitemapUrl);
+			} catch (IOException | XMLStreamException e) {
+				logger.warn("Could not read the whole sitemap {}, only {} urls", sitemapUrl, count[0] - before, e);
+			}
+		}
+
+		if (!pending.isEmpty()) {
+			logger.warn("Stopped after {} sitemaps, skipping {} more", fetched.size(), pending.size());
+		}
+
+		return count[0];
+	}
+
+	/**
+	 * Streams the entries of a sitemap or a sitemap index.
+	 * <p>
+	 * The entries are handed over as they are read, so the entries before a parse error have
+	 * been handed over when it is thrown.
+	 *
+	 * @param body  the sitemap, plain or gzipped, not null
+	 * @param entries  receives every entry that has a {@code loc}, not null
+	 * @throws IOException if the gzipped sitemap is corrupt
+	 * @throws XMLStreamException if the sitemap is not well-formed
+	 */
+	void parse(byte[] body, EntryHandler entries) throws IOException, XMLStreamException {
+		InputStream in = new ByteArrayInputStream(body);
+
+		if (body.length >= 2 && (body[0] & 0xFF) == 0x1F && (body[1] & 0xFF) == 0x8B) {
+			in = new GZIPInputStream(in);
+		}
+
+		XMLStreamReader reader = factory.createXMLStreamReader(in);
+
+		try {
+			boolean isSitemap = false;
+			String loc = null;
+			String lastModified = null;
+
+			while (reader.hasNext()) {
+				int event = reader.next();
+
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					String name = reader.getLocalName();
+
+					if (name.equals("url") || name.equals("sitemap")) {
+						isSitemap = name.equals("sitemap");
+						loc = null;
+						lastModified = null;
+					} else if (name.equals("loc")) {
+						loc = reader.getElementText().trim();
+					} else if (name.equals("lastmod")) {
+						lastModified = reader.getElementText().trim();
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					String name = reader.getLocalName();
+
+					if ((name.equals("url") || name.equals("sitemap")) && loc != null && !loc.isEmpty()) {
+						entries.onEntry(isSitemap, loc, parseLastModified(lastModified));
+						loc = null;
+					}
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Parses a {@code lastmod} date, in any of the W3C datetime formats that sitemaps use: a
+	 * year, a month, a day, or a time with a time zone.
+	 * <p>
+	 * Dates without a time zone are taken to be in UTC.
+	 *
+	 * @param date  the date, null if the entry has none
+	 * @return the date, null if the entry has none or it cannot be parsed
+	 */
+	static Instant parseLastModified(String date) {
+		if (date == null) {
+			return null;
+		}
+
+		try {
+			switch (date.length()) {
+			case 4:
+				return Year.parse(date).atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+			case 7:
+				return YearMonth.parse(date).atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+			case 10:
+				return LocalDate.parse(date).atStartOfDay().toInstant(ZoneOffset.UTC);
+			default:
+				return OffsetDateTime.parse(date).toInstant();
+			}
+		} catch (DateTimeParseException e) {
+			logger.debug("Could not parse the lastmod date {}", date);
+
+			return null;
+		}
+	}
+
+	/**
+	 * Receives the entries of a sitemap or a sitemap index.
+	 */
+	@FunctionalInterface
+	interface EntryHandler {
+		/**
+		 * @param isSitemap  whether the entry lists a sitemap, rather than a page
+		 * @param loc  the URL of the entry, not null
+		 * @param lastModified  the {@code lastmod} date of the entry, null if it has none
+		 */
+		void onEntry(boolean isSitemap, String loc, Instant lastModified);
+	}
+}
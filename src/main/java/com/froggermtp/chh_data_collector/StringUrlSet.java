@@ -0,0 +1,34 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link UrlSet} that keeps the full URL strings.
+ * <p>
+ * The set is exact, but every URL costs its full string plus a hash table entry.
+ * {@code UrlSetMemoryBenchmark} measured about 160 bytes per URL for a typical Rapzilla article
+ * URL on a 64-bit JVM with compressed references.
+ * For large crawls, {@link FingerprintUrlSet} uses a fraction of the memory.
+ */
+public class StringUrlSet implements UrlSet {
+	/**
+	 * Contains all the URLs in the set.
+	 */
+	private final Set<String> urls = ConcurrentHashMap.newKeySet();
+
+	@Override
+	public boolean add(String url) {
+		return urls.add(url);
+	}
+
+	@Override
+	public boolean contains(String url) {
+		return urls.contains(url);
+	}
+
+	@Override
+	public long size() {
+		return urls.size();
+	}
+}
@@ -0,0 +1,332 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Frontier} that keeps a small head of URLs on the heap and spills the rest to disk.
+ * <p>
+ * URLs are added to the in-memory head until it is full.
+ * From then on, URLs are appended to memory-mapped segment files in a local directory, until the
+ * spilled URLs have all been read back.
+ * Whenever the head runs empty, it is refilled with a whole batch of URLs read sequentially from
+ * the oldest segment, and a segment file is deleted as soon as it has been fully read.
+ * <p>
+ * Both writing and reading move sequentially through the segments, so no URL ever costs a disk
+ * seek, and the heap only ever holds the head, no matter how many URLs are pending.
+ * The URLs keep their first in, first out order across the head and the segments.
+ * <p>
+ * Each URL is stored as a four byte length followed by its UTF-8 bytes.
+ * <p>
+ * This class is thread-safe.
+ */
+public class TieredFrontier implements Frontier {
+	private static final Logger logger = LoggerFactory.getLogger(TieredFrontier.class);
+
+	/**
+	 * The default size of a segment file in bytes.
+	 */
+	static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+	/**
+	 * Marks the end of the records in a segment that was sealed before it was full.
+	 */
+	private static final int END_OF_SEGMENT = -1;
+
+	/**
+	 * The directory in which the segment files are created.
+	 */
+	private final Path directory;
+	/**
+	 * The maximum number of URLs kept on the heap.
+	 */
+	private final int headCapacity;
+	/**
+	 * The size of each segment file in bytes.
+	 */
+	private final int segmentSize;
+	/**
+	 * The URLs that are kept on the heap, which are always the oldest URLs in the frontier.
+	 */
+	private final ArrayDeque<String> head;
+	/**
+	 * The segments that hold the spilled URLs, from oldest to newest.
+	 */
+	private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+	/**
+	 * The number of URLs in the frontier, including the spilled ones.
+	 */
+	private long size = 0;
+
+	/**
+	 * @param directory  the directory in which the segment files are created, not null
+	 * @param headCapacity  the maximum number of URLs kept on the heap, must be positive
+	 */
+	public TieredFrontier(Path directory, int headCapacity) {
+		this(directory, headCapacity, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * @param directory  the directory in which the segment files are created, not null
+	 * @param headCapacity  the maximum number of URLs kept on the heap, must be positive
+	 * @param segmentSize  the size of each segment file in bytes, must be positive
+	 */
+	TieredFrontier(Path directory, int headCapacity, int segmentSize) {
+		if (headCapacity < 1) {
+			throw new IllegalArgumentException("Head capacity must be positive: " + headCapacity);
+		}
+
+		if (segmentSize < 1) {
+			throw new IllegalArgumentException("Segment size must be positive: " + segmentSize);
+		}
+
+		try {
+			Files.createDirectories(directory);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not create the frontier directory " + directory, e);
+		}
+
+		this.directory = directory;
+		this.headCapacity = headCapacity;
+		this.segmentSize = segmentSize;
+		this.head = new ArrayDeque<>(headCapacity);
+	}
+
+	@Override
+	public synchronized void add(String url) {
+		// Once anything has spilled, new URLs must queue up behind it on disk
+		if (segments.isEmpty() && head.size() < headCapacity) {
+			head.add(url);
+		} else {
+			spill(url);
+		}
+
+		size++;
+	}
+
+	@Override
+	public synchronized String poll() {
+		if (head.isEmpty()) {
+			refill();
+		}
+
+		String url = head.poll();
+
+		if (url != null) {
+			size--;
+		}
+
+		return url;
+	}
+
+	@Override
+	public synchronized boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public synchronized long size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of segment files currently on disk
+	 */
+	synchronized int getSegmentCount() {
+		return segments.size();
+	}
+
+	@Override
+	public synchronized void close() {
+		head.clear();
+
+		while (!segments.isEmpty()) {
+			segments.poll().delete();
+		}
+
+		size = 0;
+	}
+
+	/**
+	 * Appends a URL to the newest segment, starting a new segment if it does not fit.
+	 *
+	 * @param url  the URL to append, not null
+	 */
+	private void spill(String url) {
+		byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+		int recordSize = Integer.BYTES + bytes.length;
+
+		if (recordSize > segmentSize) {
+			throw new IllegalArgumentException("Url is too long for a frontier segment: " + url);
+		}
+
+		Segment segment = segments.peekLast();
+
+		if (segment == null || segment.sealed || segment.remainingForWrite() < recordSize) {
+			if (segment != null) {
+				segment.seal();
+			}
+
+			segment = new Segment(newSegmentFile(), segmentSize);
+			segments.add(segment);
+		}
+
+		segment.write(bytes);
+	}
+
+	/**
+	 * Moves up to {@code headCapacity} URLs from the oldest segments into the head.
+	 */
+	private void refill() {
+		while (head.size() < headCapacity && !segments.isEmpty()) {
+			Segment segment = segments.peek();
+			String url = segment.read();
+
+			if (url != null) {
+				head.add(url);
+				continue;
+			}
+
+			// The segment has been read up to its current end
+			if (!segment.sealed && segments.size() == 1) {
+				// It is also the segment being written, so seal it to free the disk space
+				segment.seal();
+			}
+
+			segments.poll().delete();
+		}
+
+		logger.debug("Refilled the frontier head with {} urls", head.size());
+	}
+
+	/**
+	 * @return a new, unique segment file in the frontier directory
+	 */
+	private Path newSegmentFile() {
+		try {
+			return Files.createTempFile(directory, "frontier-", ".seg");
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not create a frontier segment in " + directory, e);
+		}
+	}
+
+	/**
+	 * An append-only, memory-mapped file of URL records.
+	 */
+	private static final class Segment {
+		/**
+		 * The file that backs the segment.
+		 */
+		private final Path file;
+		/**
+		 * The mapped contents of the file, positioned where the next record is written.
+		 */
+		private final MappedByteBuffer writeBuffer;
+		/**
+		 * A view of the same mapping, positioned where the next record is read.
+		 */
+		private final ByteBuffer readBuffer;
+		/**
+		 * Whether no more records will be written to the segment.
+		 */
+		private boolean sealed = false;
+
+		private Segment(Path file, int size) {
+			this.file = file;
+
+			try (FileChannel channel = FileChannel.open(file,
+					StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				// The mapping stays valid after the channel is closed
+				this.writeBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Could not map the frontier segment " + file, e);
+			}
+
+			this.readBuffer = writeBuffer.duplicate();
+
+			logger.debug("Created frontier segment {}", file);
+		}
+
+		/**
+		 * @return the number of bytes that can still be written to the segment
+		 */
+		private int remainingForWrite() {
+			return writeBuffer.remaining();
+		}
+
+		/**
+		 * Appends a record to the segment.
+		 *
+		 * @param bytes  the UTF-8 bytes of the URL, not null
+		 */
+		private void write(byte[] bytes) {
+			writeBuffer.putInt(bytes.length);
+			writeBuffer.put(bytes);
+		}
+
+		/**
+		 * Stops any further records from being written to the segment.
+		 */
+		private void seal() {
+			if (writeBuffer.remaining() >= Integer.BYTES) {
+				writeBuffer.putInt(END_OF_SEGMENT);
+			}
+
+			sealed = true;
+		}
+
+		/**
+		 * Reads the next record from the segment.
+		 *
+		 * @return the next URL, null if every record written so far has been read
+		 */
+		private String read() {
+			int end = writeBuffer.position();
+
+			if (end - readBuffer.position() < Integer.BYTES) {
+				return null;
+			}
+
+			int length = readBuffer.getInt();
+
+			if (length == END_OF_SEGMENT) {
+				// Leave the marker in place so that every later read also ends here
+				readBuffer.position(readBuffer.position() - Integer.BYTES);
+				return null;
+			}
+
+			byte[] bytes = new byte[length];
+			readBuffer.get(bytes);
+
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * Deletes the file that backs the segment.
+		 * <p>
+		 * Some platforms do not allow a file to be deleted while it is still mapped, in which case the
+		 * file is deleted when the JVM exits instead.
+		 */
+		private void delete() {
+			try {
+				Files.deleteIfExists(file);
+
+				logger.debug("Deleted frontier segment {}", file);
+			} catch (IOException e) {
+				logger.debug("Could not delete frontier segment {} yet", file, e);
+
+				file.toFile().deleteOnExit();
+			}
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package com.froggermtp.chh_data_collector;
+
+/**
+ * How {@link UrlCanonicalizer} treats the slash at the end of the path of a URL.
+ * <p>
+ * Whether {@code /page} and {@code /page/} are the same page depends on the site, so every site
+ * has its own rule.
+ * The path {@code /} is never changed.
+ *
+ * @see WebCrawler#getTrailingSlash()
+ */
+public enum TrailingSlash {
+	/**
+	 * The paths are left as they are, so {@code /page} and {@code /page/} are different pages.
+	 */
+	KEEP,
+	/**
+	 * A slash is added to every path whose last segment does not look like a file name, such as
+	 * {@code /page}, but not {@code /page.html}.
+	 */
+	ADD,
+	/**
+	 * The slashes are removed from the end of every path.
+	 */
+	REMOVE
+}
@@ -0,0 +1,470 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rewrites URLs into a canonical form, so that the different spellings of the same page are
+ * only enqueued, and fetched, once.
+ * <p>
+ * A URL is made canonical by:
+ * <p><ul>
+ * <li>Lowercasing the scheme and the host.
+ * <li>Removing the default port of the scheme, and an empty port.
+ * <li>Resolving the {@code .} and {@code ..} segments of the path, and using {@code /} for an
+ * empty path.
+ * <li>Adding or removing the slash at the end of the path, as the {@link TrailingSlash} rule of
+ * the site says.
+ * <li>Removing the ignored query parameters and empty parameters, and sorting the rest.
+ * <li>Removing the fragment.
+ * </ul>
+ * <p>
+ * Most links are already canonical, so a URL is first checked in a single pass over its
+ * characters, without creating any objects, and returned as it is if it is canonical.
+ * Only the other URLs are rebuilt.
+ * <p>
+ * URLs that are not absolute http or https URLs are returned as they are, for the
+ * {@link UrlSyntaxFilter} to reject.
+ * <p>
+ * This class is thread-safe.
+ */
+public class UrlCanonicalizer {
+	/**
+	 * The query parameters that are ignored by default: the tracking parameters of analytics and
+	 * advertising links.
+	 */
+	public static final List<String> DEFAULT_IGNORED_PARAMETERS = Collections.unmodifiableList(
+			Arrays.asList("utm_*", "fbclid", "gclid", "mc_cid", "mc_eid"));
+
+	private static final String HTTP = "http://";
+	private static final String HTTPS = "https://";
+
+	/**
+	 * The names of the ignored query parameters, without the {@code *} of the prefixes.
+	 */
+	private final String[] ignoredNames;
+	/**
+	 * Whether every ignored name is a prefix, rather than a whole name.
+	 */
+	private final boolean[] isPrefix;
+	/**
+	 * The rule for the slash at the end of the paths.
+	 */
+	private final TrailingSlash trailingSlash;
+
+	/**
+	 * @param ignoredParameters  the names of the query parameters to remove, where a name that
+	 * ends with {@code *} stands for every name that begins with the rest of it, not null
+	 * @param trailingSlash  the rule for the slash at the end of the paths, not null
+	 */
+	public UrlCanonicalizer(Collection<String> ignoredParameters, TrailingSlash trailingSlash) {
+		this.ignoredNames = new String[ignoredParameters.size()];
+		this.isPrefix = new boolean[ignoredParameters.size()];
+		this.trailingSlash = trailingSlash;
+
+		int i = 0;
+
+		for (String name : ignoredParameters) {
+			isPrefix[i] = name.endsWith("*");
+			ignoredNames[i] = isPrefix[i] ? name.substring(0, name.length() - 1) : name;
+			i++;
+		}
+	}
+
+	/**
+	 * Returns the canonical form of a URL.
+	 *
+	 * @param url  the absolute URL, not null
+	 * @return the canonical URL, the same instance if the URL is already canonical or is not an
+	 * http or https URL, not null
+	 */
+	public String canonicalize(String url) {
+		int hostStart = hostStart(url);
+
+		if (hostStart < 0 || isCanonical(url, hostStart)) {
+			return url;
+		}
+
+		return rebuild(url, new Parts(url, hostStart));
+	}
+
+	/**
+	 * Checks a URL without creating any objects.
+	 *
+	 * @param url  the http or https URL, not null
+	 * @param hostStart  the position of the host
+	 * @return true if the URL is already canonical, otherwise returns false
+	 */
+	private boolean isCanonical(String url, int hostStart) {
+		int fragmentStart = fragmentStart(url);
+
+		if (fragmentStart < url.length()) {
+			return false;
+		}
+
+		int pathStart = pathStart(url, hostStart, fragmentStart);
+		int hostEnd = hostEnd(url, hostStart, pathStart);
+		int queryStart = queryStart(url, pathStart, fragmentStart);
+
+		for (int i = 0; i < hostEnd; i++) {
+			char c = url.charAt(i);
+
+			if (c >= 'A' && c <= 'Z') {
+				return false;
+			}
+		}
+
+		if (hostEnd < pathStart && !isCanonicalPort(url, hostStart, hostEnd, pathStart)) {
+			return false;
+		}
+
+		if (pathStart == queryStart || hasDotSegment(url, pathStart, queryStart)
+				|| !hasCanonicalTrailingSlash(url, pathStart, queryStart)) {
+			return false;
+		}
+
+		return queryStart == fragmentStart || isCanonicalQuery(url, queryStart, fragmentStart);
+	}
+
+	/**
+	 * @return true if the port is not empty and not the default port of the scheme
+	 */
+	private static boolean isCanonicalPort(String url, int hostStart, int hostEnd, int pathStart) {
+		String defaultPort = hostStart == HTTPS.length() ? "443" : "80";
+		int length = pathStart - (hostEnd + 1);
+
+		return length > 0
+				&& (length != defaultPort.length() || !url.regionMatches(hostEnd + 1, defaultPort, 0, length));
+	}
+
+	/**
+	 * @return true if the path has a {@code .} or {@code ..} segment
+	 */
+	private static boolean hasDotSegment(String url, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (url.charAt(i) != '/' || i + 1 == end || url.charAt(i + 1) != '.') {
+				continue;
+			}
+
+			int dotEnd = i + 2 < end && url.charAt(i + 2) == '.' ? i + 3 : i + 2;
+
+			if (dotEnd == end || url.charAt(dotEnd) == '/') {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return true if the end of the path follows the trailing slash rule
+	 */
+	private boolean hasCanonicalTrailingSlash(String url, int start, int end) {
+		boolean hasSlash = url.charAt(end - 1) == '/';
+
+		if (end - start == 1) {
+			return true;
+		}
+
+		switch (trailingSlash) {
+		case ADD:
+			return hasSlash || looksLikeFileName(url, start, end);
+		case REMOVE:
+			return !hasSlash;
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * @return true if the query has no empty or ignored parameters, and they are sorted
+	 */
+	private boolean isCanonicalQuery(String url, int queryStart, int fragmentStart) {
+		int start = queryStart + 1;
+		int end = fragmentStart;
+		int previousStart = -1;
+		int previousEnd = -1;
+
+		if (start == end) {
+			return false;
+		}
+
+		while (start <= end) {
+			int paramEnd = url.indexOf('&', start);
+
+			if (paramEnd < 0 || paramEnd > end) {
+				paramEnd = end;
+			}
+
+			if (paramEnd == start || isIgnored(url, start, paramEnd)) {
+				return false;
+			}
+
+			if (previousStart >= 0 && compare(url, previousStart, previousEnd, start, paramEnd) > 0) {
+				return false;
+			}
+
+			previousStart = start;
+			previousEnd = paramEnd;
+			start = paramEnd + 1;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Builds the canonical form of a URL that is not canonical.
+	 */
+	private String rebuild(String url, Parts parts) {
+		StringBuilder canonical = new StringBuilder(url.length());
+
+		canonical.append(parts.hostStart == HTTPS.length() ? HTTPS : HTTP);
+
+		for (int i = parts.hostStart; i < parts.hostEnd; i++) {
+			canonical.append(Character.toLowerCase(url.charAt(i)));
+		}
+
+		if (parts.hostEnd < parts.pathStart
+				&& isCanonicalPort(url, parts.hostStart, parts.hostEnd, parts.pathStart)) {
+			canonical.append(url, parts.hostEnd, parts.pathStart);
+		}
+
+		int pathStart = canonical.length();
+
+		if (hasDotSegment(url, parts.pathStart, parts.queryStart) || parts.pathStart == parts.queryStart) {
+			canonical.append(removeDotSegments(url.substring(parts.pathStart, parts.queryStart)));
+		} else {
+			canonical.append(url, parts.pathStart, parts.queryStart);
+		}
+
+		applyTrailingSlash(canonical, pathStart);
+
+		if (parts.queryStart < parts.fragmentStart) {
+			List<String> params = new ArrayList<>();
+			int start = parts.queryStart + 1;
+
+			while (start <= parts.fragmentStart) {
+				int paramEnd = url.indexOf('&', start);
+
+				if (paramEnd < 0 || paramEnd > parts.fragmentStart) {
+					paramEnd = parts.fragmentStart;
+				}
+
+				if (paramEnd > start && !isIgnored(url, start, paramEnd)) {
+					params.add(url.substring(start, paramEnd));
+				}
+
+				start = paramEnd + 1;
+			}
+
+			Collections.sort(params);
+
+			for (int i = 0; i < params.size(); i++) {
+				canonical.append(i == 0 ? '?' : '&').append(params.get(i));
+			}
+		}
+
+		return canonical.toString();
+	}
+
+	/**
+	 * Resolves the {@code .} and {@code ..} segments of a path, as RFC 3986 does.
+	 *
+	 * @param path  the path, which begins with a slash unless it is empty, not null
+	 * @return the path without dot segments, {@code /} if it is empty, not null
+	 */
+	static String removeDotSegments(String path) {
+		if (path.isEmpty()) {
+			return "/";
+		}
+
+		String[] segments = path.substring(1).split("/", -1);
+		List<String> resolved = new ArrayList<>(segments.length);
+
+		for (int i = 0; i < segments.length; i++) {
+			boolean isLast = i == segments.length - 1;
+
+			if (segments[i].equals("..")) {
+				if (!resolved.isEmpty()) {
+					resolved.remove(resolved.size() - 1);
+				}
+			} else if (!segments[i].equals(".")) {
+				resolved.add(segments[i]);
+				continue;
+			}
+
+			// A path that ends with a dot segment refers to a directory
+			if (isLast) {
+				resolved.add("");
+			}
+		}
+
+		return "/" + String.join("/", resolved);
+	}
+
+	/**
+	 * Adds or removes the slash at the end of the path, which is at the end of the URL being
+	 * built.
+	 *
+	 * @param canonical  the URL being built, not null
+	 * @param pathStart  the position of the path, which has no dot segments and is not empty
+	 */
+	private void applyTrailingSlash(StringBuilder canonical, int pathStart) {
+		int end = canonical.length();
+
+		if (end - pathStart == 1) {
+			return;
+		}
+
+		switch (trailingSlash) {
+		case ADD:
+			if (canonical.charAt(end - 1) != '/' && !looksLikeFileName(canonical, pathStart, end)) {
+				canonical.append('/');
+			}
+			break;
+		case REMOVE:
+			while (end > pathStart + 1 && canonical.charAt(end - 1) == '/') {
+				end--;
+			}
+
+			canonical.setLength(end);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * @return true if the last segment of a path has a dot, like a file name
+	 */
+	private static boolean looksLikeFileName(CharSequence url, int start, int end) {
+		for (int i = end - 1; i >= start && url.charAt(i) != '/'; i--) {
+			if (url.charAt(i) == '.') {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return true if the name of a query parameter is ignored
+	 */
+	private boolean isIgnored(String url, int start, int end) {
+		int nameEnd = url.indexOf('=', start);
+
+		if (nameEnd < 0 || nameEnd > end) {
+			nameEnd = end;
+		}
+
+		for (int i = 0; i < ignoredNames.length; i++) {
+			String name = ignoredNames[i];
+
+			if ((isPrefix[i] ? nameEnd - start >= name.length() : nameEnd - start == name.length())
+					&& url.regionMatches(start, name, 0, name.length())) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Compares two regions of a string the way {@link String#compareTo(String)} compares strings.
+	 */
+	private static int compare(String url, int aStart, int aEnd, int bStart, int bEnd) {
+		int length = Math.min(aEnd - aStart, bEnd - bStart);
+
+		for (int i = 0; i < length; i++) {
+			int difference = url.charAt(aStart + i) - url.charAt(bStart + i);
+
+			if (difference != 0) {
+				return difference;
+			}
+		}
+
+		return (aEnd - aStart) - (bEnd - bStart);
+	}
+
+	/**
+	 * @return the position of the host, -1 if the URL is not an http or https URL
+	 */
+	private static int hostStart(String url) {
+		if (url.regionMatches(true, 0, HTTP, 0, HTTP.length())) {
+			return HTTP.length();
+		} else if (url.regionMatches(true, 0, HTTPS, 0, HTTPS.length())) {
+			return HTTPS.length();
+		}
+
+		return -1;
+	}
+
+	/**
+	 * @return the position of the {@code #}, or the length of the URL if there is no fragment
+	 */
+	private static int fragmentStart(String url) {
+		int fragmentStart = url.indexOf('#');
+
+		return fragmentStart >= 0 ? fragmentStart : url.length();
+	}
+
+	/**
+	 * @return the position of the path, which is where the query or the fragment begins if the
+	 * path is empty
+	 */
+	private static int pathStart(String url, int hostStart, int fragmentStart) {
+		int pathStart = hostStart;
+
+		while (pathStart < fragmentStart && url.charAt(pathStart) != '/' && url.charAt(pathStart) != '?') {
+			pathStart++;
+		}
+
+		return pathStart;
+	}
+
+	/**
+	 * @return the position of the colon before the port, or the position of the path if there is
+	 * no port
+	 */
+	private static int hostEnd(String url, int hostStart, int pathStart) {
+		// The port follows the last colon, unless the colon is inside an IPv6 address
+		for (int i = pathStart - 1; i >= hostStart && url.charAt(i) != ']' && url.charAt(i) != '@'; i--) {
+			if (url.charAt(i) == ':') {
+				return i;
+			}
+		}
+
+		return pathStart;
+	}
+
+	/**
+	 * @return the position of the {@code ?}, or of the fragment if there is no query
+	 */
+	private static int queryStart(String url, int pathStart, int fragmentStart) {
+		int queryStart = url.indexOf('?', pathStart);
+
+		return queryStart >= 0 && queryStart < fragmentStart ? queryStart : fragmentStart;
+	}
+
+	/**
+	 * The positions of the parts of a URL that is rebuilt.
+	 */
+	private static final class Parts {
+		private final int hostStart;
+		private final int hostEnd;
+		private final int pathStart;
+		private final int queryStart;
+		private final int fragmentStart;
+
+		private Parts(String url, int hostStart) {
+			this.hostStart = hostStart;
+			this.fragmentStart = fragmentStart(url);
+			this.pathStart = pathStart(url, hostStart, fragmentStart);
+			this.hostEnd = hostEnd(url, hostStart, pathStart);
+			this.queryStart = queryStart(url, pathStart, fragmentStart);
+		}
+	}
+}
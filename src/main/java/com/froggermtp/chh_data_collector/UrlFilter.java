@@ -0,0 +1,22 @@
+package com.froggermtp.chh_data_collector;
+
+/**
+ * Decides whether a discovered URL should be crawled.
+ * <p>
+ * Filters are compiled up front, so that {@link #accept(String)} does as little work as possible
+ * for each of the many links found on every page.
+ * Any {@link WebCrawler#shouldVisit(String)} method can be used as a filter, for example
+ * {@code crawler::shouldVisit}.
+ * <p>
+ * Implementations must be thread-safe.
+ */
+@FunctionalInterface
+public interface UrlFilter {
+	/**
+	 * Determines whether a URL should be crawled.
+	 * 
+	 * @param url  the URL to check, not null
+	 * @return true if the URL should be crawled, otherwise returns false
+	 */
+	boolean accept(String url);
+}
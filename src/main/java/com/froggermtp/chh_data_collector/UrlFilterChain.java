@@ -0,0 +1,46 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.Arrays;
+
+/**
+ * A {@link UrlFilter} that only accepts a URL if every filter in the chain accepts it.
+ * <p>
+ * The filters run in the order they were added, and the chain stops at the first filter that
+ * rejects the URL, so cheap and selective filters should be added first.
+ * <p>
+ * Filters should be added before the chain is shared between threads.
+ */
+public class UrlFilterChain implements UrlFilter {
+	/**
+	 * The filters in the chain, in the order they run.
+	 */
+	private UrlFilter[] filters = new UrlFilter[0];
+	
+	/**
+	 * Adds a filter to the end of the chain.
+	 * 
+	 * @param filter  the filter to add, not null
+	 * @return this chain, for chaining calls
+	 */
+	public UrlFilterChain add(UrlFilter filter) {
+		if (filter == null) {
+			throw new NullPointerException("Filter cannot be null");
+		}
+		
+		filters = Arrays.copyOf(filters, filters.length + 1);
+		filters[filters.length - 1] = filter;
+		
+		return this;
+	}
+
+	@Override
+	public boolean accept(String url) {
+		for (UrlFilter filter : filters) {
+			if (!filter.accept(url)) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+}
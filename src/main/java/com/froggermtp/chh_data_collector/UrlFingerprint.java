@@ -0,0 +1,40 @@
+package com.froggermtp.chh_data_collector;
+
+/**
+ * This interface contains methods for computing compact fingerprints of URLs.
+ * <p>
+ * A fingerprint is a 64-bit hash of the URL.
+ * Two different URLs share a fingerprint with a probability of about 2^-64, so a set holding
+ * {@code n} fingerprints mistakes a new URL for a known one with a probability of about
+ * {@code n / 2^64}.
+ */
+public interface UrlFingerprint {
+	/**
+	 * Computes the 64-bit fingerprint of a URL.
+	 * <p>
+	 * The URL's characters are hashed with FNV-1a, and the result is passed through the MurmurHash3
+	 * finalizer so that every bit of the fingerprint depends on every character.
+	 * 
+	 * @param url  the URL to fingerprint, not null
+	 * @return the fingerprint of the URL
+	 */
+	static long of(String url) {
+		final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+		final long FNV_PRIME = 0x100000001b3L;
+		
+		long hash = FNV_OFFSET_BASIS;
+		
+		for (int i = 0; i < url.length(); i++) {
+			hash ^= url.charAt(i);
+			hash *= FNV_PRIME;
+		}
+		
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		
+		return hash;
+	}
+}
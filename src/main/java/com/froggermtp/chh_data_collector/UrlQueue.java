@@ -1,7 +1,6 @@
 package com.froggermtp.chh_data_collector;
 
-import java.util.ArrayDeque;
-import java.util.HashSet;
+import java.io.Closeable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,61 +8,123 @@ import org.slf4j.LoggerFactory;
 /**
  * Provides a queue for storing the URLs that will be visited by the web crawler.
  * <p>
- * In order to ensure that a URL is not processed twice, the queue also tracks which URLs have
- * already been visited.
+ * In order to ensure that a URL is not processed twice, the queue remembers every URL that has
+ * ever been added to it.
+ * A URL is only queued the first time it is added, regardless of whether it is still waiting in
+ * the queue or has already been processed.
+ * Checking whether a URL has been seen before takes constant time.
+ * How the seen URLs are remembered is decided by the {@link UrlSet} given to the queue, and where
+ * the pending URLs are kept is decided by its {@link Frontier}.
+ * <p>
+ * This class is thread-safe.
+ * Any number of threads may add and retrieve URLs concurrently.
  */
-public class UrlQueue {
+public class UrlQueue implements Closeable {
 	private static final Logger logger = LoggerFactory.getLogger(UrlQueue.class);
-	
-	/** 
+
+	/**
 	 * Contains all the URLs that will be processed by the web crawler.
 	 */
-	private ArrayDeque<String> urlsToCrawl = new ArrayDeque<>();
-	/** 
-	 * Contains all the URLs that have already been processed by the web crawler.
+	private final Frontier urlsToCrawl;
+	/**
+	 * Contains every URL that has ever been added to the queue.
+	 */
+	private final UrlSet seenUrls;
+	
+	/**
+	 * Creates a queue that remembers the URLs it has seen in a {@link StringUrlSet} and keeps the
+	 * pending URLs in a {@link MemoryFrontier}.
 	 */
-	private HashSet<String> visitedUrls = new HashSet<>();
+	public UrlQueue() {
+		this(new StringUrlSet(), new MemoryFrontier());
+	}
 	
 	/**
-	 * Adds a URL to the queue if, and only if, it has not already been processed.
-	 * 
+	 * @param seenUrls  the set that remembers every URL added to the queue, not null
+	 * @param urlsToCrawl  the frontier that holds the pending URLs, not null
+	 */
+	public UrlQueue(UrlSet seenUrls, Frontier urlsToCrawl) {
+		this.seenUrls = seenUrls;
+		this.urlsToCrawl = urlsToCrawl;
+	}
+
+	/**
+	 * Adds a URL to the queue if, and only if, it has never been added before.
+	 *
+	 * @param url  the URL to add to the queue, not null
+	 * @return true if the URL was added, otherwise returns false
+	 */
+	public boolean addUrl(String url) {
+		return addUrl(url, 0);
+	}
+
+	/**
+	 * Adds a URL that was found {@code depth} links away from a seed URL to the queue if, and
+	 * only if, it has never been added before.
+	 * <p>
+	 * The depth is passed on to the frontier, which may use it to order the URLs.
+	 *
 	 * @param url  the URL to add to the queue, not null
+	 * @param depth  the number of links between a seed URL and the URL, not negative
+	 * @return true if the URL was added, otherwise returns false
 	 */
-	public void addUrl(String url) {
+	public boolean addUrl(String url, int depth) {
 		if (url == null) {
 			throw new NullPointerException("Url cannot be null");
 		}
-		
-		if (!visitedUrls.contains(url) && !urlsToCrawl.contains(url)) {
-			urlsToCrawl.add(url);
-			
+
+		if (seenUrls.add(url)) {
+			urlsToCrawl.add(url, depth);
+
 			logger.debug("Url added to queue: {}", url);
-		} else {
-			logger.debug("Url already in queue: {}", url);
+
+			return true;
 		}
+
+		logger.debug("Url already seen: {}", url);
+
+		return false;
 	}
-	
+
 	/**
 	 * Returns the next URL from the queue.
-	 * 
+	 *
 	 * @return the next URL in the queue, null if queue empty
 	 */
 	public String getUrl()  {
-		if (!urlsToCrawl.isEmpty()) {
-			String url = urlsToCrawl.poll();
-			visitedUrls.add(url);
-			
-			return url;
-		}
-		
-		return null;
+		return urlsToCrawl.poll();
 	}
-	
+
+	/**
+	 * Determines whether a URL has ever been added to the queue.
+	 *
+	 * @param url  the URL to check, not null
+	 * @return true if the URL has been added before, otherwise returns false
+	 */
+	public boolean hasSeen(String url) {
+		return seenUrls.contains(url);
+	}
+
 	/**
 	 * @return true if queue is empty, otherwise returns false
 	 */
 	public boolean isEmpty() {
 		return urlsToCrawl.isEmpty();
 	}
+
+	/**
+	 * @return the number of URLs waiting in the queue
+	 */
+	public long size() {
+		return urlsToCrawl.size();
+	}
 	
+	/**
+	 * Discards the pending URLs and releases the resources held by the frontier.
+	 */
+	@Override
+	public void close() {
+		urlsToCrawl.close();
+	}
+
 }
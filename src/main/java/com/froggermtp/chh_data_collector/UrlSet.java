@@ -0,0 +1,29 @@
+package com.froggermtp.chh_data_collector;
+
+/**
+ * A set of URLs that the web crawler has already seen.
+ * <p>
+ * Implementations must be thread-safe.
+ */
+public interface UrlSet {
+	/**
+	 * Adds a URL to the set.
+	 * 
+	 * @param url  the URL to add, not null
+	 * @return true if the URL was not already in the set, otherwise returns false
+	 */
+	boolean add(String url);
+	
+	/**
+	 * Determines whether a URL is in the set.
+	 * 
+	 * @param url  the URL to check, not null
+	 * @return true if the URL is in the set, otherwise returns false
+	 */
+	boolean contains(String url);
+	
+	/**
+	 * @return the number of URLs in the set
+	 */
+	long size();
+}
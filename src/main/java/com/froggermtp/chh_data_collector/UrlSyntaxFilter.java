@@ -0,0 +1,116 @@
+package com.froggermtp.chh_data_collector;
+
+/**
+ * A {@link UrlFilter} that only accepts well-formed absolute http and https URLs.
+ * <p>
+ * The URL is checked in a single pass over its characters, without creating any objects or
+ * throwing any exceptions.
+ * A URL is accepted if:
+ * <p><ul>
+ * <li>It begins with {@code http://} or {@code https://}, in any case.
+ * <li>It has a non-empty host made of letters, digits, dots, hyphens and underscores, optionally
+ * followed by a numeric port.
+ * <li>The rest of it only contains characters that {@link java.net.URI} allows, every {@code %} is
+ * followed by two hex digits, and there is at most one {@code #}.
+ * </ul>
+ */
+public class UrlSyntaxFilter implements UrlFilter {
+	/**
+	 * The ASCII characters allowed after the host, other than {@code %} and {@code #}, which are
+	 * checked separately.
+	 */
+	private static final boolean[] ALLOWED = new boolean[128];
+	
+	static {
+		final String ALLOWED_CHARACTERS = 
+				"abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789"
+				+ "-._~" // unreserved
+				+ "!$&'()*+,;=" // sub-delims
+				+ ":@/?"; // path and query delimiters
+		
+		for (int i = 0; i < ALLOWED_CHARACTERS.length(); i++) {
+			ALLOWED[ALLOWED_CHARACTERS.charAt(i)] = true;
+		}
+	}
+
+	@Override
+	public boolean accept(String url) {
+		int hostStart;
+		
+		if (url.regionMatches(true, 0, "http://", 0, 7)) {
+			hostStart = 7;
+		} else if (url.regionMatches(true, 0, "https://", 0, 8)) {
+			hostStart = 8;
+		} else {
+			return false;
+		}
+		
+		int i = hostStart;
+		
+		while (i < url.length() && isHostCharacter(url.charAt(i))) {
+			i++;
+		}
+		
+		if (i == hostStart) {
+			return false;
+		}
+		
+		if (i < url.length() && url.charAt(i) == ':') {
+			int portStart = ++i;
+			
+			while (i < url.length() && url.charAt(i) >= '0' && url.charAt(i) <= '9') {
+				i++;
+			}
+			
+			if (i == portStart) {
+				return false;
+			}
+		}
+		
+		if (i < url.length()) {
+			char c = url.charAt(i);
+			
+			if (c != '/' && c != '?' && c != '#') {
+				return false;
+			}
+		}
+		
+		boolean inFragment = false;
+		
+		for (; i < url.length(); i++) {
+			char c = url.charAt(i);
+			
+			if (c == '%') {
+				if (i + 2 >= url.length() || !isHexDigit(url.charAt(i + 1)) || !isHexDigit(url.charAt(i + 2))) {
+					return false;
+				}
+				
+				i += 2;
+			} else if (c == '#') {
+				if (inFragment) {
+					return false;
+				}
+				
+				inFragment = true;
+			} else if (c < 128) {
+				if (!ALLOWED[c]) {
+					return false;
+				}
+			} else if (Character.isISOControl(c) || Character.isSpaceChar(c)) {
+				// java.net.URI allows other non-ASCII characters
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private static boolean isHostCharacter(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') 
+				|| c == '.' || c == '-' || c == '_';
+	}
+	
+	private static boolean isHexDigit(char c) {
+		return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+	}
+}
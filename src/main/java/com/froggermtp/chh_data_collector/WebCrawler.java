@@ -6,9 +6,26 @@ import org.jsoup.nodes.Document;
  * Provides the public api for the web crawler.
  * <p>
  * All of the methods in the class are expected to overridden as needed.
+ * <p>
+ * A web crawler may be called from several threads at once.
+ * {@link #shouldVisit(String)}, {@link #needsDocument(String)}, {@link #getPageType(String)},
+ * {@link #getPriority(String)}, {@link #getTrailingSlash()} and
+ * {@link #getMainContentSelector()} may be called concurrently, so they must be thread-safe.
+ * {@link #onVisit(Document)} and {@link #onVisitLinks(PageLinks)} are never called concurrently,
+ * not even with those of the other sites of the same controller, but not always by the same
+ * thread, so the state they share with the other methods must be safely published, as
+ * {@link #stop()} does.
+ *
+ * @see CrawlSite
  */
 public abstract class WebCrawler {
-	private boolean isRunning = true;
+	/**
+	 * Whether the web crawler is running.
+	 * <p>
+	 * The flag is volatile because {@link #stop()} may be called from a worker thread while the
+	 * controller checks it from another.
+	 */
+	private volatile boolean isRunning = true;
 	
 	/**
 	 * Determines whether a given URL should be visited by the web crawler.
@@ -22,6 +39,110 @@ public abstract class WebCrawler {
 		return true;
 	}
 	
+	/**
+	 * Determines whether the web crawler must build a full {@code Document} for a URL.
+	 * <p>
+	 * Building a {@code Document} is by far the most expensive part of visiting a page.
+	 * If the crawler only needs the links of a page, such as the links of a listing page, then
+	 * this method should return false.
+	 * The links are then extracted straight from the response, and the page is passed to
+	 * {@link #onVisitLinks(PageLinks)} instead of {@link #onVisit(Document)}.
+	 * <p>
+	 * By default, a {@code Document} is built for every URL.
+	 * 
+	 * @param url  the URL that is about to be visited, not null
+	 * @return true if the page should be passed to {@code onVisit}, otherwise returns false
+	 */
+	public boolean needsDocument(String url) {
+		return true;
+	}
+	
+	/**
+	 * Determines the kind of page a URL points to.
+	 * <p>
+	 * The page types are used by the incremental mode of the web crawler.
+	 * Once a {@link PageType#LISTING listing} page only links to {@link PageType#ARTICLE articles}
+	 * that were scraped by an earlier run, no further listing pages are crawled.
+	 * <p>
+	 * By default, every URL is of type {@link PageType#OTHER}.
+	 * 
+	 * @param url  the URL to check, not null
+	 * @return the type of the page, not null
+	 * @see CrawlerConfig#getWatermarkFile()
+	 */
+	public PageType getPageType(String url) {
+		return PageType.OTHER;
+	}
+	
+	/**
+	 * Determines how valuable a URL is, when the pending URLs are crawled by priority.
+	 * <p>
+	 * URLs with a higher priority are crawled before those with a lower one, so that the most
+	 * valuable pages have been scraped if the crawl is cut short by {@link #stop()}.
+	 * <p>
+	 * By default, {@link PageType#ARTICLE articles} come first, then
+	 * {@link PageType#LISTING listing} pages, which lead to further articles, and then every
+	 * other page.
+	 * 
+	 * @param url  the URL to check, not null
+	 * @return the priority of the URL, higher values being crawled first
+	 * @see CrawlerConfig#isPriorityFrontier()
+	 */
+	public int getPriority(String url) {
+		switch (getPageType(url)) {
+		case ARTICLE:
+			return 2;
+		case LISTING:
+			return 1;
+		default:
+			return 0;
+		}
+	}
+	
+	/**
+	 * Determines how the slash at the end of the paths of the site's links is treated when the
+	 * links are made canonical.
+	 * <p>
+	 * By default, the paths are left as they are.
+	 * 
+	 * @return the trailing slash rule of the site, not null
+	 * @see CrawlerConfig#shouldCanonicalizeUrls()
+	 */
+	public TrailingSlash getTrailingSlash() {
+		return TrailingSlash.KEEP;
+	}
+	
+	/**
+	 * Returns the CSS selector of the main content of the pages that are built into a
+	 * {@code Document}, which is what near-duplicate pages are recognized by.
+	 * <p>
+	 * The selector should leave out the navigation, sidebars and footers that every page of the
+	 * site shares, since those would make different pages look alike.
+	 * If several elements match, their text is taken in order, and if none does, the text of the
+	 * whole body is.
+	 * <p>
+	 * By default, the main content is the {@code <main>} or {@code <article>} elements.
+	 * 
+	 * @return the selector of the main content, not null
+	 * @see CrawlerConfig#shouldSkipNearDuplicates()
+	 */
+	public String getMainContentSelector() {
+		return "main, article";
+	}
+	
+	/**
+	 * Returns the publication date of an article, which is remembered by the incremental mode of
+	 * the web crawler.
+	 * <p>
+	 * By default, the date is not known.
+	 * 
+	 * @param doc  the {@code Document} of the article, not null
+	 * @return the publication date, null if it is not known
+	 */
+	public String getPublicationDate(Document doc) {
+		return null;
+	}
+	
 	/**
 	 * Runs each time a URL is visited by the web crawler.
 	 * <p>
@@ -34,6 +155,16 @@ public abstract class WebCrawler {
 		// Do nothing by default
 	}
 	
+	/**
+	 * Runs each time a URL for which no {@code Document} is needed is visited by the web crawler.
+	 * 
+	 * @param page  the links, title and time of the page that is currently being visited, not null
+	 * @see #needsDocument(String)
+	 */
+	public void onVisitLinks(PageLinks page) {
+		// Do nothing by default
+	}
+	
 	/**
 	 * Stops the web crawler arbitrarily.
 	 * <p>
@@ -1,14 +1,44 @@
 package com.froggermtp.chh_data_collector;
 
+import java.io.Closeable;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URISyntaxException;
-import java.net.URL;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
+import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
+import org.jsoup.UnsupportedMimeTypeException;
 import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Collector;
+import org.jsoup.select.Elements;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+import org.jsoup.select.Selector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,22 +46,83 @@ import org.slf4j.LoggerFactory;
  * Provides a controller that bridges the pieces of the web crawler together.
  * <p>
  * The controller bridges together the configuration and the public api of the web crawler.
+ * A single controller can crawl several {@link CrawlSite sites} at once, which share its worker
+ * threads, its fetcher and its politeness scheduler.
  */
 public class WebCrawlerController {
 	private static final Logger logger = LoggerFactory.getLogger(WebCrawlerController.class);
 	
-	/** 
-	 * Stores all the links scraped and retrieves the next URL to visit.
+	/**
+	 * The extensions of URLs that do not point to html pages, and are therefore never visited.
+	 */
+	private static final List<String> IGNORED_EXTENSIONS =
+			Arrays.asList("css", "js", "gif", "jpg", "png", "mp3", "zip", "gz");
+	/**
+	 * The number of URLs of the sitemaps that are filtered and enqueued at a time.
+	 */
+	private static final int SITEMAP_BATCH_SIZE = 1000;
+	/**
+	 * The largest number of URLs that wait for their host to have a free connection, after which
+	 * no further URL is taken until a request finishes.
+	 */
+	private static final int MAX_BLOCKED_TASKS = 1000;
+	/**
+	 * The amount of milliseconds to wait before asking again for the slot of a host that has as
+	 * many requests in flight as it may have.
 	 */
-	private final UrlQueue urlQueue = new UrlQueue();
+	private static final long BUSY_HOST_POLL_INTERVAL = 50;
+	
 	/** 
 	 * Holds the configuration for the web crawler.
 	 */
 	private final CrawlerConfig config;
 	/** 
-	 * The public api for the web crawler.
+	 * The sites that are crawled, each with its own public api and queue of URLs.
+	 */
+	private final List<SiteState> sites;
+	/** 
+	 * Spaces out the requests made to each host, and adapts their pace if so configured.
+	 * <p>
+	 * The scheduler is shared by the sites, so a host is never contacted faster than allowed,
+	 * whichever sites link to it.
+	 */
+	private final RequestScheduler politeness;
+	/** 
+	 * Fetches the pages, through the response cache if one is configured.
+	 */
+	private final PageFetcher fetcher;
+	/** 
+	 * The {@code robots.txt} rules of every host, null if they are neither obeyed nor used to
+	 * find the sitemaps.
 	 */
-	private final WebCrawler crawler;
+	private final RobotsCache robots;
+	/** 
+	 * Whether the fetcher was created by the controller, and is closed when the crawl ends.
+	 */
+	private final boolean ownsFetcher;
+	/** 
+	 * Remembers the articles scraped by earlier runs, null if the crawler does not run incrementally.
+	 */
+	private final CrawlWatermark watermark;
+	/** 
+	 * Collects the latencies, counters and gauges of the crawl.
+	 */
+	private final CrawlMetrics metrics;
+	/** 
+	 * The fingerprints of the pages crawled so far, null if near-duplicates are not skipped.
+	 */
+	private final SimHashIndex nearDuplicates;
+	
+	/** 
+	 * Connects the web crawler to the other nodes of its cluster while it crawls, null if it runs
+	 * on its own.
+	 */
+	private ClusterNode cluster = null;
+	
+	/** 
+	 * The index of the site whose URL is handed out next, so that the sites take turns.
+	 */
+	private int nextSite = 0;
 	
 	/** 
 	 * Keeps track of the total amount of links that are visited by the web crawler.
@@ -39,11 +130,74 @@ public class WebCrawlerController {
 	private long totalLinksVisited = 0;
 	
 	public WebCrawlerController(CrawlerConfig config, WebCrawler crawler) {
+		this(config, toSites(config, crawler), newFetcher(config), true);
+	}
+	
+	/**
+	 * Creates a controller that fetches the pages with the given fetcher, instead of the one
+	 * selected by the configuration.
+	 * 
+	 * @param config  the configuration of the web crawler, not null
+	 * @param crawler  the public api for the web crawler, not null
+	 * @param fetcher  the fetcher that makes the requests, not null
+	 */
+	public WebCrawlerController(CrawlerConfig config, WebCrawler crawler, PageFetcher fetcher) {
+		this(config, toSites(config, crawler), fetcher, false);
+	}
+	
+	/**
+	 * Creates a controller that crawls several sites at once.
+	 * <p>
+	 * The seed URLs of the configuration are not used, as every site has its own.
+	 * 
+	 * @param config  the configuration of the web crawler, not null
+	 * @param sites  the sites to crawl, not null
+	 * @throws IllegalArgumentException if there are no sites
+	 */
+	public WebCrawlerController(CrawlerConfig config, List<CrawlSite> sites) {
+		this(config, sites, newFetcher(config), true);
+	}
+	
+	/**
+	 * Creates a controller that crawls several sites at once, and fetches the pages with the
+	 * given fetcher, instead of the one selected by the configuration.
+	 * 
+	 * @param config  the configuration of the web crawler, not null
+	 * @param sites  the sites to crawl, not null
+	 * @param fetcher  the fetcher that makes the requests, not null
+	 * @throws IllegalArgumentException if there are no sites
+	 */
+	public WebCrawlerController(CrawlerConfig config, List<CrawlSite> sites, PageFetcher fetcher) {
+		this(config, sites, fetcher, false);
+	}
+	
+	private WebCrawlerController(CrawlerConfig config, List<CrawlSite> sites, PageFetcher fetcher,
+			boolean ownsFetcher) {
+		if (sites.isEmpty()) {
+			throw new IllegalArgumentException("At least one site must be crawled");
+		}
+		
 		this.config = config;
-		this.crawler = crawler;
+		this.robots = config.shouldRespectRobotsTxt() || config.shouldUseSitemaps()
+				? new RobotsCache(this::fetchPolitely, config.getRobotsUserAgent(), config.getRobotsRecheckDelay())
+				: null;
+		this.politeness = newRequestScheduler(config, fetcher, robots);
+		this.sites = new ArrayList<>(sites.size());
+		this.fetcher = fetcher;
+		this.ownsFetcher = ownsFetcher;
+		this.watermark = config.getWatermarkFile() != null ? new CrawlWatermark(config.getWatermarkFile()) : null;
+		this.metrics = new CrawlMetrics(this::getQueueSize, politeness::getRequestRates);
+		this.nearDuplicates = config.shouldSkipNearDuplicates()
+				? new SimHashIndex(config.getNearDuplicateDistance()) : null;
 		
-		// Populate the urlQueue initially with the seed urls
-		config.getSeedUrls().forEach(urlQueue::addUrl);
+		for (CrawlSite site : sites) {
+			// Every site needs a directory of its own for its frontier segments
+			Path frontierDirectory = config.getFrontierDirectory() != null && sites.size() > 1
+					? config.getFrontierDirectory().resolve("site-" + this.sites.size())
+					: config.getFrontierDirectory();
+			
+			this.sites.add(new SiteState(site, fetcher, frontierDirectory));
+		}
 	}
 	
 	/**
@@ -51,209 +205,1550 @@ public class WebCrawlerController {
 	 * <p>
 	 * The web crawler will continue running until it runs out of links to process, or the public
 	 * api arbitrarily causes it to stop.
+	 * <p>
+	 * If {@link CrawlerConfig#getNumberOfThreads()} is one, the URLs are processed one at a time on
+	 * the calling thread.
+	 * Otherwise, the URLs are processed concurrently by a pool of worker threads.
+	 * <p>
+	 * While the web crawler runs, its {@link CrawlMetrics} are exposed over JMX, and over HTTP if
+	 * {@link CrawlerConfig#getMetricsPort()} is set.
+	 * <p>
+	 * If {@link CrawlerConfig#getClusterPort()} is set, the web crawler joins a cluster, and only
+	 * crawls the URLs of its own partition.
+	 * It then keeps running until the whole cluster runs out of links, and when it stops, it hands
+	 * the URLs it did not get to over to the remaining nodes.
 	 */
 	public void crawl() {
 		logger.info("Starting the web crawler...");
-		logger.info("Seed urls: {}", config.getSeedUrls().toString());
 		
-		while (!urlQueue.isEmpty()) {
-			String urlToCrawl = urlQueue.getUrl();
-			Document doc = getDocument(urlToCrawl);
+		for (SiteState site : sites) {
+			logger.info("Seed urls: {}", site.seedUrls.toString());
+		}
+		
+		// Only kept to be closed, as it serves the metrics on its own
+		MetricsServer metricsServer = new MetricsServer(metrics, getCrawlName(), config.getMetricsPort());
+		
+		try {
+			if (config.getClusterPort() >= 0) {
+				cluster = startClusterNode();
+			}
 			
-			// If the connection fails, then skip scraping the document
-			if (doc == null) {
-				continue;
+			if (robots != null) {
+				readRobotsTxt();
 			}
-
-			totalLinksVisited++;
 			
-			if (!config.shouldScrapeSeedUrls() && config.getSeedUrls().contains(urlToCrawl)) {
-				logger.info("Not scraping seed url : {}", urlToCrawl);
+			if (config.shouldUseSitemaps()) {
+				readSitemaps();
+			}
+			
+			if (config.getNumberOfThreads() > 1) {
+				crawlConcurrently();
 			} else {
-				crawler.onVisit(doc);
+				crawlSequentially();
+			}
+		} finally {
+			metricsServer.close();
+			
+			if (cluster != null) {
+				leaveCluster();
+			}
+			
+			// Release the frontiers' segment files, if any
+			for (SiteState site : sites) {
+				site.urlQueue.close();
+			}
+			
+			if (watermark != null) {
+				watermark.save();
 			}
 			
+			// Release the page archive and the pooled connections, if any
+			if (ownsFetcher && fetcher instanceof Closeable) {
+				try {
+					((Closeable) fetcher).close();
+				} catch (IOException e) {
+					logger.warn("Could not close the fetcher", e);
+				}
+			}
+		}
+		
+		PageFetcher recordedFetcher =
+				fetcher instanceof RecordingFetcher ? ((RecordingFetcher) fetcher).getDelegate() : fetcher;
+		
+		if (recordedFetcher instanceof CachingFetcher) {
+			CachingFetcher cachingFetcher = (CachingFetcher) recordedFetcher;
+			
+			logger.info("Response cache hits: {}, misses: {}, changed: {}",
+					cachingFetcher.getHitCount(),
+					cachingFetcher.getMissCount(),
+					cachingFetcher.getChangedCount());
+		}
 
-			if (!crawler.isRunning()) {
+		logger.info("The web crawler has finished");
+	}
+	
+	/**
+	 * Processes the URLs one at a time on the calling thread.
+	 * <p>
+	 * If only URLs that wait to be retried are left, the calling thread sleeps until the first of
+	 * them is due.
+	 * The crawl stops once every site has stopped.
+	 */
+	private void crawlSequentially() {
+		while (true) {
+			CrawlTask task = nextTask();
+			
+			if (task == null) {
+				if (Thread.currentThread().isInterrupted()) {
+					break;
+				}
+				
+				long retryDelay = getNextRetryDelay();
+				
+				if (retryDelay >= 0) {
+					sleep(retryDelay);
+					continue;
+				}
+				
+				// Other nodes of the cluster may still forward links
+				if (cluster != null && awaitClusterWork()) {
+					continue;
+				}
+				
 				break;
 			}
+			
+			SiteState site = task.site;
+			String urlToCrawl = task.url;
+			
+			if (site.isPastWatermark(urlToCrawl)) {
+				site.takeDepth(urlToCrawl);
+				continue;
+			}
+			
+			if (!site.retries.allowRequest(urlToCrawl) || !isAllowedByRobotsTxt(site, urlToCrawl)) {
+				continue;
+			}
+			
+			List<String> links = crawlPage(site, urlToCrawl);
+			
+			// If the connection fails, then skip scraping the document
+			if (links == null) {
+				site.forgetFailed(urlToCrawl);
+				continue;
+			}
 
-			List<String> links = getLinks(doc);
+			totalLinksVisited++;
 
-			links
-			.stream()
-			.filter(this::shouldVisit)
-			.filter(crawler::shouldVisit)
-			.forEach(urlQueue::addUrl);
-		}
+			if (!site.crawler.isRunning()) {
+				site.takeDepth(urlToCrawl);
+				
+				if (!isRunning()) {
+					break;
+				}
+				
+				continue;
+			}
 
-		logger.info("The web crawler has finished");
+			addLinks(site, urlToCrawl, links);
+		}
 	}
 	
 	/**
-	 * Delays the application for {@code TIME_DELAY} milliseconds.
+	 * Processes the URLs concurrently on a pool of worker threads.
 	 * <p>
-	 * The delay is courtesy so that the website is not overloaded with requests from the crawler.
+	 * Each URL passes through a pipeline of stages: fetch, parse, visit and link extraction.
+	 * The fetch, parse and link extraction stages run on the worker pool.
+	 * The visit stage runs on a single thread, so {@link WebCrawler#onVisit(Document)} and
+	 * {@link WebCrawler#onVisitLinks(PageLinks)} are never called concurrently.
+	 * Pages that do not need a {@code Document}, and unchanged pages that are skipped, bypass the
+	 * parse stage, and their links are extracted straight from the response instead.
+	 * The calling thread coordinates the pipeline: it is the only thread that touches the
+	 * {@code UrlQueue} of the sites, whose URLs it hands out in turn, it waits for the per-host
+	 * politeness slot of each URL before handing it to the pipeline, and it enqueues the links
+	 * extracted by finished pipelines.
+	 * If the host of a URL already has as many requests in flight as the scheduler allows, the URL
+	 * is put aside with the other URLs of its host, and the URLs of other hosts keep being handed
+	 * out; the URLs that were put aside go first once a request finishes.
+	 * Only so many URLs are put aside, after which no further URL is taken until a request
+	 * finishes.
+	 * URLs that are due to be retried are handed out before new ones, and while retries are
+	 * pending, the calling thread wakes up when the next one is due, even if no request finishes.
+	 * The visit stage is shared by the sites, so the public api of a site is never called
+	 * concurrently with that of another site either.
+	 * The crawl stops once every site has stopped.
 	 */
-	private void sleep() {
-		final int TIME_DELAY = 1000;
+	private void crawlConcurrently() {
+		final int numberOfThreads = config.getNumberOfThreads();
 		
-		logger.debug("Sleeping for {} milliseconds", TIME_DELAY);
+		ExecutorService workers =
+				Executors.newFixedThreadPool(numberOfThreads, newThreadFactory("crawler-worker"));
+		ExecutorService visitor = Executors.newSingleThreadExecutor(newThreadFactory("crawler-visitor"));
+		ScheduledExecutorService scheduler =
+				Executors.newSingleThreadScheduledExecutor(newThreadFactory("crawler-scheduler"));
+		BlockingQueue<CrawlResult> results = new LinkedBlockingQueue<>();
+		int inFlight = 0;
+		// The URLs whose host had no free connection, by host, which are tried again once a
+		// request finishes
+		Map<String, Deque<CrawlTask>> blockedTasks = new LinkedHashMap<>();
+		int blockedCount = 0;
 		
 		try {
-			Thread.sleep(TIME_DELAY);
+			while (isRunning()) {
+				// The blocked URLs have already been let through, and go first
+				Iterator<Deque<CrawlTask>> blockedHosts = blockedTasks.values().iterator();
+				
+				while (inFlight < numberOfThreads && blockedHosts.hasNext()) {
+					Deque<CrawlTask> tasks = blockedHosts.next();
+					
+					while (inFlight < numberOfThreads && !tasks.isEmpty()) {
+						CrawlTask task = tasks.peek();
+						
+						if (!task.site.crawler.isRunning()) {
+							task.site.takeDepth(task.url);
+						} else {
+							long wait = politeness.reserve(task.url);
+							
+							if (wait < 0) {
+								break;
+							}
+							
+							schedule(scheduler, task, wait, workers, visitor, results);
+							inFlight++;
+						}
+						
+						tasks.poll();
+						blockedCount--;
+					}
+					
+					if (tasks.isEmpty()) {
+						blockedHosts.remove();
+					}
+				}
+				
+				while (inFlight < numberOfThreads && blockedCount < MAX_BLOCKED_TASKS) {
+					CrawlTask task = nextTask();
+					
+					if (task == null) {
+						break;
+					}
+					
+					if (task.site.isPastWatermark(task.url)) {
+						task.site.takeDepth(task.url);
+						continue;
+					}
+					
+					if (!task.site.retries.allowRequest(task.url) || !isAllowedByRobotsTxt(task.site, task.url)) {
+						continue;
+					}
+					
+					String host = PolitenessScheduler.getHost(task.url);
+					Deque<CrawlTask> blocked = blockedTasks.get(host);
+					// The URLs of a blocked host wait behind those that were blocked before them
+					long wait = blocked == null ? politeness.reserve(task.url) : -1;
+					
+					if (wait < 0) {
+						blockedTasks.computeIfAbsent(host, name -> new ArrayDeque<>()).add(task);
+						blockedCount++;
+						continue;
+					}
+					
+					schedule(scheduler, task, wait, workers, visitor, results);
+					inFlight++;
+				}
+				
+				long retryDelay = getNextRetryDelay();
+				
+				if (inFlight == 0 && retryDelay < 0) {
+					// Other nodes of the cluster may still forward links
+					if (cluster != null && blockedTasks.isEmpty() && awaitClusterWork()) {
+						continue;
+					}
+					
+					break;
+				}
+				
+				CrawlResult result;
+				
+				if (retryDelay >= 0
+						&& (inFlight == 0 || (inFlight < numberOfThreads && blockedCount < MAX_BLOCKED_TASKS))) {
+					// Wake up when the next retry is due, unless a request finishes first
+					result = results.poll(retryDelay, TimeUnit.MILLISECONDS);
+					
+					if (result == null) {
+						continue;
+					}
+				} else {
+					result = results.take();
+				}
+				
+				inFlight--;
+				
+				logger.debug("Finished crawling url: {}", result.url);
+				
+				// If the page could not be crawled, then there are no links to add
+				if (result.links == null) {
+					result.site.forgetFailed(result.url);
+					continue;
+				}
+				
+				totalLinksVisited++;
+				
+				if (result.site.crawler.isRunning()) {
+					addLinks(result.site, result.url, result.links);
+				} else {
+					result.site.takeDepth(result.url);
+				}
+			}
 		} catch (InterruptedException e) {
 			logger.error("Thread was interrupted", e);
+			Thread.currentThread().interrupt();
+		} finally {
+			scheduler.shutdownNow();
+			workers.shutdownNow();
+			visitor.shutdownNow();
 		}
 	}
 	
 	/**
-	 * Returns a {@code Document} for the given URL.
+	 * Runs a URL through the fetch, parse, visit and link extraction stages.
 	 * <p>
-	 * If {@code JSoup} cannot connect the server in {@code TIMEOUT} milliseconds,
-	 * then the connection will timeout, and {@code null} will be returned.
+	 * The outcome is always added to {@code results}.
+	 * If any of the stages fails, the result will not contain any links.
 	 * 
-	 * @param urlToCrawl  the URL for which the {@code Document} will be fetched, not null
-	 * @return the {@code Document}, null if connection fails
+	 * @param site  the site the URL belongs to, not null
+	 * @param urlToCrawl  the URL to process, not null
+	 * @param workers  the executor for the fetch, parse and link extraction stages, not null
+	 * @param visitor  the executor for the visit stage, not null
+	 * @param results  the queue that collects the outcome of the pipeline, not null
 	 */
-	private Document getDocument(String urlToCrawl) {
-		final int TIMEOUT = 3000;
+	private void process(SiteState site, String urlToCrawl, Executor workers, Executor visitor,
+			BlockingQueue<CrawlResult> results) {
+		WebCrawler crawler = site.crawler;
+		CompletableFuture<List<String>> links = CompletableFuture
+				.supplyAsync(() -> fetch(site, urlToCrawl), workers)
+				.thenCompose(page -> {
+					if (isSkippedUnchanged(page)) {
+						return CompletableFuture.supplyAsync(
+								() -> extractLinks(page).getLinks(), workers);
+					}
+					
+					if (crawler.needsDocument(urlToCrawl)) {
+						return CompletableFuture
+								.supplyAsync(() -> parse(page), workers)
+								.thenCompose(doc -> {
+									if (isNearDuplicate(site, doc)) {
+										return CompletableFuture.completedFuture(Collections.<String>emptyList());
+									}
+									
+									return CompletableFuture
+											.supplyAsync(() -> {
+												if (crawler.isRunning()) {
+													visit(site, urlToCrawl, doc);
+												}
+												
+												return doc;
+											}, visitor)
+											.thenApplyAsync(this::getLinks, workers);
+								});
+					}
+					
+					return CompletableFuture
+							.supplyAsync(() -> extractLinks(page), workers)
+							.thenApplyAsync(pageLinks -> {
+								if (crawler.isRunning()) {
+									visit(site, urlToCrawl, pageLinks);
+								}
+								
+								return pageLinks.getLinks();
+							}, visitor);
+				});
 		
-		sleep();
+		links.whenComplete((pageLinks, e) -> {
+			if (e != null) {
+				logger.error("Failed to crawl the url {}", urlToCrawl, e);
+				metrics.recordError();
+			}
+			
+			results.add(new CrawlResult(site, urlToCrawl, pageLinks));
+		});
+	}
+	
+	/**
+	 * Returns the next URL to crawl, taking the sites that are still running in turn.
+	 * <p>
+	 * In a cluster, the links forwarded by the other nodes are enqueued first.
+	 * 
+	 * @return the next URL and its site, null if no URL is ready to be crawled
+	 */
+	private CrawlTask nextTask() {
+		if (cluster != null) {
+			cluster.drainReceived(this::enqueueReceived);
+		}
 		
-		try {
-			Document doc = Jsoup.connect(urlToCrawl).timeout(TIMEOUT).get();
+		for (int i = 0; i < sites.size(); i++) {
+			SiteState site = sites.get(nextSite);
+			nextSite = (nextSite + 1) % sites.size();
 			
-			return doc;
-		} catch (IOException e) {
-			logger.error("JSoup failed to connect to the url {}", urlToCrawl, e);
+			if (!site.crawler.isRunning()) {
+				continue;
+			}
 			
-			return null;
+			String url = nextUrl(site);
+			
+			if (url != null) {
+				return new CrawlTask(site, url);
+			}
 		}
+		
+		return null;
 	}
 	
 	/**
-	 * Returns a list of all the links for the given {@link Document}.
+	 * Returns the next URL of a site to crawl, preferring URLs that are due to be retried over
+	 * new ones.
+	 * <p>
+	 * In a cluster, URLs that belong to another node since a node joined are forwarded to it
+	 * instead of being returned.
 	 * 
-	 * @param doc  the document in which to scrape the links, not null
-	 * @return a list of all the links in the {@code Document}, not null
+	 * @param site  the site, not null
+	 * @return the next URL, null if no URL of the site is ready to be crawled
 	 */
-	private List<String> getLinks(Document doc) {
-		return doc.select("a[href]")
-				.stream()
-				.map(d -> d.attr("abs:href"))
-				.collect(Collectors.toList());
+	private String nextUrl(SiteState site) {
+		while (true) {
+			String url = site.retries.pollDue();
+			
+			if (url == null) {
+				url = site.urlQueue.getUrl();
+			}
+			
+			if (url == null || cluster == null || cluster.isLocal(url)) {
+				return url;
+			}
+			
+			cluster.forward(url, site.takeDepth(url));
+		}
 	}
 	
 	/**
-	 * Determines if the web crawler should visit a URL.
-	 * <p>
-	 * A link is only processed if it meets these three conditions:
-	 * <p><ul>
-	 * <li>It has a valid extension.
-	 * <li>The URL should be followed due to it being an external link.
-	 * <li>It must be a valid URL.
-	 * <ul>
+	 * Adds a link forwarded by another node of the cluster to the first site that would have
+	 * followed it.
 	 * 
-	 * @param url  the URL that may or may not be visited
-	 * @return true if the URL should be processed, otherwise returns false
+	 * @param url  the URL of the link, not null
+	 * @param depth  the number of links between a seed URL and the link
 	 */
-	private boolean shouldVisit(String url) {
-		logger.debug("Entering shouldVisit(url={})", url);
+	private void enqueueReceived(String url, int depth) {
+		for (SiteState site : sites) {
+			if (site.seedUrls.contains(url) || site.urlFilter.accept(url)) {
+				site.enqueue(url, depth);
+				
+				return;
+			}
+		}
 		
-		if (shouldFollowLink(url) && hasValidExtension(url) && isValidUrl(url)) {
-			logger.debug("Leaving shouldVisit(): true");
-			return true;
+		logger.debug("No site follows the forwarded url {}", url);
+	}
+	
+	/**
+	 * @return true if any of the sites is still running, otherwise returns false
+	 */
+	private boolean isRunning() {
+		for (SiteState site : sites) {
+			if (site.crawler.isRunning()) {
+				return true;
+			}
 		}
 		
-		logger.debug("Leaving shouldVisit(): false");
 		return false;
 	}
 	
 	/**
-	 * Determines whether a URL has valid extension.
+	 * @return the amount of milliseconds until the first URL of a running site is due to be
+	 * retried, zero if one is due already, negative if no URL waits to be retried
+	 */
+	private long getNextRetryDelay() {
+		long delay = -1;
+		
+		for (SiteState site : sites) {
+			long siteDelay = site.retries.getNextDelay();
+			
+			if (site.crawler.isRunning() && siteDelay >= 0) {
+				delay = delay < 0 ? siteDelay : Math.min(delay, siteDelay);
+			}
+		}
+		
+		return delay;
+	}
+	
+	/**
+	 * @return the number of URLs waiting to be crawled, over every site
+	 */
+	private long getQueueSize() {
+		long size = 0;
+		
+		for (SiteState site : sites) {
+			size += site.urlQueue.size();
+		}
+		
+		return size;
+	}
+	
+	/**
+	 * @return the name of the crawl, which tells the metrics of crawls in the same JVM apart, 
+	 * not null
+	 */
+	private String getCrawlName() {
+		return sites.stream()
+				.map(site -> site.crawler.getClass().getName())
+				.collect(Collectors.joining(","));
+	}
+	
+	/**
+	 * Passes a {@code Document} to the public api of its site, unless it belongs to a seed URL
+	 * that should not be scraped.
+	 * 
+	 * @param site  the site the document belongs to, not null
+	 * @param urlToCrawl  the URL of the document, not null
+	 * @param doc  the document to visit, not null
+	 */
+	private void visit(SiteState site, String urlToCrawl, Document doc) {
+		WebCrawler crawler = site.crawler;
+		
+		if (site.isUnscrapedSeed(urlToCrawl)) {
+			logger.info("Not scraping seed url : {}", urlToCrawl);
+		} else {
+			long start = System.nanoTime();
+			crawler.onVisit(doc);
+			metrics.recordLatency(CrawlMetrics.Stage.VISIT, start);
+			
+			if (crawler.getPageType(urlToCrawl) == PageType.ARTICLE) {
+				if (watermark != null) {
+					watermark.add(urlToCrawl, crawler.getPublicationDate(doc));
+				}
+				
+				site.countArticle();
+			}
+		}
+	}
+	
+	/**
+	 * Passes the links of a page to the public api of its site, unless it belongs to a seed URL
+	 * that should not be scraped.
+	 * 
+	 * @param site  the site the page belongs to, not null
+	 * @param urlToCrawl  the URL of the page, not null
+	 * @param page  the links of the page, not null
+	 */
+	private void visit(SiteState site, String urlToCrawl, PageLinks page) {
+		WebCrawler crawler = site.crawler;
+		
+		if (site.isUnscrapedSeed(urlToCrawl)) {
+			logger.info("Not scraping seed url : {}", urlToCrawl);
+		} else {
+			long start = System.nanoTime();
+			crawler.onVisitLinks(page);
+			metrics.recordLatency(CrawlMetrics.Stage.VISIT, start);
+			
+			if (crawler.getPageType(urlToCrawl) == PageType.ARTICLE) {
+				if (watermark != null) {
+					watermark.add(urlToCrawl, page.getTime());
+				}
+				
+				site.countArticle();
+			}
+		}
+	}
+	
+	/**
+	 * Adds every link that passes the filter chain of a site to its {@code UrlQueue}.
+	 * <p>
+	 * If the crawler runs incrementally, articles that were scraped by an earlier run are left
+	 * out, and so are listing pages once the watermark has been reached.
+	 * In a cluster, the links that belong to other nodes are forwarded to them.
 	 * <p>
-	 * This prevents the web crawler from visiting URLs that do not point to html pages.
-	 * Examples of URLs to avoid are those that point to things like css, images, sound files, etc.
+	 * If URLs are made canonical, the links are rewritten before any of this.
+	 * <p>
+	 * The links are one level deeper than the page they were found on.
 	 * 
-	 * @param url  the URL to validate, not null
-	 * @return true if valid URL, otherwise returns false
+	 * @param site  the site the page belongs to, not null
+	 * @param pageUrl  the URL of the page the links were found on, not null
+	 * @param links  the links to add, not null
 	 */
-	private boolean hasValidExtension(String url) {
-		final String IGNORE_SUFFIX_PATTERN = ".*(\\.(css|js|gif|jpg|png|mp3|mp3|zip|gz))$";
+	private void addLinks(SiteState site, String pageUrl, List<String> links) {
+		long start = System.nanoTime();
+		links = site.canonicalize(links);
 		
+		if (watermark != null && !site.isWatermarkReached
+				&& site.crawler.getPageType(pageUrl) == PageType.LISTING
+				&& linksOnlyToKnownArticles(site, links)) {
+			logger.info("Reached the watermark at listing page: {}", pageUrl);
+			
+			site.isWatermarkReached = true;
+		}
 		
-		if (url.matches(IGNORE_SUFFIX_PATTERN)) {
-			return false;
+		enqueueLinks(site, links, site.takeDepth(pageUrl) + 1, start);
+	}
+	
+	/**
+	 * Adds every canonical link that passes the filter chain of a site to its {@code UrlQueue},
+	 * or forwards it to the node of the cluster it belongs to.
+	 * 
+	 * @param site  the site the links belong to, not null
+	 * @param links  the links to add, already canonical if URLs are made canonical, not null
+	 * @param depth  the number of links between a seed URL and the links
+	 * @param start  the time, from {@link System#nanoTime()}, at which the filtering began
+	 */
+	private void enqueueLinks(SiteState site, List<String> links, int depth, long start) {
+		List<String> accepted = new ArrayList<>(links.size());
+		
+		for (String link : links) {
+			if (site.urlFilter.accept(link) && !site.isKnownArticle(link) && !site.isPastWatermark(link)) {
+				accepted.add(link);
+			}
+		}
+		
+		metrics.recordLatency(CrawlMetrics.Stage.FILTER, start);
+		metrics.recordFilterRejections(links.size() - accepted.size());
+		start = System.nanoTime();
+		
+		for (String link : accepted) {
+			if (cluster != null && !cluster.isLocal(link)) {
+				cluster.forward(link, depth);
+			} else {
+				site.enqueue(link, depth);
+			}
 		}
 		
-		return true;
+		metrics.recordLatency(CrawlMetrics.Stage.ENQUEUE, start);
 	}
 	
 	/**
-	 * Determines whether the web crawler should follow a URL.
+	 * Fetches the {@code robots.txt} files of the hosts of the seed URLs of every site, before
+	 * any page is crawled.
 	 * <p>
-	 * If a URL is an external URL, then it may or may not be followed.
-	 * If the configuration set by {@link CrawlConfig} is set to follow external URLs, then any URL
-	 * will be followed.
-	 * Otherwise, only URLs that are not external will be followed by the web crawler.
-	 * 
-	 * @param url  the URL that may or may not be followed
-	 * @return true if the URL should be followed, otherwise returns false
+	 * The links to those hosts are then checked against rules that are already known, so the
+	 * crawl is not held up while a file is fetched.
+	 * The files of other hosts, such as external ones, are fetched when a link to them is first
+	 * found, and files that could not be reached are fetched again when their rules expire.
 	 */
-	private boolean shouldFollowLink(String url) {
-		if (!config.shouldFollowExternalLinks() && isExternalLink(url)) {
-			return false;
+	private void readRobotsTxt() {
+		for (SiteState site : sites) {
+			for (String seedUrl : site.seedUrls) {
+				robots.get(seedUrl);
+			}
 		}
+		
+		logger.info("Read the robots.txt files of {} hosts", robots.size());
+	}
+	
+	/**
+	 * Enqueues the URLs listed by the sitemaps of every site, as if the seed URLs linked to them.
+	 * <p>
+	 * The sitemaps of a site are those listed by the {@code robots.txt} files of the hosts of
+	 * its seed URLs, or the {@code /sitemap.xml} of the hosts whose files list none.
+	 * The URLs are streamed into the {@code UrlQueue} in batches, through the same filter chain
+	 * as the links of the pages, so the sitemaps are never held in memory as a whole.
+	 * The sitemaps are fetched politely, but are not retried.
+	 */
+	private void readSitemaps() {
+		SitemapReader reader = new SitemapReader(this::fetchPolitely, config.getSitemapModifiedSince());
+		
+		for (SiteState site : sites) {
+			Set<String> sitemapUrls = new LinkedHashSet<>();
+			
+			for (String seedUrl : site.seedUrls) {
+				List<String> listed = robots.get(seedUrl).getSitemaps();
+				
+				if (listed.isEmpty()) {
+					sitemapUrls.add(RobotsCache.getOrigin(seedUrl) + "/sitemap.xml");
+				} else {
+					sitemapUrls.addAll(listed);
+				}
+			}
+			
+			List<String> batch = new ArrayList<>(SITEMAP_BATCH_SIZE);
+			long count = reader.read(sitemapUrls, url -> {
+				batch.add(url);
+				
+				if (batch.size() == SITEMAP_BATCH_SIZE) {
+					enqueueLinks(site, site.canonicalize(batch), 1, System.nanoTime());
+					batch.clear();
+				}
+			});
 			
-		return true;
+			enqueueLinks(site, site.canonicalize(batch), 1, System.nanoTime());
+			logger.info("Read {} urls from the sitemaps {}", count, sitemapUrls);
+		}
 	}
 	
 	/**
-	 * Determines whether the link is an external link or not.
+	 * Fetches a page that is not crawled, such as a sitemap or a {@code robots.txt} file, in the
+	 * politeness slot of its host.
 	 * <p>
-	 * If a link does not begin exactly as one of the seed URLs, then it is an external link.
+	 * The calling thread waits for the slot, and for a request of the host to finish if it has
+	 * as many requests in flight as it may have.
 	 * 
-	 * @param url  the url to check, not null
-	 * @return true if external link, otherwise returns false
+	 * @param url  the URL of the page, not null
+	 * @param requestHeaders  extra headers to send with the request, not null
+	 * @return the response of the server, not null
+	 * @throws IOException if the page cannot be fetched
 	 */
-	private boolean isExternalLink(String url) {
-		return !config.getSeedUrls()
-				.stream()
-				.anyMatch(url::startsWith);
+	private FetchedPage fetchPolitely(String url, Map<String, String> requestHeaders) throws IOException {
+		long start = System.nanoTime();
+		int statusCode = 0;
+		
+		long wait;
+		
+		while ((wait = politeness.reserve(url)) < 0 && !Thread.currentThread().isInterrupted()) {
+			sleep(BUSY_HOST_POLL_INTERVAL);
+		}
+		
+		sleep(wait);
+		
+		try {
+			FetchedPage page = fetcher.fetch(url, requestHeaders);
+			statusCode = page.getStatusCode();
+			
+			return page;
+		} catch (IOException e) {
+			statusCode = RetryScheduler.getStatusCode(e);
+			
+			throw e;
+		} finally {
+			politeness.onComplete(url, statusCode, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), 0);
+		}
+	}
+	
+	/**
+	 * @param site  the site of the listing page, not null
+	 * @param links  the links of a listing page, not null
+	 * @return true if the links include articles, and every one of them is known, otherwise
+	 * returns false
+	 */
+	private boolean linksOnlyToKnownArticles(SiteState site, List<String> links) {
+		boolean hasArticles = false;
+		
+		for (String link : links) {
+			if (site.crawler.getPageType(link) == PageType.ARTICLE) {
+				if (!watermark.contains(link)) {
+					return false;
+				}
+				
+				hasArticles = true;
+			}
+		}
+		
+		return hasArticles;
 	}
 	
 	/**
-	 * Validates whether a URL can visited.
+	 * Delays the application for {@code delay} milliseconds.
 	 * <p>
-	 * This method uses {@link URL} to check if URLs are valid.
-	 * If the {@code URL} can be instantiated and be converted to a URI using {@link URL#toURI()},
-	 * then the URL is considered to be valid.
-	 * If either of these operations fails, then URL is not considered to be valid.
+	 * The delay is courtesy so that the website is not overloaded with requests from the crawler.
 	 * 
-	 * @param url  the URL to be validated, not null
-	 * @return true if the URL is valid, otherwise returns false
+	 * @param delay  the amount of milliseconds to sleep
 	 */
-	private boolean isValidUrl(String url) {
-		logger.debug("Entering isValidUrl(url={})", url);
+	private void sleep(long delay) {
+		if (delay <= 0) {
+			return;
+		}
 		
-		try {
-			URL urlTest = new URL(url);
-			urlTest.toURI();
-		} catch (MalformedURLException | URISyntaxException | NullPointerException e) {
-			logger.error("Url is not valid", e);
-			logger.debug("Leaving isValidUrl(): false");
-			return false;
-		} 
+		logger.debug("Sleeping for {} milliseconds", delay);
 		
-		logger.debug("Leaving isValidUrl(): true");
-		return true;
+		try {
+			Thread.sleep(delay);
+		} catch (InterruptedException e) {
+			logger.error("Thread was interrupted", e);
+			Thread.currentThread().interrupt();
+		}
 	}
 	
 	/**
-	 * @return the total amount of links the web crawler has visited
+	 * Hands a URL over to the pipeline once its politeness slot has come.
+	 * 
+	 * @param scheduler  the executor that waits for the slot, not null
+	 * @param task  the URL to crawl, not null
+	 * @param wait  the amount of milliseconds until the slot of the URL
+	 * @param workers  the executor for the fetch, parse and link extraction stages, not null
+	 * @param visitor  the single threaded executor for the visit stage, not null
+	 * @param results  receives the outcome of the pipeline, not null
 	 */
-	public long getTotalLinksVisited() {
-		return totalLinksVisited;
+	private void schedule(ScheduledExecutorService scheduler, CrawlTask task, long wait, Executor workers,
+			Executor visitor, BlockingQueue<CrawlResult> results) {
+		scheduler.schedule(
+				() -> process(task.site, task.url, workers, visitor, results),
+				wait,
+				TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Fetches, visits and extracts the links of the given URL on the calling thread.
+	 * <p>
+	 * The request waits for the politeness slot of the URL's host before it is made.
+	 * If the page cannot be fetched or parsed, then {@code null} will be returned.
+	 * 
+	 * @param site  the site the URL belongs to, not null
+	 * @param urlToCrawl  the URL to crawl, not null
+	 * @return the links on the page, null if connection fails
+	 */
+	private List<String> crawlPage(SiteState site, String urlToCrawl) {
+		sleep(politeness.reserve(urlToCrawl));
+		
+		try {
+			FetchedPage page = fetch(site, urlToCrawl);
+			
+			if (isSkippedUnchanged(page)) {
+				return extractLinks(page).getLinks();
+			}
+			
+			if (site.crawler.needsDocument(urlToCrawl)) {
+				Document doc = parse(page);
+				
+				if (isNearDuplicate(site, doc)) {
+					return Collections.emptyList();
+				}
+				
+				visit(site, urlToCrawl, doc);
+				
+				return getLinks(doc);
+			}
+			
+			PageLinks pageLinks = extractLinks(page);
+			visit(site, urlToCrawl, pageLinks);
+			
+			return pageLinks.getLinks();
+		} catch (UncheckedIOException e) {
+			logger.error("JSoup failed to connect to the url {}", urlToCrawl, e.getCause());
+			metrics.recordError();
+			
+			return null;
+		}
+	}
+	
+	/**
+	 * Checks a URL against the {@code robots.txt} rules of its host just before it is requested,
+	 * as the rules may have been fetched again since the URL was enqueued.
+	 * <p>
+	 * A URL of a host whose file could not be reached is put off until the file is fetched again,
+	 * and a URL that the rules disallow is dropped.
+	 * Seed URLs are always allowed.
+	 * 
+	 * @param site  the site the URL belongs to, not null
+	 * @param url  the URL that is about to be requested, not null
+	 * @return true if the URL may be requested, otherwise returns false
+	 */
+	private boolean isAllowedByRobotsTxt(SiteState site, String url) {
+		if (!config.shouldRespectRobotsTxt() || robots.isAllowed(url) || site.seedUrls.contains(url)) {
+			return true;
+		}
+		
+		long recheckDelay = robots.getRecheckDelay(url);
+		
+		if (recheckDelay >= 0) {
+			site.retries.putOff(url, recheckDelay);
+		} else {
+			site.takeDepth(url);
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Fetches the page for the given URL.
+	 * <p>
+	 * The outcome of the request is reported to the request scheduler, whether or not it
+	 * succeeded, and to the retry scheduler of the site, which schedules the URL to be fetched
+	 * again if the request failed transiently.
+	 * 
+	 * @param site  the site the URL belongs to, not null
+	 * @param urlToCrawl  the URL to fetch, not null
+	 * @return the response of the server, not null
+	 * @throws UncheckedIOException if the connection fails, or the response is neither text nor
+	 * XML
+	 */
+	private FetchedPage fetch(SiteState site, String urlToCrawl) {
+		long start = System.nanoTime();
+		int statusCode = 0;
+		long retryAfter = 0;
+		metrics.requestStarted();
+		
+		try {
+			FetchedPage page = fetcher.fetch(urlToCrawl);
+			
+			if (page.isNotModified()) {
+				statusCode = 304;
+				metrics.recordResponse(statusCode, 0);
+			} else {
+				statusCode = page.getStatusCode();
+				metrics.recordResponse(statusCode, page.getBody().length);
+				
+				// The server did answer, so the page is not retried
+				if (!page.isParseable()) {
+					throw new UncheckedIOException(new UnsupportedMimeTypeException(
+							"Unhandled content type", page.getHeader("Content-Type"), urlToCrawl));
+				}
+			}
+			
+			return page;
+		} catch (HttpStatusException e) {
+			statusCode = e.getStatusCode();
+			metrics.recordResponse(statusCode, 0);
+			
+			if (e instanceof RetryAfterException) {
+				retryAfter = ((RetryAfterException) e).getRetryAfter();
+			}
+			
+			throw new UncheckedIOException(e);
+		} catch (IOException e) {
+			statusCode = RetryScheduler.getStatusCode(e);
+			
+			throw new UncheckedIOException(e);
+		} finally {
+			metrics.requestFinished();
+			metrics.recordLatency(CrawlMetrics.Stage.FETCH, start);
+			politeness.onComplete(urlToCrawl, statusCode,
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), retryAfter);
+			
+			if (site.retries.onComplete(urlToCrawl, statusCode, retryAfter)) {
+				metrics.recordRetry();
+			}
+		}
+	}
+	
+	/**
+	 * Parses a fetched page into a {@code Document}.
+	 * <p>
+	 * If the response does not declare a charset, it is sniffed from the start of the page, so
+	 * that the body is decoded straight from the fetched bytes, once.
+	 * 
+	 * @param page  the page to parse, not null
+	 * @return the parsed document, not null
+	 */
+	private Document parse(FetchedPage page) {
+		long start = System.nanoTime();
+		
+		try {
+			byte[] body = page.getBody();
+			Charset charset = CharsetSniffer.detect(page);
+			Document doc = Jsoup.parse(CharsetSniffer.decode(body, body.length, charset), page.getUrl());
+			doc.outputSettings().charset(charset);
+			
+			return doc;
+		} finally {
+			metrics.recordLatency(CrawlMetrics.Stage.PARSE, start);
+		}
+	}
+	
+	/**
+	 * @param page  the fetched page, not null
+	 * @return true if the page has not changed since it was cached and should not be visited
+	 */
+	private boolean isSkippedUnchanged(FetchedPage page) {
+		if (page.isNotModified() && config.shouldSkipUnchangedPages()) {
+			logger.debug("Skipping unchanged page: {}", page.getUrl());
+			
+			return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Looks the {@link SimHash} of the main text of a page up among the pages crawled so far, and
+	 * adds it unless it nearly duplicates one of them.
+	 * <p>
+	 * Only the pages that are built into a {@code Document}, which are the pages the crawler
+	 * scrapes, are fingerprinted.
+	 * Listing pages, which the crawler only needs the links of, are never skipped, so that the
+	 * pagination of a site is always followed.
+	 * 
+	 * @param site  the site the page belongs to, not null
+	 * @param doc  the {@code Document} of the page, not null
+	 * @return true if the page nearly duplicates an earlier page and should not be visited
+	 */
+	private boolean isNearDuplicate(SiteState site, Document doc) {
+		if (nearDuplicates == null) {
+			return false;
+		}
+		
+		long start = System.nanoTime();
+		long fingerprint = SimHash.of(getMainText(doc, site.mainContent));
+		boolean isNearDuplicate = fingerprint != SimHash.NONE && !nearDuplicates.add(fingerprint);
+		metrics.recordLatency(CrawlMetrics.Stage.FINGERPRINT, start);
+		
+		if (isNearDuplicate) {
+			logger.debug("Skipping near-duplicate page: {}", doc.location());
+			
+			metrics.recordNearDuplicate();
+		}
+		
+		return isNearDuplicate;
+	}
+	
+	/**
+	 * Returns the text of the main content of a page: the text of every element that matches
+	 * the selector of the main content, in order, skipping those inside an earlier match.
+	 * 
+	 * @param doc  the {@code Document} of the page, not null
+	 * @param mainContent  the compiled selector of the main content, not null
+	 * @return the main text, or the text of the whole body if no element matches, not null
+	 */
+	static String getMainText(Document doc, Evaluator mainContent) {
+		Elements matches = Collector.collect(mainContent, doc);
+		
+		if (matches.isEmpty()) {
+			return doc.body() != null ? doc.body().text() : doc.text();
+		}
+		
+		List<Element> taken = new ArrayList<>();
+		StringBuilder text = new StringBuilder();
+		
+		for (Element match : matches) {
+			if (!Collections.disjoint(match.parents(), taken)) {
+				continue;
+			}
+			
+			taken.add(match);
+			text.append(match.text()).append(' ');
+		}
+		
+		return text.toString();
+	}
+	
+	/**
+	 * Starts the node that connects the web crawler to its cluster, joins the configured peers,
+	 * and waits for the quorum.
+	 * 
+	 * @return the cluster node, not null
+	 * @throws UncheckedIOException if the node cannot listen, or cannot reach any of the peers
+	 */
+	private ClusterNode startClusterNode() {
+		ClusterNode node = new ClusterNode(config.getClusterHost(), config.getClusterPort(),
+				config.getClusterBatchSize());
+		
+		try {
+			if (!config.getClusterPeers().isEmpty()) {
+				node.join(config.getClusterPeers());
+			}
+			
+			node.awaitMembers(config.getClusterQuorum());
+		} catch (InterruptedException e) {
+			logger.error("Thread was interrupted", e);
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException e) {
+			node.close();
+			
+			throw e;
+		}
+		
+		return node;
+	}
+	
+	/**
+	 * Waits until other nodes of the cluster forward links to this one.
+	 * 
+	 * @return true if links have arrived, false if the crawl of the whole cluster is over
+	 */
+	private boolean awaitClusterWork() {
+		try {
+			return cluster.awaitWork();
+		} catch (InterruptedException e) {
+			logger.error("Thread was interrupted", e);
+			Thread.currentThread().interrupt();
+			
+			return false;
+		}
+	}
+	
+	/**
+	 * Leaves the cluster, and hands the URLs that were not crawled over to the remaining nodes.
+	 */
+	private void leaveCluster() {
+		cluster.leave();
+		
+		for (SiteState site : sites) {
+			for (String url = site.urlQueue.getUrl(); url != null; url = site.urlQueue.getUrl()) {
+				cluster.forward(url, site.takeDepth(url));
+			}
+		}
+		
+		cluster.close();
+		cluster = null;
+	}
+	
+	/**
+	 * Creates the set that remembers the seen URLs, as selected by the configuration.
+	 * 
+	 * @param config  the configuration of the web crawler, not null
+	 * @return the seen URL set, not null
+	 */
+	private static UrlSet newSeenUrlSet(CrawlerConfig config) {
+		if (config.shouldUseUrlFingerprints()) {
+			return new FingerprintUrlSet(config.getExpectedUrlCount());
+		}
+		
+		return new StringUrlSet();
+	}
+	
+	/**
+	 * Creates the frontier that holds the pending URLs, as selected by the configuration.
+	 * 
+	 * @param config  the configuration of the web crawler, not null
+	 * @param crawler  the public api for the web crawler, which gives the priority of the URLs, 
+	 * not null
+	 * @param directory  the directory of the frontier segments, null to keep every URL on the heap
+	 * @return the frontier, not null
+	 */
+	private static Frontier newFrontier(CrawlerConfig config, WebCrawler crawler, Path directory) {
+		if (config.isPriorityFrontier()) {
+			if (directory != null) {
+				logger.warn("The priority frontier keeps every URL on the heap, ignoring the frontier directory");
+			}
+			
+			return new PriorityFrontier(crawler::getPriority);
+		}
+		
+		if (directory != null) {
+			return new TieredFrontier(directory, config.getFrontierMemoryCapacity());
+		}
+		
+		return new MemoryFrontier();
+	}
+	
+	/**
+	 * Creates the scheduler that paces the requests, as selected by the configuration.
+	 * 
+	 * @param config  the configuration of the web crawler, not null
+	 * @param fetcher  the fetcher that makes the requests, not null
+	 * @param robots  the {@code robots.txt} rules, whose {@code Crawl-delay} is obeyed if so
+	 * configured, null if there are none
+	 * @return the scheduler, not null
+	 */
+	private static RequestScheduler newRequestScheduler(CrawlerConfig config, PageFetcher fetcher,
+			RobotsCache robots) {
+		// Replayed pages come from disk, so there is no server to be polite to
+		if (fetcher instanceof ReplayFetcher) {
+			return new PolitenessScheduler(0);
+		}
+		
+		RequestScheduler scheduler = config.isAdaptiveRateControl()
+				? new AdaptiveRateController(config)
+				: new PolitenessScheduler(config.getPolitenessDelay());
+		
+		if (config.shouldRespectRobotsTxt()) {
+			return new CrawlDelayScheduler(scheduler, robots, config.getMaxCrawlDelay());
+		}
+		
+		return scheduler;
+	}
+	
+	/**
+	 * Creates the scheduler that retries the failed requests, as selected by the configuration.
+	 * 
+	 * @param config  the configuration of the web crawler, not null
+	 * @param fetcher  the fetcher that makes the requests, not null
+	 * @return the scheduler, not null
+	 */
+	private static RetryScheduler newRetryScheduler(CrawlerConfig config, PageFetcher fetcher) {
+		// A replayed page fails the same way every time
+		if (fetcher instanceof ReplayFetcher) {
+			return new RetryScheduler(0, config.getRetryBaseDelay(), config.getRetryMaxDelay(), 0,
+					config.getCircuitBreakerCooldown());
+		}
+		
+		return new RetryScheduler(config);
+	}
+	
+	/**
+	 * Creates the fetcher that makes the requests, as selected by the configuration.
+	 * 
+	 * @param config  the configuration of the web crawler, not null
+	 * @return the fetcher, not null
+	 */
+	private static PageFetcher newFetcher(CrawlerConfig config) {
+		if (config.getReplayArchiveFile() != null) {
+			return new ReplayFetcher(new PageArchive(config.getReplayArchiveFile(), false));
+		}
+		
+		PageFetcher fetcher = config.isPooledFetcher()
+				? new PooledFetcher(config)
+				: new JsoupFetcher(config.getReadTimeout(), config.getMaxBodySize());
+		
+		if (config.getResponseCacheDirectory() != null) {
+			ResponseCache cache =
+					new ResponseCache(config.getResponseCacheDirectory(), config.getResponseCacheMaxSize());
+			
+			fetcher = new CachingFetcher(fetcher, cache);
+		}
+		
+		if (config.getRecordArchiveFile() != null) {
+			// Records the complete pages, including those revalidated by the response cache
+			fetcher = new RecordingFetcher(fetcher, new PageArchive(config.getRecordArchiveFile(), true));
+		}
+		
+		return fetcher;
+	}
+	
+	/**
+	 * Extracts the links of a page without building a {@code Document}.
+	 * <p>
+	 * If the page uses a charset that {@link LinkExtractor} cannot scan, then the page is
+	 * parsed into a {@code Document} after all.
+	 * 
+	 * @param page  the page to extract the links from, not null
+	 * @return the links, title and time of the page, not null
+	 */
+	private PageLinks extractLinks(FetchedPage page) {
+		Charset charset = CharsetSniffer.detect(page);
+		
+		if (LinkExtractor.supports(charset)) {
+			long start = System.nanoTime();
+			byte[] body = page.getBody();
+			PageLinks pageLinks = LinkExtractor.extract(page.getUrl(), body, body.length, charset);
+			metrics.recordLatency(CrawlMetrics.Stage.EXTRACT_LINKS, start);
+			
+			return pageLinks;
+		}
+		
+		logger.debug("Parsing {} because its charset cannot be scanned", page.getUrl());
+		
+		Document doc = parse(page);
+		Element time = doc.select("time").first();
+		
+		return new PageLinks(page.getUrl(), getLinks(doc), doc.title(), time != null ? time.text() : null);
+	}
+	
+	/**
+	 * Returns a thread factory that creates daemon threads with the given name prefix.
+	 * 
+	 * @param name  the prefix for the thread names, not null
+	 * @return the thread factory, not null
+	 */
+	private static ThreadFactory newThreadFactory(String name) {
+		AtomicInteger count = new AtomicInteger();
+		
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			
+			return thread;
+		};
+	}
+	
+	/**
+	 * Returns a list of all the links for the given {@link Document}.
+	 * 
+	 * @param doc  the document in which to scrape the links, not null
+	 * @return a list of all the links in the {@code Document}, not null
+	 */
+	List<String> getLinks(Document doc) {
+		long start = System.nanoTime();
+		List<String> links = doc.select("a[href]")
+				.stream()
+				.map(d -> d.attr("abs:href"))
+				.collect(Collectors.toList());
+		metrics.recordLatency(CrawlMetrics.Stage.EXTRACT_LINKS, start);
+		
+		return links;
+	}
+	
+	/**
+	 * Builds the filter chain that every discovered link must pass to be crawled.
+	 * <p>
+	 * A link is only processed if it meets these conditions:
+	 * <p><ul>
+	 * <li>The URL should be followed due to it being an external link.
+	 * <li>It has a valid extension.
+	 * <li>It must be a valid URL.
+	 * <li>The public api wants to visit it.
+	 * <li>The {@code robots.txt} file of its host allows it, or could not be reached yet, if the
+	 * files are obeyed.
+	 * </ul>
+	 * <p>
+	 * If the configuration set by {@link CrawlerConfig} is set to follow external URLs, then any URL
+	 * will be followed.
+	 * Otherwise, only URLs that begin exactly as one of the seed URLs of the site will be followed.
+	 * 
+	 * @param config  the configuration of the web crawler, not null
+	 * @param seedUrls  the seed URLs of the site, not null
+	 * @param crawler  the public api for the site, not null
+	 * @param robots  the {@code robots.txt} rules that the links must pass last, null if they are
+	 * not obeyed
+	 * @return the filter chain, not null
+	 */
+	static UrlFilter newUrlFilter(CrawlerConfig config, List<String> seedUrls, WebCrawler crawler,
+			RobotsCache robots) {
+		UrlFilterChain chain = new UrlFilterChain();
+		
+		if (!config.shouldFollowExternalLinks()) {
+			chain.add(new SeedPrefixFilter(seedUrls));
+		}
+		
+		chain
+				.add(new ExtensionFilter(IGNORED_EXTENSIONS))
+				.add(new UrlSyntaxFilter())
+				.add(crawler::shouldVisit);
+		
+		// The rules of a new host are fetched, so they are only looked up for the links that are otherwise accepted.
+		// The links of a host whose rules could not be reached are put off when they are handed out.
+		if (robots != null) {
+			chain.add(url -> robots.isAllowed(url) || robots.isUnreachable(url));
+		}
+		
+		return chain;
+	}
+	
+	/**
+	 * @return the metrics of the crawl, not null
+	 */
+	public CrawlMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * @return the total amount of links the web crawler has visited
+	 */
+	public long getTotalLinksVisited() {
+		return totalLinksVisited;
+	}
+	
+	/**
+	 * @param config  the configuration of the web crawler, which gives the seed URLs, not null
+	 * @param crawler  the public api for the web crawler, not null
+	 * @return the only site of a controller for a single web crawler, not null
+	 */
+	private static List<CrawlSite> toSites(CrawlerConfig config, WebCrawler crawler) {
+		return Collections.singletonList(new CrawlSite(crawler, config.getSeedUrls(), config.getMaxArticles()));
+	}
+	
+	/**
+	 * The state of the crawl of a site.
+	 */
+	private final class SiteState {
+		/**
+		 * The public api for the site.
+		 */
+		private final WebCrawler crawler;
+		/**
+		 * The URLs the crawl of the site started from.
+		 */
+		private final List<String> seedUrls;
+		/**
+		 * Stores all the links scraped from the site and retrieves the next URL to visit.
+		 */
+		private final UrlQueue urlQueue;
+		/**
+		 * Holds the URLs whose requests failed transiently until they are due to be retried, and
+		 * puts off the URLs of hosts that keep failing.
+		 */
+		private final RetryScheduler retries;
+		/**
+		 * Decides which of the discovered links are crawled.
+		 */
+		private final UrlFilter urlFilter;
+		/**
+		 * The depth of every URL whose links have not been added yet, if the frontier orders the
+		 * URLs by depth, otherwise null.
+		 * <p>
+		 * A URL that is not in the map is a seed URL, at depth zero.
+		 * The map is only used by the thread that enqueues the links.
+		 */
+		private final Map<String, Integer> depths;
+		/**
+		 * Rewrites the links of the site into their canonical form, if URLs are made canonical,
+		 * otherwise null.
+		 */
+		private final UrlCanonicalizer canonicalizer;
+		/**
+		 * The compiled selector of the main content of the site's pages, if near-duplicates are
+		 * skipped, otherwise null.
+		 */
+		private final Evaluator mainContent;
+		/**
+		 * Whether a listing page that only links to known articles has been crawled, after which
+		 * no further listing pages of the site are crawled.
+		 */
+		private boolean isWatermarkReached = false;
+		/**
+		 * The number of articles after which the crawl of the site stops, zero for no limit.
+		 */
+		private final long maxArticles;
+		/**
+		 * The number of articles visited so far, only touched by the visit stage.
+		 */
+		private long articleCount = 0;
+		
+		private SiteState(CrawlSite site, PageFetcher fetcher, Path frontierDirectory) {
+			this.crawler = site.getCrawler();
+			this.canonicalizer = config.shouldCanonicalizeUrls()
+					? new UrlCanonicalizer(config.getIgnoredQueryParameters(), crawler.getTrailingSlash())
+					: null;
+			this.seedUrls = canonicalize(site.getSeedUrls());
+			this.urlQueue = new UrlQueue(newSeenUrlSet(config), newFrontier(config, crawler, frontierDirectory));
+			this.retries = newRetryScheduler(config, fetcher);
+			this.urlFilter = newUrlFilter(config, seedUrls, crawler, config.shouldRespectRobotsTxt() ? robots : null);
+			this.depths = config.isPriorityFrontier() ? new HashMap<>() : null;
+			this.mainContent = config.shouldSkipNearDuplicates() ? compileMainContent(crawler) : null;
+			this.maxArticles = site.getMaxArticles();
+			
+			// Populate the urlQueue initially with the seed urls
+			seedUrls.forEach(urlQueue::addUrl);
+		}
+		
+		/**
+		 * @param crawler  the web crawler of the site, not null
+		 * @return the compiled selector of the main content of the site's pages, not null
+		 * @throws IllegalArgumentException if the selector is not valid
+		 */
+		private Evaluator compileMainContent(WebCrawler crawler) {
+			try {
+				return QueryParser.parse(crawler.getMainContentSelector());
+			} catch (Selector.SelectorParseException e) {
+				throw new IllegalArgumentException("Invalid main content selector: "
+						+ crawler.getMainContentSelector(), e);
+			}
+		}
+		
+		/**
+		 * Counts a visited article, and stops the crawl of the site once it has visited its
+		 * maximum number of articles.
+		 */
+		private void countArticle() {
+			articleCount++;
+			
+			if (articleCount == maxArticles) {
+				logger.info("Visited {} articles, stopping the crawl of the site", articleCount);
+				
+				crawler.stop();
+			}
+		}
+		
+		/**
+		 * Adds a URL to the {@code UrlQueue}, and remembers its depth if depths are tracked.
+		 * 
+		 * @param url  the URL to add, not null
+		 * @param depth  the number of links between a seed URL and the URL
+		 */
+		private void enqueue(String url, int depth) {
+			if (urlQueue.addUrl(url, depth) && depths != null) {
+				depths.put(url, depth);
+			}
+		}
+		
+		/**
+		 * Makes the links of the site canonical, if URLs are made canonical.
+		 * 
+		 * @param links  the links to rewrite, not null
+		 * @return the canonical links, or the same list if URLs are not made canonical, not null
+		 */
+		private List<String> canonicalize(List<String> links) {
+			if (canonicalizer == null) {
+				return links;
+			}
+			
+			List<String> canonical = new ArrayList<>(links.size());
+			
+			for (String link : links) {
+				canonical.add(canonicalizer.canonicalize(link));
+			}
+			
+			return canonical;
+		}
+		
+		/**
+		 * Forgets the depth of a URL whose links are being added, or that will not be crawled.
+		 * <p>
+		 * Every URL that is enqueued ends up here once, so that the map only holds the URLs that
+		 * are still pending.
+		 * 
+		 * @param url  the URL of the page, not null
+		 * @return the depth of the URL, zero if it is a seed URL or depths are not tracked
+		 */
+		private int takeDepth(String url) {
+			if (depths == null) {
+				return 0;
+			}
+			
+			Integer depth = depths.remove(url);
+			
+			return depth != null ? depth : 0;
+		}
+		
+		/**
+		 * Forgets the depth of a URL that could not be crawled, unless it is going to be retried.
+		 * 
+		 * @param url  the URL of the page, not null
+		 */
+		private void forgetFailed(String url) {
+			if (!retries.isRetrying(url)) {
+				takeDepth(url);
+			}
+		}
+		
+		/**
+		 * @param url  the URL to check, not null
+		 * @return true if the URL is a seed URL that should not be scraped, otherwise returns false
+		 */
+		private boolean isUnscrapedSeed(String url) {
+			return !config.shouldScrapeSeedUrls() && seedUrls.contains(url);
+		}
+		
+		/**
+		 * @param url  the URL to check, not null
+		 * @return true if the crawler runs incrementally and the URL is an article that was
+		 * scraped by an earlier run, otherwise returns false
+		 */
+		private boolean isKnownArticle(String url) {
+			return watermark != null && watermark.contains(url) && crawler.getPageType(url) == PageType.ARTICLE;
+		}
+		
+		/**
+		 * Listing pages are ordered from newest to oldest, so once one listing page only links to
+		 * known articles, every later listing page does too.
+		 * 
+		 * @param url  the URL to check, not null
+		 * @return true if the watermark has been reached and the URL is a listing page, otherwise
+		 * returns false
+		 */
+		private boolean isPastWatermark(String url) {
+			return isWatermarkReached && crawler.getPageType(url) == PageType.LISTING;
+		}
+	}
+	
+	/**
+	 * A URL to crawl, and the site it belongs to.
+	 */
+	private static final class CrawlTask {
+		private final SiteState site;
+		private final String url;
+		
+		private CrawlTask(SiteState site, String url) {
+			this.site = site;
+			this.url = url;
+		}
+	}
+	
+	/**
+	 * The outcome of running a URL through the crawl pipeline.
+	 */
+	private static final class CrawlResult {
+		/**
+		 * The site the URL belongs to.
+		 */
+		private final SiteState site;
+		/**
+		 * The URL that was crawled.
+		 */
+		private final String url;
+		/**
+		 * The links found on the page, null if the page could not be crawled.
+		 */
+		private final List<String> links;
+		
+		private CrawlResult(SiteState site, String url, List<String> links) {
+			this.site = site;
+			this.url = url;
+			this.links = links;
+		}
 	}
 }
@@ -0,0 +1,177 @@
+package com.froggermtp.chh_data_collector;
+
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link AdaptiveRateController} and the handling of {@code Retry-After}.
+ */
+public class AdaptiveRateControllerTest extends TestCase {
+	private static final String URL = "http://a.com/page";
+
+	private CrawlerConfig config;
+
+	@Override
+	protected void setUp() {
+		config = new CrawlerConfig();
+		config.setPolitenessDelay(1000);
+		config.setMinPolitenessDelay(10);
+		config.setMaxPolitenessDelay(60_000);
+		config.setMaxConnectionsPerHost(4);
+		config.setTargetLatency(500);
+		config.setAdaptiveRateControl(true);
+	}
+
+	public void testRateGrowsWhileTheHostIsHealthy() {
+		AdaptiveRateController controller = new AdaptiveRateController(config);
+
+		assertEquals(0, controller.reserve(URL));
+		assertEquals(1.0, controller.getRequestRates().get("a.com"), 0.001);
+
+		answer(controller, 200, 200, 20);
+
+		assertTrue(controller.getRequestRates().get("a.com") > 5);
+		assertEquals(4, controller.getConnectionLimit(URL));
+	}
+
+	public void testOverloadHalvesTheRateOnce() {
+		AdaptiveRateController controller = new AdaptiveRateController(config);
+		answer(controller, 200, 200, 20);
+
+		double rate = controller.getRequestRates().get("a.com");
+
+		controller.reserve(URL);
+		controller.reserve(URL);
+		controller.onComplete(URL, 429, 0, 0);
+
+		assertEquals(rate / 2, controller.getRequestRates().get("a.com"), 0.001);
+		assertEquals(2, controller.getConnectionLimit(URL));
+
+		// This request was sent before the rate was cut, so it says nothing about the new rate
+		controller.onComplete(URL, 503, 1000, 0);
+
+		assertEquals(rate / 2, controller.getRequestRates().get("a.com"), 0.001);
+	}
+
+	public void testPermanentFailuresLeaveTheRate() {
+		AdaptiveRateController controller = new AdaptiveRateController(config);
+		answer(controller, 200, 200, 20);
+
+		double rate = controller.getRequestRates().get("a.com");
+
+		for (int i = 0; i < 3; i++) {
+			controller.reserve(URL);
+			controller.onComplete(URL, RetryScheduler.PERMANENT_FAILURE, 5000, 0);
+		}
+
+		assertEquals(rate, controller.getRequestRates().get("a.com"), 0.001);
+		assertEquals(4, controller.getConnectionLimit(URL));
+
+		// A request that got no answer at all is still an overload
+		controller.reserve(URL);
+		controller.onComplete(URL, 0, 5000, 0);
+
+		assertEquals(rate / 2, controller.getRequestRates().get("a.com"), 0.001);
+	}
+
+	public void testSlowResponsesAreAnOverload() {
+		AdaptiveRateController controller = new AdaptiveRateController(config);
+		controller.reserve(URL);
+		controller.onComplete(URL, 200, 2000, 0);
+
+		assertEquals(0.5, controller.getRequestRates().get("a.com"), 0.001);
+	}
+
+	public void testRetryAfterHoldsTheHost() {
+		AdaptiveRateController controller = new AdaptiveRateController(config);
+		controller.reserve(URL);
+		controller.onComplete(URL, 503, 10, 5000);
+
+		assertTrue(controller.reserve(URL) > 4900);
+		assertEquals(0, controller.reserve("http://b.com/"));
+	}
+
+	public void testConnectionsAreLimited() {
+		AdaptiveRateController controller = new AdaptiveRateController(config);
+
+		assertTrue(controller.reserve(URL) >= 0);
+		assertTrue(controller.reserve(URL) < 0);
+
+		controller.onComplete(URL, 200, 10, 0);
+
+		assertTrue(controller.reserve(URL) >= 0);
+	}
+
+	public void testRateStaysWithinBounds() {
+		config.setMinPolitenessDelay(500);
+		config.setMaxPolitenessDelay(4000);
+
+		AdaptiveRateController controller = new AdaptiveRateController(config);
+		answer(controller, 1000, 200, 10);
+
+		assertEquals(2.0, controller.getRequestRates().get("a.com"), 0.001);
+
+		for (int i = 0; i < 10; i++) {
+			controller.reserve(URL);
+			controller.onComplete(URL, 0, 0, 0);
+		}
+
+		assertEquals(0.25, controller.getRequestRates().get("a.com"), 0.001);
+		assertEquals(1, controller.getConnectionLimit(URL));
+	}
+
+	public void testRetryAfterIsParsed() {
+		SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("GMT"));
+		long now = 1_500_000_000_000L;
+
+		assertEquals(120_000, JsoupFetcher.parseRetryAfter(" 120 ", now));
+		assertEquals(30_000, JsoupFetcher.parseRetryAfter(format.format(new Date(now + 30_000)), now));
+		assertEquals(0, JsoupFetcher.parseRetryAfter(format.format(new Date(now - 30_000)), now));
+		assertEquals(-1, JsoupFetcher.parseRetryAfter("soon", now));
+		assertEquals(-1, JsoupFetcher.parseRetryAfter(null, now));
+	}
+
+	public void testCrawlReportsTheRates() {
+		config.addSeedUrl("http://site.test/");
+		config.setNumberOfThreads(4);
+		config.setPolitenessDelay(10);
+
+		PageFetcher site = (url, requestHeaders) -> {
+			if (url.endsWith("/busy")) {
+				throw new RetryAfterException(429, url, 10);
+			}
+
+			String html = "<a href=\"/a\">a</a><a href=\"/b\">b</a><a href=\"/busy\">busy</a>";
+
+			return new FetchedPage(url, 200, Collections.singletonMap("Content-Type", "text/html"),
+					html.getBytes(StandardCharsets.UTF_8));
+		};
+
+		WebCrawlerController controller = new WebCrawlerController(config, new WebCrawler() {}, site);
+		controller.crawl();
+
+		CrawlMetrics metrics = controller.getMetrics();
+
+		assertEquals(4, metrics.getPagesFetched());
+		assertEquals(Long.valueOf(1), metrics.getStatusCodes().get("429"));
+		assertTrue(metrics.getHostRequestRates().containsKey("site.test"));
+		assertTrue(metrics.toPrometheusText().contains("crawler_host_request_rate{host=\"site.test\"} "));
+	}
+
+	/**
+	 * Makes requests one at a time, each answered with the same status code and latency.
+	 */
+	private static void answer(AdaptiveRateController controller, int count, int statusCode, long latency) {
+		for (int i = 0; i < count; i++) {
+			controller.reserve(URL);
+			controller.onComplete(URL, statusCode, latency, 0);
+		}
+	}
+}
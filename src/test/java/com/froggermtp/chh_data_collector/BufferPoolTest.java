@@ -0,0 +1,69 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link BufferPool}.
+ */
+public class BufferPoolTest extends TestCase {
+
+	public void testStreamIsReadWhole() throws IOException {
+		BufferPool pool = new BufferPool(2, 1024 * 1024);
+		byte[] small = random(10);
+		byte[] large = random(5 * BufferPool.INITIAL_SIZE + 3);
+
+		assertTrue(Arrays.equals(small, pool.read(new ByteArrayInputStream(small), Integer.MAX_VALUE)));
+		assertTrue(Arrays.equals(large, pool.read(new ByteArrayInputStream(large), Integer.MAX_VALUE)));
+		assertEquals(0, pool.read(new ByteArrayInputStream(new byte[0]), Integer.MAX_VALUE).length);
+
+		// The grown buffer is reused
+		assertEquals(1, pool.size());
+	}
+
+	public void testStreamIsReadUpToTheLimit() throws IOException {
+		BufferPool pool = new BufferPool(2, 1024 * 1024);
+		byte[] bytes = random(3 * BufferPool.INITIAL_SIZE);
+		ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+
+		byte[] read = pool.read(in, BufferPool.INITIAL_SIZE + 1);
+
+		assertTrue(Arrays.equals(Arrays.copyOf(bytes, BufferPool.INITIAL_SIZE + 1), read));
+		assertEquals(bytes.length - read.length, in.available());
+	}
+
+	public void testLargeBuffersAreNotPooled() throws IOException {
+		BufferPool pool = new BufferPool(2, BufferPool.INITIAL_SIZE);
+		byte[] large = random(2 * BufferPool.INITIAL_SIZE);
+
+		assertTrue(Arrays.equals(large, pool.read(new ByteArrayInputStream(large), Integer.MAX_VALUE)));
+		assertEquals(0, pool.size());
+	}
+
+	public void testPoolIsBounded() {
+		try {
+			new BufferPool(0, 1024);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+
+		try {
+			new BufferPool(1, 0);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+	private static byte[] random(int length) {
+		byte[] bytes = new byte[length];
+		new Random(length).nextBytes(bytes);
+
+		return bytes;
+	}
+}
@@ -0,0 +1,91 @@
+package com.froggermtp.chh_data_collector;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link CharsetSniffer}.
+ */
+public class CharsetSnifferTest extends TestCase {
+	private static final Charset WINDOWS_1252 = Charset.forName("windows-1252");
+
+	public void testHeaderWins() {
+		byte[] body = bytes("<meta charset=\"iso-8859-2\"><p>Café</p>", WINDOWS_1252);
+
+		assertEquals(WINDOWS_1252, CharsetSniffer.detect("windows-1252", body, body.length));
+	}
+
+	public void testByteOrderMark() {
+		byte[] utf8 = withBom(new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF },
+				bytes("<p>Café</p>", StandardCharsets.UTF_8));
+		byte[] utf16 = withBom(new byte[] { (byte) 0xFF, (byte) 0xFE },
+				bytes("<meta charset=\"windows-1252\"><p>Café</p>", StandardCharsets.UTF_16LE));
+
+		assertEquals(StandardCharsets.UTF_8, CharsetSniffer.detect(null, utf8, utf8.length));
+		assertEquals(StandardCharsets.UTF_16LE, CharsetSniffer.detect(null, utf16, utf16.length));
+
+		// The byte order mark is not part of the text
+		assertEquals("<p>Café</p>", CharsetSniffer.decode(utf8, utf8.length, StandardCharsets.UTF_8));
+		assertEquals("<meta charset=\"windows-1252\"><p>Café</p>",
+				CharsetSniffer.decode(utf16, utf16.length, StandardCharsets.UTF_16LE));
+	}
+
+	public void testMetaCharset() {
+		assertEquals(WINDOWS_1252, detect("<html><head><META Charset = 'Windows-1252'/></head>"));
+		assertEquals(WINDOWS_1252, detect("<html><head><meta name=\"viewport\" content=\"width=device-width\">"
+				+ "<meta http-equiv=\"Content-Type\" content=\"text/html; charset=windows-1252\">"));
+
+		// Pages that declare UTF-16 in a tag that could be read as ASCII are not in UTF-16
+		assertEquals(StandardCharsets.UTF_8, detect("<meta charset=\"utf-16\">"));
+	}
+
+	public void testDefaultsToUtf8() {
+		assertEquals(StandardCharsets.UTF_8, detect("<html><head><title>No charset</title></head>"));
+		assertEquals(StandardCharsets.UTF_8, detect("<meta charset=\"no-such-charset\">"));
+		assertEquals(StandardCharsets.UTF_8, detect("<meta charset="));
+		assertEquals(StandardCharsets.UTF_8, detect(""));
+
+		// An unsupported header falls back to the page itself
+		byte[] body = bytes("<meta charset=\"windows-1252\">", StandardCharsets.US_ASCII);
+
+		assertEquals(WINDOWS_1252, CharsetSniffer.detect("no-such-charset", body, body.length));
+	}
+
+	public void testOnlyTheStartOfThePageIsSearched() {
+		String padding = String.join("", Collections.nCopies(CharsetSniffer.PRESCAN_LENGTH, " "));
+
+		assertEquals(StandardCharsets.UTF_8, detect(padding + "<meta charset=\"windows-1252\">"));
+	}
+
+	public void testPageFromHeaders() {
+		byte[] body = bytes("<meta charset=\"utf-8\"><p>Café</p>", WINDOWS_1252);
+		FetchedPage page = new FetchedPage("http://site.test/", 200,
+				Collections.singletonMap("Content-Type", "text/html; charset=windows-1252"), body);
+
+		Charset charset = CharsetSniffer.detect(page);
+
+		assertEquals(WINDOWS_1252, charset);
+		assertEquals("<meta charset=\"utf-8\"><p>Café</p>", CharsetSniffer.decode(body, body.length, charset));
+	}
+
+	private static Charset detect(String html) {
+		byte[] body = bytes(html, StandardCharsets.US_ASCII);
+
+		return CharsetSniffer.detect(null, body, body.length);
+	}
+
+	private static byte[] bytes(String text, Charset charset) {
+		return text.getBytes(charset);
+	}
+
+	private static byte[] withBom(byte[] bom, byte[] body) {
+		byte[] bytes = new byte[bom.length + body.length];
+		System.arraycopy(bom, 0, bytes, 0, bom.length);
+		System.arraycopy(body, 0, bytes, bom.length, body.length);
+
+		return bytes;
+	}
+}
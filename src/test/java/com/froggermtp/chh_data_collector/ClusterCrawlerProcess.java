@@ -0,0 +1,56 @@
+package com.froggermtp.chh_data_collector;
+
+import org.jsoup.nodes.Document;
+
+/**
+ * Runs a node of a crawler cluster that crawls a {@link SyntheticSite} served by another
+ * process, and prints every page it visits as {@code VISITED url}.
+ * <p>
+ * The arguments are the port of the site, the cluster port of the node, the number of nodes to
+ * wait for, and optionally the address of a node to join.
+ */
+public class ClusterCrawlerProcess {
+	/**
+	 * The prefix of the lines that report a visited page.
+	 */
+	static final String VISITED = "VISITED ";
+
+	public static void main(String[] args) {
+		CrawlerConfig config = new CrawlerConfig();
+		config.addSeedUrl(SyntheticSite.SEED_URL);
+		config.setFollowExternalLinks(false);
+		config.setPolitenessDelay(0);
+		config.setNumberOfThreads(2);
+		config.setClusterPort(Integer.parseInt(args[1]));
+		config.setClusterQuorum(Integer.parseInt(args[2]));
+
+		if (args.length > 3) {
+			config.addClusterPeer(args[3]);
+		}
+
+		PageFetcher fetcher = SyntheticSite.newFetcher(Integer.parseInt(args[0]), 30_000);
+		new WebCrawlerController(config, new Reporter(), fetcher).crawl();
+	}
+
+	/**
+	 * Scrapes the pages the way {@link RapzillaWebCrawler} does, and reports them.
+	 */
+	private static final class Reporter extends RapzillaWebCrawler {
+		@Override
+		public void onVisit(Document doc) {
+			super.onVisit(doc);
+
+			System.out.println(VISITED + doc.location());
+		}
+
+		@Override
+		public void onVisitLinks(PageLinks page) {
+			System.out.println(VISITED + page.getUrl());
+		}
+
+		@Override
+		public void stop() {
+			// Crawl the whole site
+		}
+	}
+}
@@ -0,0 +1,233 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.File;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link HashRing} and {@link ClusterNode}, and a crawl by a cluster of processes.
+ */
+public class ClusterTest extends TestCase {
+
+	public void testRingSpreadsTheUrls() {
+		HashRing ring = new HashRing();
+
+		assertNull(ring.getOwner("http://a.com/"));
+
+		ring.add("node-1");
+		ring.add("node-2");
+		ring.add("node-3");
+
+		Map<String, Integer> counts = new HashMap<>();
+
+		for (int i = 0; i < 30_000; i++) {
+			counts.merge(ring.getOwner("http://a.com/page/" + i), 1, Integer::sum);
+		}
+
+		assertEquals(3, counts.size());
+
+		for (int count : counts.values()) {
+			assertTrue(count + "", count > 7_000 && count < 13_000);
+		}
+	}
+
+	public void testJoiningNodeOnlyTakesUrlsOver() {
+		HashRing ring = new HashRing();
+		ring.add("node-1");
+		ring.add("node-2");
+		ring.add("node-3");
+
+		Map<String, String> owners = new HashMap<>();
+
+		for (int i = 0; i < 10_000; i++) {
+			String url = "http://a.com/page/" + i;
+			owners.put(url, ring.getOwner(url));
+		}
+
+		assertTrue(ring.add("node-4"));
+		assertFalse(ring.add("node-4"));
+
+		int moved = 0;
+
+		for (Map.Entry<String, String> entry : owners.entrySet()) {
+			String owner = ring.getOwner(entry.getKey());
+
+			if (!owner.equals(entry.getValue())) {
+				assertEquals("node-4", owner);
+				moved++;
+			}
+		}
+
+		assertTrue(moved + "", moved > 1_500 && moved < 3_500);
+
+		// Leaving gives every URL back to its earlier node
+		assertTrue(ring.remove("node-4"));
+
+		for (Map.Entry<String, String> entry : owners.entrySet()) {
+			assertEquals(entry.getValue(), ring.getOwner(entry.getKey()));
+		}
+	}
+
+	public void testUrlIsHashedByHostAndPath() {
+		assertEquals("a.com/list", HashRing.getKey("http://a.com/list?start=10#top"));
+		assertEquals("a.com/list", HashRing.getKey("https://a.com/list"));
+	}
+
+	public void testNodesForwardLinksAndRebalance() throws Exception {
+		try (ClusterNode a = new ClusterNode("localhost", 0, 4);
+				ClusterNode b = new ClusterNode("localhost", 0, 4)) {
+			String url;
+
+			// The third node leaves once it has received a link
+			try (ClusterNode c = new ClusterNode("localhost", 0, 4)) {
+				b.join(Arrays.asList(a.getAddress()));
+				c.join(Arrays.asList(b.getAddress()));
+
+				a.awaitMembers(3);
+				b.awaitMembers(3);
+				c.awaitMembers(3);
+
+				url = findUrlOwnedBy(c);
+
+				assertFalse(a.isLocal(url));
+				assertFalse(b.isLocal(url));
+
+				a.forward(url, 2);
+
+				assertTrue(c.awaitWork());
+
+				List<String> received = new ArrayList<>();
+				c.drainReceived((link, depth) -> received.add(link + " " + depth));
+
+				assertEquals(Arrays.asList(url + " 2"), received);
+				assertEquals(1, a.getSentCount());
+				assertEquals(1, c.getReceivedCount());
+			}
+
+			while (a.getMembers().size() > 2 || b.getMembers().size() > 2) {
+				TimeUnit.MILLISECONDS.sleep(ClusterNode.FLUSH_INTERVAL);
+			}
+
+			// The URL moves to one of the remaining nodes
+			assertTrue(a.isLocal(url) ^ b.isLocal(url));
+
+			// With nothing left to do, both nodes agree that the crawl is over
+			ExecutorService executor = Executors.newFixedThreadPool(2);
+
+			try {
+				Future<Boolean> aWork = executor.submit(a::awaitWork);
+				Future<Boolean> bWork = executor.submit(b::awaitWork);
+
+				assertFalse(aWork.get(30, TimeUnit.SECONDS));
+				assertFalse(bWork.get(30, TimeUnit.SECONDS));
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	public void testProcessesCrawlTheSiteTogether() throws Exception {
+		final int NODE_COUNT = 3;
+
+		try (SyntheticSite site = new SyntheticSite()) {
+			site.setArticleCount(150);
+			site.setFanOut(10);
+			site.setLatency(2);
+			site.setPageSize(2048);
+			site.start(4);
+
+			int firstPort;
+
+			try (ServerSocket socket = new ServerSocket(0)) {
+				firstPort = socket.getLocalPort();
+			}
+
+			List<Process> processes = new ArrayList<>();
+			List<Path> outputs = new ArrayList<>();
+
+			try {
+				for (int i = 0; i < NODE_COUNT; i++) {
+					List<String> command = new ArrayList<>();
+					command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+					command.add("-cp");
+					command.add(System.getProperty("java.class.path"));
+					command.add(ClusterCrawlerProcess.class.getName());
+					command.add(Integer.toString(site.getPort()));
+					command.add(i == 0 ? Integer.toString(firstPort) : "0");
+					command.add(Integer.toString(NODE_COUNT));
+
+					if (i > 0) {
+						command.add("localhost:" + firstPort);
+					}
+
+					Path output = Files.createTempFile("cluster-node-", ".log");
+					outputs.add(output);
+					processes.add(new ProcessBuilder(command)
+							.redirectErrorStream(true)
+							.redirectOutput(output.toFile())
+							.start());
+				}
+
+				for (Process process : processes) {
+					assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+					assertEquals(0, process.exitValue());
+				}
+
+				Set<String> visited = new HashSet<>();
+				int visitCount = 0;
+
+				for (Path output : outputs) {
+					int nodeVisits = 0;
+
+					for (String line : Files.readAllLines(output, StandardCharsets.UTF_8)) {
+						if (line.startsWith(ClusterCrawlerProcess.VISITED)) {
+							visited.add(line.substring(ClusterCrawlerProcess.VISITED.length()));
+							nodeVisits++;
+						}
+					}
+
+					assertTrue("Every node crawls its share", nodeVisits > 0);
+					visitCount += nodeVisits;
+				}
+
+				// Every page is crawled exactly once by the cluster
+				assertEquals(site.getPageCount(), visited.size());
+				assertEquals(site.getPageCount(), visitCount);
+				assertEquals(site.getPageCount(), site.getRequestCount());
+			} finally {
+				for (Process process : processes) {
+					process.destroyForcibly();
+				}
+
+				for (Path output : outputs) {
+					Files.deleteIfExists(output);
+				}
+			}
+		}
+	}
+
+	private static String findUrlOwnedBy(ClusterNode node) {
+		for (int i = 0; ; i++) {
+			String url = "http://a.com/page/" + i;
+
+			if (node.isLocal(url)) {
+				return url;
+			}
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Scanner;
+
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link LatencyHistogram}, {@link CrawlMetrics} and {@link MetricsServer}.
+ */
+public class CrawlMetricsTest extends TestCase {
+
+	public void testBucketsCoverEveryValue() {
+		long previousUpperBound = -1;
+
+		for (int bucket = 0; bucket <= LatencyHistogram.getBucket(Long.MAX_VALUE); bucket++) {
+			long upperBound = LatencyHistogram.getUpperBound(bucket);
+
+			assertEquals(bucket, LatencyHistogram.getBucket(previousUpperBound + 1));
+			assertEquals(bucket, LatencyHistogram.getBucket(upperBound));
+			assertTrue(upperBound > previousUpperBound);
+
+			previousUpperBound = upperBound;
+		}
+
+		assertEquals(Long.MAX_VALUE, previousUpperBound);
+	}
+
+	public void testPercentilesAreWithinTheBucketError() {
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		for (int i = 1; i <= 10_000; i++) {
+			histogram.record(i * 1000L);
+		}
+
+		assertEquals(10_000, histogram.getCount());
+		assertEquals(10_000_000L, histogram.getMax());
+		assertEquals(5_000_500.0, histogram.getMean(), 0.001);
+
+		for (double quantile : new double[] {0.5, 0.9, 0.99}) {
+			long exact = (long) (quantile * 10_000) * 1000L;
+			long estimate = histogram.getPercentile(quantile);
+
+			assertTrue(quantile + ": " + estimate, estimate >= exact);
+			assertTrue(quantile + ": " + estimate, estimate <= exact * 1.125);
+		}
+
+		assertEquals(10_000_000L, histogram.getPercentile(1));
+		assertEquals(0, new LatencyHistogram().getPercentile(0.5));
+	}
+
+	public void testCrawlIsInstrumented() throws IOException {
+		CrawlerConfig config = new CrawlerConfig();
+		config.addSeedUrl("http://site.test/");
+		config.setPolitenessDelay(0);
+		config.setMetricsPort(0);
+
+		PageFetcher site = (url, requestHeaders) -> {
+			if (url.endsWith("/missing")) {
+				throw new org.jsoup.HttpStatusException("Not found", 404, url);
+			}
+
+			String html = "<a href=\"/a\">a</a><a href=\"/b\">b</a><a href=\"/missing\">m</a>"
+					+ "<a href=\"/style.css\">css</a>";
+
+			return new FetchedPage(url, 200, Collections.singletonMap("Content-Type", "text/html"),
+					html.getBytes(StandardCharsets.UTF_8));
+		};
+
+		WebCrawler crawler = new WebCrawler() {
+			@Override
+			public void onVisitLinks(PageLinks page) {
+				// Links only, so the visit stage is also recorded
+			}
+
+			@Override
+			public boolean needsDocument(String url) {
+				return !url.endsWith("/b");
+			}
+		};
+
+		WebCrawlerController controller = new WebCrawlerController(config, crawler, site);
+		controller.crawl();
+
+		CrawlMetrics metrics = controller.getMetrics();
+		Map<String, Long> statusCodes = metrics.getStatusCodes();
+
+		assertEquals(4, metrics.getPagesFetched());
+		assertEquals(Long.valueOf(3), statusCodes.get("200"));
+		assertEquals(Long.valueOf(1), statusCodes.get("404"));
+		assertEquals(1, metrics.getErrors());
+		assertEquals(0, metrics.getInFlightRequests());
+		assertEquals(0, metrics.getFrontierSize());
+		// The stylesheet is rejected on every page that links to it
+		assertEquals(3, metrics.getFilterRejections());
+		assertEquals(4, metrics.getLatency(CrawlMetrics.Stage.FETCH).getCount());
+		assertEquals(2, metrics.getLatency(CrawlMetrics.Stage.PARSE).getCount());
+		assertEquals(3, metrics.getLatency(CrawlMetrics.Stage.VISIT).getCount());
+		assertEquals(3, metrics.getLatency(CrawlMetrics.Stage.EXTRACT_LINKS).getCount());
+		assertEquals(3.0, metrics.getStageLatencies().get("filter.count"));
+	}
+
+	public void testMetricsAreExposed() throws Exception {
+		CrawlMetrics metrics = new CrawlMetrics(() -> 42);
+		metrics.recordResponse(200, 1234);
+		metrics.recordLatency(CrawlMetrics.Stage.FETCH, System.nanoTime());
+
+		try (MetricsServer server = new MetricsServer(metrics, "test", 0)) {
+			String text;
+
+			try (InputStream in = new URL("http://localhost:" + server.getPort() + "/metrics").openStream();
+					Scanner scanner = new Scanner(in, "UTF-8")) {
+				text = scanner.useDelimiter("\\A").next();
+			}
+
+			assertTrue(text.contains("crawler_bytes_fetched_total 1234\n"));
+			assertTrue(text.contains("crawler_responses_total{status=\"200\"} 1\n"));
+			assertTrue(text.contains("crawler_frontier_size 42\n"));
+			assertTrue(text.contains("crawler_stage_latency_seconds_count{stage=\"fetch\"} 1\n"));
+
+			ObjectName name = new ObjectName(
+					"com.froggermtp.chh_data_collector:type=CrawlMetrics,name=" + ObjectName.quote("test"));
+
+			assertEquals(42L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "FrontierSize"));
+		}
+
+		assertTrue(ManagementFactory.getPlatformMBeanServer()
+				.queryNames(new ObjectName("com.froggermtp.chh_data_collector:type=CrawlMetrics,*"), null)
+				.isEmpty());
+	}
+}
@@ -0,0 +1,215 @@
+package com.froggermtp.chh_data_collector;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jsoup.nodes.Document;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for crawling several {@link CrawlSite sites} with a single controller.
+ */
+public class CrawlSiteTest extends TestCase {
+	private static final int PAGE_COUNT = 20;
+
+	public void testSitesAreCrawledSequentially() {
+		crawlTwoSites(1);
+	}
+
+	public void testSitesAreCrawledConcurrently() {
+		crawlTwoSites(4);
+	}
+
+	public void testSiteStopsAfterItsMaxArticles() {
+		for (int numberOfThreads : new int[] {1, 4}) {
+			CrawlerConfig config = new CrawlerConfig();
+			config.setFollowExternalLinks(false);
+			config.setPolitenessDelay(0);
+			config.setNumberOfThreads(numberOfThreads);
+
+			RecordingCrawler limited = new ArticleCrawler();
+			RecordingCrawler complete = new ArticleCrawler();
+
+			new WebCrawlerController(config, Arrays.asList(
+					new CrawlSite(limited, Collections.singletonList("http://a.test/"), 3),
+					new CrawlSite(complete, Collections.singletonList("http://b.test/"))),
+					newSite()).crawl();
+
+			// The home page and the other page are not articles
+			assertEquals(3, limited.visited.stream().filter(url -> url.contains("/page/")).count());
+			assertFalse(limited.isRunning());
+			assertEquals(PAGE_COUNT + 2, complete.visited.size());
+		}
+
+		try {
+			new CrawlSite(new ArticleCrawler(), Collections.singletonList("http://a.test/"), -1);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+	public void testBusyHostDoesNotHoldUpOtherSites() {
+		CrawlerConfig config = new CrawlerConfig();
+		config.setFollowExternalLinks(false);
+		config.setPolitenessDelay(0);
+		config.setMinPolitenessDelay(0);
+		config.setTargetLatency(60_000);
+		config.setMaxConnectionsPerHost(1);
+		config.setAdaptiveRateControl(true);
+		config.setNumberOfThreads(4);
+
+		// The pages of the slow site take a while, and only one of them may be fetched at a time
+		List<String> requested = Collections.synchronizedList(new ArrayList<>());
+		PageFetcher fetcher = (url, requestHeaders) -> {
+			requested.add(url);
+			StringBuilder html = new StringBuilder();
+
+			if (url.equals("http://slow.test/")) {
+				html.append("<a href=\"/page/0\">p</a><a href=\"/page/1\">p</a>");
+			} else if (url.equals("http://b.test/")) {
+				for (int i = 0; i < PAGE_COUNT; i++) {
+					html.append("<a href=\"/page/").append(i).append("\">p</a>");
+				}
+			} else if (url.startsWith("http://slow.test/")) {
+				try {
+					Thread.sleep(500);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			return new FetchedPage(url, 200, Collections.singletonMap("Content-Type", "text/html"),
+					html.toString().getBytes(StandardCharsets.UTF_8));
+		};
+
+		new WebCrawlerController(config, Arrays.asList(
+				new CrawlSite(new RecordingCrawler(Integer.MAX_VALUE), Collections.singletonList("http://slow.test/")),
+				new CrawlSite(new RecordingCrawler(Integer.MAX_VALUE), Collections.singletonList("http://b.test/"))),
+				fetcher).crawl();
+
+		// The other site is crawled while the first slow page is in flight
+		int lastOther = -1;
+
+		for (int i = 0; i < requested.size(); i++) {
+			if (requested.get(i).startsWith("http://b.test/")) {
+				lastOther = i;
+			}
+		}
+
+		assertEquals(PAGE_COUNT + 4, requested.size());
+		assertTrue(requested.toString(), requested.indexOf("http://slow.test/page/1") > lastOther);
+	}
+
+	public void testThereMustBeASite() {
+		try {
+			new WebCrawlerController(new CrawlerConfig(), Collections.<CrawlSite>emptyList(), newSite());
+			fail();
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+	/**
+	 * Crawls two sites, one of which stops early, through the same fetcher.
+	 */
+	private static void crawlTwoSites(int numberOfThreads) {
+		CrawlerConfig config = new CrawlerConfig();
+		config.setFollowExternalLinks(false);
+		config.setPolitenessDelay(0);
+		config.setNumberOfThreads(numberOfThreads);
+
+		Set<String> fetched = ConcurrentHashMap.newKeySet();
+		AtomicInteger requestCount = new AtomicInteger();
+		PageFetcher fetcher = newSite();
+		PageFetcher countingFetcher = (url, requestHeaders) -> {
+			fetched.add(url);
+			requestCount.incrementAndGet();
+
+			return fetcher.fetch(url, requestHeaders);
+		};
+
+		RecordingCrawler stopping = new RecordingCrawler(2);
+		RecordingCrawler complete = new RecordingCrawler(Integer.MAX_VALUE);
+
+		WebCrawlerController controller = new WebCrawlerController(config, Arrays.asList(
+				new CrawlSite(stopping, Collections.singletonList("http://a.test/")),
+				new CrawlSite(complete, Collections.singletonList("http://b.test/"))),
+				countingFetcher);
+		controller.crawl();
+
+		// Each site only follows the links to itself, and stopping one site does not stop the other
+		assertEquals(2, stopping.visited.size());
+		assertTrue(stopping.visited.stream().allMatch(url -> url.startsWith("http://a.test/")));
+		assertEquals(PAGE_COUNT + 2, complete.visited.size());
+		assertTrue(complete.visited.stream().allMatch(url -> url.startsWith("http://b.test/")));
+
+		// No page is fetched twice, and the stopped site is not crawled any further
+		assertEquals(fetched.size(), requestCount.get());
+		assertTrue(fetched.stream().filter(url -> url.startsWith("http://a.test/")).count() <= 2 + numberOfThreads);
+		assertEquals(controller.getTotalLinksVisited(), requestCount.get());
+	}
+
+	/**
+	 * Serves two sites, whose home pages link to their own pages and to the other site.
+	 */
+	private static PageFetcher newSite() {
+		return (url, requestHeaders) -> {
+			StringBuilder html = new StringBuilder();
+			String host = url.startsWith("http://a.test/") ? "http://a.test/" : "http://b.test/";
+
+			if (url.equals(host)) {
+				for (int i = 0; i < PAGE_COUNT; i++) {
+					html.append("<a href=\"/page/").append(i).append("\">p</a>");
+				}
+
+				html.append("<a href=\"http://a.test/other\">a</a><a href=\"http://b.test/other\">b</a>");
+			}
+
+			return new FetchedPage(url, 200, Collections.singletonMap("Content-Type", "text/html"),
+					html.toString().getBytes(StandardCharsets.UTF_8));
+		};
+	}
+
+	/**
+	 * Records the visited pages, and stops after a given number of them.
+	 */
+	private static class RecordingCrawler extends WebCrawler {
+		private final List<String> visited = Collections.synchronizedList(new ArrayList<>());
+		private final int limit;
+
+		private RecordingCrawler(int limit) {
+			this.limit = limit;
+		}
+
+		@Override
+		public void onVisit(Document doc) {
+			visited.add(doc.location());
+
+			if (visited.size() == limit) {
+				stop();
+			}
+		}
+	}
+
+	/**
+	 * Records the visited pages, of which those under {@code /page/} are articles.
+	 */
+	private static final class ArticleCrawler extends RecordingCrawler {
+		private ArticleCrawler() {
+			super(Integer.MAX_VALUE);
+		}
+
+		@Override
+		public PageType getPageType(String url) {
+			return url.contains("/page/") ? PageType.ARTICLE : PageType.OTHER;
+		}
+	}
+}
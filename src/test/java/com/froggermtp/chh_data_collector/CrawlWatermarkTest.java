@@ -0,0 +1,164 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.jsoup.nodes.Document;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link CrawlWatermark} and the incremental mode of the web crawler.
+ */
+public class CrawlWatermarkTest extends TestCase {
+	private static final String LISTING = "http://site.test/list";
+
+	private Path file;
+
+	@Override
+	protected void setUp() throws IOException {
+		file = Files.createTempFile("watermark-test", ".tsv");
+		Files.delete(file);
+	}
+
+	@Override
+	protected void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	public void testArticlesArePersistedBetweenRuns() {
+		CrawlWatermark watermark = new CrawlWatermark(file);
+		watermark.add("http://a.com/1", "June 1, 2017");
+		watermark.add("http://a.com/2", null);
+		watermark.add("http://a.com/3", "Created:\n\tJune 3");
+		watermark.save();
+
+		CrawlWatermark reopened = new CrawlWatermark(file);
+
+		assertEquals(3, reopened.size());
+		assertTrue(reopened.contains("http://a.com/2"));
+		assertFalse(reopened.contains("http://a.com/4"));
+		assertEquals("June 1, 2017", reopened.getDate("http://a.com/1"));
+		assertNull(reopened.getDate("http://a.com/2"));
+		assertEquals("Created: June 3", reopened.getDate("http://a.com/3"));
+	}
+
+	public void testIncrementalCrawlStopsAtKnownArticles() {
+		Site site = new Site(9);
+		ListingCrawler firstRun = crawl(site);
+
+		assertEquals(9, firstRun.visited.size());
+		assertEquals(12, site.fetched.size());
+
+		// A new article pushes every other article one place down the listing
+		site = new Site(10);
+		ListingCrawler secondRun = crawl(site);
+
+		assertEquals(Collections.singletonList(Site.article(9)), secondRun.visited);
+		assertEquals(3, site.fetched.size());
+		assertTrue(site.fetched.contains(Site.listing(1)));
+		assertFalse(site.fetched.contains(Site.listing(2)));
+
+		CrawlWatermark watermark = new CrawlWatermark(file);
+
+		assertEquals(10, watermark.size());
+		assertEquals("day 9", watermark.getDate(Site.article(9)));
+	}
+
+	private ListingCrawler crawl(Site site) {
+		CrawlerConfig config = new CrawlerConfig();
+		config.addSeedUrl(LISTING);
+		config.setPolitenessDelay(0);
+		config.setWatermarkFile(file);
+
+		ListingCrawler crawler = new ListingCrawler();
+		new WebCrawlerController(config, crawler, site).crawl();
+
+		return crawler;
+	}
+
+	/**
+	 * A site that lists its articles from newest to oldest, three per listing page.
+	 * <p>
+	 * Every listing page links to every other listing page.
+	 */
+	private static final class Site implements PageFetcher {
+		private static final int PAGE_SIZE = 3;
+
+		private final int articleCount;
+		private final List<String> fetched = new ArrayList<>();
+
+		private Site(int articleCount) {
+			this.articleCount = articleCount;
+		}
+
+		private static String listing(int page) {
+			return page == 0 ? LISTING : LISTING + "?start=" + page * PAGE_SIZE;
+		}
+
+		private static String article(int id) {
+			return LISTING + "/" + id;
+		}
+
+		@Override
+		public FetchedPage fetch(String url, Map<String, String> requestHeaders) {
+			fetched.add(url);
+
+			StringBuilder html = new StringBuilder("<html><body>");
+
+			if (url.startsWith(LISTING + "/")) {
+				html.append("<time>day ").append(url.substring(LISTING.length() + 1)).append("</time>");
+			} else {
+				int start = url.equals(LISTING) ? 0 : Integer.parseInt(url.substring(url.indexOf('=') + 1));
+				int pageCount = (articleCount + PAGE_SIZE - 1) / PAGE_SIZE;
+
+				for (int i = start; i < Math.min(start + PAGE_SIZE, articleCount); i++) {
+					html.append("<a href=\"").append(article(articleCount - 1 - i)).append("\">a</a>");
+				}
+
+				for (int page = 0; page < pageCount; page++) {
+					html.append("<a href=\"").append(listing(page)).append("\">p</a>");
+				}
+			}
+
+			html.append("</body></html>");
+
+			return new FetchedPage(url, 200,
+					Collections.singletonMap("Content-Type", "text/html; charset=UTF-8"),
+					html.toString().getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * A crawler that scrapes the articles of a {@link Site}.
+	 */
+	private static final class ListingCrawler extends WebCrawler {
+		private final List<String> visited = new ArrayList<>();
+
+		@Override
+		public PageType getPageType(String url) {
+			return url.startsWith(LISTING + "/") ? PageType.ARTICLE : PageType.LISTING;
+		}
+
+		@Override
+		public boolean needsDocument(String url) {
+			return getPageType(url) == PageType.ARTICLE;
+		}
+
+		@Override
+		public String getPublicationDate(Document doc) {
+			return doc.select("time").text();
+		}
+
+		@Override
+		public void onVisit(Document doc) {
+			visited.add(doc.location());
+		}
+	}
+}
@@ -0,0 +1,277 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadInfo;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jsoup.nodes.Document;
+
+/**
+ * Measures the throughput of the whole web crawler, by crawling a {@link SyntheticSite} with
+ * {@link RapzillaWebCrawler}.
+ * <p>
+ * The options are passed as {@code name=value} arguments, for example
+ * {@code articles=5000 fanOut=10 latency=20 errorRate=0.01 pageSize=16384 threads=8 pooled=true}.
+ * With {@code pooled=true}, the pages are fetched by a {@link PooledFetcher} rather than a
+ * {@link JsoupFetcher}.
+ * The report lists the pages crawled per second, the median and 99th percentile latency of the
+ * fetch and visit stages, the heap high-water mark, and the rate at which the crawler's threads
+ * allocated memory.
+ * <p>
+ * The heap high-water mark is the sum of the peak usage of the heap memory pools, so it should be
+ * read with a fixed heap, for example {@code -Xms1g -Xmx1g}.
+ * The allocation rate is sampled from the crawler's threads, and excludes the threads of the
+ * synthetic site, which runs in the same process.
+ */
+public class CrawlerLoadBenchmark {
+	/**
+	 * How often the allocation of the threads is sampled, in milliseconds.
+	 */
+	private static final long SAMPLE_INTERVAL = 20;
+
+	public static void main(String[] args) throws InterruptedException {
+		Map<String, String> options = new HashMap<>();
+
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+
+			if (separator < 0) {
+				throw new IllegalArgumentException("Expected name=value: " + arg);
+			}
+
+			options.put(arg.substring(0, separator), arg.substring(separator + 1));
+		}
+
+		int threads = Integer.parseInt(options.getOrDefault("threads", "8"));
+
+		try (SyntheticSite site = new SyntheticSite()) {
+			site.setArticleCount(Integer.parseInt(options.getOrDefault("articles", "5000")));
+			site.setFanOut(Integer.parseInt(options.getOrDefault("fanOut", "10")));
+			site.setLatency(Long.parseLong(options.getOrDefault("latency", "0")));
+			site.setErrorRate(Double.parseDouble(options.getOrDefault("errorRate", "0")));
+			site.setPageSize(Integer.parseInt(options.getOrDefault("pageSize", "16384")));
+			site.start(Math.max(threads, 4));
+
+			System.out.println(site);
+			System.out.println(run(site, threads, Boolean.parseBoolean(options.getOrDefault("pooled", "false"))));
+		}
+	}
+
+	/**
+	 * Crawls a synthetic site once.
+	 *
+	 * @param site  the started site, not null
+	 * @param threads  the number of threads the web crawler runs with, must be positive
+	 * @return the report of the crawl, not null
+	 * @throws InterruptedException if the thread is interrupted
+	 */
+	static Report run(SyntheticSite site, int threads) throws InterruptedException {
+		return run(site, threads, false);
+	}
+
+	/**
+	 * Crawls a synthetic site once.
+	 *
+	 * @param site  the started site, not null
+	 * @param threads  the number of threads the web crawler runs with, must be positive
+	 * @param isPooled  whether the pages are fetched by a {@link PooledFetcher}
+	 * @return the report of the crawl, not null
+	 * @throws InterruptedException if the thread is interrupted
+	 */
+	static Report run(SyntheticSite site, int threads, boolean isPooled) throws InterruptedException {
+		CrawlerConfig config = new CrawlerConfig();
+		config.addSeedUrl(SyntheticSite.SEED_URL);
+		config.setFollowExternalLinks(false);
+		config.setPolitenessDelay(0);
+		config.setNumberOfThreads(threads);
+		config.setReadTimeout(30_000);
+
+		PooledFetcher pooledFetcher = isPooled ? new PooledFetcher(config) : null;
+		PageFetcher fetcher = isPooled ? site.newFetcher(pooledFetcher) : site.newFetcher(30_000);
+		ArticleCounter crawler = new ArticleCounter();
+		WebCrawlerController controller = new WebCrawlerController(config, crawler, fetcher);
+		AllocationSampler sampler = new AllocationSampler();
+
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			pool.resetPeakUsage();
+		}
+
+		sampler.start();
+		long start = System.nanoTime();
+
+		controller.crawl();
+
+		long elapsed = System.nanoTime() - start;
+		sampler.stopSampling();
+
+		long heapHighWater = 0;
+
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				heapHighWater += pool.getPeakUsage().getUsed();
+			}
+		}
+
+		if (pooledFetcher != null) {
+			try {
+				pooledFetcher.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		return new Report(controller.getMetrics(), crawler.getArticleCount(), elapsed, heapHighWater,
+				sampler.getAllocatedBytes());
+	}
+
+	/**
+	 * The results of a crawl.
+	 */
+	static final class Report {
+		final CrawlMetrics metrics;
+		final int articleCount;
+		final long elapsedNanos;
+		final long heapHighWater;
+		final long allocatedBytes;
+
+		Report(CrawlMetrics metrics, int articleCount, long elapsedNanos, long heapHighWater,
+				long allocatedBytes) {
+			this.metrics = metrics;
+			this.articleCount = articleCount;
+			this.elapsedNanos = elapsedNanos;
+			this.heapHighWater = heapHighWater;
+			this.allocatedBytes = allocatedBytes;
+		}
+
+		/**
+		 * @return the number of pages fetched per second
+		 */
+		double getPagesPerSecond() {
+			return metrics.getPagesFetched() / (elapsedNanos / 1e9);
+		}
+
+		@Override
+		public String toString() {
+			LatencyHistogram fetch = metrics.getLatency(CrawlMetrics.Stage.FETCH);
+			LatencyHistogram visit = metrics.getLatency(CrawlMetrics.Stage.VISIT);
+			double seconds = elapsedNanos / 1e9;
+
+			return String.format(
+					"Crawled %d pages (%d articles, %d errors) in %.2f s: %.1f pages/s%n"
+					+ "Fetch latency: p50 %.2f ms, p99 %.2f ms%n"
+					+ "Visit latency: p50 %.2f ms, p99 %.2f ms%n"
+					+ "Heap high-water mark: %.1f MB%n"
+					+ "Allocation rate: %.1f MB/s (%.1f KB per page)",
+					metrics.getPagesFetched(), articleCount, metrics.getErrors(), seconds, getPagesPerSecond(),
+					millis(fetch.getPercentile(0.5)), millis(fetch.getPercentile(0.99)),
+					millis(visit.getPercentile(0.5)), millis(visit.getPercentile(0.99)),
+					heapHighWater / 1e6,
+					allocatedBytes / 1e6 / seconds, allocatedBytes / 1e3 / Math.max(1, metrics.getPagesFetched()));
+		}
+
+		private static double millis(long nanos) {
+			return nanos / 1e6;
+		}
+	}
+
+	/**
+	 * Scrapes the articles the way {@link RapzillaWebCrawler} does, and counts them.
+	 */
+	static final class ArticleCounter extends RapzillaWebCrawler {
+		private final AtomicInteger articleCount = new AtomicInteger();
+
+		@Override
+		public void onVisit(Document doc) {
+			super.onVisit(doc);
+
+			articleCount.incrementAndGet();
+		}
+
+		int getArticleCount() {
+			return articleCount.get();
+		}
+	}
+
+	/**
+	 * Samples the bytes allocated by every live thread, except the synthetic site's, until it is
+	 * stopped.
+	 */
+	private static final class AllocationSampler extends Thread {
+		private final com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		/**
+		 * The bytes allocated by every thread when it was first sampled, by thread id.
+		 */
+		private final Map<Long, Long> firstSample = new HashMap<>();
+		/**
+		 * The bytes allocated by every thread when it was last sampled, by thread id.
+		 */
+		private final Map<Long, Long> lastSample = new HashMap<>();
+		private volatile boolean isSampling = true;
+
+		AllocationSampler() {
+			super("allocation-sampler");
+			setDaemon(true);
+
+			// Threads that are already running only count what they allocate from now on
+			sample(firstSample);
+		}
+
+		@Override
+		public void run() {
+			while (isSampling) {
+				sample(lastSample);
+
+				try {
+					TimeUnit.MILLISECONDS.sleep(SAMPLE_INTERVAL);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+
+		void stopSampling() throws InterruptedException {
+			isSampling = false;
+			join();
+			sample(lastSample);
+		}
+
+		/**
+		 * @return the bytes allocated by the sampled threads between the first and last samples
+		 */
+		long getAllocatedBytes() {
+			long total = 0;
+
+			for (Map.Entry<Long, Long> entry : lastSample.entrySet()) {
+				total += entry.getValue() - firstSample.getOrDefault(entry.getKey(), 0L);
+			}
+
+			return total;
+		}
+
+		private void sample(Map<Long, Long> samples) {
+			long[] ids = threads.getAllThreadIds();
+			ThreadInfo[] infos = threads.getThreadInfo(ids);
+			long[] allocated = threads.getThreadAllocatedBytes(ids);
+
+			for (int i = 0; i < ids.length; i++) {
+				if (infos[i] == null || allocated[i] < 0 || ids[i] == getId() || isSiteThread(infos[i].getThreadName())) {
+					continue;
+				}
+
+				samples.put(ids[i], allocated[i]);
+			}
+		}
+
+		private static boolean isSiteThread(String name) {
+			return name.startsWith("synthetic-site-") || name.startsWith("HTTP-Dispatcher");
+		}
+	}
+}
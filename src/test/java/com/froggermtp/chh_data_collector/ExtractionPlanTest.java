@@ -0,0 +1,141 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Properties;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link ExtractionSpec} and {@link ExtractionPlan}.
+ */
+public class ExtractionPlanTest extends TestCase {
+	private static final Document PAGE = Jsoup.parse("<html><head><title>Album – Song</title></head><body>"
+			+ "<div class=\"post\"><h1 data-artist=\"Lecrae\">Lecrae <small>verified</small></h1>"
+			+ "<span class=\"date\">Posted <b>1 May 2017</b></span></div>"
+			+ "<span class=\"date\">Updated <b>2 May 2017</b></span></body></html>", "http://site.test/1-song");
+
+	public void testFieldsAreScraped() {
+		MusicData musicData = new ExtractionSpec()
+				.add(new FieldSpec(MusicDataField.ARTIST, "div.post > h1").ownText())
+				.add(new FieldSpec(MusicDataField.PROJECT, "title").replace("^.*–\\s*", ""))
+				.add(new FieldSpec(MusicDataField.DATE, "span.date b"))
+				.compile()
+				.extract(PAGE);
+
+		assertEquals("http://site.test/1-song", musicData.getUrl());
+		assertEquals("Lecrae", musicData.getArtist());
+		assertEquals("Song", musicData.getProject());
+		// The first match
+		assertEquals("1 May 2017", musicData.getDate());
+	}
+
+	public void testValueSources() {
+		ExtractionPlan plan = new ExtractionSpec()
+				.add(new FieldSpec(MusicDataField.ARTIST, "h1").attribute("data-artist"))
+				.add(new FieldSpec(MusicDataField.PROJECT, "h1").html())
+				.add(new FieldSpec(MusicDataField.DATE, "h1").text())
+				.compile();
+		MusicData musicData = plan.extract(PAGE);
+
+		assertEquals("Lecrae", musicData.getArtist());
+		assertEquals("Lecrae <small>verified</small>", musicData.getProject());
+		assertEquals("Lecrae verified", musicData.getDate());
+	}
+
+	public void testUniqueFieldsAreDroppedOnSeveralMatches() {
+		MusicData musicData = new ExtractionSpec()
+				.add(new FieldSpec(MusicDataField.DATE, "span.date").unique())
+				.add(new FieldSpec(MusicDataField.ARTIST, "h1").unique().ownText())
+				.compile()
+				.extract(PAGE);
+
+		assertNull(musicData.getDate());
+		assertEquals("Lecrae", musicData.getArtist());
+		assertNull(musicData.getProject());
+	}
+
+	public void testStepsRunInOrder() {
+		ExtractionPlan plan = new ExtractionSpec()
+				.add(new FieldSpec(MusicDataField.PROJECT, "title").replace("–", "-").require("-")
+						.replace("(\\w+) - (\\w+)", "$2 by $1"))
+				.add(new FieldSpec(MusicDataField.ARTIST, "title").require("-").replace("–", "-"))
+				.add(new FieldSpec(MusicDataField.DATE, "missing"))
+				.compile();
+		MusicData musicData = plan.extract(PAGE);
+
+		assertEquals("Song by Album", musicData.getProject());
+		// The dash is only replaced after it is required
+		assertNull(musicData.getArtist());
+		assertNull(musicData.getDate());
+	}
+
+	public void testInvalidSpecsAreRejected() {
+		try {
+			new ExtractionSpec().add(new FieldSpec(MusicDataField.DATE, "div >")).compile();
+			fail();
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+
+		try {
+			new ExtractionSpec().add(new FieldSpec(MusicDataField.DATE, "time").replace("(", "")).compile();
+			fail();
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+
+		try {
+			new ExtractionSpec()
+					.add(new FieldSpec(MusicDataField.DATE, "time"))
+					.add(new FieldSpec(MusicDataField.DATE, "span"));
+			fail();
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+	public void testSpecIsLoadedFromProperties() throws IOException {
+		Properties properties = properties("artist.select = title\n"
+				+ "artist.unique = true\n"
+				+ "artist.1.replace = –\n"
+				+ "artist.1.with = -\n"
+				+ "artist.2.require = -\n"
+				+ "artist.10.replace = ^Free.*:\\\\s+|\\\\s*-.*$\n"
+				+ "project.select = title\n"
+				+ "project.unique = true\n"
+				+ "project.1.replace = ^.*–\\\\s*\n"
+				+ "date.select = time\n"
+				+ "date.value = attr:datetime\n");
+		Document doc = RapzillaWebCrawlerTest.readDocument("fixtures/freemp3s-article.html",
+				"http://www.rapzilla.com/rz/music/freemp3s/14099-propaganda-crown");
+		MusicData musicData = ExtractionSpec.fromProperties(properties).compile().extract(doc);
+
+		assertEquals("Propaganda", musicData.getArtist());
+		assertEquals("Crown & Glory", musicData.getProject());
+		assertEquals("2017-03-27", musicData.getDate());
+	}
+
+	public void testUnknownPropertiesAreRejected() throws IOException {
+		for (String text : new String[] { "artist.select = title\nartist.selector = h1\n",
+				"date.select = time\ndate.value = attribute\n", "artist.select = title\nartist.first.require = -\n",
+				"artist.select = title\nartist.1.replace = a\nartist.1.require = b\n" }) {
+			try {
+				ExtractionSpec.fromProperties(properties(text));
+				fail(text);
+			} catch (IllegalArgumentException e) {
+				// Expected
+			}
+		}
+	}
+
+	private static Properties properties(String text) throws IOException {
+		Properties properties = new Properties();
+		properties.load(new StringReader(text));
+
+		return properties;
+	}
+}
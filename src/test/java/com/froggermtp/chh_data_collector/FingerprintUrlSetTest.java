@@ -0,0 +1,38 @@
+package com.froggermtp.chh_data_collector;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link FingerprintUrlSet}.
+ */
+public class FingerprintUrlSetTest extends TestCase {
+	
+	public void testAddedUrlsAreContained() {
+		FingerprintUrlSet set = new FingerprintUrlSet(16);
+		
+		assertTrue(set.add("http://a.com/1"));
+		assertFalse(set.add("http://a.com/1"));
+		assertTrue(set.contains("http://a.com/1"));
+		assertFalse(set.contains("http://a.com/2"));
+		assertEquals(1, set.size());
+	}
+	
+	public void testSetGrowsBeyondExpectedSize() {
+		final int URL_COUNT = 100_000;
+		
+		FingerprintUrlSet set = new FingerprintUrlSet(16);
+		
+		for (int i = 0; i < URL_COUNT; i++) {
+			assertTrue(set.add("http://a.com/" + i));
+		}
+		
+		for (int i = 0; i < URL_COUNT; i++) {
+			assertTrue(set.contains("http://a.com/" + i));
+			assertFalse(set.contains("http://b.com/" + i));
+		}
+		
+		assertEquals(URL_COUNT, set.size());
+		// The table is at most 75% full, and never less than 37.5% full after it grows
+		assertTrue(set.getMemoryUsage() <= URL_COUNT * Long.BYTES / 0.375);
+	}
+}
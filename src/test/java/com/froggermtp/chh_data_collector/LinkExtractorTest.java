@@ -0,0 +1,85 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link LinkExtractor}.
+ */
+public class LinkExtractorTest extends TestCase {
+	private static final String LISTING_URL = "http://www.rapzilla.com/rz/music/freemp3s/";
+	
+	public void testExtractsTheSameLinksAsJsoup() throws IOException {
+		byte[] body = readFixture("fixtures/freemp3s-listing.html");
+		Document doc = Jsoup.parse(new String(body, StandardCharsets.UTF_8), LISTING_URL);
+		List<String> expected = doc.select("a[href]")
+				.stream()
+				.map(e -> e.attr("abs:href"))
+				// Links that cannot be resolved, such as javascript links, are left out
+				.filter(link -> !link.isEmpty())
+				.collect(Collectors.toList());
+		
+		PageLinks page = LinkExtractor.extract(LISTING_URL, body, body.length, StandardCharsets.UTF_8);
+		
+		assertEquals(expected, page.getLinks());
+		assertEquals(doc.title(), page.getTitle());
+		assertEquals(doc.select("time").first().text(), page.getTime());
+	}
+	
+	public void testSkipsCommentsScriptsAndStyles() throws IOException {
+		byte[] body = readFixture("fixtures/freemp3s-listing.html");
+		
+		PageLinks page = LinkExtractor.extract(LISTING_URL, body, body.length, StandardCharsets.UTF_8);
+		
+		for (String link : page.getLinks()) {
+			assertFalse(link, link.contains("not-a-link"));
+		}
+	}
+	
+	public void testResolvesAgainstThePageUrlWithoutBase() {
+		byte[] body = ("<html><head><title>A &amp; B</title></head><body>"
+				+ "<a href=\"123-song\">1</a><A HREF='../other'>2</A><a name=top>3</a><a href=\"\">4</a>"
+				+ "</body></html>").getBytes(StandardCharsets.UTF_8);
+		
+		PageLinks page = LinkExtractor.extract(LISTING_URL, body, body.length, StandardCharsets.UTF_8);
+		
+		assertEquals(3, page.getLinks().size());
+		assertEquals("http://www.rapzilla.com/rz/music/freemp3s/123-song", page.getLinks().get(0));
+		assertEquals("http://www.rapzilla.com/rz/music/other", page.getLinks().get(1));
+		assertEquals("A & B", page.getTitle());
+		assertNull(page.getTime());
+	}
+	
+	public void testSupportedCharsets() {
+		assertTrue(LinkExtractor.supports(StandardCharsets.UTF_8));
+		assertTrue(LinkExtractor.supports(StandardCharsets.ISO_8859_1));
+		assertFalse(LinkExtractor.supports(StandardCharsets.UTF_16));
+	}
+	
+	/**
+	 * @param name  the name of the fixture on the test classpath, not null
+	 * @return the bytes of the fixture, not null
+	 */
+	static byte[] readFixture(String name) throws IOException {
+		try (InputStream in = LinkExtractorTest.class.getClassLoader().getResourceAsStream(name)) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			
+			return out.toByteArray();
+		}
+	}
+}
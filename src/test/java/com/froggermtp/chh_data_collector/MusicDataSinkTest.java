@@ -0,0 +1,168 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link FileMusicDataSink} and the {@link MusicDataFormat}s.
+ */
+public class MusicDataSinkTest extends TestCase {
+	private Path file;
+
+	@Override
+	protected void setUp() throws IOException {
+		file = Files.createTempFile("sink-test", ".out");
+		Files.delete(file);
+	}
+
+	@Override
+	protected void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	public void testCsvValuesAreQuotedWhenNeeded() throws IOException {
+		try (MusicDataSink sink = new FileMusicDataSink(file, new CsvFormat())) {
+			sink.write(new MusicData("http://a.com/1", "Project, Part 2", "Artist \"A\"", null));
+			sink.write(new MusicData("http://a.com/2", "Project", "Artist", "June 1"));
+		}
+
+		List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+
+		assertEquals(3, lines.size());
+		assertEquals("url,project,artist,date", lines.get(0));
+		assertEquals("http://a.com/1,\"Project, Part 2\",\"Artist \"\"A\"\"\",", lines.get(1));
+		assertEquals("http://a.com/2,Project,Artist,June 1", lines.get(2));
+	}
+
+	public void testCsvHeaderIsOnlyWrittenToNewFiles() throws IOException {
+		for (int run = 0; run < 2; run++) {
+			try (MusicDataSink sink = new FileMusicDataSink(file, new CsvFormat())) {
+				sink.write(new MusicData("http://a.com/" + run, "Project", "Artist", "June 1"));
+			}
+		}
+
+		List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+
+		assertEquals(3, lines.size());
+		assertEquals("http://a.com/1,Project,Artist,June 1", lines.get(2));
+	}
+
+	public void testJsonLinesAreEscaped() throws IOException {
+		try (MusicDataSink sink = new FileMusicDataSink(file, new JsonLinesFormat())) {
+			sink.write(new MusicData("http://a.com/1", "Say \"Hi\"\n", "A\\B", null));
+		}
+
+		List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+
+		assertEquals(1, lines.size());
+		assertEquals("{\"url\":\"http://a.com/1\",\"project\":\"Say \\\"Hi\\\"\\n\","
+				+ "\"artist\":\"A\\\\B\",\"date\":null}", lines.get(0));
+	}
+
+	public void testRecordsFromManyThreadsAreAllWritten() throws Exception {
+		final int THREAD_COUNT = 4;
+		final int RECORDS_PER_THREAD = 5000;
+
+		// A tiny queue makes the writers wait on the writer thread
+		MusicDataSink sink = new FileMusicDataSink(file, new BinaryFormat(), 16, 10);
+		ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+
+		for (int t = 0; t < THREAD_COUNT; t++) {
+			final int thread = t;
+
+			executor.execute(() -> {
+				for (int i = 0; i < RECORDS_PER_THREAD; i++) {
+					String id = thread + "-" + i;
+					sink.write(new MusicData("http://a.com/" + id, "Project " + id, i % 2 == 0 ? "Artist" : null, null));
+				}
+			});
+		}
+
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+		sink.close();
+
+		List<MusicData> records = new ArrayList<>();
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			MusicData data;
+
+			while ((data = BinaryFormat.read(in)) != null) {
+				records.add(data);
+			}
+		}
+
+		assertEquals(THREAD_COUNT * RECORDS_PER_THREAD, records.size());
+
+		for (MusicData data : records) {
+			String id = data.getUrl().substring("http://a.com/".length());
+			int i = Integer.parseInt(id.substring(id.indexOf('-') + 1));
+
+			assertEquals("Project " + id, data.getProject());
+			assertEquals(i % 2 == 0 ? "Artist" : null, data.getArtist());
+			assertNull(data.getDate());
+		}
+	}
+
+	public void testWritesRacingCloseAreNotLost() throws Exception {
+		final int THREAD_COUNT = 4;
+
+		// A tiny queue keeps the writers waiting for room when the sink is closed
+		MusicDataSink sink = new FileMusicDataSink(file, new BinaryFormat(), 4, 10);
+		ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+		AtomicInteger written = new AtomicInteger();
+
+		for (int t = 0; t < THREAD_COUNT; t++) {
+			executor.execute(() -> {
+				try {
+					while (true) {
+						sink.write(new MusicData("http://a.com/" + written.get(), null, null, null));
+						written.incrementAndGet();
+					}
+				} catch (IllegalStateException e) {
+					// The sink was closed
+				}
+			});
+		}
+
+		Thread.sleep(100);
+		sink.close();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+		int records = 0;
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			while (BinaryFormat.read(in) != null) {
+				records++;
+			}
+		}
+
+		// Every write that returned was written
+		assertEquals(written.get(), records);
+	}
+
+	public void testWritingToAClosedSinkFails() {
+		MusicDataSink sink = new FileMusicDataSink(file, new CsvFormat());
+		sink.close();
+
+		try {
+			sink.write(new MusicData("http://a.com/1", null, null, null));
+			fail("Expected an IllegalStateException");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link MusicDataStore}.
+ */
+public class MusicDataStoreTest extends TestCase {
+	private static final LocalDate FIRST_DATE = LocalDate.of(2017, 1, 1);
+	private static final int RECORD_COUNT = 1000;
+	private static final int ARTIST_COUNT = 37;
+
+	private Path file;
+	private List<MusicData> records;
+
+	@Override
+	protected void setUp() throws IOException {
+		file = Files.createTempFile("store-test", ".store");
+		records = new ArrayList<>();
+
+		for (int i = 0; i < RECORD_COUNT; i++) {
+			// Every seventh record has no date, and every eleventh has no artist
+			String date = i % 7 == 0 ? null : FIRST_DATE.plusDays(RECORD_COUNT - i).toString();
+			String artist = i % 11 == 0 ? null : "Artist " + (i % ARTIST_COUNT);
+
+			records.add(new MusicData("http://a.com/" + i, "Project " + i, artist, date));
+		}
+
+		MusicDataStore.write(file, records);
+	}
+
+	@Override
+	protected void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	public void testRecordsAreReadBack() {
+		MusicDataStore store = new MusicDataStore(file);
+
+		assertEquals(RECORD_COUNT, store.size());
+		assertEquals(ARTIST_COUNT, store.getArtistCount());
+
+		for (int i = 0; i < RECORD_COUNT; i++) {
+			MusicData expected = records.get(i);
+			MusicData actual = store.get(i);
+
+			assertEquals(expected.getUrl(), actual.getUrl());
+			assertEquals(expected.getProject(), actual.getProject());
+			assertEquals(expected.getArtist(), actual.getArtist());
+			assertEquals(expected.getDate(), actual.getDate());
+		}
+	}
+
+	public void testFindByArtist() {
+		MusicDataStore store = new MusicDataStore(file);
+		List<MusicData> releases = store.findByArtist("Artist 5");
+		List<String> expected = records.stream()
+				.filter(data -> "Artist 5".equals(data.getArtist()))
+				.map(MusicData::getUrl)
+				.collect(Collectors.toList());
+
+		assertEquals(expected.size(), releases.size());
+		assertTrue(releases.stream().map(MusicData::getUrl).collect(Collectors.toList()).containsAll(expected));
+
+		// Undated releases first, then from oldest to newest
+		String previous = "";
+
+		for (MusicData release : releases) {
+			if (release.getDate() != null) {
+				assertTrue(release.getDate().compareTo(previous) > 0);
+				previous = release.getDate();
+			} else {
+				assertEquals("", previous);
+			}
+		}
+
+		assertTrue(store.findByArtist("Nobody").isEmpty());
+	}
+
+	public void testFindByDateRange() {
+		MusicDataStore store = new MusicDataStore(file);
+		LocalDate from = FIRST_DATE.plusDays(100);
+		LocalDate to = FIRST_DATE.plusDays(199);
+		List<MusicData> releases = store.findByDateRange(from, to);
+		long expected = records.stream()
+				.filter(data -> data.getDate() != null)
+				.map(data -> LocalDate.parse(data.getDate()))
+				.filter(date -> !date.isBefore(from) && !date.isAfter(to))
+				.count();
+
+		assertEquals(expected, releases.size());
+		assertEquals(from.toString(), releases.get(0).getDate());
+		assertEquals(to.toString(), releases.get(releases.size() - 1).getDate());
+		assertTrue(store.findByDateRange(to, from).isEmpty());
+	}
+
+	public void testScrapedDatesAreParsed() {
+		int expected = (int) LocalDate.of(2017, 3, 13).toEpochDay();
+
+		for (String date : Arrays.asList("2017-03-13", "Monday, 13 March 2017 17:46", 
+				"Monday, 13 March 2017", "13 March 2017", "March 13, 2017")) {
+			assertEquals(date, expected, MusicDataStore.toEpochDay(date));
+		}
+
+		assertEquals(MusicDataStore.NO_DATE, MusicDataStore.toEpochDay("sometime"));
+		assertEquals(MusicDataStore.NO_DATE, MusicDataStore.toEpochDay(null));
+	}
+
+	public void testEmptyStore() {
+		MusicDataStore.write(file, new ArrayList<>());
+		MusicDataStore store = new MusicDataStore(file);
+
+		assertEquals(0, store.size());
+		assertTrue(store.findByArtist("Artist 1").isEmpty());
+		assertTrue(store.findByDateRange(FIRST_DATE, FIRST_DATE.plusDays(10)).isEmpty());
+	}
+}
@@ -0,0 +1,143 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jsoup.HttpStatusException;
+import org.jsoup.nodes.Document;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link PageArchive}, {@link RecordingFetcher} and {@link ReplayFetcher}.
+ */
+public class PageArchiveTest extends TestCase {
+	private Path file;
+
+	@Override
+	protected void setUp() throws IOException {
+		file = Files.createTempFile("archive-test", ".archive");
+		Files.delete(file);
+	}
+
+	@Override
+	protected void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	public void testPagesArePersistedBetweenRuns() {
+		try (PageArchive archive = new PageArchive(file, true)) {
+			archive.put("http://a.com/1", page("http://a.com/1", "first"));
+			archive.put("http://a.com/2", page("http://a.com/2/", "second"));
+			archive.put("http://A.com/1#top", page("http://a.com/1", "first, again"));
+		}
+
+		try (PageArchive archive = new PageArchive(file, false)) {
+			assertEquals(2, archive.size());
+			assertFalse(archive.contains("http://a.com/3"));
+			assertNull(archive.get("http://a.com/3"));
+
+			FetchedPage page = archive.get("http://a.com/2");
+
+			assertEquals("http://a.com/2/", page.getUrl());
+			assertEquals(200, page.getStatusCode());
+			assertEquals("text/html; charset=UTF-8", page.getHeader("content-type"));
+			assertEquals("second", new String(page.getBody(), StandardCharsets.UTF_8));
+			assertEquals("first, again", new String(archive.get("http://a.com/1").getBody(), StandardCharsets.UTF_8));
+		}
+	}
+
+	public void testIncompleteRecordIsDropped() throws IOException {
+		try (PageArchive archive = new PageArchive(file, true)) {
+			archive.put("http://a.com/1", page("http://a.com/1", "first"));
+			archive.put("http://a.com/2", page("http://a.com/2", "second"));
+		}
+
+		// Cut the last record short, as if the process died while appending it
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 3);
+		}
+
+		try (PageArchive archive = new PageArchive(file, true)) {
+			assertEquals(1, archive.size());
+			assertFalse(archive.contains("http://a.com/2"));
+
+			archive.put("http://a.com/3", page("http://a.com/3", "third"));
+		}
+
+		try (PageArchive archive = new PageArchive(file, false)) {
+			assertEquals(2, archive.size());
+			assertEquals("third", new String(archive.get("http://a.com/3").getBody(), StandardCharsets.UTF_8));
+		}
+	}
+
+	public void testCrawlIsReplayedWithoutTheNetwork() {
+		AtomicInteger requests = new AtomicInteger();
+		PageFetcher site = (url, requestHeaders) -> {
+			requests.incrementAndGet();
+
+			if (url.endsWith("/missing")) {
+				throw new HttpStatusException("Not found", 404, url);
+			}
+
+			return page(url, "<a href=\"/a\">a</a><a href=\"/b\">b</a><a href=\"/missing\">m</a>");
+		};
+
+		CrawlerConfig config = new CrawlerConfig();
+		config.addSeedUrl("http://site.test/");
+		config.setPolitenessDelay(0);
+
+		RecordingCrawler recorded = new RecordingCrawler();
+
+		try (RecordingFetcher fetcher = new RecordingFetcher(site, new PageArchive(file, true))) {
+			new WebCrawlerController(config, recorded, fetcher).crawl();
+		}
+
+		assertEquals(4, requests.get());
+
+		// The politeness delay would slow the replay down if it were applied
+		config.setPolitenessDelay(60_000);
+		config.setReplayArchiveFile(file);
+
+		RecordingCrawler replayed = new RecordingCrawler();
+		new WebCrawlerController(config, replayed).crawl();
+
+		assertEquals(4, requests.get());
+		assertEquals(3, replayed.visited.size());
+		assertEquals(recorded.visited, replayed.visited);
+	}
+
+	public void testMissingPageIsAnError() {
+		try (ReplayFetcher fetcher = new ReplayFetcher(new PageArchive(file, true))) {
+			fetcher.fetch("http://a.com/1");
+			fail("Expected an IOException");
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+	private static FetchedPage page(String url, String html) {
+		return new FetchedPage(url, 200, Collections.singletonMap("Content-Type", "text/html; charset=UTF-8"),
+				html.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Remembers the pages it visits, in order.
+	 */
+	private static class RecordingCrawler extends WebCrawler {
+		private final List<String> visited = Collections.synchronizedList(new ArrayList<>());
+
+		@Override
+		public void onVisit(Document doc) {
+			visited.add(doc.location());
+		}
+	}
+}
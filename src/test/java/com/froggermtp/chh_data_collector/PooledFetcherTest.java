@@ -0,0 +1,179 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.jsoup.HttpStatusException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link PooledFetcher}, against a local HTTP server.
+ */
+public class PooledFetcherTest extends TestCase {
+	private HttpServer server;
+	private String origin;
+	private PooledFetcher fetcher;
+	/**
+	 * The client side address of every connection the server accepted.
+	 */
+	private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+	/**
+	 * The number of bytes the server sent in response bodies.
+	 */
+	private final AtomicLong bytesSent = new AtomicLong();
+
+	@Override
+	protected void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/", this::handle);
+		server.start();
+		origin = "http://localhost:" + server.getAddress().getPort();
+
+		CrawlerConfig config = new CrawlerConfig();
+		config.setMaxBodySize(50_000);
+		fetcher = new PooledFetcher(config);
+	}
+
+	@Override
+	protected void tearDown() throws IOException {
+		fetcher.close();
+		server.stop(0);
+	}
+
+	public void testConnectionIsReused() throws IOException {
+		for (int i = 0; i < 20; i++) {
+			FetchedPage page = fetcher.fetch(origin + "/page/" + i);
+
+			assertEquals(200, page.getStatusCode());
+			assertEquals(render("/page/" + i), new String(page.getBody(), StandardCharsets.UTF_8));
+		}
+
+		assertEquals(1, connections.size());
+	}
+
+	public void testResponsesAreDecompressed() throws IOException {
+		FetchedPage page = fetcher.fetch(origin + "/page/1");
+		String html = render("/page/1");
+
+		assertEquals(html, new String(page.getBody(), StandardCharsets.UTF_8));
+		assertTrue(bytesSent.get() < html.length() / 4);
+		assertNull(page.getHeader("Content-Encoding"));
+		assertEquals("text/html; charset=utf-8", page.getHeader("content-type"));
+	}
+
+	public void testLongBodyIsCutOff() throws IOException {
+		FetchedPage page = fetcher.fetch(origin + "/big/1");
+
+		assertEquals(50_000, page.getBody().length);
+
+		// The cut off connection is dropped, and the next request still succeeds
+		assertEquals(render("/page/2"), new String(fetcher.fetch(origin + "/page/2").getBody(), StandardCharsets.UTF_8));
+	}
+
+	public void testRedirectIsFollowed() throws IOException {
+		FetchedPage page = fetcher.fetch(origin + "/redirect");
+
+		assertEquals(origin + "/page/0", page.getUrl());
+		assertEquals(render("/page/0"), new String(page.getBody(), StandardCharsets.UTF_8));
+	}
+
+	public void testErrorsAreReported() throws IOException {
+		try {
+			fetcher.fetch(origin + "/busy");
+			fail();
+		} catch (RetryAfterException e) {
+			assertEquals(429, e.getStatusCode());
+			assertEquals(2000, e.getRetryAfter());
+		}
+
+		try {
+			fetcher.fetch(origin + "/missing");
+			fail();
+		} catch (HttpStatusException e) {
+			assertEquals(404, e.getStatusCode());
+		}
+
+		// The error pages are read, so their connection is kept
+		fetcher.fetch(origin + "/page/0");
+
+		assertEquals(1, connections.size());
+	}
+
+	public void testUrlWithSpacesIsQuoted() throws IOException {
+		FetchedPage page = fetcher.fetch(origin + "/page/a b");
+
+		assertEquals(render("/page/a b"), new String(page.getBody(), StandardCharsets.UTF_8));
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		connections.add(exchange.getRemoteAddress());
+
+		String path = exchange.getRequestURI().getPath();
+		int statusCode = 200;
+		String body;
+
+		if (path.equals("/redirect")) {
+			exchange.getResponseHeaders().set("Location", "/page/0");
+			statusCode = 302;
+			body = "<html><body>Moved</body></html>";
+		} else if (path.equals("/busy")) {
+			exchange.getResponseHeaders().set("Retry-After", "2");
+			statusCode = 429;
+			body = "<html><body>Slow down</body></html>";
+		} else if (path.startsWith("/page/") || path.startsWith("/big/")) {
+			body = render(path);
+		} else {
+			statusCode = 404;
+			body = "<html><body>Not found</body></html>";
+		}
+
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+
+		if (acceptEncoding != null && acceptEncoding.contains("gzip") ) {
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+			try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+				out.write(bytes);
+			}
+
+			bytes = compressed.toByteArray();
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+		}
+
+		exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+		exchange.sendResponseHeaders(statusCode, bytes.length);
+		bytesSent.addAndGet(bytes.length);
+
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * @param path  the path of a page, not null
+	 * @return the page, which is repetitive enough to compress well, not null
+	 */
+	private static String render(String path) {
+		StringBuilder html = new StringBuilder("<html><head><title>").append(path).append("</title></head><body>");
+		int paragraphs = path.startsWith("/big/") ? 2000 : 50;
+
+		for (int i = 0; i < paragraphs; i++) {
+			html.append("<p>A paragraph of filler text on the page at ").append(path).append(".</p>\n");
+		}
+
+		return html.append("</body></html>").toString();
+	}
+}
@@ -0,0 +1,125 @@
+package com.froggermtp.chh_data_collector;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jsoup.nodes.Document;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link PriorityFrontier}.
+ */
+public class PriorityFrontierTest extends TestCase {
+
+	public void testUrlsAreOrderedByPriorityDepthAndDiscovery() {
+		PriorityFrontier frontier = new PriorityFrontier(url -> url.contains("/article/") ? 1 : 0);
+
+		frontier.add("http://a.com/other/1", 1);
+		frontier.add("http://a.com/article/deep", 3);
+		frontier.add("http://a.com/other/2", 0);
+		frontier.add("http://a.com/article/1", 1);
+		frontier.add("http://a.com/article/2", 1);
+
+		assertEquals(5, frontier.size());
+		assertEquals("http://a.com/article/1", frontier.poll());
+		assertEquals("http://a.com/article/2", frontier.poll());
+		assertEquals("http://a.com/article/deep", frontier.poll());
+		assertEquals("http://a.com/other/2", frontier.poll());
+		assertEquals("http://a.com/other/1", frontier.poll());
+		assertNull(frontier.poll());
+		assertTrue(frontier.isEmpty());
+	}
+
+	public void testHostsTakeTurns() {
+		PriorityFrontier frontier = new PriorityFrontier(url -> 0);
+
+		for (int i = 0; i < 3; i++) {
+			frontier.add("http://busy.com/" + i);
+		}
+
+		frontier.add("http://quiet.com/0");
+		frontier.add("http://other.com/0");
+
+		List<String> order = new ArrayList<>();
+
+		for (String url = frontier.poll(); url != null; url = frontier.poll()) {
+			order.add(url);
+		}
+
+		// Every host is served once before the busy host is served again
+		assertEquals(5, order.size());
+		assertEquals(3, order.subList(0, 3).stream().map(PolitenessScheduler::getHost).distinct().count());
+		assertEquals("http://busy.com/1", order.get(3));
+		assertEquals("http://busy.com/2", order.get(4));
+	}
+
+	public void testPriorityOutranksTurns() {
+		PriorityFrontier frontier = new PriorityFrontier(url -> url.endsWith("!") ? 1 : 0);
+
+		frontier.add("http://a.com/1!");
+		frontier.add("http://a.com/2!");
+		frontier.add("http://b.com/1");
+
+		assertEquals("http://a.com/1!", frontier.poll());
+		assertEquals("http://a.com/2!", frontier.poll());
+		assertEquals("http://b.com/1", frontier.poll());
+	}
+
+	public void testArticlesAreScrapedFirst() {
+		CrawlerConfig config = new CrawlerConfig();
+		config.addSeedUrl("http://site.test/");
+		config.setPolitenessDelay(0);
+		config.setPriorityFrontier(true);
+
+		List<String> fetched = Collections.synchronizedList(new ArrayList<>());
+
+		PageFetcher site = (url, requestHeaders) -> {
+			fetched.add(url);
+
+			StringBuilder html = new StringBuilder();
+
+			if (url.equals("http://site.test/")) {
+				for (int i = 0; i < 10; i++) {
+					html.append("<a href=\"/other/").append(i).append("\">o</a>");
+				}
+
+				html.append("<a href=\"/list/2\">next</a><a href=\"/article/1\">a</a>");
+			} else if (url.endsWith("/list/2")) {
+				html.append("<a href=\"/article/2\">a</a><a href=\"/article/3\">a</a>");
+			}
+
+			return new FetchedPage(url, 200, Collections.singletonMap("Content-Type", "text/html"),
+					html.toString().getBytes(StandardCharsets.UTF_8));
+		};
+
+		WebCrawler crawler = new WebCrawler() {
+			private int articleCount = 0;
+
+			@Override
+			public PageType getPageType(String url) {
+				if (url.contains("/article/")) {
+					return PageType.ARTICLE;
+				}
+
+				return url.contains("/list/") ? PageType.LISTING : PageType.OTHER;
+			}
+
+			@Override
+			public void onVisit(Document doc) {
+				if (getPageType(doc.location()) == PageType.ARTICLE && ++articleCount == 3) {
+					stop();
+				}
+			}
+		};
+
+		new WebCrawlerController(config, crawler, site).crawl();
+
+		assertEquals(5, fetched.size());
+		assertEquals("http://site.test/article/1", fetched.get(1));
+		assertEquals("http://site.test/list/2", fetched.get(2));
+		assertTrue(fetched.stream().noneMatch(url -> url.contains("/other/")));
+	}
+}
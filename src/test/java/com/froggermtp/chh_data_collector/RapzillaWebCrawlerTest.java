@@ -0,0 +1,78 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link RapzillaWebCrawler}, run against saved Rapzilla pages.
+ */
+public class RapzillaWebCrawlerTest extends TestCase {
+	private static final String ARTICLE_URL = 
+			"http://www.rapzilla.com/rz/music/freemp3s/14099-propaganda-crown";
+
+	private final RapzillaWebCrawler crawler = new RapzillaWebCrawler();
+
+	public void testArticleIsScraped() throws IOException {
+		Document doc = readDocument("fixtures/freemp3s-article.html", ARTICLE_URL);
+
+		MusicData musicData = crawler.scrape(doc);
+
+		assertEquals(ARTICLE_URL, musicData.getUrl());
+		assertEquals("Propaganda", musicData.getArtist());
+		assertEquals("Crown & Glory", musicData.getProject());
+		assertEquals("27 March 2017", musicData.getDate());
+		assertEquals("27 March 2017", crawler.getPublicationDate(doc));
+	}
+
+	public void testListingIsNotAnArticle() throws IOException {
+		Document doc = readDocument("fixtures/freemp3s-listing.html", 
+				"http://www.rapzilla.com/rz/music/freemp3s");
+
+		// The listing has a time element for every article
+		assertNull(crawler.scrape(doc).getDate());
+		assertNull(crawler.scrape(doc).getArtist());
+		assertNull(crawler.getPublicationDate(doc));
+	}
+
+	public void testPageTypes() {
+		assertEquals(PageType.ARTICLE, crawler.getPageType(ARTICLE_URL));
+		assertEquals(PageType.LISTING, crawler.getPageType("http://www.rapzilla.com/rz/music/freemp3s"));
+		assertEquals(PageType.LISTING, crawler.getPageType("http://www.rapzilla.com/rz/music/freemp3s?start=20"));
+		assertEquals(PageType.OTHER, crawler.getPageType("http://www.rapzilla.com/rz/news"));
+
+		assertTrue(crawler.shouldVisit(ARTICLE_URL));
+		assertTrue(crawler.shouldVisit("http://www.rapzilla.com/rz/music/freemp3s?start=20"));
+		assertFalse(crawler.shouldVisit("http://www.rapzilla.com/rz/videos"));
+		assertTrue(crawler.needsDocument(ARTICLE_URL));
+		assertFalse(crawler.needsDocument("http://www.rapzilla.com/rz/music/freemp3s?start=20"));
+	}
+
+	/**
+	 * Parses a fixture the same way the web crawler parses a fetched page.
+	 * 
+	 * @param name  the name of the fixture on the classpath, not null
+	 * @param url  the URL the fixture was saved from, not null
+	 * @return the parsed document, not null
+	 * @throws IOException if the fixture cannot be read
+	 */
+	static Document readDocument(String name, String url) throws IOException {
+		return readDocument(LinkExtractorTest.readFixture(name), url);
+	}
+
+	/**
+	 * Parses a page body the same way the web crawler parses a fetched page.
+	 * 
+	 * @param body  the body of the page, not null
+	 * @param url  the URL of the page, not null
+	 * @return the parsed document, not null
+	 * @throws IOException if the body cannot be parsed
+	 */
+	static Document readDocument(byte[] body, String url) throws IOException {
+		return Jsoup.parse(new ByteArrayInputStream(body), "UTF-8", url);
+	}
+}
@@ -0,0 +1,156 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link ResponseCache} and {@link CachingFetcher}.
+ */
+public class ResponseCacheTest extends TestCase {
+	private Path directory;
+
+	@Override
+	protected void setUp() throws IOException {
+		directory = Files.createTempDirectory("cache-test");
+	}
+
+	@Override
+	protected void tearDown() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			files.forEach(file -> file.toFile().delete());
+		}
+
+		Files.delete(directory);
+	}
+
+	public void testPagesArePersistedBetweenRuns() {
+		ResponseCache cache = new ResponseCache(directory, 1024 * 1024);
+		cache.put("http://a.com/page", page("http://a.com/page", "\"v1\"", "hello"));
+
+		ResponseCache reopened = new ResponseCache(directory, 1024 * 1024);
+		FetchedPage cached = reopened.get("http://a.com/page");
+
+		assertNotNull(cached);
+		assertEquals("http://a.com/page", cached.getUrl());
+		assertEquals(200, cached.getStatusCode());
+		assertEquals("\"v1\"", cached.getHeader("etag"));
+		assertEquals("text/html; charset=UTF-8", cached.getHeader("Content-Type"));
+		assertEquals("hello", new String(cached.getBody(), StandardCharsets.UTF_8));
+		assertNull(reopened.get("http://a.com/other"));
+	}
+
+	public void testUrlsAreNormalized() {
+		ResponseCache cache = new ResponseCache(directory, 1024 * 1024);
+		cache.put("http://a.com/page#top", page("http://a.com/page", "\"v1\"", "hello"));
+
+		assertNotNull(cache.get("HTTP://A.COM/page"));
+		assertNull(cache.get("http://a.com/PAGE"));
+		assertEquals("http://a.com/Path?q=A", ResponseCache.normalize("HTTP://A.com/Path?q=A#Top"));
+	}
+
+	public void testLeastRecentlyUsedPagesAreEvicted() {
+		ResponseCache cache = new ResponseCache(directory, 1024 * 1024);
+		cache.put("http://a.com/0", page("http://a.com/0", "\"0\"", "x"));
+		long pageSize = cache.getTotalSize();
+
+		cache = new ResponseCache(directory, pageSize * 3);
+		cache.put("http://a.com/1", page("http://a.com/1", "\"1\"", "x"));
+		cache.put("http://a.com/2", page("http://a.com/2", "\"2\"", "x"));
+
+		// Using the oldest page makes the second page the least recently used
+		assertNotNull(cache.get("http://a.com/0"));
+		cache.put("http://a.com/3", page("http://a.com/3", "\"3\"", "x"));
+
+		assertEquals(3, cache.size());
+		assertEquals(pageSize * 3, cache.getTotalSize());
+		assertNotNull(cache.get("http://a.com/0"));
+		assertNull(cache.get("http://a.com/1"));
+		assertNotNull(cache.get("http://a.com/2"));
+		assertNotNull(cache.get("http://a.com/3"));
+	}
+
+	public void testUnmodifiedPagesAreServedFromTheCache() throws IOException {
+		StubFetcher server = new StubFetcher();
+		CachingFetcher fetcher = new CachingFetcher(server, new ResponseCache(directory, 1024 * 1024));
+
+		server.page = page("http://a.com/page", "\"v1\"", "first");
+		FetchedPage first = fetcher.fetch("http://a.com/page");
+
+		assertFalse(first.isNotModified());
+		assertNull(server.requestHeaders.get(0).get("If-None-Match"));
+
+		server.page = new FetchedPage("http://a.com/page", 304,
+				Collections.emptyMap(), new byte[0]);
+		FetchedPage second = fetcher.fetch("http://a.com/page");
+
+		assertTrue(second.isNotModified());
+		assertEquals("\"v1\"", server.requestHeaders.get(1).get("If-None-Match"));
+		assertEquals("first", new String(second.getBody(), StandardCharsets.UTF_8));
+
+		server.page = page("http://a.com/page", "\"v2\"", "second");
+		FetchedPage third = fetcher.fetch("http://a.com/page");
+
+		assertFalse(third.isNotModified());
+		assertEquals("second", new String(third.getBody(), StandardCharsets.UTF_8));
+
+		server.page = new FetchedPage("http://a.com/page", 304,
+				Collections.emptyMap(), new byte[0]);
+		FetchedPage fourth = fetcher.fetch("http://a.com/page");
+
+		assertEquals("\"v2\"", server.requestHeaders.get(3).get("If-None-Match"));
+		assertEquals("second", new String(fourth.getBody(), StandardCharsets.UTF_8));
+
+		assertEquals(2, fetcher.getHitCount());
+		assertEquals(1, fetcher.getMissCount());
+		assertEquals(1, fetcher.getChangedCount());
+	}
+
+	public void testPagesWithoutValidatorsAreNotCached() throws IOException {
+		StubFetcher server = new StubFetcher();
+		ResponseCache cache = new ResponseCache(directory, 1024 * 1024);
+		CachingFetcher fetcher = new CachingFetcher(server, cache);
+
+		server.page = page("http://a.com/page", null, "body");
+		fetcher.fetch("http://a.com/page");
+		fetcher.fetch("http://a.com/page");
+
+		assertEquals(0, cache.size());
+		assertEquals(2, fetcher.getMissCount());
+	}
+
+	private static FetchedPage page(String url, String etag, String body) {
+		Map<String, String> headers = new HashMap<>();
+		headers.put("Content-Type", "text/html; charset=UTF-8");
+
+		if (etag != null) {
+			headers.put("ETag", etag);
+		}
+
+		return new FetchedPage(url, 200, headers, body.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * A fetcher that always answers with the same page, and records the request headers.
+	 */
+	private static final class StubFetcher implements PageFetcher {
+		private FetchedPage page;
+		private final List<Map<String, String>> requestHeaders = new ArrayList<>();
+
+		@Override
+		public FetchedPage fetch(String url, Map<String, String> requestHeaders) {
+			this.requestHeaders.add(requestHeaders);
+
+			return page;
+		}
+	}
+}
@@ -0,0 +1,260 @@
+package com.froggermtp.chh_data_collector;
+
+import java.net.ConnectException;
+import java.net.MalformedURLException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.net.ssl.SSLHandshakeException;
+
+import org.jsoup.HttpStatusException;
+import org.jsoup.UnsupportedMimeTypeException;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link RetryScheduler}.
+ */
+public class RetrySchedulerTest extends TestCase {
+	private static final String URL = "http://a.com/page";
+
+	public void testBackoffDoublesWithJitter() {
+		RetryScheduler retries = new RetryScheduler(10, 100, 1000, 0, 1000);
+
+		for (int i = 0; i < 100; i++) {
+			long first = retries.getBackoff(1);
+			long third = retries.getBackoff(3);
+			long capped = retries.getBackoff(10);
+
+			assertTrue(first + "", first >= 50 && first <= 100);
+			assertTrue(third + "", third >= 200 && third <= 400);
+			assertTrue(capped + "", capped >= 500 && capped <= 1000);
+		}
+
+		assertTrue(new RetryScheduler(100, Long.MAX_VALUE / 4, Long.MAX_VALUE, 0, 1).getBackoff(100) > 0);
+	}
+
+	public void testOnlyTransientFailuresAreRetried() {
+		RetryScheduler retries = new RetryScheduler(3, 1, 1, 0, 1000);
+
+		assertFalse(retries.onComplete(URL, 200, 0));
+		assertFalse(retries.onComplete(URL, 404, 0));
+		assertFalse(retries.onComplete(URL, 501, 0));
+		assertTrue(retries.isEmpty());
+
+		assertTrue(retries.onComplete(URL, 0, 0));
+		assertTrue(retries.onComplete("http://a.com/timeout", 408, 0));
+		assertTrue(retries.onComplete("http://a.com/busy", 429, 0));
+		assertTrue(retries.onComplete("http://a.com/error", 503, 0));
+		assertEquals(4, retries.size());
+	}
+
+	public void testOnlyFailuresWithoutAnAnswerAreTransient() {
+		assertEquals(0, RetryScheduler.getStatusCode(new SocketTimeoutException("Read timed out")));
+		assertEquals(0, RetryScheduler.getStatusCode(new ConnectException("Connection refused")));
+		assertEquals(0, RetryScheduler.getStatusCode(new SocketException("Connection reset")));
+		assertEquals(503, RetryScheduler.getStatusCode(new HttpStatusException("Unavailable", 503, URL)));
+
+		assertEquals(RetryScheduler.PERMANENT_FAILURE, RetryScheduler.getStatusCode(
+				new UnsupportedMimeTypeException("Unhandled content type", "application/pdf", URL)));
+		assertEquals(RetryScheduler.PERMANENT_FAILURE,
+				RetryScheduler.getStatusCode(new MalformedURLException("no protocol")));
+		assertEquals(RetryScheduler.PERMANENT_FAILURE,
+				RetryScheduler.getStatusCode(new UnknownHostException("a.com")));
+		assertEquals(RetryScheduler.PERMANENT_FAILURE,
+				RetryScheduler.getStatusCode(new SSLHandshakeException("PKIX path building failed")));
+
+		// Neither retried nor counted against the host
+		RetryScheduler retries = new RetryScheduler(3, 1, 1, 2, 60_000);
+
+		for (int i = 0; i < 5; i++) {
+			assertFalse(retries.onComplete(URL + i, RetryScheduler.PERMANENT_FAILURE, 0));
+		}
+
+		assertTrue(retries.isEmpty());
+		assertTrue(retries.allowRequest(URL));
+	}
+
+	public void testAttemptsAreCapped() throws InterruptedException {
+		RetryScheduler retries = new RetryScheduler(2, 1, 1, 0, 1000);
+
+		assertTrue(retries.onComplete(URL, 503, 0));
+		assertTrue(retries.isRetrying(URL));
+		assertEquals(URL, awaitDue(retries));
+		assertTrue(retries.onComplete(URL, 503, 0));
+		assertEquals(URL, awaitDue(retries));
+		assertFalse(retries.onComplete(URL, 503, 0));
+		assertFalse(retries.isRetrying(URL));
+		assertTrue(retries.isEmpty());
+
+		// A success starts the count over
+		assertTrue(retries.onComplete(URL, 503, 0));
+		awaitDue(retries);
+		assertFalse(retries.onComplete(URL, 200, 0));
+		assertTrue(retries.onComplete(URL, 503, 0));
+	}
+
+	public void testRetryAfterIsRespected() {
+		RetryScheduler retries = new RetryScheduler(3, 1, 1, 0, 1000);
+		retries.onComplete(URL, 429, 5000);
+
+		assertNull(retries.pollDue());
+		assertTrue(retries.getNextDelay() > 4900);
+		assertEquals(-1, new RetryScheduler(3, 1, 1, 0, 1000).getNextDelay());
+	}
+
+	public void testCircuitBreakerPutsOffTheHost() throws InterruptedException {
+		RetryScheduler retries = new RetryScheduler(0, 1, 1, 2, 50);
+
+		assertFalse(retries.onComplete(URL, 503, 0));
+		assertTrue(retries.allowRequest(URL));
+		assertFalse(retries.onComplete(URL, 503, 0));
+
+		// The breaker is open, so the URL is put off until the cooldown has passed
+		assertFalse(retries.allowRequest("http://a.com/other"));
+		assertTrue(retries.allowRequest("http://b.com/"));
+		assertNull(retries.pollDue());
+		assertEquals("http://a.com/other", awaitDue(retries));
+
+		// A single trial request is let through
+		assertTrue(retries.allowRequest("http://a.com/other"));
+		assertFalse(retries.allowRequest("http://a.com/third"));
+
+		// The trial fails, so the breaker stays open for longer
+		retries.onComplete("http://a.com/other", 0, 0);
+		assertTrue(retries.getNextDelay() <= 1);
+		assertEquals("http://a.com/third", awaitDue(retries));
+		assertFalse(retries.allowRequest("http://a.com/third"));
+		assertTrue(retries.getNextDelay() > 50);
+
+		assertEquals("http://a.com/third", awaitDue(retries));
+		assertTrue(retries.allowRequest("http://a.com/third"));
+		retries.onComplete("http://a.com/third", 200, 0);
+		assertTrue(retries.allowRequest(URL));
+	}
+
+	public void testCrawlRecoversFromTransientFailures() {
+		for (int threads : new int[] {1, 4}) {
+			CrawlerConfig config = new CrawlerConfig();
+			config.addSeedUrl("http://site.test/");
+			config.setPolitenessDelay(0);
+			config.setNumberOfThreads(threads);
+			config.setMaxRetries(3);
+			config.setRetryBaseDelay(10);
+			config.setRetryMaxDelay(50);
+
+			Map<String, Integer> requests = new ConcurrentHashMap<>();
+			Set<String> visited = ConcurrentHashMap.newKeySet();
+
+			PageFetcher site = (url, requestHeaders) -> {
+				int count = requests.merge(url, 1, Integer::sum);
+
+				if (url.endsWith("/flaky") && count <= 2) {
+					throw new SocketException("Connection reset");
+				}
+
+				if (url.endsWith("/down")) {
+					throw new org.jsoup.HttpStatusException("Service unavailable", 503, url);
+				}
+
+				String html = "<a href=\"/flaky\">f</a><a href=\"/down\">d</a><a href=\"/ok\">o</a>";
+
+				return new FetchedPage(url, 200, Collections.singletonMap("Content-Type", "text/html"),
+						html.getBytes(StandardCharsets.UTF_8));
+			};
+
+			WebCrawler crawler = new WebCrawler() {
+				@Override
+				public void onVisitLinks(PageLinks page) {
+					visited.add(page.getUrl());
+				}
+
+				@Override
+				public boolean needsDocument(String url) {
+					return false;
+				}
+			};
+
+			WebCrawlerController controller = new WebCrawlerController(config, crawler, site);
+			controller.crawl();
+
+			assertTrue(visited.contains("http://site.test/flaky"));
+			assertEquals(Integer.valueOf(3), requests.get("http://site.test/flaky"));
+			assertEquals(Integer.valueOf(4), requests.get("http://site.test/down"));
+			assertEquals(5, controller.getMetrics().getRetries());
+		}
+	}
+
+	public void testUnsupportedContentTypesAreNotRetried() {
+		for (int threads : new int[] {1, 4}) {
+			CrawlerConfig config = new CrawlerConfig();
+			config.addSeedUrl("http://site.test/");
+			config.setPolitenessDelay(0);
+			config.setNumberOfThreads(threads);
+			config.setMaxRetries(3);
+			config.setRetryBaseDelay(10);
+			config.setCircuitBreakerThreshold(2);
+			config.setCircuitBreakerCooldown(60_000);
+
+			Map<String, Integer> requests = new ConcurrentHashMap<>();
+			Set<String> visited = ConcurrentHashMap.newKeySet();
+
+			PageFetcher site = (url, requestHeaders) -> {
+				requests.merge(url, 1, Integer::sum);
+
+				if (url.contains("/download/")) {
+					throw new UnsupportedMimeTypeException("Unhandled content type", "application/pdf", url);
+				}
+
+				String html = "<a href=\"/download/1\">1</a><a href=\"/download/2\">2</a>"
+						+ "<a href=\"/download/3\">3</a><a href=\"/ok\">o</a>";
+
+				return new FetchedPage(url, 200, Collections.singletonMap("Content-Type", "text/html"),
+						html.getBytes(StandardCharsets.UTF_8));
+			};
+
+			WebCrawler crawler = new WebCrawler() {
+				@Override
+				public void onVisitLinks(PageLinks page) {
+					visited.add(page.getUrl());
+				}
+
+				@Override
+				public boolean needsDocument(String url) {
+					return false;
+				}
+			};
+
+			WebCrawlerController controller = new WebCrawlerController(config, crawler, site);
+			long start = System.currentTimeMillis();
+			controller.crawl();
+
+			assertEquals(Integer.valueOf(1), requests.get("http://site.test/download/1"));
+			assertEquals(Integer.valueOf(1), requests.get("http://site.test/download/3"));
+			assertEquals(0, controller.getMetrics().getRetries());
+			// The circuit breaker of the host stayed closed
+			assertTrue(visited.contains("http://site.test/ok"));
+			assertTrue(System.currentTimeMillis() - start < 30_000);
+		}
+	}
+
+	/**
+	 * Waits until a URL is due and takes it.
+	 */
+	private static String awaitDue(RetryScheduler retries) throws InterruptedException {
+		long delay = retries.getNextDelay();
+
+		assertTrue(delay >= 0);
+		Thread.sleep(delay + 1);
+
+		String url = retries.pollDue();
+
+		return url != null ? url : awaitDue(retries);
+	}
+}
@@ -0,0 +1,316 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jsoup.HttpStatusException;
+import org.jsoup.UnsupportedMimeTypeException;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link RobotsTxt}, {@link RobotsCache} and {@link CrawlDelayScheduler}.
+ */
+public class RobotsTxtTest extends TestCase {
+	private static final String ROBOTS = "# Rules for every crawler\n"
+			+ "User-agent: *\n"
+			+ "Disallow: /wp-admin/\n"
+			+ "Allow: /wp-admin/admin-ajax.php\n"
+			+ "Disallow: /*?replytocom=\n"
+			+ "Disallow: /*.pdf$\n"
+			+ "Crawl-delay: 2\n"
+			+ "\n"
+			+ "User-agent: BadBot\n"
+			+ "User-agent: chh-data-collector/1.0\n"
+			+ "Disallow: /private # not for us\n"
+			+ "Crawl-delay: 0.5\n"
+			+ "\n"
+			+ "Sitemap: http://site.test/sitemap_index.xml\n";
+
+	public void testDefaultGroupIsUsed() {
+		RobotsTxt robots = RobotsTxt.parse(ROBOTS, "other-crawler");
+
+		assertFalse(robots.isAllowed("http://site.test/wp-admin/options.php"));
+		assertTrue(robots.isAllowed("http://site.test/wp-admin/admin-ajax.php"));
+		assertFalse(robots.isAllowed("http://site.test/rz/123-foo?replytocom=4"));
+		assertTrue(robots.isAllowed("http://site.test/rz/123-foo?page=2"));
+		assertFalse(robots.isAllowed("http://site.test/files/track.pdf"));
+		assertTrue(robots.isAllowed("http://site.test/files/track.pdf?download=1"));
+		assertTrue(robots.isAllowed("http://site.test/private"));
+		assertEquals(2000, robots.getCrawlDelay());
+	}
+
+	public void testOwnGroupIsUsed() {
+		RobotsTxt robots = RobotsTxt.parse(ROBOTS, "CHH-Data-Collector");
+
+		assertFalse(robots.isAllowed("http://site.test/private/page"));
+		assertTrue(robots.isAllowed("http://site.test/wp-admin/options.php"));
+		assertTrue(robots.isAllowed("http://site.test/robots.txt"));
+		assertEquals(500, robots.getCrawlDelay());
+		assertEquals(Collections.singletonList("http://site.test/sitemap_index.xml"), robots.getSitemaps());
+	}
+
+	public void testLongestRuleWins() {
+		RobotsTxt robots = RobotsTxt.parse("User-agent: *\nDisallow: /\nAllow: /rz/\nDisallow: /rz/music/private\n"
+				+ "Allow: /same\nDisallow: /same\n", "chh-data-collector");
+
+		assertFalse(robots.isAllowed("http://site.test/"));
+		assertFalse(robots.isAllowed("http://site.test"));
+		assertTrue(robots.isAllowed("http://site.test/rz/music/123-foo"));
+		assertFalse(robots.isAllowed("http://site.test/rz/music/private-stream"));
+		assertTrue(robots.isAllowed("http://site.test/same"));
+	}
+
+	public void testWildcards() {
+		assertTrue(RobotsTxt.matches("/a*b", "/axxb/c"));
+		assertTrue(RobotsTxt.matches("/a*b$", "/axbxb"));
+		assertFalse(RobotsTxt.matches("/a*b$", "/axbx"));
+		assertTrue(RobotsTxt.matches("*", "/anything"));
+		assertTrue(RobotsTxt.matches("/$", "/"));
+		assertFalse(RobotsTxt.matches("/$", "/a"));
+		assertFalse(RobotsTxt.matches("/ab", "/a"));
+	}
+
+	public void testMalformedLinesAreIgnored() {
+		RobotsTxt robots = RobotsTxt.parse("Disallow: /before-any-group\n<html>\nUser-agent: *\n"
+				+ "Disallow:\nCrawl-delay: soon\n", "chh-data-collector");
+
+		assertTrue(robots.isAllowed("http://site.test/before-any-group"));
+		assertTrue(robots.getCrawlDelay() < 0);
+	}
+
+	public void testRulesAreFetchedOncePerHost() throws IOException {
+		AtomicInteger requests = new AtomicInteger();
+		RobotsCache cache = new RobotsCache((url, requestHeaders) -> {
+			requests.incrementAndGet();
+
+			if (url.equals("http://site.test/robots.txt")) {
+				return page(url, 200, ROBOTS);
+			}
+
+			return page(url, 404, "");
+		}, "chh-data-collector");
+
+		assertFalse(cache.isAllowed("http://site.test/private"));
+		assertTrue(cache.isAllowed("http://SITE.test/public#top"));
+		assertTrue(cache.isAllowed("http://other.test/private"));
+		assertFalse(cache.isAllowed("http://site.test/private?a=1"));
+		assertEquals(2, requests.get());
+		assertEquals(2, cache.size());
+		assertEquals("https://site.test:8443", RobotsCache.getOrigin("https://site.test:8443/a?b#c"));
+	}
+
+	public void testMissingRulesAllowEverything() {
+		RobotsCache cache = new RobotsCache((url, requestHeaders) -> {
+			if (url.startsWith("http://gone.test")) {
+				throw new HttpStatusException("Gone", 410, url);
+			}
+
+			return page(url, 404, "");
+		}, "chh-data-collector");
+
+		assertSame(RobotsTxt.ALLOW_ALL, cache.get("http://site.test/private"));
+		assertSame(RobotsTxt.ALLOW_ALL, cache.get("http://gone.test/private"));
+	}
+
+	public void testUnreachableRulesDisallowEverything() {
+		RobotsCache cache = new RobotsCache((url, requestHeaders) -> {
+			if (url.startsWith("http://down.test")) {
+				throw new HttpStatusException("Service Unavailable", 503, url);
+			}
+
+			if (url.startsWith("http://broken.test")) {
+				return page(url, 500, "");
+			}
+
+			throw new ConnectException("Connection refused");
+		}, "chh-data-collector");
+
+		assertSame(RobotsTxt.DISALLOW_ALL, cache.get("http://down.test/"));
+		assertSame(RobotsTxt.DISALLOW_ALL, cache.get("http://broken.test/"));
+		assertSame(RobotsTxt.DISALLOW_ALL, cache.get("http://refused.test/"));
+		assertFalse(cache.isAllowed("http://refused.test/"));
+		assertFalse(cache.isAllowed("http://refused.test/rz/music"));
+		assertTrue(cache.isAllowed("http://refused.test/robots.txt"));
+		assertTrue(cache.isUnreachable("http://refused.test/rz/music"));
+		assertTrue(cache.getRecheckDelay("http://down.test/") > 0);
+		assertTrue(cache.getRecheckDelay("http://down.test/") <= RobotsCache.UNREACHABLE_RECHECK_DELAY);
+		assertFalse(cache.isUnreachable("http://unknown.test/"));
+	}
+
+	public void testUnreadableRulesAllowEverything() {
+		RobotsCache cache = new RobotsCache((url, requestHeaders) -> {
+			if (url.startsWith("http://nowhere.test")) {
+				throw new UnknownHostException("nowhere.test");
+			}
+
+			throw new UnsupportedMimeTypeException("Unhandled content type", "image/png", url);
+		}, "chh-data-collector");
+
+		assertSame(RobotsTxt.ALLOW_ALL, cache.get("http://nowhere.test/"));
+		assertSame(RobotsTxt.ALLOW_ALL, cache.get("http://site.test/"));
+		assertFalse(cache.isUnreachable("http://site.test/"));
+		assertEquals(-1, cache.getRecheckDelay("http://site.test/"));
+	}
+
+	public void testUnreachableHostsAreGivenUp() {
+		AtomicInteger requests = new AtomicInteger();
+		RobotsCache cache = new RobotsCache((url, requestHeaders) -> {
+			requests.incrementAndGet();
+
+			throw new HttpStatusException("Service Unavailable", 503, url);
+		}, "chh-data-collector", 0);
+
+		for (int i = 1; i < RobotsCache.MAX_UNREACHABLE_FETCHES; i++) {
+			assertFalse(cache.isAllowed("http://down.test/"));
+			assertTrue(cache.isUnreachable("http://down.test/"));
+		}
+
+		assertFalse(cache.isAllowed("http://down.test/"));
+		assertFalse(cache.isAllowed("http://down.test/"));
+		assertFalse(cache.isUnreachable("http://down.test/"));
+		assertEquals(RobotsCache.MAX_UNREACHABLE_FETCHES, requests.get());
+	}
+
+	public void testUnreachableRulesAreFetchedAgain() {
+		AtomicInteger requests = new AtomicInteger();
+		PageFetcher recovering = (url, requestHeaders) -> {
+			if (requests.incrementAndGet() == 1) {
+				throw new SocketException("Connection reset");
+			}
+
+			return page(url, 200, "User-agent: *\nDisallow: /private\n");
+		};
+		RobotsCache later = new RobotsCache(recovering, "chh-data-collector");
+
+		assertFalse(later.isAllowed("http://site.test/public"));
+		assertFalse(later.isAllowed("http://site.test/public"));
+		assertEquals(1, requests.get());
+
+		requests.set(0);
+		RobotsCache now = new RobotsCache(recovering, "chh-data-collector", 0);
+
+		assertFalse(now.isAllowed("http://site.test/public"));
+		assertTrue(now.isAllowed("http://site.test/public"));
+		assertFalse(now.isAllowed("http://site.test/private"));
+		// The rules that could be read are kept
+		assertEquals(2, requests.get());
+	}
+
+	public void testCrawlDelayIsObeyed() {
+		RobotsCache cache = new RobotsCache((url, requestHeaders) -> url.startsWith("http://slow.test")
+				? page(url, 200, "User-agent: *\nCrawl-delay: 5\n")
+				: page(url, 200, "User-agent: *\nCrawl-delay: 3600\n"), "chh-data-collector");
+		CrawlDelayScheduler scheduler = new CrawlDelayScheduler(new PolitenessScheduler(100), cache, 60_000);
+
+		// The rules of a host are only looked at once they have been fetched
+		assertTrue(scheduler.reserve("http://unknown.test/a") <= 0);
+		assertTrue(scheduler.reserve("http://unknown.test/b") <= 100);
+		assertEquals(0, cache.size());
+
+		cache.get("http://slow.test/");
+		cache.get("http://stalled.test/");
+
+		assertTrue(scheduler.reserve("http://slow.test/a") <= 0);
+		assertTrue(scheduler.reserve("http://slow.test/b") > 4000);
+		assertTrue(scheduler.reserve("http://slow.test/c") > 9000);
+
+		// Capped
+		assertTrue(scheduler.reserve("http://stalled.test/a") <= 0);
+		assertTrue(scheduler.reserve("http://stalled.test/b") <= 60_000);
+	}
+
+	public void testSchedulerWithoutCrawlDelay() {
+		RobotsCache cache = new RobotsCache((url, requestHeaders) -> page(url, 404, ""), "chh-data-collector");
+		CrawlDelayScheduler scheduler = new CrawlDelayScheduler(new PolitenessScheduler(1000), cache, 60_000);
+
+		for (String url : Arrays.asList("http://site.test/a", "http://site.test/b")) {
+			scheduler.reserve(url);
+		}
+
+		long wait = scheduler.reserve("http://site.test/c");
+
+		assertTrue(wait > 1000 && wait <= 2000);
+	}
+
+	public void testRulesAreReadBeforeTheCrawl() {
+		for (int numberOfThreads : new int[] { 1, 4 }) {
+			AtomicInteger robotsRequests = new AtomicInteger();
+			List<String> requested = crawl(numberOfThreads, (url, requestHeaders) -> {
+				if (robotsRequests.incrementAndGet() == 1) {
+					throw new HttpStatusException("Service Unavailable", 503, url);
+				}
+
+				return page(url, 200, "User-agent: *\nDisallow: /b\n");
+			});
+
+			// The links of a host whose rules cannot be reached wait for the rules to be fetched again
+			assertEquals(Arrays.asList("http://site.test/robots.txt", "http://site.test/",
+					"http://site.test/robots.txt", "http://site.test/a"), requested);
+		}
+	}
+
+	public void testLinksOfHostsThatAreGivenUpAreDropped() {
+		List<String> requested = crawl(1, (url, requestHeaders) -> {
+			throw new HttpStatusException("Service Unavailable", 503, url);
+		});
+		List<String> expected = new ArrayList<>();
+
+		for (int i = 0; i < RobotsCache.MAX_UNREACHABLE_FETCHES; i++) {
+			expected.add("http://site.test/robots.txt");
+		}
+
+		// The seed URL is crawled, and the file is only fetched again for the links
+		expected.add(1, "http://site.test/");
+
+		assertEquals(expected, requested);
+	}
+
+	/**
+	 * Crawls a site whose seed page links to {@code /a} and {@code /b}, whose other pages have
+	 * no links.
+	 *
+	 * @param numberOfThreads  the number of threads of the crawl
+	 * @param robots  fetches the {@code robots.txt} file of the site, not null
+	 * @return the URLs that were requested, in order, not null
+	 */
+	private static List<String> crawl(int numberOfThreads, PageFetcher robots) {
+		CrawlerConfig config = new CrawlerConfig();
+		config.addSeedUrl("http://site.test/");
+		config.setPolitenessDelay(0);
+		config.setNumberOfThreads(numberOfThreads);
+		config.setRespectRobotsTxt(true);
+		config.setRobotsRecheckDelay(50);
+
+		List<String> requested = Collections.synchronizedList(new ArrayList<>());
+		PageFetcher site = (url, requestHeaders) -> {
+			requested.add(url);
+
+			if (url.endsWith("/robots.txt")) {
+				return robots.fetch(url, requestHeaders);
+			}
+
+			String body = url.equals("http://site.test/") ? "<a href=\"/a\">a</a><a href=\"/b\">b</a>" : "";
+
+			return new FetchedPage(url, 200, Collections.singletonMap("Content-Type", "text/html"),
+					body.getBytes(StandardCharsets.UTF_8));
+		};
+
+		new WebCrawlerController(config, new WebCrawler() { }, site).crawl();
+
+		return requested;
+	}
+
+	private static FetchedPage page(String url, int statusCode, String body) {
+		return new FetchedPage(url, statusCode, Collections.singletonMap("Content-Type", "text/plain"),
+				body.getBytes(StandardCharsets.UTF_8));
+	}
+}
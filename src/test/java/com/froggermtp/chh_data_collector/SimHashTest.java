@@ -0,0 +1,257 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link SimHash}, {@link SimHashIndex} and the skipping of near-duplicates.
+ */
+public class SimHashTest extends TestCase {
+	private static final String[] WORDS = { "rap", "beat", "verse", "hook", "album", "single", "track",
+			"artist", "producer", "release", "gospel", "lyric", "mixtape", "stream", "tour", "video" };
+
+	public void testSimilarTextsAreClose() {
+		String text = text(2, 400);
+		String edited = text.replaceFirst("^(\\S+ \\S+ \\S+)", "$1 updated");
+
+		assertFalse(text.equals(edited));
+		assertTrue(SimHash.distance(SimHash.of(text), SimHash.of(edited)) <= 3);
+		assertTrue(SimHash.distance(SimHash.of(text), SimHash.of(text(3, 400))) > 10);
+		// Only the words count, not their case or the punctuation between them
+		assertEquals(SimHash.of(text), SimHash.of(text.toUpperCase().replace(" ", ", ")));
+	}
+
+	public void testMainTextIsSelected() {
+		Evaluator mainContent = QueryParser.parse("main, article");
+		String article = "<article><h1>Title</h1><p>" + text(4, 200) + "</p></article>";
+		Document first = Jsoup.parse("<nav>" + text(5, 50) + "</nav>" + article + "<footer>Page 1</footer>");
+		Document second = Jsoup.parse("<script>var page = 2;</script><nav>" + text(6, 50) + "</nav>"
+				+ article + "<footer>Page 2</footer>");
+		Document nested = Jsoup.parse("<main>" + article + "</main>");
+
+		assertEquals(WebCrawlerController.getMainText(first, mainContent),
+				WebCrawlerController.getMainText(second, mainContent));
+		// The article inside the main element is only taken once
+		assertEquals(SimHash.of(WebCrawlerController.getMainText(first, mainContent)),
+				SimHash.of(WebCrawlerController.getMainText(nested, mainContent)));
+		assertEquals("Only the body", 
+				WebCrawlerController.getMainText(Jsoup.parse("<p>Only the body</p>"), mainContent));
+	}
+
+	public void testArticlesSharingATemplateAreNotNearDuplicates() throws IOException {
+		String fixture = new String(LinkExtractorTest.readFixture("fixtures/freemp3s-article.html"),
+				StandardCharsets.UTF_8);
+		String other = fixture
+				.replace("Propaganda", "Lecrae")
+				.replace("Crown &amp; Glory", "Blessings")
+				.replace("2017-03-27", "2017-04-02")
+				.replace("27 March 2017", "2 April 2017")
+				.replace("the lead single from his upcoming album", "a new song recorded on tour")
+				.replace("reflection on identity, history and hope", "prayer of thanks for family");
+		StringBuilder sidebar = new StringBuilder("<div id=\"rt-sidebar\"><ul>");
+
+		for (int i = 0; i < 60; i++) {
+			sidebar.append("<li><a href=\"/rz/music/freemp3s/").append(13000 + i).append("\">Free MP3: ")
+					.append(WORDS[i % WORDS.length]).append(' ').append(i).append(" &ndash; ")
+					.append(WORDS[(i * 7) % WORDS.length]).append("</a></li>");
+		}
+
+		sidebar.append("</ul></div><div id=\"rt-footer\">");
+
+		Document first = Jsoup.parse(fixture.replace("<div id=\"rt-footer\">", sidebar), "http://a.test/1");
+		Document second = Jsoup.parse(other.replace("<div id=\"rt-footer\">", sidebar), "http://a.test/2");
+		Evaluator rapzilla = QueryParser.parse(new RapzillaWebCrawler().getMainContentSelector());
+		Evaluator wholePage = QueryParser.parse("body");
+		int distance = SimHash.distance(SimHash.of(WebCrawlerController.getMainText(first, rapzilla)),
+				SimHash.of(WebCrawlerController.getMainText(second, rapzilla)));
+		int wholePageDistance = SimHash.distance(SimHash.of(WebCrawlerController.getMainText(first, wholePage)),
+				SimHash.of(WebCrawlerController.getMainText(second, wholePage)));
+
+		assertFalse(WebCrawlerController.getMainText(first, rapzilla).contains("More free MP3s"));
+		assertTrue("Distance: " + distance, distance > new CrawlerConfig().getNearDuplicateDistance() * 3);
+		// The template outweighs the articles once the whole page is fingerprinted
+		assertTrue("Distance: " + wholePageDistance, wholePageDistance < distance);
+	}
+
+	public void testShortTextIsNotFingerprinted() {
+		assertEquals(SimHash.NONE, SimHash.of("Two words"));
+		assertEquals(SimHash.NONE, SimHash.of(""));
+	}
+
+	public void testIndexFindsNearDuplicates() {
+		SimHashIndex index = new SimHashIndex(3);
+		Random random = new Random(7);
+		List<Long> fingerprints = new ArrayList<>();
+
+		// Enough to resize the tables a few times
+		for (int i = 0; i < 5000; i++) {
+			long fingerprint = random.nextLong();
+
+			if (index.add(fingerprint)) {
+				fingerprints.add(fingerprint);
+			}
+		}
+
+		assertEquals(fingerprints.size(), index.size());
+		assertTrue(fingerprints.size() > 4990);
+
+		for (long fingerprint : fingerprints) {
+			// Flipped bits spread over every band, or all in the same band
+			assertTrue(index.containsNearDuplicate(fingerprint ^ 1L ^ 1L << 20 ^ 1L << 40));
+			assertTrue(index.containsNearDuplicate(fingerprint ^ 0x7L << 60));
+			assertFalse(index.add(fingerprint ^ 1L << 63));
+		}
+
+		assertEquals(fingerprints.size(), index.size());
+		assertFalse(index.containsNearDuplicate(fingerprints.get(0) ^ 0xFL));
+		assertFalse(index.add(SimHash.NONE));
+	}
+
+	public void testIndexDistanceIsBounded() {
+		try {
+			new SimHashIndex(SimHashIndex.MAX_DISTANCE + 1);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+
+		SimHashIndex exact = new SimHashIndex(0);
+
+		assertTrue(exact.add(42));
+		assertFalse(exact.add(42));
+		assertTrue(exact.add(43));
+	}
+
+	public void testNearDuplicatesAreSkipped() {
+		List<String> skipping = crawl(true);
+		List<String> complete = crawl(false);
+
+		// Only the first copy of the article is visited, and the links of the other copies are not followed
+		assertEquals(3, skipping.size());
+		assertTrue(skipping.contains("http://site.test/other"));
+		assertEquals(1, skipping.stream().filter(url -> url.startsWith("http://site.test/article")).count());
+		assertEquals(1, skipping.stream().filter(url -> url.startsWith("http://site.test/only-from/")).count());
+		assertEquals(7, complete.size());
+	}
+
+	public void testListingPagesAreNeverSkipped() {
+		CrawlerConfig config = new CrawlerConfig();
+		config.addSeedUrl("http://site.test/list?page=1");
+		config.setPolitenessDelay(0);
+		config.setNumberOfThreads(1);
+		config.setSkipNearDuplicates(true);
+
+		// The listing pages only differ by their links
+		String listing = "<p>" + text(10, 300) + "</p>";
+		PageFetcher site = (url, requestHeaders) -> {
+			String html;
+
+			if (url.equals("http://site.test/list?page=1")) {
+				html = listing + "<a href=\"/article/1\">1</a><a href=\"/list?page=2\">next</a>";
+			} else if (url.equals("http://site.test/list?page=2")) {
+				html = listing + "<a href=\"/article/2\">2</a>";
+			} else {
+				html = "<article>" + text(url.length() * 31 + url.charAt(url.length() - 1), 300) + "</article>";
+			}
+
+			return new FetchedPage(url, 200, Collections.singletonMap("Content-Type", "text/html"),
+					html.getBytes(StandardCharsets.UTF_8));
+		};
+
+		List<String> visited = Collections.synchronizedList(new ArrayList<>());
+		WebCrawler crawler = new WebCrawler() {
+			@Override
+			public boolean needsDocument(String url) {
+				return url.contains("/article/");
+			}
+
+			@Override
+			public void onVisit(Document doc) {
+				visited.add(doc.location());
+			}
+		};
+
+		WebCrawlerController controller = new WebCrawlerController(config, crawler, site);
+		controller.crawl();
+
+		assertTrue(visited.contains("http://site.test/article/1"));
+		assertTrue(visited.contains("http://site.test/article/2"));
+		assertEquals(0, controller.getMetrics().getNearDuplicates());
+	}
+
+	/**
+	 * Crawls a site whose home page links to three copies of the same article, which each link to
+	 * a page of their own, and to another article.
+	 *
+	 * @return the visited pages, not null
+	 */
+	private static List<String> crawl(boolean skipNearDuplicates) {
+		CrawlerConfig config = new CrawlerConfig();
+		config.addSeedUrl("http://site.test/");
+		config.setPolitenessDelay(0);
+		config.setNumberOfThreads(1);
+		config.setSkipNearDuplicates(skipNearDuplicates);
+
+		String article = text(8, 300);
+		PageFetcher site = (url, requestHeaders) -> {
+			String html;
+
+			if (url.equals("http://site.test/")) {
+				html = "<a href=\"/article\">a</a><a href=\"/article?utm_source=feed\">b</a>"
+						+ "<a href=\"/article/\">c</a><a href=\"/other\">d</a>";
+			} else if (url.startsWith("http://site.test/article")) {
+				html = "<p>" + article + "</p><p>Served at " + url.length() + "</p>"
+						+ "<a href=\"/only-from/" + url.length() + "\">only</a>";
+			} else if (url.equals("http://site.test/other")) {
+				html = "<p>" + text(9, 300) + "</p>";
+			} else {
+				html = "<p>" + text(url.length(), 300) + "</p>";
+			}
+
+			return new FetchedPage(url, 200, Collections.singletonMap("Content-Type", "text/html"),
+					html.getBytes(StandardCharsets.UTF_8));
+		};
+
+		List<String> visited = Collections.synchronizedList(new ArrayList<>());
+		WebCrawler crawler = new WebCrawler() {
+			@Override
+			public void onVisit(Document doc) {
+				if (!doc.location().equals("http://site.test/")) {
+					visited.add(doc.location());
+				}
+			}
+		};
+
+		WebCrawlerController controller = new WebCrawlerController(config, crawler, site);
+		controller.crawl();
+
+		assertEquals(skipNearDuplicates ? 2 : 0, controller.getMetrics().getNearDuplicates());
+
+		return visited;
+	}
+
+	/**
+	 * @return a text of random words, which is the same for the same seed, not null
+	 */
+	private static String text(long seed, int wordCount) {
+		Random random = new Random(seed);
+		StringBuilder text = new StringBuilder();
+
+		for (int i = 0; i < wordCount; i++) {
+			text.append(i > 0 ? " " : "").append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(100));
+		}
+
+		return text.toString();
+	}
+}
@@ -0,0 +1,232 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.jsoup.HttpStatusException;
+import org.jsoup.nodes.Document;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link SitemapReader} and the discovery of URLs from the sitemaps and
+ * {@code robots.txt} files of the sites.
+ */
+public class SitemapReaderTest extends TestCase {
+	private static final String INDEX = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n"
+			+ "  <sitemap><loc>http://site.test/post-sitemap.xml.gz</loc><lastmod>2016-05-01T10:00:00+00:00</lastmod></sitemap>\n"
+			+ "  <sitemap><loc>http://site.test/old-sitemap.xml</loc><lastmod>2012-01-01</lastmod></sitemap>\n"
+			+ "  <sitemap><loc>http://site.test/sitemap_index.xml</loc></sitemap>\n"
+			+ "</sitemapindex>";
+	private static final String POSTS = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n"
+			+ "  <url><loc>http://site.test/rz/1-new</loc><lastmod>2016-04-30T08:15Z</lastmod></url>\n"
+			+ "  <url>\n    <loc>\n      http://site.test/rz/2-undated\n    </loc>\n  </url>\n"
+			+ "  <url><loc>http://site.test/rz/3-old</loc><lastmod>2014-02</lastmod></url>\n"
+			+ "  <url><loc>http://site.test/private/4-hidden</loc></url>\n"
+			+ "  <url><loc>http://elsewhere.test/5-external</loc></url>\n"
+			+ "</urlset>";
+	private static final String OLD = "<urlset><url><loc>http://site.test/rz/6-archived</loc></url></urlset>";
+	private static final String ROBOTS = "User-agent: *\nDisallow: /private/\n\n"
+			+ "Sitemap: http://site.test/sitemap_index.xml\n";
+
+	public void testEntriesAreStreamed() throws Exception {
+		List<String> entries = new ArrayList<>();
+
+		new SitemapReader(site(), null).parse(INDEX.getBytes(StandardCharsets.UTF_8),
+				(isSitemap, loc, lastModified) -> entries.add(isSitemap + " " + loc + " " + lastModified));
+
+		assertEquals(Arrays.asList(
+				"true http://site.test/post-sitemap.xml.gz 2016-05-01T10:00:00Z",
+				"true http://site.test/old-sitemap.xml 2012-01-01T00:00:00Z",
+				"true http://site.test/sitemap_index.xml null"), entries);
+	}
+
+	public void testIndexesAreFollowed() {
+		List<String> urls = new ArrayList<>();
+		long count = new SitemapReader(site(), null).read(
+				Collections.singletonList("http://site.test/sitemap_index.xml"), urls::add);
+
+		// The index lists itself, which is only read once
+		assertEquals(Arrays.asList("http://site.test/rz/1-new", "http://site.test/rz/2-undated",
+				"http://site.test/rz/3-old", "http://site.test/private/4-hidden",
+				"http://elsewhere.test/5-external", "http://site.test/rz/6-archived"), urls);
+		assertEquals(6, count);
+	}
+
+	public void testOldEntriesAreSkipped() {
+		List<String> urls = new ArrayList<>();
+		new SitemapReader(site(), Instant.parse("2015-01-01T00:00:00Z")).read(
+				Collections.singletonList("http://site.test/sitemap_index.xml"), urls::add);
+
+		assertEquals(Arrays.asList("http://site.test/rz/1-new", "http://site.test/rz/2-undated",
+				"http://site.test/private/4-hidden", "http://elsewhere.test/5-external"), urls);
+	}
+
+	public void testBrokenSitemapsYieldWhatWasRead() {
+		String truncated = POSTS.substring(0, POSTS.indexOf("<url><loc>http://site.test/rz/3-old"));
+		PageFetcher fetcher = (url, requestHeaders) -> {
+			if (url.endsWith("missing.xml")) {
+				throw new HttpStatusException("Not found", 404, url);
+			}
+
+			return page(url, url.endsWith("truncated.xml") ? truncated.getBytes(StandardCharsets.UTF_8)
+					: "not a sitemap".getBytes(StandardCharsets.UTF_8));
+		};
+		List<String> urls = new ArrayList<>();
+		long count = new SitemapReader(fetcher, null).read(Arrays.asList("http://site.test/missing.xml",
+				"http://site.test/truncated.xml", "http://site.test/garbage.xml"), urls::add);
+
+		assertEquals(Arrays.asList("http://site.test/rz/1-new", "http://site.test/rz/2-undated"), urls);
+		assertEquals(2, count);
+	}
+
+	public void testLastModifiedFormats() {
+		assertEquals(Instant.parse("2016-01-01T00:00:00Z"), SitemapReader.parseLastModified("2016"));
+		assertEquals(Instant.parse("2016-04-01T00:00:00Z"), SitemapReader.parseLastModified("2016-04"));
+		assertEquals(Instant.parse("2016-04-30T00:00:00Z"), SitemapReader.parseLastModified("2016-04-30"));
+		assertEquals(Instant.parse("2016-04-30T06:15:00Z"), SitemapReader.parseLastModified("2016-04-30T08:15+02:00"));
+		assertEquals(Instant.parse("2016-04-30T08:15:30.500Z"),
+				SitemapReader.parseLastModified("2016-04-30T08:15:30.5Z"));
+		assertNull(SitemapReader.parseLastModified("yesterday"));
+		assertNull(SitemapReader.parseLastModified(null));
+	}
+
+	public void testSitemapsFeedTheCrawl() {
+		CrawlerConfig config = new CrawlerConfig();
+		config.addSeedUrl("http://site.test/");
+		config.setPolitenessDelay(0);
+		config.setFollowExternalLinks(false);
+		config.setRespectRobotsTxt(true);
+		config.setUseSitemaps(true);
+		config.setSitemapModifiedSince(Instant.parse("2015-01-01T00:00:00Z"));
+
+		List<String> fetched = Collections.synchronizedList(new ArrayList<>());
+		PageFetcher site = site();
+		WebCrawler crawler = new WebCrawler() {
+			@Override
+			public void onVisit(Document doc) {
+				fetched.add(doc.location());
+			}
+		};
+
+		new WebCrawlerController(config, crawler, site).crawl();
+
+		// The seed page has no links, the old and disallowed articles are left out, and so is the
+		// external one
+		Collections.sort(fetched);
+		assertEquals(Arrays.asList("http://site.test/", "http://site.test/rz/1-new",
+				"http://site.test/rz/2-undated"), fetched);
+	}
+
+	public void testGzippedSitemapsAreReadOverHttp() throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		Map<String, Integer> requests = new ConcurrentHashMap<>();
+		String origin = "http://localhost:" + server.getAddress().getPort();
+		Map<String, String> contentTypes = new TreeMap<>();
+		Map<String, byte[]> files = new TreeMap<>();
+		contentTypes.put("/robots.txt", "text/plain");
+		files.put("/robots.txt", ("Sitemap: " + origin + "/post-sitemap.xml.gz\n").getBytes(StandardCharsets.UTF_8));
+		contentTypes.put("/post-sitemap.xml.gz", "application/x-gzip");
+		files.put("/post-sitemap.xml.gz", gzip("<urlset><url><loc>" + origin + "/rz/1</loc></url>"
+				+ "<url><loc>" + origin + "/rz/2</loc></url>"
+				+ "<url><loc>" + origin + "/rz/3.pdf</loc></url></urlset>"));
+		contentTypes.put("/rz/3.pdf", "application/pdf");
+		files.put("/rz/3.pdf", "%PDF-1.4".getBytes(StandardCharsets.UTF_8));
+		server.createContext("/", exchange -> {
+			String path = exchange.getRequestURI().getPath();
+			byte[] body = files.getOrDefault(path, "<p>No links</p>".getBytes(StandardCharsets.UTF_8));
+			requests.merge(path, 1, Integer::sum);
+			exchange.getResponseHeaders().set("Content-Type", contentTypes.getOrDefault(path, "text/html"));
+			exchange.sendResponseHeaders(200, body.length);
+
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+
+		try {
+			List<String> urls = new ArrayList<>();
+			new SitemapReader(new JsoupFetcher(5000), null).read(
+					Collections.singletonList(origin + "/post-sitemap.xml.gz"), urls::add);
+
+			assertEquals(Arrays.asList(origin + "/rz/1", origin + "/rz/2", origin + "/rz/3.pdf"), urls);
+
+			CrawlerConfig config = new CrawlerConfig();
+			config.addSeedUrl(origin + "/");
+			config.setPolitenessDelay(0);
+			config.setFollowExternalLinks(false);
+			config.setRespectRobotsTxt(true);
+			config.setUseSitemaps(true);
+			config.setMaxRetries(2);
+			config.setRetryBaseDelay(10);
+
+			List<String> fetched = Collections.synchronizedList(new ArrayList<>());
+			new WebCrawlerController(config, new WebCrawler() {
+				@Override
+				public void onVisit(Document doc) {
+					fetched.add(doc.location());
+				}
+			}).crawl();
+
+			// The PDF is neither visited nor retried
+			Collections.sort(fetched);
+			assertEquals(Arrays.asList(origin + "/", origin + "/rz/1", origin + "/rz/2"), fetched);
+			assertEquals(Integer.valueOf(1), requests.get("/rz/3.pdf"));
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	/**
+	 * @return a fetcher for a site with a {@code robots.txt} file, a sitemap index, a gzipped
+	 * sitemap and an old sitemap, whose other pages have no links, not null
+	 */
+	private static PageFetcher site() {
+		Map<String, byte[]> files = new TreeMap<>();
+		files.put("http://site.test/robots.txt", ROBOTS.getBytes(StandardCharsets.UTF_8));
+		files.put("http://site.test/sitemap_index.xml", INDEX.getBytes(StandardCharsets.UTF_8));
+		files.put("http://site.test/post-sitemap.xml.gz", gzip(POSTS));
+		files.put("http://site.test/old-sitemap.xml", OLD.getBytes(StandardCharsets.UTF_8));
+
+		return (url, requestHeaders) -> {
+			byte[] body = files.get(url);
+
+			return page(url, body != null ? body : "<p>No links</p>".getBytes(StandardCharsets.UTF_8));
+		};
+	}
+
+	private static FetchedPage page(String url, byte[] body) {
+		return new FetchedPage(url, 200, Collections.singletonMap("Content-Type", "text/html"), body);
+	}
+
+	private static byte[] gzip(String text) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+			out.write(text.getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return bytes.toByteArray();
+	}
+}
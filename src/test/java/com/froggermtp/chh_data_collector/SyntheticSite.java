@@ -0,0 +1,469 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves a generated site shaped like Rapzilla's music directory from an embedded local HTTP
+ * server, so that the whole web crawler can be driven without the network.
+ * <p>
+ * The site has {@code articleCount} articles, listed {@code fanOut} at a time by listing pages
+ * that are paginated with {@code ?start=} the way Rapzilla's are.
+ * Every article page links to {@code fanOut} other articles, and is padded to roughly
+ * {@code pageSize} bytes.
+ * Every response is delayed by {@code latency} milliseconds, and a fraction {@code errorRate} of
+ * the pages, chosen from the seed, answer with a server error.
+ * The first listing page never fails, so that a crawl can always start.
+ * <p>
+ * The pages use relative links, and are meant to be fetched through {@link #newFetcher(int)}, which
+ * maps Rapzilla's URLs to the local server.
+ * A crawl of the site therefore goes through {@link RapzillaWebCrawler}'s URL rules and scraping
+ * unchanged.
+ * <p>
+ * The options must be set before the site is started.
+ */
+public class SyntheticSite implements AutoCloseable {
+	/**
+	 * The prefix of the URLs the crawler sees.
+	 */
+	public static final String ORIGIN = "http://www.rapzilla.com";
+	/**
+	 * The URL of the first listing page.
+	 */
+	public static final String SEED_URL = ORIGIN + "/rz/music/freemp3s";
+
+	private static final String DIRECTORY = "/rz/music/freemp3s";
+	private static final int FIRST_ID = 10_000;
+	private static final Pattern ARTICLE_PATH = Pattern.compile(DIRECTORY + "/(\\d+)-artist-\\d+-project-\\d+");
+	private static final Pattern LISTING_QUERY = Pattern.compile("start=(\\d+)");
+	private static final String FILLER = "<p>The track features production from a longtime collaborator, "
+			+ "and the artist describes it as a reflection on identity, history and hope.</p>\n";
+
+	/**
+	 * The number of articles.
+	 */
+	private int articleCount = 1000;
+	/**
+	 * The number of articles on a listing page, and of related articles on an article page.
+	 */
+	private int fanOut = 10;
+	/**
+	 * The amount of milliseconds every response is delayed.
+	 */
+	private long latency = 0;
+	/**
+	 * The fraction of the pages that answer with a server error.
+	 */
+	private double errorRate = 0;
+	/**
+	 * The approximate size of an article page in bytes.
+	 */
+	private int pageSize = 8 * 1024;
+	/**
+	 * Picks the related articles and the failing pages.
+	 */
+	private long seed = 42;
+
+	/**
+	 * The number of requests served.
+	 */
+	private final AtomicLong requestCount = new AtomicLong();
+	/**
+	 * The number of requests answered with an error.
+	 */
+	private final AtomicLong errorCount = new AtomicLong();
+	/**
+	 * The number of bytes of the bodies served.
+	 */
+	private final AtomicLong bytesServed = new AtomicLong();
+
+	private HttpServer server;
+	private ExecutorService executor;
+
+	/**
+	 * Starts the server on a free port of the loopback address.
+	 *
+	 * @param threadCount  the number of threads that serve the requests, must be positive
+	 * @return this site, not null
+	 */
+	public SyntheticSite start(int threadCount) {
+		AtomicInteger threadNumber = new AtomicInteger();
+
+		executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+			Thread thread = new Thread(runnable, "synthetic-site-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+
+			return thread;
+		});
+
+		// The server writes the headers and the body separately, which Nagle's algorithm would
+		// otherwise hold back until the client's delayed acknowledgement, adding 40ms to every page
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+
+		try {
+			server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not start the synthetic site", e);
+		}
+
+		server.createContext("/", this::handle);
+		server.setExecutor(executor);
+		server.start();
+
+		return this;
+	}
+
+	@Override
+	public void close() {
+		if (server != null) {
+			server.stop(0);
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Creates a fetcher that sends the requests for Rapzilla's URLs to the local server, and
+	 * reports the pages under their Rapzilla URLs.
+	 *
+	 * @param timeout  the amount of milliseconds to wait for the server before giving up
+	 * @return the fetcher, not null
+	 */
+	public PageFetcher newFetcher(int timeout) {
+		return newFetcher(getPort(), timeout);
+	}
+
+	/**
+	 * Creates a fetcher for a synthetic site served by another process.
+	 *
+	 * @param port  the port of the site on the loopback address
+	 * @param timeout  the amount of milliseconds to wait for the server before giving up
+	 * @return the fetcher, not null
+	 * @see #newFetcher(int)
+	 */
+	public static PageFetcher newFetcher(int port, int timeout) {
+		return newFetcher(port, new JsoupFetcher(timeout));
+	}
+
+	/**
+	 * Creates a fetcher that makes the requests for Rapzilla's URLs to the local server with
+	 * another fetcher.
+	 *
+	 * @param fetcher  the fetcher that makes the requests, not null
+	 * @return the fetcher, not null
+	 * @see #newFetcher(int)
+	 */
+	public PageFetcher newFetcher(PageFetcher fetcher) {
+		return newFetcher(getPort(), fetcher);
+	}
+
+	private static PageFetcher newFetcher(int port, PageFetcher fetcher) {
+		String local = "http://127.0.0.1:" + port;
+
+		return (url, requestHeaders) -> {
+			if (!url.startsWith(ORIGIN)) {
+				throw new IOException("Not a URL of the synthetic site: " + url);
+			}
+
+			FetchedPage page = fetcher.fetch(local + url.substring(ORIGIN.length()), requestHeaders);
+
+			return new FetchedPage(ORIGIN + page.getUrl().substring(local.length()), page.getStatusCode(),
+					page.getHeaders(), page.getBody());
+		};
+	}
+
+	/**
+	 * @return the port of the site on the loopback address
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * @return the number of pages of the site, listing pages included
+	 */
+	public int getPageCount() {
+		return articleCount + getListingCount();
+	}
+
+	/**
+	 * @return the number of listing pages
+	 */
+	public int getListingCount() {
+		return (articleCount + fanOut - 1) / fanOut;
+	}
+
+	/**
+	 * @param url  a URL of the site, not null
+	 * @return whether the page answers with a server error
+	 */
+	public boolean isError(String url) {
+		return !url.equals(SEED_URL) && new Random(seed ^ url.hashCode()).nextDouble() < errorRate;
+	}
+
+	/**
+	 * @param n  the number of an article, from zero
+	 * @return the URL of the article, not null
+	 */
+	public static String getArticleUrl(int n) {
+		return ORIGIN + getArticlePath(n);
+	}
+
+	private static String getArticlePath(int n) {
+		return DIRECTORY + "/" + (FIRST_ID + n) + "-artist-" + n + "-project-" + n;
+	}
+
+	/**
+	 * Answers a request.
+	 *
+	 * @param exchange  the request, not null
+	 * @throws IOException if the response cannot be sent
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		requestCount.incrementAndGet();
+
+		try {
+			if (latency > 0) {
+				Thread.sleep(latency);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		String path = exchange.getRequestURI().getRawPath();
+		String query = exchange.getRequestURI().getRawQuery();
+		String url = ORIGIN + path + (query != null ? "?" + query : "");
+		String html = render(path, query);
+		int statusCode = 200;
+
+		if (html == null) {
+			statusCode = 404;
+			html = "<html><head><title>Not found</title></head><body></body></html>";
+		} else if (isError(url)) {
+			statusCode = 500;
+			html = "<html><head><title>Server error</title></head><body></body></html>";
+		}
+
+		if (statusCode != 200) {
+			errorCount.incrementAndGet();
+		}
+
+		byte[] body = html.getBytes(StandardCharsets.UTF_8);
+		bytesServed.addAndGet(body.length);
+
+		exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+		exchange.sendResponseHeaders(statusCode, body.length);
+
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	/**
+	 * @param path  the path of the request, not null
+	 * @param query  the query of the request, null if it has none
+	 * @return the page, null if the site has no such page
+	 */
+	private String render(String path, String query) {
+		if (path.equals(DIRECTORY) || path.equals(DIRECTORY + "/")) {
+			Matcher matcher = LISTING_QUERY.matcher(query != null ? query : "start=0");
+
+			return matcher.matches() ? renderListing(Integer.parseInt(matcher.group(1))) : null;
+		}
+
+		Matcher matcher = ARTICLE_PATH.matcher(path);
+
+		if (matcher.matches() && query == null) {
+			int n = Integer.parseInt(matcher.group(1)) - FIRST_ID;
+
+			return n >= 0 && n < articleCount && path.equals(getArticlePath(n)) ? renderArticle(n) : null;
+		}
+
+		return null;
+	}
+
+	private String renderListing(int start) {
+		if (start < 0 || start >= articleCount || start % fanOut != 0) {
+			return null;
+		}
+
+		StringBuilder html = new StringBuilder(4096);
+		header(html, "Free MP3s");
+
+		// Newest first, like Rapzilla
+		for (int i = start; i < Math.min(start + fanOut, articleCount); i++) {
+			int n = articleCount - 1 - i;
+
+			html.append("<div class=\"item\"><h2><a href=\"").append(getArticlePath(n)).append("\">Free MP3: Artist ")
+					.append(n).append(" &ndash; Project ").append(n).append("</a></h2>\n")
+					.append("<p><img src=\"/rz/images/covers/").append(FIRST_ID + n).append(".jpg\" /></p></div>\n");
+		}
+
+		html.append("<div class=\"pagination\">");
+
+		// The first listing page is linked without a query, like Rapzilla does
+		if (start == fanOut) {
+			html.append("<a href=\"").append(DIRECTORY).append("\">Prev</a>");
+		} else if (start > 0) {
+			html.append("<a href=\"").append(DIRECTORY).append("?start=").append(start - fanOut).append("\">Prev</a>");
+		}
+
+		if (start + fanOut < articleCount) {
+			html.append("<a href=\"").append(DIRECTORY).append("?start=").append(start + fanOut).append("\">Next</a>");
+		}
+
+		html.append("</div>\n");
+		footer(html);
+
+		return html.toString();
+	}
+
+	private String renderArticle(int n) {
+		StringBuilder html = new StringBuilder(pageSize + 1024);
+		header(html, "Free MP3: Artist " + n + " &ndash; Project " + n);
+
+		html.append("<div class=\"item-page\"><dl class=\"article-info\"><dd class=\"create\"><time>Created: ")
+				.append(1 + n % 28).append(" March 2017</time></dd></dl>\n")
+				.append("<p><a href=\"/rz/downloads/").append(FIRST_ID + n).append(".mp3\">Download MP3</a></p>\n");
+
+		html.append("<div class=\"related\"><ul>\n");
+		Random random = new Random(seed ^ n);
+
+		for (int i = 0; i < fanOut; i++) {
+			int related = random.nextInt(articleCount);
+
+			html.append("<li><a href=\"").append(getArticlePath(related)).append("\">Free MP3: Artist ")
+					.append(related).append("</a></li>\n");
+		}
+
+		html.append("</ul></div>\n");
+
+		while (html.length() < pageSize - 64) {
+			html.append(FILLER);
+		}
+
+		html.append("</div>\n");
+		footer(html);
+
+		return html.toString();
+	}
+
+	private static void header(StringBuilder html, String title) {
+		html.append("<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\" /><title>").append(title)
+				.append("</title>\n<link rel=\"stylesheet\" href=\"/rz/templates/rapzilla/css/template.css\" />\n")
+				.append("<script src=\"/rz/media/system/js/core.js\"></script></head>\n<body>\n")
+				.append("<ul class=\"menu\"><li><a href=\"/rz/\">Home</a></li><li><a href=\"/rz/news\">News</a></li>")
+				.append("<li><a href=\"").append(DIRECTORY).append("\">Free MP3s</a></li></ul>\n");
+	}
+
+	private static void footer(StringBuilder html) {
+		html.append("<p><a href=\"https://twitter.com/rapzilla\">Twitter</a> ")
+				.append("<a href=\"mailto:info@rapzilla.com\">Contact</a></p>\n</body></html>\n");
+	}
+
+	/**
+	 * @return the number of requests served
+	 */
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * @return the number of requests answered with an error
+	 */
+	public long getErrorCount() {
+		return errorCount.get();
+	}
+
+	/**
+	 * @return the number of bytes of the bodies served
+	 */
+	public long getBytesServed() {
+		return bytesServed.get();
+	}
+
+	/**
+	 * @param articleCount  the number of articles, must be positive
+	 */
+	public void setArticleCount(int articleCount) {
+		if (articleCount < 1) {
+			throw new IllegalArgumentException("Article count must be positive: " + articleCount);
+		}
+
+		this.articleCount = articleCount;
+	}
+
+	/**
+	 * @param fanOut  the number of articles on a listing page, and of related articles on an
+	 * article page, must be positive
+	 */
+	public void setFanOut(int fanOut) {
+		if (fanOut < 1) {
+			throw new IllegalArgumentException("Fan-out must be positive: " + fanOut);
+		}
+
+		this.fanOut = fanOut;
+	}
+
+	/**
+	 * @param latency  the amount of milliseconds every response is delayed, not negative
+	 */
+	public void setLatency(long latency) {
+		if (latency < 0) {
+			throw new IllegalArgumentException("Latency cannot be negative: " + latency);
+		}
+
+		this.latency = latency;
+	}
+
+	/**
+	 * @param errorRate  the fraction of the pages that answer with a server error, from zero to one
+	 */
+	public void setErrorRate(double errorRate) {
+		if (errorRate < 0 || errorRate > 1) {
+			throw new IllegalArgumentException("Error rate must be between zero and one: " + errorRate);
+		}
+
+		this.errorRate = errorRate;
+	}
+
+	/**
+	 * @param pageSize  the approximate size of an article page in bytes, not negative
+	 */
+	public void setPageSize(int pageSize) {
+		if (pageSize < 0) {
+			throw new IllegalArgumentException("Page size cannot be negative: " + pageSize);
+		}
+
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * @param seed  picks the related articles and the failing pages
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * @return the options of the site, for reporting
+	 */
+	@Override
+	public String toString() {
+		return "SyntheticSite [articleCount=" + articleCount + ", fanOut=" + fanOut + ", latency=" + latency
+				+ ", errorRate=" + errorRate + ", pageSize=" + pageSize + ", seed=" + seed + "]";
+	}
+}
@@ -0,0 +1,59 @@
+package com.froggermtp.chh_data_collector;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link SyntheticSite} and {@link CrawlerLoadBenchmark}.
+ */
+public class SyntheticSiteTest extends TestCase {
+
+	public void testWholeSiteIsCrawled() throws InterruptedException {
+		try (SyntheticSite site = new SyntheticSite()) {
+			site.setArticleCount(95);
+			site.setFanOut(10);
+			site.setPageSize(4096);
+			site.start(4);
+
+			CrawlerLoadBenchmark.Report report = CrawlerLoadBenchmark.run(site, 4);
+
+			assertEquals(95, report.articleCount);
+			assertEquals(site.getPageCount(), report.metrics.getPagesFetched());
+			assertEquals(site.getPageCount(), site.getRequestCount());
+			assertEquals(0, report.metrics.getErrors());
+			assertTrue(site.getBytesServed() > 95 * 4000);
+			assertTrue(report.getPagesPerSecond() > 0);
+			assertTrue(report.heapHighWater > 0);
+			assertTrue(report.allocatedBytes > 0);
+		}
+	}
+
+	public void testErrorsAreCounted() throws InterruptedException {
+		try (SyntheticSite site = new SyntheticSite()) {
+			site.setArticleCount(200);
+			site.setFanOut(5);
+			site.setLatency(1);
+			site.setErrorRate(0.1);
+			site.start(4);
+
+			CrawlerLoadBenchmark.Report report = CrawlerLoadBenchmark.run(site, 4);
+
+			assertTrue(site.getErrorCount() > 0);
+			assertEquals(site.getErrorCount(), report.metrics.getErrors());
+			assertEquals(site.getRequestCount(), report.metrics.getPagesFetched());
+
+			int failingArticles = 0;
+
+			for (int n = 0; n < 200; n++) {
+				if (site.isError(SyntheticSite.getArticleUrl(n))) {
+					failingArticles++;
+				}
+			}
+
+			// Failing listing pages may hide a few articles, but every visited article was served
+			assertTrue(failingArticles > 0);
+			assertTrue(report.articleCount <= 200 - failingArticles);
+			assertTrue(report.articleCount > 150);
+			assertFalse(site.isError(SyntheticSite.SEED_URL));
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package com.froggermtp.chh_data_collector;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link TieredFrontier}.
+ */
+public class TieredFrontierTest extends TestCase {
+	private Path directory;
+	
+	@Override
+	protected void setUp() throws IOException {
+		directory = Files.createTempDirectory("frontier-test");
+	}
+	
+	@Override
+	protected void tearDown() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			files.forEach(file -> file.toFile().delete());
+		}
+		
+		Files.delete(directory);
+	}
+	
+	public void testUrlsKeepTheirOrderAcrossSpills() throws IOException {
+		final int URL_COUNT = 1000;
+		
+		TieredFrontier frontier = new TieredFrontier(directory, 10, 256);
+		
+		for (int i = 0; i < URL_COUNT; i++) {
+			frontier.add("http://a.com/" + i);
+		}
+		
+		assertEquals(URL_COUNT, frontier.size());
+		assertTrue(frontier.getSegmentCount() > 1);
+		
+		for (int i = 0; i < URL_COUNT; i++) {
+			assertEquals("http://a.com/" + i, frontier.poll());
+		}
+		
+		assertNull(frontier.poll());
+		assertTrue(frontier.isEmpty());
+		assertEquals(0, frontier.getSegmentCount());
+		assertEquals(0, countFiles());
+	}
+	
+	public void testInterleavedAddsAndPolls() {
+		TieredFrontier frontier = new TieredFrontier(directory, 4, 128);
+		int added = 0;
+		int polled = 0;
+		
+		for (int round = 0; round < 200; round++) {
+			// Add three, poll two, so the frontier keeps growing past the head and the segments
+			for (int i = 0; i < 3; i++) {
+				frontier.add("http://a.com/" + added++);
+			}
+			
+			for (int i = 0; i < 2; i++) {
+				assertEquals("http://a.com/" + polled++, frontier.poll());
+			}
+		}
+		
+		while (!frontier.isEmpty()) {
+			assertEquals("http://a.com/" + polled++, frontier.poll());
+		}
+		
+		assertEquals(added, polled);
+	}
+	
+	public void testCloseDeletesSegments() throws IOException {
+		TieredFrontier frontier = new TieredFrontier(directory, 1, 128);
+		
+		for (int i = 0; i < 100; i++) {
+			frontier.add("http://a.com/" + i);
+		}
+		
+		assertTrue(countFiles() > 0);
+		
+		frontier.close();
+		
+		assertEquals(0, countFiles());
+		assertTrue(frontier.isEmpty());
+	}
+	
+	public void testUrlsAreStoredAsUtf8() {
+		TieredFrontier frontier = new TieredFrontier(directory, 1, 128);
+		
+		frontier.add("http://a.com/first");
+		frontier.add("http://a.com/café-–-track");
+		
+		assertEquals("http://a.com/first", frontier.poll());
+		assertEquals("http://a.com/café-–-track", frontier.poll());
+	}
+	
+	/**
+	 * @return the number of files in the frontier directory
+	 */
+	private long countFiles() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.count();
+		}
+	}
+}
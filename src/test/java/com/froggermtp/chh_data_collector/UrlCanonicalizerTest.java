@@ -0,0 +1,177 @@
+package com.froggermtp.chh_data_collector;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jsoup.nodes.Document;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link UrlCanonicalizer} and the canonicalization of the crawled links.
+ */
+public class UrlCanonicalizerTest extends TestCase {
+	private final UrlCanonicalizer canonicalizer =
+			new UrlCanonicalizer(UrlCanonicalizer.DEFAULT_IGNORED_PARAMETERS, TrailingSlash.KEEP);
+
+	public void testHostIsLowercased() {
+		assertCanonical("http://www.rapzilla.com/rz/music", "HTTP://WWW.Rapzilla.COM/rz/music");
+		assertCanonical("http://www.rapzilla.com/RZ/Music", "http://www.rapzilla.com/RZ/Music");
+	}
+
+	public void testDefaultPortsAreRemoved() {
+		assertCanonical("http://site.test/a", "http://site.test:80/a");
+		assertCanonical("https://site.test/a", "https://site.test:443/a");
+		assertCanonical("http://site.test/a", "http://site.test:/a");
+		assertCanonical("http://site.test:8080/a", "http://site.test:8080/a");
+		assertCanonical("https://site.test:80/a", "https://site.test:80/a");
+		assertCanonical("http://[::1]:8080/a", "http://[::1]:8080/a");
+		assertCanonical("http://[::1]/a", "http://[::1]:80/a");
+	}
+
+	public void testFragmentsAreRemoved() {
+		assertCanonical("http://site.test/a", "http://site.test/a#comments");
+		assertCanonical("http://site.test/a?b=1", "http://site.test/a?b=1#");
+	}
+
+	public void testQueriesAreCleanedAndSorted() {
+		assertCanonical("http://site.test/a?id=2&page=1", "http://site.test/a?page=1&id=2");
+		assertCanonical("http://site.test/a", "http://site.test/a?utm_source=x&utm_medium=feed&fbclid=1");
+		assertCanonical("http://site.test/a?id=2", "http://site.test/a?utm_source=x&&id=2&gclid=3");
+		assertCanonical("http://site.test/a", "http://site.test/a?");
+		assertCanonical("http://site.test/a?utm=1", "http://site.test/a?utm=1");
+		assertCanonical("http://site.test/a?fbclid_extra=1", "http://site.test/a?fbclid_extra=1");
+		assertCanonical("http://site.test/a?a&a=1&b", "http://site.test/a?b&a=1&a");
+	}
+
+	public void testConfiguredParametersAreIgnored() {
+		UrlCanonicalizer sessions = new UrlCanonicalizer(Arrays.asList("sid", "ref*"), TrailingSlash.KEEP);
+
+		assertEquals("http://site.test/a?utm_source=x",
+				sessions.canonicalize("http://site.test/a?sid=42&referrer=feed&utm_source=x"));
+	}
+
+	public void testDotSegmentsAreResolved() {
+		assertCanonical("http://site.test/b/c", "http://site.test/a/../b/./c");
+		assertCanonical("http://site.test/", "http://site.test/..");
+		assertCanonical("http://site.test/a/", "http://site.test/a/b/..");
+		assertCanonical("http://site.test/", "http://site.test");
+		assertCanonical("http://site.test/?a=1", "http://site.test?a=1");
+		assertCanonical("http://site.test/.a/..b/c.", "http://site.test/.a/..b/c.");
+
+		assertEquals("/a/g", UrlCanonicalizer.removeDotSegments("/a/b/c/./../../g"));
+		assertEquals("/mid/6", UrlCanonicalizer.removeDotSegments("/mid/content=5/../6"));
+		assertEquals("/g", UrlCanonicalizer.removeDotSegments("/../../g"));
+		assertEquals("/a//b", UrlCanonicalizer.removeDotSegments("/a//b"));
+		assertEquals("/", UrlCanonicalizer.removeDotSegments(""));
+	}
+
+	public void testTrailingSlashRules() {
+		UrlCanonicalizer adding = new UrlCanonicalizer(Collections.emptyList(), TrailingSlash.ADD);
+		UrlCanonicalizer removing = new UrlCanonicalizer(Collections.emptyList(), TrailingSlash.REMOVE);
+
+		assertEquals("http://site.test/a/", adding.canonicalize("http://site.test/a"));
+		assertEquals("http://site.test/a/?b=1", adding.canonicalize("http://site.test/a?b=1"));
+		assertEquals("http://site.test/a.html", adding.canonicalize("http://site.test/a.html"));
+		assertEquals("http://site.test/a", removing.canonicalize("http://site.test/a/"));
+		assertEquals("http://site.test/a", removing.canonicalize("http://site.test/a//"));
+		assertEquals("http://site.test/", removing.canonicalize("http://site.test/"));
+		assertEquals("http://site.test/a/", canonicalizer.canonicalize("http://site.test/a/"));
+	}
+
+	public void testOtherUrlsAreUnchanged() {
+		for (String url : Arrays.asList("mailto:someone@site.test", "ftp://site.test/A#b", "/relative#b", "")) {
+			assertSame(url, canonicalizer.canonicalize(url));
+		}
+	}
+
+	public void testCanonicalUrlsDoNotAllocate() {
+		com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		UrlCanonicalizer removing = new UrlCanonicalizer(UrlCanonicalizer.DEFAULT_IGNORED_PARAMETERS,
+				TrailingSlash.REMOVE);
+		String url = "https://www.rapzilla.com:8443/rz/music/freemp3s/123-artist-name?id=7&page=2";
+		long id = Thread.currentThread().getId();
+		int calls = 100_000;
+
+		// Warm up, so that the measured calls are compiled
+		for (int i = 0; i < calls; i++) {
+			assertSame(url, removing.canonicalize(url));
+		}
+
+		long before = threads.getThreadAllocatedBytes(id);
+
+		for (int i = 0; i < calls; i++) {
+			if (removing.canonicalize(url) != url) {
+				fail();
+			}
+		}
+
+		long allocated = threads.getThreadAllocatedBytes(id) - before;
+
+		// Far less than a byte per call, which leaves room for the bean itself
+		assertTrue("Allocated " + allocated + " bytes", allocated < calls / 10);
+	}
+
+	public void testVariantsAreFetchedOnce() {
+		List<String> fetched = crawl(true);
+
+		assertEquals(Arrays.asList("http://site.test/", "http://site.test/123-foo"), fetched);
+		assertEquals(5, crawl(false).size());
+	}
+
+	/**
+	 * Crawls a site whose home page links to four spellings of the same article.
+	 *
+	 * @return the fetched URLs, in order, not null
+	 */
+	private static List<String> crawl(boolean canonicalizeUrls) {
+		CrawlerConfig config = new CrawlerConfig();
+		config.addSeedUrl("http://SITE.test:80/");
+		config.setPolitenessDelay(0);
+		config.setNumberOfThreads(1);
+		config.setCanonicalizeUrls(canonicalizeUrls);
+
+		List<String> fetched = Collections.synchronizedList(new ArrayList<>());
+		PageFetcher site = (url, requestHeaders) -> {
+			String html = url.contains("123-foo") ? "<p>Foo</p>"
+					: "<a href=\"/123-foo\">a</a><a href=\"/123-foo/\">b</a>"
+					+ "<a href=\"/123-foo#comments\">c</a><a href=\"/123-foo?utm_source=x\">d</a>";
+
+			fetched.add(url);
+
+			return new FetchedPage(url, 200, Collections.singletonMap("Content-Type", "text/html"),
+					html.getBytes(StandardCharsets.UTF_8));
+		};
+		WebCrawler crawler = new WebCrawler() {
+			@Override
+			public TrailingSlash getTrailingSlash() {
+				return TrailingSlash.REMOVE;
+			}
+
+			@Override
+			public void onVisit(Document doc) {
+				// Nothing to scrape
+			}
+		};
+
+		new WebCrawlerController(config, crawler, site).crawl();
+
+		return fetched;
+	}
+
+	/**
+	 * Asserts the canonical form of a URL, that the canonical form is canonical itself, and that
+	 * it is returned as it is.
+	 */
+	private void assertCanonical(String expected, String url) {
+		String canonical = canonicalizer.canonicalize(url);
+
+		assertEquals(expected, canonical);
+		assertSame(canonical, canonicalizer.canonicalize(canonical));
+	}
+}
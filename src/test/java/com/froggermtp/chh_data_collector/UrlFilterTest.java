@@ -0,0 +1,82 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the {@link UrlFilter} implementations.
+ */
+public class UrlFilterTest extends TestCase {
+	
+	public void testSeedPrefixFilter() {
+		UrlFilter filter = new SeedPrefixFilter(Arrays.asList(
+				"http://www.rapzilla.com/rz/music/freemp3s/", 
+				"http://www.rapzilla.com/rz/videos/",
+				"https://example.com"));
+		
+		assertTrue(filter.accept("http://www.rapzilla.com/rz/music/freemp3s/"));
+		assertTrue(filter.accept("http://www.rapzilla.com/rz/music/freemp3s/123-artist-project"));
+		assertTrue(filter.accept("http://www.rapzilla.com/rz/videos/456"));
+		assertTrue(filter.accept("https://example.com/anything"));
+		assertFalse(filter.accept("http://www.rapzilla.com/rz/music/"));
+		assertFalse(filter.accept("http://www.rapzilla.com/rz/news/789"));
+		assertFalse(filter.accept("https://example.org/"));
+		assertFalse(filter.accept(""));
+	}
+	
+	public void testSeedPrefixFilterWithoutSeedsRejectsEverything() {
+		UrlFilter filter = new SeedPrefixFilter(Arrays.<String>asList());
+		
+		assertFalse(filter.accept("http://www.rapzilla.com/"));
+	}
+	
+	public void testExtensionFilter() {
+		UrlFilter filter = new ExtensionFilter(Arrays.asList("css", "js", "jpg", "gz"));
+		
+		assertTrue(filter.accept("http://a.com/page"));
+		assertTrue(filter.accept("http://a.com/page.html"));
+		assertTrue(filter.accept("http://a.com/"));
+		assertTrue(filter.accept("http://a.com/dir.js/page"));
+		assertTrue(filter.accept("http://a.com/file.json"));
+		assertFalse(filter.accept("http://a.com/style.css"));
+		assertFalse(filter.accept("http://a.com/app.JS"));
+		assertFalse(filter.accept("http://a.com/cover.jpg?width=200"));
+		assertFalse(filter.accept("http://a.com/archive.tar.gz#download"));
+	}
+	
+	public void testUrlSyntaxFilter() {
+		UrlFilter filter = new UrlSyntaxFilter();
+		
+		assertTrue(filter.accept("http://www.rapzilla.com/rz/music/freemp3s/123-a-b"));
+		assertTrue(filter.accept("HTTPS://www.rapzilla.com:8443/path?query=1&b=%20c#top"));
+		assertTrue(filter.accept("http://a.com"));
+		assertTrue(filter.accept("http://a.com/café"));
+		assertFalse(filter.accept("mailto:someone@rapzilla.com"));
+		assertFalse(filter.accept("javascript:void(0)"));
+		assertFalse(filter.accept("http://"));
+		assertFalse(filter.accept("http://a.com:/path"));
+		assertFalse(filter.accept("http://a.com/with space"));
+		assertFalse(filter.accept("http://a.com/bad%2"));
+		assertFalse(filter.accept("http://a.com/bad%zz"));
+		assertFalse(filter.accept("http://a.com/a#b#c"));
+		assertFalse(filter.accept("http://a.com/{id}"));
+		assertFalse(filter.accept(""));
+	}
+	
+	public void testChainStopsAtFirstRejection() {
+		int[] calls = new int[1];
+		
+		UrlFilterChain chain = new UrlFilterChain()
+				.add(url -> url.startsWith("http"))
+				.add(url -> {
+					calls[0]++;
+					return true;
+				});
+		
+		assertFalse(chain.accept("ftp://a.com/"));
+		assertEquals(0, calls[0]);
+		assertTrue(chain.accept("http://a.com/"));
+		assertEquals(1, calls[0]);
+	}
+}
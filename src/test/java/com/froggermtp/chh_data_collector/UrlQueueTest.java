@@ -0,0 +1,117 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link UrlQueue}.
+ */
+public class UrlQueueTest extends TestCase {
+	
+	public void testUrlsAreReturnedInInsertionOrder() {
+		UrlQueue queue = new UrlQueue();
+		
+		queue.addUrl("http://a.com/1");
+		queue.addUrl("http://a.com/2");
+		queue.addUrl("http://a.com/3");
+		
+		assertEquals(3, queue.size());
+		assertEquals("http://a.com/1", queue.getUrl());
+		assertEquals("http://a.com/2", queue.getUrl());
+		assertEquals("http://a.com/3", queue.getUrl());
+		assertNull(queue.getUrl());
+		assertTrue(queue.isEmpty());
+		assertEquals(0, queue.size());
+	}
+	
+	public void testPendingUrlIsNotAddedTwice() {
+		UrlQueue queue = new UrlQueue();
+		
+		assertTrue(queue.addUrl("http://a.com/1"));
+		assertFalse(queue.addUrl("http://a.com/1"));
+		
+		assertEquals(1, queue.size());
+	}
+	
+	public void testVisitedUrlIsNotAddedAgain() {
+		UrlQueue queue = new UrlQueue();
+		
+		queue.addUrl("http://a.com/1");
+		queue.getUrl();
+		
+		assertFalse(queue.addUrl("http://a.com/1"));
+		assertTrue(queue.hasSeen("http://a.com/1"));
+		assertTrue(queue.isEmpty());
+	}
+	
+	public void testNullUrlIsRejected() {
+		UrlQueue queue = new UrlQueue();
+		
+		try {
+			queue.addUrl(null);
+			fail("Expected a NullPointerException");
+		} catch (NullPointerException e) {
+			// Expected
+		}
+	}
+	
+	public void testConcurrentProducersAndConsumers() throws InterruptedException {
+		final int PRODUCERS = 4;
+		final int CONSUMERS = 4;
+		final int URLS_PER_PRODUCER = 20000;
+		
+		UrlQueue queue = new UrlQueue();
+		ExecutorService executor = Executors.newFixedThreadPool(PRODUCERS + CONSUMERS);
+		CountDownLatch producersDone = new CountDownLatch(PRODUCERS);
+		List<Set<String>> consumed = new ArrayList<>();
+		
+		// Every producer adds the same URLs, so each URL must only come out once
+		for (int i = 0; i < PRODUCERS; i++) {
+			executor.execute(() -> {
+				for (int j = 0; j < URLS_PER_PRODUCER; j++) {
+					queue.addUrl("http://a.com/" + j);
+				}
+				
+				producersDone.countDown();
+			});
+		}
+		
+		for (int i = 0; i < CONSUMERS; i++) {
+			Set<String> urls = new HashSet<>();
+			consumed.add(urls);
+			
+			executor.execute(() -> {
+				while (producersDone.getCount() > 0 || !queue.isEmpty()) {
+					String url = queue.getUrl();
+					
+					if (url != null) {
+						urls.add(url);
+					}
+				}
+			});
+		}
+		
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+		
+		Set<String> all = new HashSet<>();
+		int total = 0;
+		
+		for (Set<String> urls : consumed) {
+			all.addAll(urls);
+			total += urls.size();
+		}
+		
+		assertEquals(URLS_PER_PRODUCER, all.size());
+		assertEquals(URLS_PER_PRODUCER, total);
+		assertEquals(0, queue.size());
+	}
+}
@@ -0,0 +1,68 @@
+package com.froggermtp.chh_data_collector;
+
+import java.util.function.Supplier;
+
+/**
+ * Measures the heap used per URL by the {@link UrlSet} implementations.
+ * <p>
+ * Every set is filled with {@code URL_COUNT} URLs shaped like Rapzilla article URLs.
+ * The retained heap is the difference in used heap before and after filling the set, so the
+ * benchmark should be run with a fixed heap and a collector that honours {@code System.gc()}
+ * promptly, for example {@code -Xms2g -Xmx2g -XX:+UseParallelGC}.
+ */
+public class UrlSetMemoryBenchmark {
+	private static final int URL_COUNT = 1_000_000;
+	
+	/**
+	 * Keeps the set being measured reachable while the heap is measured.
+	 */
+	private static UrlSet retained;
+	
+	public static void main(String[] args) {
+		measure("StringUrlSet", StringUrlSet::new);
+		measure("FingerprintUrlSet", () -> new FingerprintUrlSet(URL_COUNT));
+	}
+	
+	/**
+	 * Fills a set and prints the heap it retains per URL.
+	 * 
+	 * @param name  the name to print, not null
+	 * @param factory  creates the empty set to fill, not null
+	 */
+	private static void measure(String name, Supplier<UrlSet> factory) {
+		long before = usedHeap();
+		retained = factory.get();
+		
+		for (int i = 0; i < URL_COUNT; i++) {
+			retained.add(url(i));
+		}
+		
+		long after = usedHeap();
+		
+		System.out.printf("%s: %.1f bytes per URL (%d URLs)%n", 
+				name, (double) (after - before) / URL_COUNT, retained.size());
+		
+		retained = null;
+	}
+	
+	/**
+	 * @param i  the number of the URL
+	 * @return a URL shaped like a Rapzilla article URL
+	 */
+	private static String url(int i) {
+		return "http://www.rapzilla.com/rz/music/freemp3s/" + i + "-artist-name-project-title";
+	}
+	
+	/**
+	 * @return the used heap in bytes after a full garbage collection
+	 */
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}